@@ -104,6 +104,17 @@ public class AQuestDaoTest
 		assertEquals(2, dao.deleteAll(Arrays.asList(1L, 2L)));
 	}
 
+	@Test public void touchAllNew()
+	{
+		dao.add(createQuest(0,10000, QuestStatus.NEW));
+		dao.add(createQuest(1,10000, QuestStatus.NEW));
+		dao.add(createQuest(2,10000, QuestStatus.HIDDEN));
+		assertEquals(1, dao.touchAllNew(Arrays.asList(1L, 2L)));
+
+		assertEquals(2, dao.deleteAllUnsolved(20000));
+		assertNotNull(dao.get(1));
+	}
+
 	@Test public void update()
 	{
 		dao.add(createQuest(1,0,0, QuestStatus.NEW));
@@ -0,0 +1,53 @@
+package de.wp.streetcomplete.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import de.westnordost.backbiking.data.QuestTypeIdsDao;
+import de.westnordost.backbiking.data.QuestTypeRegistry;
+import de.westnordost.backbiking.data.osm.persist.test.TestQuestType;
+import de.westnordost.backbiking.data.osm.persist.test.TestQuestType2;
+
+import static org.junit.Assert.*;
+
+public class QuestTypeIdsDaoTest extends ApplicationDbTestCase
+{
+	@Test public void registeredQuestTypesHaveIds()
+	{
+		QuestTypeIdsDao dao = new QuestTypeIdsDao(dbHelper, new QuestTypeRegistry(Arrays.asList(
+			new TestQuestType(), new TestQuestType2())));
+
+		int id = dao.getId("TestQuestType");
+		int id2 = dao.getId("TestQuestType2");
+		assertNotEquals(id, id2);
+		assertEquals("TestQuestType", dao.getName(id));
+		assertEquals("TestQuestType2", dao.getName(id2));
+	}
+
+	@Test public void unknownQuestTypeIsGivenAnId()
+	{
+		QuestTypeIdsDao dao = new QuestTypeIdsDao(dbHelper, null);
+
+		int id = dao.getId("Unknown");
+		assertEquals(id, dao.getId("Unknown"));
+		assertEquals("Unknown", dao.getName(id));
+	}
+
+	@Test public void idsStayTheSame()
+	{
+		QuestTypeIdsDao dao = new QuestTypeIdsDao(dbHelper, new QuestTypeRegistry(Arrays.asList(
+			new TestQuestType(), new TestQuestType2())));
+		int id2 = dao.getId("TestQuestType2");
+
+		// i.e. TestQuestType was removed in a later version of the app
+		QuestTypeIdsDao dao2 = new QuestTypeIdsDao(dbHelper, new QuestTypeRegistry(Arrays.asList(
+			new TestQuestType2())));
+		assertEquals(id2, dao2.getId("TestQuestType2"));
+	}
+
+	@Test public void getNameOfUnknownId()
+	{
+		assertNull(new QuestTypeIdsDao(dbHelper, null).getName(999));
+	}
+}
@@ -12,10 +12,13 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 
 import de.westnordost.osmapi.map.data.Element;
 import de.westnordost.backbiking.data.osm.persist.AOsmElementDao;
 import de.westnordost.backbiking.data.osm.persist.OsmQuestTable;
+import de.westnordost.backbiking.data.osm.persist.StringDictionary;
 
 import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
 import static org.junit.Assert.*;
@@ -61,6 +64,14 @@ public class AOsmElementDaoTest
 		assertNotNull(dao.get(2));
 	}
 
+	@Test public void putAllSkipsSameVersion()
+	{
+		assertEquals(1, dao.putAll(Collections.singletonList(createElement(6,1))));
+		assertEquals(0, dao.putAll(Collections.singletonList(createElement(6,1))));
+		assertEquals(1, dao.putAll(Collections.singletonList(createElement(6,2))));
+		Assert.assertEquals(2,dao.get(6).getVersion());
+	}
+
 	@Test public void putOverwrite()
 	{
 		dao.put(createElement(6,0));
@@ -114,7 +125,7 @@ public class AOsmElementDaoTest
 	{
 		public TestOsmElementDao(SQLiteOpenHelper dbHelper)
 		{
-			super(dbHelper);
+			super(dbHelper, mock(StringDictionary.class));
 		}
 
 		@Override protected String getElementTypeName()
@@ -132,7 +143,12 @@ public class AOsmElementDaoTest
 			return ID_COL;
 		}
 
-		@Override protected void executeInsert(Element e)
+		@Override protected String getVersionColumnName()
+		{
+			return VERSION_COL;
+		}
+
+		@Override protected void executeInsert(Element e, Collection<Integer> usedStringIds)
 		{
 			SQLiteDatabase db = dbHelper.getWritableDatabase();
 			SQLiteStatement insert = db.compileStatement(
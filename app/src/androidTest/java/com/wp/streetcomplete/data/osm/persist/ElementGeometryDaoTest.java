@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import de.wp.streetcomplete.data.ApplicationDbTestCase;
+import de.westnordost.backbiking.data.QuestTypeIdsDao;
 import de.westnordost.backbiking.data.osm.ElementGeometry;
 import de.westnordost.backbiking.data.osm.OsmQuest;
 import de.westnordost.backbiking.data.osm.OsmElementQuestType;
@@ -25,7 +26,7 @@ public class ElementGeometryDaoTest extends ApplicationDbTestCase
 
 	@Before public void createDao()
 	{
-		dao = new ElementGeometryDao(dbHelper, serializer);
+		dao = new ElementGeometryDao(dbHelper);
 	}
 
 	@Test public void testGetNull()
@@ -52,6 +53,23 @@ public class ElementGeometryDaoTest extends ApplicationDbTestCase
 		assertNotNull(dao.get(Element.Type.NODE, 1));
 	}
 
+	@Test public void putAllSkipsUnchanged()
+	{
+		List<List<LatLon>> polylines = new ArrayList<>();
+		polylines.add(createSomeLatLons(0));
+		ArrayList<ElementGeometryDao.Row> rows = new ArrayList<>();
+		rows.add(new ElementGeometryDao.Row(Element.Type.NODE, 1, createSimpleGeometry()));
+		rows.add(new ElementGeometryDao.Row(Element.Type.WAY, 2, new ElementGeometry(polylines, null)));
+		assertEquals(2, dao.putAll(rows));
+		assertEquals(0, dao.putAll(rows));
+
+		// i.e. a node of the way has been moved
+		polylines.add(createSomeLatLons(10));
+		rows.set(1, new ElementGeometryDao.Row(Element.Type.WAY, 2, new ElementGeometry(polylines, null)));
+		assertEquals(1, dao.putAll(rows));
+		assertEquals(2, dao.get(Element.Type.WAY, 2).polylines.size());
+	}
+
 	@Test public void simplePutGet()
 	{
 		ElementGeometry geometry = createSimpleGeometry();
@@ -105,7 +123,7 @@ public class ElementGeometryDaoTest extends ApplicationDbTestCase
 		assertEquals(1,dao.deleteUnreferenced());
 
 		dao.put(type, id, geometry);
-		new OsmQuestDao(dbHelper, serializer, null).add(
+		new OsmQuestDao(dbHelper, serializer, null, new QuestTypeIdsDao(dbHelper, null)).add(
 				new OsmQuest(Mockito.mock(OsmElementQuestType.class), type, id, geometry));
 		assertEquals(0, dao.deleteUnreferenced());
 	}
@@ -12,6 +12,7 @@ import de.westnordost.osmapi.map.data.Node;
 import de.westnordost.osmapi.map.data.OsmLatLon;
 import de.westnordost.osmapi.map.data.OsmNode;
 import de.westnordost.backbiking.data.osm.persist.NodeDao;
+import de.westnordost.backbiking.data.osm.persist.StringDictionary;
 
 import static org.junit.Assert.assertEquals;
 
@@ -22,7 +23,7 @@ public class NodeDaoTest extends ApplicationDbTestCase
 
 	@Before public void createDao()
 	{
-		dao = new NodeDao(dbHelper, serializer);
+		dao = new NodeDao(dbHelper, new StringDictionary(dbHelper));
 	}
 
 	@Test public void putGetNoTags()
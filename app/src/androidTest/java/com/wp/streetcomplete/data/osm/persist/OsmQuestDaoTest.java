@@ -16,10 +16,12 @@ import de.westnordost.osmapi.map.data.BoundingBox;
 import de.wp.streetcomplete.data.ApplicationDbTestCase;
 import de.westnordost.backbiking.data.QuestStatus;
 import de.westnordost.backbiking.data.QuestType;
+import de.westnordost.backbiking.data.QuestTypeIdsDao;
 import de.westnordost.backbiking.data.QuestTypeRegistry;
 import de.westnordost.backbiking.data.osm.ElementGeometry;
 import de.westnordost.backbiking.data.osm.OsmElementQuestType;
 import de.westnordost.backbiking.data.osm.OsmQuest;
+import de.westnordost.backbiking.data.osm.OsmQuestMarker;
 import de.westnordost.backbiking.data.osm.changes.StringMapChanges;
 import de.westnordost.backbiking.data.osm.changes.StringMapEntryAdd;
 import de.westnordost.backbiking.data.osm.changes.StringMapEntryChange;
@@ -42,7 +44,7 @@ public class OsmQuestDaoTest extends ApplicationDbTestCase
 
 	@Before public void createDaos()
 	{
-		geometryDao = new ElementGeometryDao(dbHelper, serializer);
+		geometryDao = new ElementGeometryDao(dbHelper);
 		List<QuestType> list = Arrays.asList(
 			new TestQuestType(),
 			new TestQuestType2(),
@@ -51,7 +53,9 @@ public class OsmQuestDaoTest extends ApplicationDbTestCase
 			new TestQuestType5()
 		);
 
-		dao = new OsmQuestDao(dbHelper, serializer, new QuestTypeRegistry(list));
+		QuestTypeRegistry questTypeRegistry = new QuestTypeRegistry(list);
+		QuestTypeIdsDao questTypeIds = new QuestTypeIdsDao(dbHelper, questTypeRegistry);
+		dao = new OsmQuestDao(dbHelper, serializer, questTypeRegistry, questTypeIds);
 	}
 
 	@Test public void addGetNoChanges()
@@ -123,6 +127,27 @@ public class OsmQuestDaoTest extends ApplicationDbTestCase
 		assertEquals(2, both.size());
 	}
 
+	@Test public void getAllMarkers()
+	{
+		OsmQuest quest1 = createNewQuest(new TestQuestType(), 1, Element.Type.NODE,
+			new ElementGeometry(new OsmLatLon(5,5)));
+		OsmQuest quest2 = createNewQuest(new TestQuestType2(), 2, Element.Type.NODE,
+			new ElementGeometry(new OsmLatLon(6,6)));
+		OsmQuest quest3 = createNewQuest(new TestQuestType(), 3, Element.Type.NODE,
+			new ElementGeometry(new OsmLatLon(11,11)));
+
+		addToDaos(quest1, quest2, quest3);
+
+		List<OsmQuestMarker> markers = dao.getAllMarkers(new BoundingBox(0,0,10,10), QuestStatus.NEW,
+			Collections.singletonList(TestQuestType.class.getSimpleName()));
+		assertEquals(1, markers.size());
+		OsmQuestMarker marker = markers.get(0);
+		assertEquals(quest1.getId(), marker.getId());
+		assertEquals(quest1.getType(), marker.getType());
+		assertEquals(quest1.getCenter(), marker.getCenter());
+		assertArrayEquals(quest1.getMarkerLocations(), marker.getMarkerLocations());
+	}
+
 	private static OsmQuest createNewQuest(long id, Element.Type elementType)
 	{
 		return createNewQuest(id, elementType, new ElementGeometry(new OsmLatLon(5,5)));
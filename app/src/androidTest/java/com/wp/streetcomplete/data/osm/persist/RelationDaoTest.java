@@ -15,6 +15,7 @@ import de.westnordost.osmapi.map.data.OsmRelationMember;
 import de.westnordost.osmapi.map.data.Relation;
 import de.westnordost.osmapi.map.data.RelationMember;
 import de.westnordost.backbiking.data.osm.persist.RelationDao;
+import de.westnordost.backbiking.data.osm.persist.StringDictionary;
 
 import static org.junit.Assert.assertEquals;
 
@@ -24,7 +25,7 @@ public class RelationDaoTest extends ApplicationDbTestCase
 
 	@Before public void createDao()
 	{
-		dao = new RelationDao(dbHelper, serializer);
+		dao = new RelationDao(dbHelper, serializer, new StringDictionary(dbHelper));
 	}
 
 	@Test public void putGetNoTags()
@@ -11,6 +11,7 @@ import de.wp.streetcomplete.data.ApplicationDbTestCase;
 import de.westnordost.osmapi.map.data.OsmWay;
 import de.westnordost.osmapi.map.data.Way;
 import de.westnordost.backbiking.data.osm.persist.WayDao;
+import de.westnordost.backbiking.data.osm.persist.StringDictionary;
 
 import static org.junit.Assert.assertEquals;
 
@@ -21,7 +22,7 @@ public class WayDaoTest extends ApplicationDbTestCase
 
 	@Before public void createDao()
 	{
-		dao = new WayDao(dbHelper, serializer);
+		dao = new WayDao(dbHelper, serializer, new StringDictionary(dbHelper));
 	}
 
 	@Test public void putGetNoTags()
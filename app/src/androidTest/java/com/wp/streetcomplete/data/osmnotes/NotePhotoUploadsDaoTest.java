@@ -0,0 +1,64 @@
+package de.wp.streetcomplete.data.osmnotes;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import de.wp.streetcomplete.data.ApplicationDbTestCase;
+import de.westnordost.streetcomplete.data.osmnotes.NotePhotoUploadsDao;
+
+import static org.junit.Assert.*;
+
+public class NotePhotoUploadsDaoTest extends ApplicationDbTestCase
+{
+	private NotePhotoUploadsDao dao;
+
+	@Before public void createDao()
+	{
+		dao = new NotePhotoUploadsDao(dbHelper);
+	}
+
+	@Test public void getNull()
+	{
+		assertNull(dao.getUrl("a"));
+	}
+
+	@Test public void putGet()
+	{
+		dao.put("a", "url a");
+		assertEquals("url a", dao.getUrl("a"));
+	}
+
+	@Test public void putReplaces()
+	{
+		dao.put("a", "url a");
+		dao.put("a", "url b");
+		assertEquals("url b", dao.getUrl("a"));
+	}
+
+	@Test public void getAllPaths()
+	{
+		dao.put("a", "url a");
+		dao.put("b", "url b");
+		assertEquals(new HashSet<>(Arrays.asList("a", "b")), new HashSet<>(dao.getAllPaths()));
+	}
+
+	@Test public void deleteAll()
+	{
+		dao.put("a", "url a");
+		dao.put("b", "url b");
+		dao.put("c", "url c");
+		assertEquals(2, dao.deleteAll(Arrays.asList("a", "b", "d")));
+		assertNull(dao.getUrl("a"));
+		assertNull(dao.getUrl("b"));
+		assertEquals("url c", dao.getUrl("c"));
+	}
+
+	@Test public void deleteNothing()
+	{
+		assertEquals(0, dao.deleteAll(Collections.emptyList()));
+	}
+}
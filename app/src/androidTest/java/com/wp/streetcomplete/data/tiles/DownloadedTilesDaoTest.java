@@ -6,7 +6,7 @@ import android.graphics.Rect;
 import org.junit.Before;
 import org.junit.Test;
 
-import java.util.List;
+import java.util.Map;
 
 import de.wp.streetcomplete.data.ApplicationDbTestCase;
 import de.westnordost.backbiking.data.tiles.DownloadedTilesDao;
@@ -25,16 +25,16 @@ public class DownloadedTilesDaoTest extends ApplicationDbTestCase
 	@Test public void putGetOne()
 	{
 		dao.put(new Rect(5,8,5,8), "Huhu");
-		List<String> huhus = dao.get(new Rect(5,8,5,8),0);
+		Map<String, Long> huhus = dao.getDownloadTimes(new Rect(5,8,5,8),0);
 
 		assertEquals(1, huhus.size());
-		assertTrue(huhus.contains("Huhu"));
+		assertTrue(huhus.containsKey("Huhu"));
 	}
 
 	@Test public void putGetOld()
 	{
 		dao.put(new Rect(5,8,5,8), "Huhu");
-		List<String> huhus = dao.get(new Rect(5,8,5,8),System.currentTimeMillis() + 1000);
+		Map<String, Long> huhus = dao.getDownloadTimes(new Rect(5,8,5,8),System.currentTimeMillis() + 1000);
 		assertTrue(huhus.isEmpty());
 	}
 
@@ -43,21 +43,33 @@ public class DownloadedTilesDaoTest extends ApplicationDbTestCase
 		dao.put(new Rect(0,0,1,3), "Huhu");
 		Thread.sleep(2000);
 		dao.put(new Rect(1,3,5,5), "Huhu");
-		List<String> huhus = dao.get(new Rect(0,0,2,2),System.currentTimeMillis() - 1000);
+		Map<String, Long> huhus = dao.getDownloadTimes(new Rect(0,0,2,2),System.currentTimeMillis() - 1000);
 		assertTrue(huhus.isEmpty());
 	}
 
 	@Test public void putMoreGetOne()
 	{
 		dao.put(new Rect(5,8,6,10), "Huhu");
-		assertFalse(dao.get(new Rect(5,8,5,8),0).isEmpty());
-		assertFalse(dao.get(new Rect(6,10,6,10),0).isEmpty());
+		assertFalse(dao.getDownloadTimes(new Rect(5,8,5,8),0).isEmpty());
+		assertFalse(dao.getDownloadTimes(new Rect(6,10,6,10),0).isEmpty());
 	}
 
 	@Test public void putOneGetMore()
 	{
 		dao.put(new Rect(5,8,5,8), "Huhu");
-		assertTrue(dao.get(new Rect(5,8,5,9),0).isEmpty());
+		assertTrue(dao.getDownloadTimes(new Rect(5,8,5,9),0).isEmpty());
+	}
+
+	@Test public void putRefreshedKeepsCompleteDownloadTime() throws InterruptedException
+	{
+		dao.put(new Rect(5,8,5,8), "Huhu");
+		long completeTime = System.currentTimeMillis();
+		Thread.sleep(2000);
+		dao.putRefreshed(new Rect(5,8,5,8), "Huhu");
+
+		assertTrue(dao.getDownloadTimes(new Rect(5,8,5,8), completeTime + 1000).isEmpty());
+		long refreshTime = dao.getDownloadTimes(new Rect(5,8,5,8), 0).get("Huhu");
+		assertTrue(refreshTime > completeTime + 1000);
 	}
 
 	@Test public void remove()
@@ -74,19 +86,19 @@ public class DownloadedTilesDaoTest extends ApplicationDbTestCase
 		dao.put(new Rect(4,4,6,6), "hoho");
 		dao.put(new Rect(4,0,4,7), "hihi");
 
-		List<String> check = dao.get(new Rect(0,0,2,2),0);
+		Map<String, Long> check = dao.getDownloadTimes(new Rect(0,0,2,2),0);
 		assertEquals(1, check.size());
-		assertTrue(check.contains("Huhu"));
+		assertTrue(check.containsKey("Huhu"));
 
-		check = dao.get(new Rect(4,4,4,4),0);
+		check = dao.getDownloadTimes(new Rect(4,4,4,4),0);
 		assertEquals(3, check.size());
 
-		check = dao.get(new Rect(5,5,5,5),0);
+		check = dao.getDownloadTimes(new Rect(5,5,5,5),0);
 		assertEquals(2, check.size());
-		assertTrue(check.contains("hoho"));
-		assertTrue(check.contains("Huhu"));
+		assertTrue(check.containsKey("hoho"));
+		assertTrue(check.containsKey("Huhu"));
 
-		check = dao.get(new Rect(0,0,6,6),0);
+		check = dao.getDownloadTimes(new Rect(0,0,6,6),0);
 		assertTrue(check.isEmpty());
 	}
 }
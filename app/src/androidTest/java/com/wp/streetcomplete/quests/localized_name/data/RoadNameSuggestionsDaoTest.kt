@@ -1,6 +1,7 @@
 package de.wp.streetcomplete.quests.localized_name.data
 
 import de.westnordost.osmapi.map.data.OsmLatLon
+import de.westnordost.backbiking.data.osm.persist.StringDictionary
 import de.wp.streetcomplete.data.ApplicationDbTestCase
 import org.junit.Assert.*
 import org.junit.Before
@@ -10,7 +11,7 @@ class RoadNameSuggestionsDaoTest : de.wp.streetcomplete.data.ApplicationDbTestCa
     private lateinit var dao: RoadNameSuggestionsDao
 
     @Before fun createDao() {
-        dao = RoadNameSuggestionsDao(dbHelper, serializer)
+        dao = RoadNameSuggestionsDao(dbHelper, serializer, StringDictionary(dbHelper))
     }
 
     @Test fun getNoNames() {
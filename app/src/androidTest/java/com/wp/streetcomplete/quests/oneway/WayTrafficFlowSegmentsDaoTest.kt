@@ -1,6 +1,7 @@
 package de.wp.streetcomplete.quests.oneway
 
 import de.westnordost.osmapi.map.data.OsmWay
+import de.westnordost.backbiking.data.osm.persist.StringDictionary
 import de.westnordost.backbiking.data.osm.persist.WayDao
 import de.westnordost.backbiking.quests.oneway.data.WayTrafficFlowDao
 import de.westnordost.backbiking.util.Serializer
@@ -47,7 +48,7 @@ class WayTrafficFlowSegmentsDaoTest : de.wp.streetcomplete.data.ApplicationDbTes
             override fun toBytes(`object`: Any) = ByteArray(0)
             override fun <T> toObject(bytes: ByteArray, type: Class<T>) = type.newInstance()
         }
-        val wayDao = WayDao(dbHelper, mockSerializer)
+        val wayDao = WayDao(dbHelper, mockSerializer, StringDictionary(dbHelper))
 
         wayDao.put(OsmWay(1, 0, mutableListOf(), null))
         wayDao.put(OsmWay(2, 0, mutableListOf(), null))
@@ -19,6 +19,7 @@ import de.westnordost.streetcomplete.quests.oneway.AddOnewayForm;
 import de.westnordost.streetcomplete.quests.opening_hours.AddOpeningHoursForm;
 import de.westnordost.streetcomplete.quests.localized_name.AddRoadNameForm;
 import de.westnordost.streetcomplete.quests.parking_fee.AddParkingFeeForm;
+import de.westnordost.streetcomplete.quests.note_discussion.AttachPhotoFragment;
 import de.westnordost.streetcomplete.quests.note_discussion.NoteDiscussionForm;
 import de.westnordost.streetcomplete.quests.postbox_collection_times.AddCollectionTimesForm;
 import de.westnordost.streetcomplete.settings.SettingsActivity;
@@ -38,6 +39,7 @@ public interface ApplicationComponent
 
 	void inject(MainActivity mainActivity);
 	void inject(NoteDiscussionForm noteDiscussionForm);
+	void inject(AttachPhotoFragment attachPhotoFragment);
 	void inject(SerializedSavedState tSerializedSavedState);
 
 	void inject(QuestChangesUploadService questChangesUploadService);
@@ -26,24 +26,70 @@ public class ApplicationConstants
 
 	public final static int NOTE_MIN_ZOOM = 15;
 
+	/** Below this zoom, quest markers that are close to each other are shown as one marker that
+	 *  displays how many quests there are */
+	public final static int CLUSTER_QUESTS_BELOW_ZOOM = 17;
+
+	/** Of how many (z14) tiles the quests are displayed on the map at most. The quests of the least
+	 *  recently viewed tiles are removed from the map */
+	public final static int MAX_DISPLAYED_QUEST_TILES = 16;
+
+	/** How many (z14) tiles of visible quests are kept in memory at most */
+	public final static int MAX_CACHED_QUEST_TILES = 64;
+
 	/** How many quests to download when pressing manually on "download quests" */
 	public final static int MANUAL_DOWNLOAD_QUEST_TYPE_COUNT = 10;
 
+	/** How many quest types that are defined only by tag filters are downloaded together in one
+	 *  Overpass query at most */
+	public final static int MAX_QUEST_TYPES_PER_OVERPASS_QUERY = 25;
+
+	/** How many quest type downloads may run at the same time at most, even if Overpass grants
+	 *  more query slots */
+	public final static int MAX_CONCURRENT_QUEST_DOWNLOADS = 4;
+
 	/** a "best before" duration for quests. Quests will not be downloaded again for any tile
 	 *  before the time expired */
 	public static final long REFRESH_QUESTS_AFTER = 7L*24*60*60*1000; // 1 week in ms
+	/** quests that have been downloaded completely not longer ago than this are refreshed by only
+	 *  downloading the elements that changed since the last download or refresh (if possible),
+	 *  older ones are downloaded anew. A refresh does not notice everything, i.e. when only the
+	 *  nodes of a way moved, so a complete download is still necessary from time to time */
+	public static final long REFRESH_QUESTS_INCREMENTALLY_WITHIN = 4L*7*24*60*60*1000; // 4 weeks in ms
 	/** the duration after which quests will be deleted from the database if unsolved */
 	public static final long DELETE_UNSOLVED_QUESTS_AFTER = 1L*30*24*60*60*1000; // 1 months in ms
 
+	/** How many answered quests are uploaded together in one diff at most */
+	public static final int MAX_QUESTS_PER_DIFF_UPLOAD = 100;
+	/** How many uploads (changesets of different quest types, note comments, new notes) may run at
+	 *  the same time at most */
+	public static final int MAX_CONCURRENT_UPLOADS = 3;
+	/** How many requests to the OSM API (one diff, fetching an element, one note comment, ...) may
+	 *  be made per second on average while uploading, and how many at once after a pause - all
+	 *  concurrent uploads together, to not overwhelm the OSM API */
+	public static final double MAX_UPLOADS_PER_SECOND = 2;
+	public static final int MAX_UPLOADS_BURST = 5;
+
 	/** the max age of the undo history - one cannot undo changes older than X */
 	public static final long MAX_QUEST_UNDO_HISTORY_AGE = 24*60*60*1000; // 1 day in ms
 
 	public static final String AVATARS_CACHE_DIRECTORY = "osm_user_avatars";
+	/** avatars of users are not checked for changes again within this time */
+	public static final long REFRESH_AVATARS_AFTER = 3L*24*60*60*1000; // 3 days in ms
+	/** the least recently used avatars are removed when the cache grows bigger than this */
+	public static final long MAX_AVATARS_CACHE_SIZE = 10L*1024*1024; // 10 MB
+	public static final int MAX_CONCURRENT_AVATAR_DOWNLOADS = 4;
 
 	public static final String SC_PHOTO_SERVICE_URL = "https://westnordost.de/streetcomplete/photo-upload/"; // must have trailing /
 
 	public static final int ATTACH_PHOTO_QUALITY = 80;
 	public static final int ATTACH_PHOTO_MAXWIDTH = 1280; // WXGA
+	/** How many photos attached to a note are uploaded at the same time at most */
+	public static final int MAX_CONCURRENT_PHOTO_UPLOADS = 3;
+	/** How often the upload of a photo is attempted before giving up until the next upload, and
+	 *  how long to wait before the first retry (doubled with each further retry) */
+	public static final int PHOTO_UPLOAD_ATTEMPTS = 3;
+	public static final long PHOTO_UPLOAD_RETRY_DELAY = 2000; // 2s
 
 	public static final String NOTIFICATIONS_CHANNEL_DOWNLOAD = "downloading";
 }
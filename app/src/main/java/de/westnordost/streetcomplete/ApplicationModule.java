@@ -24,6 +24,7 @@ import de.westnordost.streetcomplete.data.osm.persist.MergedElementDao;
 import de.westnordost.streetcomplete.data.osm.persist.OsmQuestDao;
 import de.westnordost.streetcomplete.data.osm.persist.UndoOsmQuestDao;
 import de.westnordost.streetcomplete.data.osmnotes.CreateNoteDao;
+import de.westnordost.streetcomplete.data.osmnotes.NotePhotosUpload;
 import de.westnordost.streetcomplete.data.osmnotes.OsmNoteQuestDao;
 import de.westnordost.streetcomplete.data.tiles.DownloadedTilesDao;
 import de.westnordost.streetcomplete.location.LocationRequestFragment;
@@ -70,11 +71,11 @@ public class ApplicationModule
 			OsmQuestDao osmQuestDB, UndoOsmQuestDao undoOsmQuestDB, MergedElementDao osmElementDB,
 			ElementGeometryDao geometryDB, OsmNoteQuestDao osmNoteQuestDB,
 			CreateNoteDao createNoteDB, OpenChangesetsDao manageChangesetsDB,
-			Provider<List<QuestType>> questTypesProvider)
+			NotePhotosUpload notePhotosUpload, Provider<List<QuestType>> questTypesProvider)
 	{
 		return new QuestController(
 				osmQuestDB, undoOsmQuestDB, osmElementDB, geometryDB, osmNoteQuestDB, createNoteDB,
-				manageChangesetsDB,	questTypesProvider, appContext());
+				manageChangesetsDB, notePhotosUpload, questTypesProvider, appContext());
 	}
 
 	@Provides public static MobileDataAutoDownloadStrategy mobileDataAutoDownloadStrategy(
@@ -917,7 +917,7 @@ public class MainActivity extends AppCompatActivity implements
 	@AnyThread @Override
 	public void onQuestsCreated(final Collection<? extends Quest> quests, final QuestGroup group)
 	{
-		runOnUiThread(() -> mapFragment.addQuests(quests, group));
+		mapFragment.addQuests(quests, group);
 		// to recreate element geometry of selected quest (if any) after recreation of activity
 		if(getQuestDetailsFragment() != null)
 		{
@@ -925,7 +925,9 @@ public class MainActivity extends AppCompatActivity implements
 			{
 				if (isQuestDetailsCurrentlyDisplayedFor(q.getId(), group))
 				{
-					runOnUiThread(() -> showQuestDetails(q, group));
+					// the quests passed here may just be the markers
+					Quest quest = questController.get(q.getId(), group);
+					if(quest != null) runOnUiThread(() -> showQuestDetails(quest, group));
 					return;
 				}
 			}
@@ -935,7 +937,7 @@ public class MainActivity extends AppCompatActivity implements
 	@AnyThread @Override
 	public synchronized void onQuestsRemoved(Collection<Long> questIds, QuestGroup group)
 	{
-		runOnUiThread(() -> mapFragment.removeQuests(questIds, group));
+		mapFragment.removeQuests(questIds, group);
 
 		// amount of quests is reduced -> check if redownloding now makes sense
 		questAutoSyncer.triggerAutoDownload();
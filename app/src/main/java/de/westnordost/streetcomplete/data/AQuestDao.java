@@ -11,6 +11,7 @@ import java.util.Collection;
 import java.util.List;
 
 import de.westnordost.osmapi.map.data.BoundingBox;
+import de.westnordost.streetcomplete.util.TileKey;
 
 public abstract class AQuestDao<T extends Quest>
 {
@@ -49,7 +50,11 @@ public abstract class AQuestDao<T extends Quest>
 
 		String questStatus = getQuestStatusColumnName();
 		String query = questStatus + " IN (?,?,?)";
-		String[] args = {QuestStatus.HIDDEN.name(), QuestStatus.ANSWERED.name(), QuestStatus.CLOSED.name()};
+		String[] args = {
+			getQuestStatusValue(QuestStatus.HIDDEN),
+			getQuestStatusValue(QuestStatus.ANSWERED),
+			getQuestStatusValue(QuestStatus.CLOSED)
+		};
 		String orderBy = getLastChangedColumnName() + " DESC";
 
 		try (Cursor cursor = db.query(getMergedViewName(), null, query, args, null, null, orderBy, "1"))
@@ -79,6 +84,23 @@ public abstract class AQuestDao<T extends Quest>
 	{
 		if(bbox != null)
 		{
+			String tileKeyColumn = getTileKeyColumnName();
+			if(tileKeyColumn != null)
+			{
+				// narrows down the candidates via the index, the exact check is done below
+				List<Long> ranges = TileKey.rangesOf(bbox);
+				StringBuilder clause = new StringBuilder("(");
+				String[] args = new String[ranges.size()];
+				for (int i = 0; i < ranges.size(); i += 2)
+				{
+					if(i > 0) clause.append(" OR ");
+					clause.append(tileKeyColumn).append(" BETWEEN ? AND ?");
+					args[i] = String.valueOf(ranges.get(i));
+					args[i+1] = String.valueOf(ranges.get(i+1));
+				}
+				clause.append(")");
+				builder.appendAnd(clause.toString(), args);
+			}
 			builder.appendAnd("(" + getLatitudeColumnName() + " BETWEEN ? AND ?)",
 					String.valueOf(bbox.getMinLatitude()),
 					String.valueOf(bbox.getMaxLatitude()));
@@ -92,7 +114,7 @@ public abstract class AQuestDao<T extends Quest>
 	{
 		if(status != null)
 		{
-			builder.appendAnd(getQuestStatusColumnName() + " = ?", status.name());
+			builder.appendAnd(getQuestStatusColumnName() + " = ?", getQuestStatusValue(status));
 		}
 	}
 
@@ -155,15 +177,33 @@ public abstract class AQuestDao<T extends Quest>
 	public int deleteAll(Collection<Long> ids)
 	{
 		SQLiteDatabase db = dbHelper.getWritableDatabase();
-		StringBuilder idsString = new StringBuilder();
+		return db.delete(getTableName(), getIdColumnName() + " IN (" + toCommaSeparated(ids) + ")", null);
+	}
+
+	/** Sets the last update of those of the given quests that are still new to now, so that quests
+	 *  that have been found again on a download are not deleted as old unsolved quests */
+	public int touchAllNew(Collection<Long> ids)
+	{
+		SQLiteDatabase db = dbHelper.getWritableDatabase();
+		ContentValues values = new ContentValues();
+		values.put(getLastChangedColumnName(), System.currentTimeMillis());
+		String where = getIdColumnName() + " IN (" + toCommaSeparated(ids) + ") AND " +
+			getQuestStatusColumnName() + " = ?";
+		return db.update(getTableName(), values, where,
+			new String[]{getQuestStatusValue(QuestStatus.NEW)});
+	}
+
+	private static String toCommaSeparated(Collection<Long> ids)
+	{
+		StringBuilder result = new StringBuilder();
 		boolean first = true;
 		for (Long id : ids)
 		{
 			if(first) first = false;
-			else idsString.append(",");
-			idsString.append(id);
+			else result.append(",");
+			result.append(id);
 		}
-		return db.delete(getTableName(), getIdColumnName() + " IN (" + idsString.toString() + ")", null);
+		return result.toString();
 	}
 
 	public int deleteAllClosed(long olderThan)
@@ -174,7 +214,8 @@ public abstract class AQuestDao<T extends Quest>
 
 		SQLiteDatabase db = dbHelper.getWritableDatabase();
 		return db.delete(getTableName(), query, new String[]{
-				QuestStatus.CLOSED.name(), QuestStatus.REVERT.name(), String.valueOf(olderThan)});
+				getQuestStatusValue(QuestStatus.CLOSED), getQuestStatusValue(QuestStatus.REVERT),
+				String.valueOf(olderThan)});
 	}
 
 	public int deleteAllUnsolved(long olderThan)
@@ -185,7 +226,8 @@ public abstract class AQuestDao<T extends Quest>
 
 		SQLiteDatabase db = dbHelper.getWritableDatabase();
 		return db.delete(getTableName(), query, new String[]{
-			QuestStatus.NEW.name(), QuestStatus.HIDDEN.name(), String.valueOf(olderThan)});
+			getQuestStatusValue(QuestStatus.NEW), getQuestStatusValue(QuestStatus.HIDDEN),
+			String.valueOf(olderThan)});
 	}
 
 	public int addAll(Collection<T> quests)
@@ -269,6 +311,11 @@ public abstract class AQuestDao<T extends Quest>
 
 	protected abstract String getLatitudeColumnName();
 	protected abstract String getLongitudeColumnName();
+	/** @return the name of the indexed column that contains the TileKey of the position of the
+	 *          quest or null if there is none */
+	protected String getTileKeyColumnName() { return null; }
+	/** @return the value the given quest status is stored as in the quest status column */
+	protected String getQuestStatusValue(QuestStatus status) { return status.name(); }
 
 	protected abstract long executeInsert(T object, boolean replace);
 	protected abstract ContentValues createNonFinalContentValuesFrom(T object);
@@ -15,6 +15,7 @@ import dagger.Provides;
 import de.westnordost.streetcomplete.ApplicationConstants;
 import de.westnordost.streetcomplete.data.changesets.OpenChangesetsDao;
 import de.westnordost.streetcomplete.data.osm.persist.OsmQuestDao;
+import de.westnordost.streetcomplete.data.osm.persist.StringDictionary;
 import de.westnordost.streetcomplete.data.osm.persist.UndoOsmQuestDao;
 import de.westnordost.streetcomplete.data.visiblequests.QuestTypeOrderList;
 import de.westnordost.streetcomplete.data.visiblequests.VisibleQuestTypeDao;
@@ -45,6 +46,11 @@ public class DbModule
 		return new KryoSerializer();
 	}
 
+	@Provides @Singleton public static StringDictionary stringDictionary(SQLiteOpenHelper dbHelper)
+	{
+		return new StringDictionary(dbHelper);
+	}
+
 	@Provides @Singleton public static QuestStatisticsDao questStatisticsDao(
 			SQLiteOpenHelper dbHelper, ChangesetsDao changesetsDao)
 	{
@@ -57,16 +63,24 @@ public class DbModule
 		return new OpenChangesetsDao(dbHelper,prefs);
 	}
 
+	@Provides @Singleton public static QuestTypeIdsDao questTypeIdsDao(
+			SQLiteOpenHelper dbHelper, QuestTypeRegistry questTypeList)
+	{
+		return new QuestTypeIdsDao(dbHelper, questTypeList);
+	}
+
 	@Provides @Singleton public static OsmQuestDao osmQuestDao(
-			SQLiteOpenHelper dbHelper, Serializer serializer, QuestTypeRegistry questTypeList)
+			SQLiteOpenHelper dbHelper, Serializer serializer, QuestTypeRegistry questTypeList,
+			QuestTypeIdsDao questTypeIds)
 	{
-		return new OsmQuestDao(dbHelper, serializer, questTypeList);
+		return new OsmQuestDao(dbHelper, serializer, questTypeList, questTypeIds);
 	}
 
 	@Provides @Singleton public static UndoOsmQuestDao undoOsmQuestDao(
-			SQLiteOpenHelper dbHelper, Serializer serializer, QuestTypeRegistry questTypeList)
+			SQLiteOpenHelper dbHelper, Serializer serializer, QuestTypeRegistry questTypeList,
+			QuestTypeIdsDao questTypeIds)
 	{
-		return new UndoOsmQuestDao(dbHelper, serializer, questTypeList);
+		return new UndoOsmQuestDao(dbHelper, serializer, questTypeList, questTypeIds);
 	}
 
 	@Provides @Singleton public static VisibleQuestTypeDao visibleQuestTypeDao(
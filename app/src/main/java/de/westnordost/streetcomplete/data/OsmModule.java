@@ -24,10 +24,12 @@ import de.westnordost.streetcomplete.data.osm.persist.MergedElementDao;
 import de.westnordost.streetcomplete.data.osm.persist.OsmQuestDao;
 import de.westnordost.streetcomplete.data.osm.persist.UndoOsmQuestDao;
 import de.westnordost.streetcomplete.data.osm.upload.OsmQuestChangeUpload;
+import de.westnordost.streetcomplete.data.osm.upload.OsmQuestsBatchUpload;
 import de.westnordost.streetcomplete.data.osmnotes.OsmAvatarsDownload;
 import de.westnordost.streetcomplete.oauth.OAuthPrefs;
 import de.westnordost.streetcomplete.data.osm.download.OverpassMapDataDao;
-import de.westnordost.streetcomplete.data.osm.download.OverpassMapDataParser;
+import de.westnordost.streetcomplete.data.osm.download.CompactOverpassMapDataParser;
+import de.westnordost.streetcomplete.data.osm.download.MapDataWithGeometryParser;
 import de.westnordost.osmapi.OsmConnection;
 import de.westnordost.osmapi.changesets.ChangesetsDao;
 import de.westnordost.osmapi.map.MapDataDao;
@@ -36,6 +38,7 @@ import de.westnordost.osmapi.map.OsmMapDataFactory;
 import de.westnordost.osmapi.notes.NotesDao;
 import de.westnordost.streetcomplete.quests.oneway.data.TrafficFlowSegmentsDao;
 import de.westnordost.streetcomplete.util.ImageUploader;
+import de.westnordost.streetcomplete.util.RateLimiter;
 import oauth.signpost.OAuthConsumer;
 
 @Module
@@ -71,7 +74,7 @@ public class OsmModule
 	private static int OVERPASS_QUERY_TIMEOUT_IN_MILISECONDS = (180 + 4) * 1000;
 
 	@Provides public static OverpassMapDataDao overpassMapDataDao(
-			Provider<OverpassMapDataParser> parserProvider, SharedPreferences prefs)
+			Provider<MapDataWithGeometryParser> parserProvider, SharedPreferences prefs)
 	{
 		Integer timeout = OVERPASS_QUERY_TIMEOUT_IN_MILISECONDS;
 		OsmConnection overpassConnection = new OsmConnection(
@@ -80,7 +83,7 @@ public class OsmModule
 	}
 
 	@Provides public static OverpassOldMapDataDao overpassOldMapDataDao(
-		Provider<OverpassMapDataParser> parserProvider, String date)
+		Provider<MapDataWithGeometryParser> parserProvider, String date)
 	{
 		Integer timeout = OVERPASS_QUERY_TIMEOUT_IN_MILISECONDS;
 		OsmConnection overpassConnection = new OsmConnection(
@@ -93,9 +96,9 @@ public class OsmModule
 		return new TrafficFlowSegmentsDao(ONEWAY_API_URL);
 	}
 
-	@Provides public static OverpassMapDataParser overpassMapDataParser()
+	@Provides public static MapDataWithGeometryParser mapDataWithGeometryParser()
 	{
-		return new OverpassMapDataParser(new OsmMapDataFactory());
+		return new CompactOverpassMapDataParser(new OsmMapDataFactory());
 	}
 
 	@Provides public static ChangesetsDao changesetsDao(OsmConnection osm)
@@ -121,19 +124,42 @@ public class OsmModule
 	@Provides public static OsmQuestChangeUpload osmQuestChangeUpload(
 		MapDataDao osmDao, OsmQuestDao questDB, MergedElementDao elementDB,
 		ElementGeometryDao elementGeometryDB, OsmApiWayGeometrySource wayGeometrySource,
-		OsmQuestGiver questGiver)
+		OsmQuestGiver questGiver, RateLimiter rateLimiter)
 	{
 		return new OsmQuestChangeUpload(osmDao, questDB, elementDB, elementGeometryDB,
-			new ElementGeometryCreator(wayGeometrySource), questGiver);
+			new ElementGeometryCreator(wayGeometrySource), questGiver, rateLimiter);
 	}
 
 	@Provides @Named("undo") public static OsmQuestChangeUpload undoOsmQuestChangeUpload(
 		MapDataDao osmDao, UndoOsmQuestDao questDB, MergedElementDao elementDB,
 		ElementGeometryDao elementGeometryDB, OsmApiWayGeometrySource wayGeometrySource,
-		OsmQuestGiver questGiver)
+		OsmQuestGiver questGiver, RateLimiter rateLimiter)
 	{
 		return new OsmQuestChangeUpload(osmDao, questDB, elementDB, elementGeometryDB,
-			new ElementGeometryCreator(wayGeometrySource), questGiver);
+			new ElementGeometryCreator(wayGeometrySource), questGiver, rateLimiter);
+	}
+
+	@Provides public static OsmQuestsBatchUpload osmQuestsBatchUpload(
+		MapDataDao osmDao, OsmQuestDao questDB, MergedElementDao elementDB,
+		ElementGeometryDao elementGeometryDB, OsmApiWayGeometrySource wayGeometrySource,
+		OsmQuestGiver questGiver, Provider<OsmQuestChangeUpload> osmQuestChangeUploadProvider,
+		RateLimiter rateLimiter)
+	{
+		return new OsmQuestsBatchUpload(osmDao, questDB, elementDB, elementGeometryDB,
+			new ElementGeometryCreator(wayGeometrySource), questGiver, osmQuestChangeUploadProvider,
+			rateLimiter);
+	}
+
+	@Provides @Named("undo") public static OsmQuestsBatchUpload undoOsmQuestsBatchUpload(
+		MapDataDao osmDao, UndoOsmQuestDao questDB, MergedElementDao elementDB,
+		ElementGeometryDao elementGeometryDB, OsmApiWayGeometrySource wayGeometrySource,
+		OsmQuestGiver questGiver,
+		@Named("undo") Provider<OsmQuestChangeUpload> osmQuestChangeUploadProvider,
+		RateLimiter rateLimiter)
+	{
+		return new OsmQuestsBatchUpload(osmDao, questDB, elementDB, elementGeometryDB,
+			new ElementGeometryCreator(wayGeometrySource), questGiver, osmQuestChangeUploadProvider,
+			rateLimiter);
 	}
 
 	@Provides public static OsmAvatarsDownload avatarsDownload(UserDao userDao, Context context)
@@ -141,6 +167,13 @@ public class OsmModule
 		return new OsmAvatarsDownload(userDao, getAvatarsCacheDirectory(context));
 	}
 
+	/** shared by all uploads to the OSM API, also if they run concurrently. Each request to the
+	 *  OSM API made while uploading takes a token */
+	@Provides @Singleton public static RateLimiter uploadRateLimiter()
+	{
+		return new RateLimiter(ApplicationConstants.MAX_UPLOADS_PER_SECOND, ApplicationConstants.MAX_UPLOADS_BURST);
+	}
+
 	@Provides public static ImageUploader imageUploader()
 	{
 		return new ImageUploader(ApplicationConstants.SC_PHOTO_SERVICE_URL);
@@ -12,8 +12,11 @@ import androidx.annotation.Nullable;
 import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
@@ -24,6 +27,7 @@ import de.westnordost.streetcomplete.ApplicationConstants;
 import de.westnordost.streetcomplete.data.changesets.OpenChangesetsDao;
 import de.westnordost.streetcomplete.data.download.QuestDownloadService;
 import de.westnordost.streetcomplete.data.osm.OsmQuest;
+import de.westnordost.streetcomplete.data.osm.OsmQuestMarker;
 import de.westnordost.streetcomplete.data.osm.changes.StringMapChanges;
 import de.westnordost.streetcomplete.data.osm.changes.StringMapChangesBuilder;
 import de.westnordost.streetcomplete.data.osm.persist.ElementGeometryDao;
@@ -32,6 +36,7 @@ import de.westnordost.streetcomplete.data.osm.persist.OsmQuestDao;
 import de.westnordost.streetcomplete.data.osm.persist.UndoOsmQuestDao;
 import de.westnordost.streetcomplete.data.osmnotes.CreateNote;
 import de.westnordost.streetcomplete.data.osmnotes.CreateNoteDao;
+import de.westnordost.streetcomplete.data.osmnotes.NotePhotosUpload;
 import de.westnordost.streetcomplete.data.osmnotes.OsmNoteQuest;
 import de.westnordost.streetcomplete.data.osmnotes.OsmNoteQuestDao;
 import de.westnordost.streetcomplete.data.upload.QuestChangesUploadService;
@@ -53,8 +58,26 @@ public class QuestController
 	private final OsmNoteQuestDao osmNoteQuestDB;
 	private final CreateNoteDao createNoteDB;
 	private final OpenChangesetsDao openChangesetsDao;
+	private final NotePhotosUpload notePhotosUpload;
 	private final Context context;
 	private final VisibleQuestRelay relay;
+	private final VisibleQuestsCache questsCache;
+	/** keeps the cache in sync before passing on the quest changes to the relay */
+	private final VisibleQuestListener cachingQuestListener = new VisibleQuestListener()
+	{
+		@Override public void onQuestsCreated(Collection<? extends Quest> quests, QuestGroup group)
+		{
+			questsCache.onQuestsCreated(toMarkers(quests), group);
+			relay.onQuestsCreated(quests, group);
+		}
+
+		@Override public void onQuestsRemoved(Collection<Long> questIds, QuestGroup group)
+		{
+			questsCache.onQuestsRemoved(questIds, group);
+			relay.onQuestsRemoved(questIds, group);
+		}
+	};
+	private List<String> cachedQuestTypeNames;
 	private final Provider<List<QuestType>> questTypesProvider;
 
 	private boolean downloadServiceIsBound;
@@ -64,7 +87,7 @@ public class QuestController
 		public void onServiceConnected(ComponentName className, IBinder service)
 		{
 			downloadService = ((QuestDownloadService.Interface)service);
-			downloadService.setQuestListener(relay);
+			downloadService.setQuestListener(cachingQuestListener);
 		}
 
 		public void onServiceDisconnected(ComponentName className)
@@ -79,7 +102,7 @@ public class QuestController
 		public void onServiceConnected(ComponentName className, IBinder service)
 		{
 			uploadService = ((QuestChangesUploadService.Interface)service);
-			uploadService.setQuestListener(relay);
+			uploadService.setQuestListener(cachingQuestListener);
 		}
 
 		public void onServiceDisconnected(ComponentName className)
@@ -94,7 +117,7 @@ public class QuestController
 	@Inject public QuestController(OsmQuestDao osmQuestDB, UndoOsmQuestDao undoOsmQuestDB,
 								   MergedElementDao osmElementDB, ElementGeometryDao geometryDB,
 								   OsmNoteQuestDao osmNoteQuestDB, CreateNoteDao createNoteDB,
-								   OpenChangesetsDao openChangesetsDao,
+								   OpenChangesetsDao openChangesetsDao, NotePhotosUpload notePhotosUpload,
 								   Provider<List<QuestType>> questTypesProvider, Context context)
 	{
 		this.osmQuestDB = osmQuestDB;
@@ -104,9 +127,12 @@ public class QuestController
 		this.osmNoteQuestDB = osmNoteQuestDB;
 		this.createNoteDB = createNoteDB;
 		this.openChangesetsDao = openChangesetsDao;
+		this.notePhotosUpload = notePhotosUpload;
 		this.questTypesProvider = questTypesProvider;
 		this.context = context;
 		this.relay = new VisibleQuestRelay();
+		this.questsCache = new VisibleQuestsCache(
+				ApplicationConstants.QUEST_TILE_ZOOM, ApplicationConstants.MAX_CACHED_QUEST_TILES);
 	}
 
 	public void onCreate()
@@ -118,6 +144,9 @@ public class QuestController
 
 	public void onStart(VisibleQuestListener questListener)
 	{
+		/* while stopped, the quests may have been changed without notifying the cache, i.e.
+		   by the settings (reset hidden quests, show/hide notes etc.) */
+		questsCache.clear();
 		relay.setListener(questListener);
 		downloadServiceIsBound = context.bindService(
 				new Intent(context, QuestDownloadService.class),
@@ -174,7 +203,7 @@ public class QuestController
 		}
 
 		osmQuestDB.deleteAll(questIdsForThisOsmElement);
-		workerHandler.post(() -> relay.onQuestsRemoved(questIdsForThisOsmElement, QuestGroup.OSM));
+		workerHandler.post(() -> cachingQuestListener.onQuestsRemoved(questIdsForThisOsmElement, QuestGroup.OSM));
 
 		osmElementDB.deleteUnreferenced();
 		geometryDB.deleteUnreferenced();
@@ -204,7 +233,7 @@ public class QuestController
 			success = solveOsmNoteQuest(questId, answer);
 		}
 
-		workerHandler.post(() -> relay.onQuestRemoved(questId, group));
+		workerHandler.post(() -> cachingQuestListener.onQuestsRemoved(Collections.singletonList(questId), group));
 		return success;
 	}
 
@@ -238,7 +267,7 @@ public class QuestController
 			quest.setChanges(null, null);
 			osmQuestDB.update(quest);
 			// inform relay that the quest is visible again
-			workerHandler.post(() -> relay.onQuestsCreated(Collections.singletonList(quest), QuestGroup.OSM));
+			workerHandler.post(() -> cachingQuestListener.onQuestsCreated(Collections.singletonList(quest), QuestGroup.OSM));
 		}
 		// already uploaded! -> create change to reverse the previous change
 		else if(quest.getStatus() == QuestStatus.CLOSED)
@@ -332,7 +361,7 @@ public class QuestController
 			if(q == null || q.getStatus() != QuestStatus.NEW) return;
 			q.setStatus(QuestStatus.HIDDEN);
 			osmQuestDB.update(q);
-			workerHandler.post(() -> relay.onQuestRemoved(q.getId(), group));
+			workerHandler.post(() -> cachingQuestListener.onQuestsRemoved(Collections.singletonList(q.getId()), group));
 		}
 		else if(group == QuestGroup.OSM_NOTE)
 		{
@@ -340,7 +369,7 @@ public class QuestController
 			if(q == null || q.getStatus() != QuestStatus.NEW) return;
 			q.setStatus(QuestStatus.HIDDEN);
 			osmNoteQuestDB.update(q);
-			workerHandler.post(() -> relay.onQuestRemoved(q.getId(), group));
+			workerHandler.post(() -> cachingQuestListener.onQuestsRemoved(Collections.singletonList(q.getId()), group));
 		}
 	}
 
@@ -352,22 +381,64 @@ public class QuestController
 		return null;
 	}
 
-	/** Retrieve all visible (=new) quests in the given bounding box from local database
-	 *  asynchronously. */
+	/** Retrieve all visible (=new) quests in the given bounding box asynchronously. Quests of
+	 *  (z14) tiles that have been retrieved recently are taken from memory, the rest from the local
+	 *  database. OSM quests are retrieved only as markers (see OsmQuestMarker), use get to retrieve
+	 *  the whole quest */
 	public void retrieve(BoundingBox bbox)
 	{
 		workerHandler.post(() ->
 		{
 			List<String> questTypeNames = getQuestTypeNames();
+			// the user changed which quest types are shown
+			if(!questTypeNames.equals(cachedQuestTypeNames))
+			{
+				questsCache.clear();
+				cachedQuestTypeNames = questTypeNames;
+			}
 
-			List<OsmQuest> osmQuests = osmQuestDB.getAll(bbox, QuestStatus.NEW, questTypeNames);
-			if(!osmQuests.isEmpty()) relay.onQuestsCreated(osmQuests, QuestGroup.OSM);
-
-			List<OsmNoteQuest> osmNoteQuests = osmNoteQuestDB.getAll(bbox, QuestStatus.NEW);
-			if(!osmNoteQuests.isEmpty()) relay.onQuestsCreated(osmNoteQuests, QuestGroup.OSM_NOTE);
+			Map<QuestGroup, List<Quest>> quests = questsCache.get(bbox, b -> getVisibleQuests(b, questTypeNames));
+			for (Map.Entry<QuestGroup, List<Quest>> entry : quests.entrySet())
+			{
+				if(!entry.getValue().isEmpty()) relay.onQuestsCreated(entry.getValue(), entry.getKey());
+			}
+			Log.d(TAG, "Quest tiles cache: " + questsCache.getHits() + " hits, " + questsCache.getMisses() + " misses");
 		});
 	}
 
+	private Map<QuestGroup, List<? extends Quest>> getVisibleQuests(BoundingBox bbox, List<String> questTypeNames)
+	{
+		Map<QuestGroup, List<? extends Quest>> result = new EnumMap<>(QuestGroup.class);
+		result.put(QuestGroup.OSM, osmQuestDB.getAllMarkers(bbox, QuestStatus.NEW, questTypeNames));
+		result.put(QuestGroup.OSM_NOTE, osmNoteQuestDB.getAll(bbox, QuestStatus.NEW));
+		return result;
+	}
+
+	/** @return how often the quests of a tile could be retrieved from memory */
+	public int getQuestsCacheHits()
+	{
+		return questsCache.getHits();
+	}
+
+	/** @return how often the quests of a tile had to be retrieved from the local database */
+	public int getQuestsCacheMisses()
+	{
+		return questsCache.getMisses();
+	}
+
+	/** @return the given quests as lightweight markers if they are OSM quests, so that the cache
+	 *          does not keep their full data in memory */
+	private static Collection<? extends Quest> toMarkers(Collection<? extends Quest> quests)
+	{
+		List<Quest> result = new ArrayList<>(quests.size());
+		for (Quest quest : quests)
+		{
+			if(quest instanceof OsmQuest) result.add(new OsmQuestMarker((OsmQuest) quest));
+			else                          result.add(quest);
+		}
+		return result;
+	}
+
 	private List<String> getQuestTypeNames()
 	{
 		List<QuestType> questTypes = questTypesProvider.get();
@@ -432,10 +503,13 @@ public class QuestController
 			if(deleted > 0)
 			{
 				Log.d(TAG, "Deleted "+ deleted + " old unsolved quests");
+				questsCache.clear();
 
 				osmElementDB.deleteUnreferenced();
 				geometryDB.deleteUnreferenced();
 			}
+
+			notePhotosUpload.deleteUploadsOfMissingImages();
 		});
 	}
 }
@@ -0,0 +1,115 @@
+package de.westnordost.streetcomplete.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/** Assigns small integer ids to quest types (by name), so that only the id needs to be stored in
+ *  each quest row. The ids are persisted and never reassigned, so they stay the same even if quest
+ *  types are added or removed in later versions of the app.
+ *
+ *  All the quest types of the registry are given an id on construction, so that (usually) no id
+ *  is assigned while a transaction that may be rolled back is running.
+ *
+ *  Thread-safe. */
+public class QuestTypeIdsDao
+{
+	private final SQLiteOpenHelper dbHelper;
+
+	private final Map<String, Integer> ids = new HashMap<>();
+	private final Map<Integer, String> names = new HashMap<>();
+
+	public QuestTypeIdsDao(SQLiteOpenHelper dbHelper, QuestTypeRegistry questTypeRegistry)
+	{
+		this.dbHelper = dbHelper;
+		SQLiteDatabase db = dbHelper.getWritableDatabase();
+		db.beginTransaction();
+		try
+		{
+			if(questTypeRegistry != null)
+			{
+				for (QuestType questType : questTypeRegistry.getAll())
+				{
+					insert(db, questType.getClass().getSimpleName());
+				}
+			}
+			load(db);
+			db.setTransactionSuccessful();
+		}
+		finally
+		{
+			db.endTransaction();
+		}
+	}
+
+	/** @return the id of the quest type with the given name. If it has none yet, it is assigned
+	 *          one */
+	public int getId(String questTypeName)
+	{
+		synchronized (this)
+		{
+			Integer id = ids.get(questTypeName);
+			if(id != null) return id;
+		}
+		// not within the lock: another thread may be in a transaction and waiting for the lock
+		SQLiteDatabase db = dbHelper.getWritableDatabase();
+		insert(db, questTypeName);
+		int id = queryId(db, questTypeName);
+		synchronized (this)
+		{
+			put(id, questTypeName);
+		}
+		return id;
+	}
+
+	/** @return the name of the quest type with the given id or null if there is none */
+	public synchronized String getName(int id)
+	{
+		return names.get(id);
+	}
+
+	private static void insert(SQLiteDatabase db, String questTypeName)
+	{
+		ContentValues values = new ContentValues();
+		values.put(QuestTypesTable.Columns.QUEST_TYPE, questTypeName);
+		db.insertWithOnConflict(QuestTypesTable.NAME, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+	}
+
+	private static int queryId(SQLiteDatabase db, String questTypeName)
+	{
+		String[] cols = {QuestTypesTable.Columns.ID};
+		String where = QuestTypesTable.Columns.QUEST_TYPE + " = ?";
+		String[] args = {questTypeName};
+		try (Cursor cursor = db.query(QuestTypesTable.NAME, cols, where, args, null, null, null))
+		{
+			cursor.moveToFirst();
+			return cursor.getInt(0);
+		}
+	}
+
+	private synchronized void load(SQLiteDatabase db)
+	{
+		String[] cols = {QuestTypesTable.Columns.ID, QuestTypesTable.Columns.QUEST_TYPE};
+		try (Cursor cursor = db.query(QuestTypesTable.NAME, cols, null, null, null, null, null))
+		{
+			if(cursor.moveToFirst())
+			{
+				while(!cursor.isAfterLast())
+				{
+					put(cursor.getInt(0), cursor.getString(1));
+					cursor.moveToNext();
+				}
+			}
+		}
+	}
+
+	private void put(int id, String questTypeName)
+	{
+		ids.put(questTypeName, id);
+		names.put(id, questTypeName);
+	}
+}
@@ -0,0 +1,13 @@
+package de.westnordost.streetcomplete.data;
+
+public class QuestTypesTable
+{
+	public static final String NAME = "quest_types";
+
+	public static class Columns
+	{
+		public static final String
+				ID = "id",
+				QUEST_TYPE = "quest_type";
+	}
+}
@@ -1,36 +1,54 @@
 package de.westnordost.streetcomplete.data;
 
+import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.text.TextUtils;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import javax.inject.Singleton;
 
+import de.westnordost.osmapi.map.data.LatLon;
+
 import de.westnordost.streetcomplete.data.changesets.OpenChangesetsTable;
 import de.westnordost.streetcomplete.data.osm.persist.ElementGeometryTable;
+import de.westnordost.streetcomplete.data.osm.persist.LatLonListsCodec;
 import de.westnordost.streetcomplete.data.osm.persist.NodeTable;
 import de.westnordost.streetcomplete.data.osm.persist.OsmQuestTable;
 import de.westnordost.streetcomplete.data.osmnotes.CreateNoteTable;
+import de.westnordost.streetcomplete.data.osmnotes.NotePhotoUploadsTable;
 import de.westnordost.streetcomplete.data.osmnotes.NoteTable;
 import de.westnordost.streetcomplete.data.osm.persist.RelationTable;
+import de.westnordost.streetcomplete.data.osm.persist.StringDictionary;
+import de.westnordost.streetcomplete.data.osm.persist.StringsTable;
+import de.westnordost.streetcomplete.data.osm.persist.TagsCodec;
 import de.westnordost.streetcomplete.data.osm.persist.WayTable;
 import de.westnordost.streetcomplete.data.osmnotes.OsmNoteQuestTable;
 import de.westnordost.streetcomplete.data.visiblequests.QuestVisibilityTable;
 import de.westnordost.streetcomplete.data.statistics.QuestStatisticsTable;
 import de.westnordost.streetcomplete.data.tiles.DownloadedTilesTable;
 import de.westnordost.streetcomplete.quests.oneway.AddOneway;
+import de.westnordost.streetcomplete.util.KryoSerializer;
+import de.westnordost.streetcomplete.util.Serializer;
+import de.westnordost.streetcomplete.util.TileKey;
 
 @Singleton
 public class StreetCompleteOpenHelper extends SQLiteOpenHelper
 {
-	public static final int DB_VERSION = 11;
+	public static final int DB_VERSION = 17;
 
 	private static final String OSM_QUESTS_CREATE_PARAMS = " (" +
 			OsmQuestTable.Columns.QUEST_ID +		" INTEGER		PRIMARY KEY, " +
-			OsmQuestTable.Columns.QUEST_TYPE +		" varchar(255)	NOT NULL, " +
-			OsmQuestTable.Columns.QUEST_STATUS +	" varchar(255)	NOT NULL, " +
+			OsmQuestTable.Columns.QUEST_TYPE +		" int			NOT NULL, " + // see QuestTypeIdsDao
+			OsmQuestTable.Columns.QUEST_STATUS +	" int			NOT NULL, " + // see OsmQuestTable.QUEST_STATUSES
 			OsmQuestTable.Columns.TAG_CHANGES +		" blob, " + // null if no changes
 			OsmQuestTable.Columns.CHANGES_SOURCE +	" varchar(255), " +
 			OsmQuestTable.Columns.LAST_UPDATE + 	" int			NOT NULL, " +
@@ -87,12 +105,50 @@ public class StreetCompleteOpenHelper extends SQLiteOpenHelper
 				ElementGeometryTable.Columns.GEOMETRY_POLYGONS +	" blob, " +
 				ElementGeometryTable.Columns.LATITUDE +				" double		NOT NULL, " +
 				ElementGeometryTable.Columns.LONGITUDE +			" double		NOT NULL, " +
+				ElementGeometryTable.Columns.TILE_KEY +				" int			NOT NULL, " +
 				"CONSTRAINT primary_key PRIMARY KEY (" +
 					ElementGeometryTable.Columns.ELEMENT_TYPE + ", " +
 					ElementGeometryTable.Columns.ELEMENT_ID +
 				") " +
 			");";
 
+	private static final String ELEMENTS_GEOMETRY_TILE_KEY_INDEX_CREATE =
+			"CREATE INDEX " + ElementGeometryTable.TILE_KEY_INDEX + " ON " +
+			ElementGeometryTable.NAME + " (" + ElementGeometryTable.Columns.TILE_KEY + ");";
+
+	private static final String OSM_QUESTS_ELEMENT_INDEX_CREATE =
+			"CREATE INDEX " + OsmQuestTable.ELEMENT_INDEX + " ON " + OsmQuestTable.NAME + " (" +
+			OsmQuestTable.Columns.ELEMENT_TYPE + ", " + OsmQuestTable.Columns.ELEMENT_ID + ");";
+
+	private static final String UNDO_OSM_QUESTS_ELEMENT_INDEX_CREATE =
+			"CREATE INDEX " + OsmQuestTable.UNDO_ELEMENT_INDEX + " ON " + OsmQuestTable.NAME_UNDO + " (" +
+			OsmQuestTable.Columns.ELEMENT_TYPE + ", " + OsmQuestTable.Columns.ELEMENT_ID + ");";
+
+	private static final String OSM_QUESTS_STATUS_INDEX_CREATE =
+			"CREATE INDEX " + OsmQuestTable.STATUS_INDEX + " ON " + OsmQuestTable.NAME + " (" +
+			OsmQuestTable.Columns.QUEST_STATUS + ", " + OsmQuestTable.Columns.QUEST_TYPE + ", " +
+			OsmQuestTable.Columns.ELEMENT_TYPE + ", " + OsmQuestTable.Columns.ELEMENT_ID + ");";
+
+	private static final String UNDO_OSM_QUESTS_STATUS_INDEX_CREATE =
+			"CREATE INDEX " + OsmQuestTable.UNDO_STATUS_INDEX + " ON " + OsmQuestTable.NAME_UNDO + " (" +
+			OsmQuestTable.Columns.QUEST_STATUS + ", " + OsmQuestTable.Columns.QUEST_TYPE + ", " +
+			OsmQuestTable.Columns.ELEMENT_TYPE + ", " + OsmQuestTable.Columns.ELEMENT_ID + ");";
+
+	private static final String OSM_QUESTS_LAST_UPDATE_INDEX_CREATE =
+			"CREATE INDEX " + OsmQuestTable.LAST_UPDATE_INDEX + " ON " + OsmQuestTable.NAME + " (" +
+			OsmQuestTable.Columns.LAST_UPDATE + ", " + OsmQuestTable.Columns.QUEST_STATUS + ");";
+
+	private static final String UNDO_OSM_QUESTS_LAST_UPDATE_INDEX_CREATE =
+			"CREATE INDEX " + OsmQuestTable.UNDO_LAST_UPDATE_INDEX + " ON " + OsmQuestTable.NAME_UNDO + " (" +
+			OsmQuestTable.Columns.LAST_UPDATE + ", " + OsmQuestTable.Columns.QUEST_STATUS + ");";
+
+	private static final String QUEST_TYPES_TABLE_CREATE =
+			"CREATE TABLE " + QuestTypesTable.NAME +
+			" (" +
+				QuestTypesTable.Columns.ID +			" INTEGER		PRIMARY KEY, " +
+				QuestTypesTable.Columns.QUEST_TYPE +	" varchar(255)	UNIQUE NOT NULL" +
+			");";
+
 	private static final String OSM_QUESTS_VIEW_CREATE =
 			"CREATE VIEW " + OsmQuestTable.NAME_MERGED_VIEW + " AS " +
 			"SELECT * FROM " + OsmQuestTable.NAME + " " +
@@ -151,6 +207,13 @@ public class StreetCompleteOpenHelper extends SQLiteOpenHelper
 			"SELECT * FROM " + OsmNoteQuestTable.NAME + " " +
 				"INNER JOIN " + NoteTable.NAME + " USING (" + NoteTable.Columns.ID + ");";
 
+	private static final String NOTE_PHOTO_UPLOADS_TABLE_CREATE =
+			"CREATE TABLE " + NotePhotoUploadsTable.NAME +
+			" (" +
+				NotePhotoUploadsTable.Columns.PATH +	" text	PRIMARY KEY, " +
+				NotePhotoUploadsTable.Columns.URL +	" text	NOT NULL " +
+			");";
+
 	private static final String NODES_TABLE_CREATE =
 			"CREATE TABLE " + NodeTable.NAME +
 			" (" +
@@ -179,6 +242,13 @@ public class StreetCompleteOpenHelper extends SQLiteOpenHelper
 				RelationTable.Columns.MEMBERS +	" blob NOT NULL" +
 			");";
 
+	private static final String STRINGS_TABLE_CREATE =
+			"CREATE TABLE " + StringsTable.NAME +
+			" (" +
+				StringsTable.Columns.ID +		" int	PRIMARY KEY, " +
+				StringsTable.Columns.STRING +	" text	NOT NULL" +
+			");";
+
 	private static final String QUEST_STATISTICS_TABLE_CREATE =
 			"CREATE TABLE " + QuestStatisticsTable.NAME +
 			" (" +
@@ -193,6 +263,7 @@ public class StreetCompleteOpenHelper extends SQLiteOpenHelper
 				DownloadedTilesTable.Columns.Y +			" int	NOT NULL, " +
 				DownloadedTilesTable.Columns.QUEST_TYPE + 	" varchar(255) NOT NULL, " +
 				DownloadedTilesTable.Columns.DATE +			" int	NOT NULL, " +
+				DownloadedTilesTable.Columns.COMPLETE_DATE +	" int	NOT NULL, " +
 				"CONSTRAINT primary_key PRIMARY KEY (" +
 					DownloadedTilesTable.Columns.X + ", " +
 					DownloadedTilesTable.Columns.Y + ", " +
@@ -231,16 +302,21 @@ public class StreetCompleteOpenHelper extends SQLiteOpenHelper
 	public void onCreate(SQLiteDatabase db)
 	{
 		db.execSQL(ELEMENTS_GEOMETRY_TABLE_CREATE);
+		db.execSQL(ELEMENTS_GEOMETRY_TILE_KEY_INDEX_CREATE);
+		db.execSQL(QUEST_TYPES_TABLE_CREATE);
 		db.execSQL(OSM_QUESTS_TABLE_CREATE);
 		db.execSQL(UNDO_OSM_QUESTS_TABLE_CREATE);
+		createOsmQuestsIndices(db);
 
 		db.execSQL(NODES_TABLE_CREATE);
 		db.execSQL(WAYS_TABLE_CREATE);
 		db.execSQL(RELATIONS_TABLE_CREATE);
+		db.execSQL(STRINGS_TABLE_CREATE);
 
 		db.execSQL(NOTES_TABLE_CREATE);
 		db.execSQL(OSM_NOTES_QUESTS_TABLE_CREATE);
 		db.execSQL(CREATE_OSM_NOTES_TABLE_CREATE);
+		db.execSQL(NOTE_PHOTO_UPLOADS_TABLE_CREATE);
 
 		db.execSQL(QUEST_STATISTICS_TABLE_CREATE);
 
@@ -336,6 +412,53 @@ public class StreetCompleteOpenHelper extends SQLiteOpenHelper
 			db.delete(OsmQuestTable.NAME_UNDO, where, args);
 		}
 
+		// geometries are stored in a compact binary format instead of serialized with Kryo since 12
+		if(oldVersion < 12 && newVersion >= 12)
+		{
+			migrateElementGeometriesToCompactFormat(db);
+		}
+
+		// spatial index for the element geometries was added in version 13
+		if(oldVersion < 13 && newVersion >= 13)
+		{
+			db.execSQL("ALTER TABLE " + ElementGeometryTable.NAME + " ADD COLUMN " +
+				ElementGeometryTable.Columns.TILE_KEY + " int NOT NULL DEFAULT 0;");
+			addTileKeysToElementGeometries(db);
+			db.execSQL(ELEMENTS_GEOMETRY_TILE_KEY_INDEX_CREATE);
+			db.execSQL(OSM_QUESTS_ELEMENT_INDEX_CREATE);
+			db.execSQL(UNDO_OSM_QUESTS_ELEMENT_INDEX_CREATE);
+		}
+
+		if(oldVersion < 14 && newVersion >= 14)
+		{
+			db.execSQL(NOTE_PHOTO_UPLOADS_TABLE_CREATE);
+		}
+
+		// tags are stored in a compact binary format referring to a string dictionary since 15
+		if(oldVersion < 15 && newVersion >= 15)
+		{
+			db.execSQL(STRINGS_TABLE_CREATE);
+			migrateTagsToCompactFormat(db, NodeTable.NAME, NodeTable.Columns.TAGS);
+			migrateTagsToCompactFormat(db, WayTable.NAME, WayTable.Columns.TAGS);
+			migrateTagsToCompactFormat(db, RelationTable.NAME, RelationTable.Columns.TAGS);
+		}
+
+		// quest type and quest status are stored as integers since 16
+		if(oldVersion < 16 && newVersion >= 16)
+		{
+			db.execSQL(QUEST_TYPES_TABLE_CREATE);
+			migrateOsmQuestsToIntegerColumns(db);
+		}
+
+		/* since 17, it is recorded separately when a quest type has been downloaded completely in
+		   a tile the last time. Which tiles have only been refreshed since is not known, so they
+		   are all downloaded completely again */
+		if(oldVersion < 17 && newVersion >= 17)
+		{
+			db.execSQL("ALTER TABLE " + DownloadedTilesTable.NAME + " ADD COLUMN " +
+				DownloadedTilesTable.Columns.COMPLETE_DATE + " int NOT NULL DEFAULT 0;");
+		}
+
 		// for later changes to the DB
 		// ...
 
@@ -346,6 +469,164 @@ public class StreetCompleteOpenHelper extends SQLiteOpenHelper
 	}
 
 
+	private static void createOsmQuestsIndices(SQLiteDatabase db)
+	{
+		db.execSQL(OSM_QUESTS_ELEMENT_INDEX_CREATE);
+		db.execSQL(OSM_QUESTS_STATUS_INDEX_CREATE);
+		db.execSQL(OSM_QUESTS_LAST_UPDATE_INDEX_CREATE);
+		db.execSQL(UNDO_OSM_QUESTS_ELEMENT_INDEX_CREATE);
+		db.execSQL(UNDO_OSM_QUESTS_STATUS_INDEX_CREATE);
+		db.execSQL(UNDO_OSM_QUESTS_LAST_UPDATE_INDEX_CREATE);
+	}
+
+	private static void migrateOsmQuestsToIntegerColumns(SQLiteDatabase db)
+	{
+		// the ids for the quest types are assigned in the order they are encountered here
+		for (String table : new String[]{OsmQuestTable.NAME, OsmQuestTable.NAME_UNDO})
+		{
+			db.execSQL("INSERT OR IGNORE INTO " + QuestTypesTable.NAME +
+				" (" + QuestTypesTable.Columns.QUEST_TYPE + ") " +
+				"SELECT DISTINCT " + OsmQuestTable.Columns.QUEST_TYPE + " FROM " + table + ";");
+		}
+
+		// sqlite does not support altering the type of columns. Need to create new tables
+		db.execSQL("DROP VIEW " + OsmQuestTable.NAME_MERGED_VIEW + ";");
+		db.execSQL("DROP VIEW " + OsmQuestTable.NAME_UNDO_MERGED_VIEW + ";");
+		migrateOsmQuestsTableToIntegerColumns(db, OsmQuestTable.NAME, OSM_QUESTS_TABLE_CREATE);
+		migrateOsmQuestsTableToIntegerColumns(db, OsmQuestTable.NAME_UNDO, UNDO_OSM_QUESTS_TABLE_CREATE);
+		createOsmQuestsIndices(db);
+		db.execSQL(OSM_QUESTS_VIEW_CREATE);
+		db.execSQL(OSM_UNDO_QUESTS_VIEW_CREATE);
+	}
+
+	private static void migrateOsmQuestsTableToIntegerColumns(
+		SQLiteDatabase db, String tableName, String tableCreate)
+	{
+		String oldTableName = tableName + "_old";
+		db.execSQL("ALTER TABLE " + tableName + " RENAME TO " + oldTableName);
+		db.execSQL(tableCreate);
+
+		StringBuilder questStatusId = new StringBuilder("CASE " + OsmQuestTable.Columns.QUEST_STATUS);
+		for (int i = 0; i < OsmQuestTable.QUEST_STATUSES.size(); ++i)
+		{
+			questStatusId.append(" WHEN '").append(OsmQuestTable.QUEST_STATUSES.get(i).name())
+				.append("' THEN ").append(i);
+		}
+		questStatusId.append(" END");
+
+		String questTypeId = "(SELECT " + QuestTypesTable.Columns.ID +
+			" FROM " + QuestTypesTable.NAME +
+			" WHERE " + QuestTypesTable.NAME + "." + QuestTypesTable.Columns.QUEST_TYPE + " = " +
+			oldTableName + "." + OsmQuestTable.Columns.QUEST_TYPE + ")";
+
+		String allColumns = TextUtils.join(",", OsmQuestTable.Columns.ALL);
+		db.execSQL("INSERT INTO " + tableName + " (" + allColumns + ") SELECT " +
+			OsmQuestTable.Columns.QUEST_ID + "," +
+			questTypeId + "," +
+			OsmQuestTable.Columns.ELEMENT_ID + "," +
+			OsmQuestTable.Columns.ELEMENT_TYPE + "," +
+			questStatusId + "," +
+			OsmQuestTable.Columns.TAG_CHANGES + "," +
+			OsmQuestTable.Columns.CHANGES_SOURCE + "," +
+			OsmQuestTable.Columns.LAST_UPDATE +
+			" FROM " + oldTableName);
+		db.execSQL("DROP TABLE " + oldTableName);
+	}
+
+	private static void migrateElementGeometriesToCompactFormat(SQLiteDatabase db)
+	{
+		Serializer serializer = new KryoSerializer();
+		String[] cols = {
+			ElementGeometryTable.Columns.GEOMETRY_POLYLINES,
+			ElementGeometryTable.Columns.GEOMETRY_POLYGONS
+		};
+		forEachRowPaged(db, ElementGeometryTable.NAME, cols, null, cursor ->
+		{
+			ContentValues values = new ContentValues();
+			values.put(ElementGeometryTable.Columns.GEOMETRY_POLYLINES,
+				migrateToCompactFormat(serializer, cursor, 1));
+			values.put(ElementGeometryTable.Columns.GEOMETRY_POLYGONS,
+				migrateToCompactFormat(serializer, cursor, 2));
+			return values;
+		});
+	}
+
+	private static void addTileKeysToElementGeometries(SQLiteDatabase db)
+	{
+		String[] cols = {
+			ElementGeometryTable.Columns.LATITUDE,
+			ElementGeometryTable.Columns.LONGITUDE
+		};
+		forEachRowPaged(db, ElementGeometryTable.NAME, cols, null, cursor ->
+		{
+			ContentValues values = new ContentValues();
+			values.put(ElementGeometryTable.Columns.TILE_KEY,
+				TileKey.of(cursor.getDouble(1), cursor.getDouble(2)));
+			return values;
+		});
+	}
+
+	private static void migrateTagsToCompactFormat(SQLiteDatabase db, String table, String tagsColumn)
+	{
+		Serializer serializer = new KryoSerializer();
+		StringDictionary dictionary = new StringDictionary(db);
+		TagsCodec tagsCodec = new TagsCodec(dictionary);
+		Set<Integer> usedStringIds = new HashSet<>();
+		String[] cols = {tagsColumn};
+		forEachRowPaged(db, table, cols, tagsColumn + " NOT NULL", cursor ->
+		{
+			Map<String, String> tags = serializer.toObject(cursor.getBlob(1), HashMap.class);
+			ContentValues values = new ContentValues();
+			values.put(tagsColumn, tagsCodec.encode(tags, usedStringIds));
+			return values;
+		});
+		dictionary.save(usedStringIds);
+	}
+
+	private interface RowMigration
+	{
+		/** @return the values to update the row at the cursor's current position with. The first
+		 *  column of the cursor is the rowid, the queried columns follow */
+		ContentValues migrate(Cursor cursor);
+	}
+
+	/** Updates the rows of the given table that match the given selection one by one with the
+	 *  values returned by the given migration. In pages, so that not the whole table needs to fit
+	 *  into a cursor window */
+	private static void forEachRowPaged(SQLiteDatabase db, String table, String[] cols,
+										String selection, RowMigration migration)
+	{
+		String[] queryCols = new String[cols.length + 1];
+		queryCols[0] = "rowid";
+		System.arraycopy(cols, 0, queryCols, 1, cols.length);
+		String pageSelection = "rowid > ?" + (selection != null ? " AND " + selection : "");
+
+		long lastRowId = -1;
+		while(true)
+		{
+			String[] args = {String.valueOf(lastRowId)};
+			try (Cursor cursor = db.query(table, queryCols, pageSelection, args,
+				null, null, "rowid", "1000"))
+			{
+				if(!cursor.moveToFirst()) break;
+				while(!cursor.isAfterLast())
+				{
+					lastRowId = cursor.getLong(0);
+					db.update(table, migration.migrate(cursor), "rowid = ?",
+						new String[]{String.valueOf(lastRowId)});
+					cursor.moveToNext();
+				}
+			}
+		}
+	}
+
+	private static byte[] migrateToCompactFormat(Serializer serializer, Cursor cursor, int col)
+	{
+		if(cursor.isNull(col)) return null;
+		List<List<LatLon>> lists = serializer.toObject(cursor.getBlob(col), ArrayList.class);
+		return LatLonListsCodec.encode(lists);
+	}
+
 	private static boolean tableHasColumn(SQLiteDatabase db, String tableName, String columnName)
 	{
 
@@ -0,0 +1,242 @@
+package de.westnordost.streetcomplete.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.westnordost.osmapi.map.data.BoundingBox;
+import de.westnordost.osmapi.map.data.LatLon;
+import de.westnordost.streetcomplete.util.TileKey;
+
+/** Keeps the visible quests of the most recently viewed tiles in memory, so that showing an area
+ *  again that has been shown before does not need to query the database again.
+ *
+ *  The cache must be notified about all the quests that turn visible or invisible via the
+ *  VisibleQuestListener methods to stay in sync with the database. Quests that turn visible in a
+ *  tile that is not in the cache are ignored, they will be loaded together with that tile. */
+public class VisibleQuestsCache implements VisibleQuestListener
+{
+	public interface Loader
+	{
+		/** @return the visible quests within the given bounding box by quest group */
+		Map<QuestGroup, List<? extends Quest>> load(BoundingBox bbox);
+	}
+
+	private final int zoom;
+	private final Map<Long, Tile> tiles;
+	private final Map<QuestGroup, Map<Long, Long>> tileKeysByQuestId = new EnumMap<>(QuestGroup.class);
+
+	private int hits;
+	private int misses;
+
+	/** @param zoom the zoom level of the tiles by which the quests are cached
+	 *  @param maxTiles the number of tiles to keep in memory at most */
+	public VisibleQuestsCache(int zoom, int maxTiles)
+	{
+		this.zoom = zoom;
+		// the least recently viewed tile is the first (tiles are moved to the end when viewed)
+		tiles = new LinkedHashMap<Long, Tile>()
+		{
+			@Override protected boolean removeEldestEntry(Map.Entry<Long, Tile> eldest)
+			{
+				if(size() <= maxTiles) return false;
+				removeFromIndex(eldest.getValue());
+				return true;
+			}
+		};
+		for (QuestGroup group : QuestGroup.values())
+		{
+			tileKeysByQuestId.put(group, new HashMap<>());
+		}
+	}
+
+	/** @return the visible quests within the tiles that enclose the given bounding box by quest
+	 *          group. The quests of the tiles that are not cached are loaded with the given
+	 *          loader in one go. */
+	public synchronized Map<QuestGroup, List<Quest>> get(BoundingBox bbox, Loader loader)
+	{
+		// the edges of a bbox made from tiles are also the edges of the neighbouring tiles
+		double notTheNextTile = 0.0000001;
+		int minX = TileKey.tileX(bbox.getMinLongitude() + notTheNextTile, zoom);
+		int maxX = TileKey.tileX(bbox.getMaxLongitude() - notTheNextTile, zoom);
+		// y axis points south
+		int minY = TileKey.tileY(bbox.getMaxLatitude() - notTheNextTile, zoom);
+		int maxY = TileKey.tileY(bbox.getMinLatitude() + notTheNextTile, zoom);
+
+		Map<QuestGroup, List<Quest>> result = new EnumMap<>(QuestGroup.class);
+		for (QuestGroup group : QuestGroup.values())
+		{
+			result.put(group, new ArrayList<>());
+		}
+
+		Map<Long, Tile> missingTiles = new HashMap<>();
+		int missingMinX = Integer.MAX_VALUE, missingMaxX = Integer.MIN_VALUE;
+		int missingMinY = Integer.MAX_VALUE, missingMaxY = Integer.MIN_VALUE;
+		for (int y = minY; y <= maxY; ++y)
+		{
+			for (int x = minX; x <= maxX; ++x)
+			{
+				long key = TileKey.pack(x, y);
+				Tile tile = tiles.remove(key);
+				if(tile != null)
+				{
+					hits++;
+					tiles.put(key, tile);
+					tile.addAllTo(result);
+				}
+				else
+				{
+					misses++;
+					missingTiles.put(key, new Tile(key));
+					missingMinX = Math.min(missingMinX, x);
+					missingMaxX = Math.max(missingMaxX, x);
+					missingMinY = Math.min(missingMinY, y);
+					missingMaxY = Math.max(missingMaxY, y);
+				}
+			}
+		}
+
+		if(!missingTiles.isEmpty())
+		{
+			BoundingBox missingBBox = new BoundingBox(
+					TileKey.tileLatitude(missingMaxY + 1, zoom),
+					TileKey.tileLongitude(missingMinX, zoom),
+					TileKey.tileLatitude(missingMinY, zoom),
+					TileKey.tileLongitude(missingMaxX + 1, zoom));
+
+			Map<QuestGroup, List<? extends Quest>> loaded = loader.load(missingBBox);
+			for (Map.Entry<QuestGroup, List<? extends Quest>> entry : loaded.entrySet())
+			{
+				QuestGroup group = entry.getKey();
+				for (Quest quest : entry.getValue())
+				{
+					// the bbox may also contain tiles that are already cached
+					Tile tile = missingTiles.get(getTileKey(quest));
+					if(tile == null) continue;
+					tile.get(group).put(quest.getId(), quest);
+					result.get(group).add(quest);
+				}
+			}
+			for (Tile tile : missingTiles.values())
+			{
+				addToIndex(tile);
+				tiles.put(tile.key, tile);
+			}
+		}
+		return result;
+	}
+
+	@Override public synchronized void onQuestsCreated(Collection<? extends Quest> quests, QuestGroup group)
+	{
+		Map<Long, Long> tileKeys = tileKeysByQuestId.get(group);
+		for (Quest quest : quests)
+		{
+			long key = getTileKey(quest);
+
+			// a quest could also have moved, i.e. if the geometry of the element changed
+			Long previousKey = tileKeys.get(quest.getId());
+			if(previousKey != null && previousKey != key)
+			{
+				tileKeys.remove(quest.getId());
+				Tile previousTile = tiles.get(previousKey);
+				if(previousTile != null) previousTile.get(group).remove(quest.getId());
+			}
+
+			Tile tile = tiles.get(key);
+			if(tile == null) continue;
+			tileKeys.put(quest.getId(), key);
+			tile.get(group).put(quest.getId(), quest);
+		}
+	}
+
+	@Override public synchronized void onQuestsRemoved(Collection<Long> questIds, QuestGroup group)
+	{
+		Map<Long, Long> tileKeys = tileKeysByQuestId.get(group);
+		for (Long questId : questIds)
+		{
+			Long key = tileKeys.remove(questId);
+			if(key == null) continue;
+			Tile tile = tiles.get(key);
+			if(tile != null) tile.get(group).remove(questId);
+		}
+	}
+
+	/** Forget all cached quests, i.e. because the quests have been changed without notifying
+	 *  this cache */
+	public synchronized void clear()
+	{
+		tiles.clear();
+		for (Map<Long, Long> tileKeys : tileKeysByQuestId.values())
+		{
+			tileKeys.clear();
+		}
+	}
+
+	/** @return how often a tile could be served from the cache */
+	public synchronized int getHits() { return hits; }
+
+	/** @return how often a tile had to be loaded */
+	public synchronized int getMisses() { return misses; }
+
+	private long getTileKey(Quest quest)
+	{
+		LatLon pos = quest.getCenter();
+		return TileKey.of(pos.getLatitude(), pos.getLongitude(), zoom);
+	}
+
+	private void addToIndex(Tile tile)
+	{
+		for (QuestGroup group : QuestGroup.values())
+		{
+			Map<Long, Long> tileKeys = tileKeysByQuestId.get(group);
+			for (Long questId : tile.get(group).keySet())
+			{
+				tileKeys.put(questId, tile.key);
+			}
+		}
+	}
+
+	private void removeFromIndex(Tile tile)
+	{
+		for (QuestGroup group : QuestGroup.values())
+		{
+			Map<Long, Long> tileKeys = tileKeysByQuestId.get(group);
+			for (Long questId : tile.get(group).keySet())
+			{
+				tileKeys.remove(questId);
+			}
+		}
+	}
+
+	private static final class Tile
+	{
+		final long key;
+		private final Map<QuestGroup, Map<Long, Quest>> questsByGroup = new EnumMap<>(QuestGroup.class);
+
+		Tile(long key)
+		{
+			this.key = key;
+			for (QuestGroup group : QuestGroup.values())
+			{
+				questsByGroup.put(group, new HashMap<>());
+			}
+		}
+
+		Map<Long, Quest> get(QuestGroup group)
+		{
+			return questsByGroup.get(group);
+		}
+
+		void addAllTo(Map<QuestGroup, List<Quest>> result)
+		{
+			for (Map.Entry<QuestGroup, Map<Long, Quest>> entry : questsByGroup.entrySet())
+			{
+				result.get(entry.getKey()).addAll(entry.getValue().values());
+			}
+		}
+	}
+}
@@ -4,6 +4,7 @@ import android.graphics.Rect;
 import android.util.Log;
 
 import java.util.List;
+import java.util.Map;
 
 import javax.inject.Provider;
 
@@ -53,9 +54,16 @@ public abstract class AActiveRadiusStrategy implements QuestAutoDownloadStrategy
 		// (this check is more computational effort, so its done after the vicinity check)
 		// nothing more to download
 		Rect tiles = SlippyMapMath.enclosingTiles(bbox, ApplicationConstants.QUEST_TILE_ZOOM);
-		long questExpirationTime = ApplicationConstants.REFRESH_QUESTS_AFTER;
-		long ignoreOlderThan = Math.max(0,System.currentTimeMillis() - questExpirationTime);
-		int alreadyDownloadedQuestTypes = downloadedTilesDao.get(tiles, ignoreOlderThan).size();
+		long now = System.currentTimeMillis();
+		long ignoreOlderThan = Math.max(0, now - ApplicationConstants.REFRESH_QUESTS_AFTER);
+		// quest types that have not been downloaded completely for too long are downloaded anew
+		long refreshIfNewerThan = Math.max(0, now - ApplicationConstants.REFRESH_QUESTS_INCREMENTALLY_WITHIN);
+		Map<String, Long> downloadTimes = downloadedTilesDao.getDownloadTimes(tiles, refreshIfNewerThan);
+		int alreadyDownloadedQuestTypes = 0;
+		for (long downloadTime : downloadTimes.values())
+		{
+			if(downloadTime > ignoreOlderThan) alreadyDownloadedQuestTypes++;
+		}
 		if(alreadyDownloadedQuestTypes >= numberOfQuestTypes)
 		{
 			Log.i(TAG, "Not downloading quests because everything has been downloaded already in " + radius + "m radius");
@@ -6,21 +6,34 @@ import android.util.Log;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
 
 import de.westnordost.streetcomplete.ApplicationConstants;
 import de.westnordost.streetcomplete.Prefs;
+import de.westnordost.streetcomplete.data.Quest;
+import de.westnordost.streetcomplete.data.QuestGroup;
 import de.westnordost.streetcomplete.data.QuestType;
 import de.westnordost.streetcomplete.data.QuestTypeRegistry;
 import de.westnordost.streetcomplete.data.VisibleQuestListener;
 import de.westnordost.streetcomplete.data.osm.OsmElementQuestType;
+import de.westnordost.streetcomplete.data.osm.SimpleOverpassQuestType;
 import de.westnordost.streetcomplete.data.osm.download.OsmQuestDownload;
+import de.westnordost.streetcomplete.data.osm.download.OverpassMapDataDao;
+import de.westnordost.streetcomplete.data.osm.download.OverpassStatus;
 import de.westnordost.streetcomplete.data.osmnotes.OsmNoteQuestDao;
 import de.westnordost.streetcomplete.data.osmnotes.OsmNoteQuestType;
 import de.westnordost.streetcomplete.data.osmnotes.OsmNotesDownload;
@@ -40,6 +53,7 @@ public class QuestDownload
 	private final SharedPreferences prefs;
 	private final DownloadedTilesDao downloadedTilesDao;
 	private final OsmNoteQuestDao osmNoteQuestDb;
+	private final OverpassMapDataDao overpassServer;
 
 	private Rect tiles;
 	private Integer maxQuestTypes;
@@ -51,14 +65,16 @@ public class QuestDownload
 	private QuestDownloadProgressListener progressListener;
 
 	// state
-	private int downloadedQuestTypes = 0;
+	private final AtomicInteger downloadedQuestTypes = new AtomicInteger(0);
+	/** quest types that only need to be refreshed -> time of their last download */
+	private final Map<QuestType, Long> refreshSince = new HashMap<>();
 	private int totalQuestTypes;
 	private boolean finished = false;
 
 	@Inject public QuestDownload(Provider<OsmNotesDownload> notesDownloadProvider,
 								 Provider<OsmQuestDownload> questDownloadProvider,
 								 DownloadedTilesDao downloadedTilesDao,
-								 OsmNoteQuestDao osmNoteQuestDb,
+								 OsmNoteQuestDao osmNoteQuestDb, OverpassMapDataDao overpassServer,
 								 QuestTypeRegistry questTypeRegistry, SharedPreferences prefs,
 								 Provider<List<QuestType>> questTypesProvider)
 	{
@@ -66,11 +82,15 @@ public class QuestDownload
 		this.questDownloadProvider = questDownloadProvider;
 		this.downloadedTilesDao = downloadedTilesDao;
 		this.osmNoteQuestDb = osmNoteQuestDb;
+		this.overpassServer = overpassServer;
 		this.questTypeRegistry = questTypeRegistry;
 		this.prefs = prefs;
 		this.questTypesProvider = questTypesProvider;
 	}
 
+	/** The quest types are downloaded on several threads, so the given listener is called from
+	 *  these background threads. The calls are serialized though, so the listener is never called
+	 *  concurrently during one download. */
 	public void setVisibleQuestListener(VisibleQuestListener questListener)
 	{
 		this.questListener = questListener;
@@ -121,8 +141,10 @@ public class QuestDownload
 				notesPositions = getNotePositionsFromDb(bbox);
 			}
 
-			downloadQuestTypes(bbox, questTypes, notesPositions);
-			progressListener.onSuccess();
+			if(downloadQuestTypes(bbox, questTypes, notesPositions))
+			{
+				progressListener.onSuccess();
+			}
 		}
 		finally
 		{
@@ -141,16 +163,32 @@ public class QuestDownload
 	{
 		List<QuestType> result = new ArrayList<>(questTypesProvider.get());
 
-		long questExpirationTime = ApplicationConstants.REFRESH_QUESTS_AFTER;
-		long ignoreOlderThan = Math.max(0,System.currentTimeMillis() - questExpirationTime);
-		List<String> alreadyDownloadedNames = downloadedTilesDao.get(tiles, ignoreOlderThan);
-		if(!alreadyDownloadedNames.isEmpty())
+		long now = System.currentTimeMillis();
+		long ignoreOlderThan = Math.max(0, now - ApplicationConstants.REFRESH_QUESTS_AFTER);
+		// quest types that have not been downloaded completely for too long are downloaded anew
+		long refreshIfNewerThan = Math.max(0, now - ApplicationConstants.REFRESH_QUESTS_INCREMENTALLY_WITHIN);
+
+		List<String> alreadyDownloadedNames = new ArrayList<>();
+		Set<QuestType> alreadyDownloaded = new HashSet<>();
+		Map<String, Long> downloadTimes = downloadedTilesDao.getDownloadTimes(tiles, refreshIfNewerThan);
+		for (Map.Entry<String, Long> entry : downloadTimes.entrySet())
 		{
-			Set<QuestType> alreadyDownloaded = new HashSet<>(alreadyDownloadedNames.size());
-			for (String questTypeName : alreadyDownloadedNames)
+			QuestType questType = questTypeRegistry.getByName(entry.getKey());
+			long downloadTime = entry.getValue();
+			if(downloadTime > ignoreOlderThan)
 			{
-				alreadyDownloaded.add(questTypeRegistry.getByName(questTypeName));
+				alreadyDownloadedNames.add(entry.getKey());
+				alreadyDownloaded.add(questType);
 			}
+			// only for quest types that are defined by tag filters alone, it is clear which
+			// elements need to be looked at again. Notes carry the date of their last update
+			else if(questType instanceof SimpleOverpassQuestType || questType instanceof OsmNoteQuestType)
+			{
+				refreshSince.put(questType, downloadTime);
+			}
+		}
+		if(!alreadyDownloaded.isEmpty())
+		{
 			result.removeAll(alreadyDownloaded);
 
 			Log.i(TAG, "Not downloading quest types because they are in local storage already: " +
@@ -177,42 +215,243 @@ public class QuestDownload
 		if(userId == -1) userId = null;
 
 		int maxNotes = 10000;
-		Set<LatLon> result = notesDownload.download(bbox, userId, maxNotes);
-		downloadedTilesDao.put(tiles, OsmNoteQuestType.class.getSimpleName());
-		downloadedQuestTypes++;
+		Long since = refreshSince.get(getOsmNoteQuestType());
+		Set<LatLon> result;
+		if(since != null)
+		{
+			result = notesDownload.refresh(bbox, userId, maxNotes, since);
+			downloadedTilesDao.putRefreshed(tiles, OsmNoteQuestType.class.getSimpleName());
+		}
+		else
+		{
+			result = notesDownload.download(bbox, userId, maxNotes);
+			downloadedTilesDao.put(tiles, OsmNoteQuestType.class.getSimpleName());
+		}
+		downloadedQuestTypes.incrementAndGet();
 		dispatchProgress();
 		return result;
 	}
 
-	private void downloadQuestTypes(BoundingBox bbox, List<QuestType> questTypes,
-									Set<LatLon> notesPositions)
+	/** @return false if the download has been interrupted */
+	private boolean downloadQuestTypes(BoundingBox bbox, List<QuestType> questTypes,
+									   Set<LatLon> notesPositions)
 	{
-		for (QuestType questType : questTypes)
+		List<DownloadJob> jobs = createDownloadJobs(questTypes);
+		if(jobs.isEmpty()) return true;
+
+		int threadCount = Math.min(jobs.size(), getMaxConcurrentDownloads());
+		Log.i(TAG, "Downloading " + jobs.size() + " quest type batches on " + threadCount + " threads");
+
+		VisibleQuestListener listener = new SerializedQuestListener(questListener);
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try
 		{
-			if (cancelState.get()) break;
-			if (maxQuestTypes != null && downloadedQuestTypes >= maxQuestTypes) break;
+			List<Future<?>> futures = new ArrayList<>(jobs.size());
+			for (DownloadJob job : jobs)
+			{
+				futures.add(executor.submit(() ->
+				{
+					downloadJob(bbox, job, notesPositions, listener);
+					// i.e. while waiting for the Overpass quota
+					if(Thread.currentThread().isInterrupted()) throw new InterruptedException();
+					return null;
+				}));
+			}
+			for (Future<?> future : futures)
+			{
+				future.get();
+			}
 
-			if (questType instanceof OsmElementQuestType)
+			// only once for the whole download, not after each quest type
+			List<OsmElementQuestType> osmQuestTypes = new ArrayList<>();
+			for (DownloadJob job : jobs)
 			{
-				OsmQuestDownload questDownload = questDownloadProvider.get();
-				questDownload.setQuestListener(questListener);
+				osmQuestTypes.addAll(job.questTypes);
+			}
+			questDownloadProvider.get().deleteUnreferenced(osmQuestTypes);
+			return true;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			Log.i(TAG, "Download interrupted");
+			return false;
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if(cause instanceof InterruptedException)
+			{
+				Log.i(TAG, "Download interrupted");
+				return false;
+			}
+			if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+			throw new RuntimeException(cause);
+		}
+		finally
+		{
+			// the jobs not started yet are not started anymore and the running ones are interrupted
+			executor.shutdownNow();
+		}
+	}
+
+	/** Splits the given quest types into download jobs: Quest types that are defined only by tag
+	 *  filters are batched together into one download job (separately for the ones that only need
+	 *  to be refreshed), the others are downloaded one by one. A batch takes the place of its
+	 *  first quest type in the list so the priority of the quest types is roughly kept */
+	private List<DownloadJob> createDownloadJobs(List<QuestType> questTypes)
+	{
+		List<DownloadJob> result = new ArrayList<>();
+		DownloadJob batch = null;
+		DownloadJob refreshBatch = null;
+		int count = downloadedQuestTypes.get();
+		for (QuestType questType : questTypes)
+		{
+			if (maxQuestTypes != null && count >= maxQuestTypes) break;
 
-				if(questDownload.download((OsmElementQuestType) questType, bbox, notesPositions))
+			if (questType instanceof SimpleOverpassQuestType)
+			{
+				Long since = refreshSince.get(questType);
+				if (since != null)
+				{
+					if (refreshBatch == null || refreshBatch.isFull())
+					{
+						refreshBatch = new DownloadJob();
+						refreshBatch.refreshSince = since;
+						result.add(refreshBatch);
+					}
+					// the batch must be refreshed since the oldest download of its quest types
+					refreshBatch.refreshSince = Math.min(refreshBatch.refreshSince, since);
+					refreshBatch.questTypes.add((OsmElementQuestType) questType);
+				}
+				else
 				{
-					downloadedTilesDao.put(tiles, questType.getClass().getSimpleName());
+					if (batch == null || batch.isFull())
+					{
+						batch = new DownloadJob();
+						result.add(batch);
+					}
+					batch.questTypes.add((OsmElementQuestType) questType);
 				}
+				count++;
+			}
+			else if (questType instanceof OsmElementQuestType)
+			{
+				DownloadJob job = new DownloadJob();
+				job.questTypes.add((OsmElementQuestType) questType);
+				result.add(job);
+				count++;
+			}
+		}
+		return result;
+	}
+
+	private static class DownloadJob
+	{
+		final List<OsmElementQuestType> questTypes = new ArrayList<>();
+		/** if not null, only the changes since this time need to be downloaded */
+		Long refreshSince;
 
-				downloadedQuestTypes++;
-				dispatchProgress();
+		boolean isFull()
+		{
+			return questTypes.size() >= ApplicationConstants.MAX_QUEST_TYPES_PER_OVERPASS_QUERY;
+		}
+	}
+
+	private void downloadJob(BoundingBox bbox, DownloadJob job, Set<LatLon> notesPositions,
+							 VisibleQuestListener listener)
+	{
+		if (cancelState.get()) return;
+
+		OsmQuestDownload questDownload = questDownloadProvider.get();
+		questDownload.setQuestListener(listener);
+
+		List<OsmElementQuestType> questTypes = job.questTypes;
+		boolean success;
+		if (questTypes.get(0) instanceof SimpleOverpassQuestType)
+		{
+			List<SimpleOverpassQuestType> batch = new ArrayList<>(questTypes.size());
+			for (OsmElementQuestType questType : questTypes)
+			{
+				batch.add((SimpleOverpassQuestType) questType);
+			}
+			if (job.refreshSince != null)
+			{
+				success = questDownload.refresh(batch, bbox, notesPositions, job.refreshSince);
+			}
+			else
+			{
+				success = questDownload.download(batch, bbox, notesPositions);
 			}
 		}
+		else
+		{
+			success = questDownload.download(questTypes.get(0), bbox, notesPositions);
+		}
+
+		if (success)
+		{
+			for (OsmElementQuestType questType : questTypes)
+			{
+				String questTypeName = questType.getClass().getSimpleName();
+				if (job.refreshSince != null)
+				{
+					downloadedTilesDao.putRefreshed(tiles, questTypeName);
+				}
+				else
+				{
+					downloadedTilesDao.put(tiles, questTypeName);
+				}
+			}
+		}
+
+		downloadedQuestTypes.addAndGet(questTypes.size());
+		dispatchProgress();
+	}
+
+	/** Passes on the calls to the given listener one at a time */
+	private static class SerializedQuestListener implements VisibleQuestListener
+	{
+		private final VisibleQuestListener listener;
+
+		SerializedQuestListener(VisibleQuestListener listener)
+		{
+			this.listener = listener;
+		}
+
+		@Override public synchronized void onQuestsCreated(Collection<? extends Quest> quests, QuestGroup group)
+		{
+			if(listener != null) listener.onQuestsCreated(quests, group);
+		}
+
+		@Override public synchronized void onQuestsRemoved(Collection<Long> questIds, QuestGroup group)
+		{
+			if(listener != null) listener.onQuestsRemoved(questIds, group);
+		}
+	}
+
+	/** @return how many queries this client may send to Overpass at the same time. Queries sent
+	 *  while there is currently no slot free wait until the next slot becomes available */
+	private int getMaxConcurrentDownloads()
+	{
+		try
+		{
+			OverpassStatus status = overpassServer.getStatus();
+			int slots = Math.min(status.maxAvailableSlots, ApplicationConstants.MAX_CONCURRENT_QUEST_DOWNLOADS);
+			return Math.max(1, slots);
+		}
+		catch (Exception e)
+		{
+			Log.w(TAG, "Unable to get the Overpass status, downloading quest types one by one", e);
+			return 1;
+		}
 	}
 
 	public float getProgress()
 	{
 		int max = totalQuestTypes;
 		if(maxQuestTypes != null) max = Math.min(maxQuestTypes, totalQuestTypes);
-		return Math.min(1f, (float) downloadedQuestTypes / max);
+		return Math.min(1f, (float) downloadedQuestTypes.get() / max);
 	}
 
 	public boolean isPriority()
@@ -225,7 +464,7 @@ public class QuestDownload
 		return finished;
 	}
 
-	private void dispatchProgress()
+	private synchronized void dispatchProgress()
 	{
 		progressListener.onProgress(getProgress());
 	}
@@ -0,0 +1,210 @@
+package de.westnordost.streetcomplete.data.meta;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+
+import de.westnordost.countryboundaries.CountryBoundaries;
+import de.westnordost.osmapi.map.data.BoundingBox;
+import de.westnordost.streetcomplete.util.TileKey;
+
+/** Looks up in which countries positions are, caching the result per cell (slippy map tile at
+ *  CELL_ZOOM). For a cell that lies completely within the same countries, the countries are looked
+ *  up only once and any position in it is then answered from the cache. Only for cells on a
+ *  border, each position is looked up in the country boundaries again.
+ *
+ *  As most positions are not close to any border, this makes the country lookup for elements
+ *  about as cheap as a hash map lookup.
+ *
+ *  Thread-safe. */
+public class CountryBoundariesCache
+{
+	static final int CELL_ZOOM = 14;
+
+	/** about the number of cells of a big city */
+	private static final int MAX_CELLS = 1024;
+
+	/** bounding boxes that span more cells are looked up directly in the country boundaries */
+	private static final int MAX_CELLS_PER_BBOX = 64;
+
+	private final Future<CountryBoundaries> countryBoundaries;
+
+	private final Map<Long, Cell> cells = new LinkedHashMap<Long, Cell>(16, 0.75f, true)
+	{
+		@Override protected boolean removeEldestEntry(Map.Entry<Long, Cell> eldest)
+		{
+			return size() > MAX_CELLS;
+		}
+	};
+
+	private static class Cell
+	{
+		/** ids of the countries the cell is completely in, sorted by size ascending. null if the
+		 *  cell is on a border */
+		final List<String> ids;
+		final Set<String> containingIds;
+		final Set<String> intersectingIds;
+
+		Cell(List<String> ids, Set<String> containingIds, Set<String> intersectingIds)
+		{
+			this.ids = ids;
+			this.containingIds = containingIds;
+			this.intersectingIds = intersectingIds;
+		}
+	}
+
+	public CountryBoundariesCache(Future<CountryBoundaries> countryBoundaries)
+	{
+		this.countryBoundaries = countryBoundaries;
+	}
+
+	/** @return the ids of the countries the given position is in, sorted by size ascending. See
+	 *          CountryBoundaries.getIds */
+	public List<String> getIds(double longitude, double latitude)
+	{
+		Cell cell = getCell(TileKey.tileX(longitude, CELL_ZOOM), TileKey.tileY(latitude, CELL_ZOOM));
+		if(cell.ids != null) return cell.ids;
+		return getCountryBoundaries().getIds(longitude, latitude);
+	}
+
+	/** @return whether the given position is in any of the countries with the given ids. See
+	 *          CountryBoundaries.isInAny */
+	public boolean isInAny(double longitude, double latitude, Collection<String> ids)
+	{
+		Cell cell = getCell(TileKey.tileX(longitude, CELL_ZOOM), TileKey.tileY(latitude, CELL_ZOOM));
+		if(cell.ids != null) return containsAnyOf(cell.ids, ids);
+		return getCountryBoundaries().isInAny(longitude, latitude, ids);
+	}
+
+	/** @return the ids of the countries that contain the given bounding box. For bounding boxes
+	 *          that are not aligned to cells, the result may lack countries that just about
+	 *          contain it */
+	public Set<String> getContainingIds(BoundingBox bbox)
+	{
+		if(getCellCount(bbox) > MAX_CELLS_PER_BBOX)
+		{
+			return getCountryBoundaries().getContainingIds(
+				bbox.getMinLongitude(), bbox.getMinLatitude(),
+				bbox.getMaxLongitude(), bbox.getMaxLatitude());
+		}
+		Set<String> result = null;
+		for (Cell cell : getCells(bbox))
+		{
+			if(result == null) result = new HashSet<>(cell.containingIds);
+			else               result.retainAll(cell.containingIds);
+		}
+		return result;
+	}
+
+	/** @return the ids of the countries that intersect with the given bounding box. For bounding
+	 *          boxes that are not aligned to cells, the result may contain countries that are
+	 *          just outside of it */
+	public Set<String> getIntersectingIds(BoundingBox bbox)
+	{
+		if(getCellCount(bbox) > MAX_CELLS_PER_BBOX)
+		{
+			return getCountryBoundaries().getIntersectingIds(
+				bbox.getMinLongitude(), bbox.getMinLatitude(),
+				bbox.getMaxLongitude(), bbox.getMaxLatitude());
+		}
+		Set<String> result = new HashSet<>();
+		for (Cell cell : getCells(bbox))
+		{
+			result.addAll(cell.intersectingIds);
+		}
+		return result;
+	}
+
+	private static long getCellCount(BoundingBox bbox)
+	{
+		long width = TileKey.tileX(bbox.getMaxLongitude(), CELL_ZOOM) - TileKey.tileX(bbox.getMinLongitude(), CELL_ZOOM) + 1;
+		// y axis points south
+		long height = TileKey.tileY(bbox.getMinLatitude(), CELL_ZOOM) - TileKey.tileY(bbox.getMaxLatitude(), CELL_ZOOM) + 1;
+		// i.e. crosses the 180th meridian
+		if(width <= 0 || height <= 0) return Long.MAX_VALUE;
+		return width * height;
+	}
+
+	private Collection<Cell> getCells(BoundingBox bbox)
+	{
+		int minX = TileKey.tileX(bbox.getMinLongitude(), CELL_ZOOM);
+		int maxX = TileKey.tileX(bbox.getMaxLongitude(), CELL_ZOOM);
+		int minY = TileKey.tileY(bbox.getMaxLatitude(), CELL_ZOOM);
+		int maxY = TileKey.tileY(bbox.getMinLatitude(), CELL_ZOOM);
+
+		Collection<Cell> result = new ArrayList<>((maxX - minX + 1) * (maxY - minY + 1));
+		for (int y = minY; y <= maxY; ++y)
+		{
+			for (int x = minX; x <= maxX; ++x)
+			{
+				result.add(getCell(x, y));
+			}
+		}
+		return result;
+	}
+
+	private synchronized Cell getCell(int x, int y)
+	{
+		Long key = TileKey.pack(x, y);
+		Cell cell = cells.get(key);
+		if(cell == null)
+		{
+			cell = createCell(x, y);
+			cells.put(key, cell);
+		}
+		return cell;
+	}
+
+	private Cell createCell(int x, int y)
+	{
+		CountryBoundaries boundaries = getCountryBoundaries();
+
+		double minLon = TileKey.tileLongitude(x, CELL_ZOOM);
+		double maxLon = TileKey.tileLongitude(x + 1, CELL_ZOOM);
+		// y axis points south
+		double maxLat = TileKey.tileLatitude(y, CELL_ZOOM);
+		double minLat = TileKey.tileLatitude(y + 1, CELL_ZOOM);
+
+		Set<String> containingIds = boundaries.getContainingIds(minLon, minLat, maxLon, maxLat);
+		Set<String> intersectingIds = boundaries.getIntersectingIds(minLon, minLat, maxLon, maxLat);
+
+		List<String> ids = null;
+		// if no other country than those that contain the cell reaches into it, any position in it
+		// is in exactly these countries
+		if(containingIds.equals(intersectingIds))
+		{
+			List<String> centerIds = boundaries.getIds((minLon + maxLon) / 2, (minLat + maxLat) / 2);
+			// the order (by size) is only known from a position lookup
+			if(new HashSet<>(centerIds).equals(containingIds)) ids = Collections.unmodifiableList(centerIds);
+		}
+		return new Cell(ids, containingIds, intersectingIds);
+	}
+
+	private CountryBoundaries getCountryBoundaries()
+	{
+		try
+		{
+			return countryBoundaries.get();
+		}
+		catch (Exception e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	/** @return true if any item of second collection b is contained in first collection a */
+	private static boolean containsAnyOf(Collection a, Collection b)
+	{
+		for (Object o : b)
+		{
+			if(a.contains(o)) return true;
+		}
+		return false;
+	}
+}
@@ -14,24 +14,21 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Future;
 
 import javax.inject.Inject;
 
-import de.westnordost.countryboundaries.CountryBoundaries;
-
 public class CountryInfos
 {
 	private static final String BASEPATH = "country_metadata";
 
 	private final AssetManager assetManager;
-	private final Future<CountryBoundaries> countryBoundaries;
+	private final CountryBoundariesCache countryBoundaries;
 	private final Map<String, CountryInfo> countryInfoMap;
 
 	private CountryInfo defaultCountryInfo;
 
 
-	@Inject public CountryInfos(AssetManager assetManager, Future<CountryBoundaries> countryBoundaries)
+	@Inject public CountryInfos(AssetManager assetManager, CountryBoundariesCache countryBoundaries)
 	{
 		this.assetManager = assetManager;
 		this.countryBoundaries = countryBoundaries;
@@ -41,15 +38,7 @@ public class CountryInfos
 	/** Get the info by location */
 	public CountryInfo get(double longitude, double latitude)
 	{
-		try
-		{
-			List<String> countryCodesIso3166 = countryBoundaries.get().getIds(longitude, latitude);
-			return get(countryCodesIso3166);
-		}
-		catch (Exception e)
-		{
-			throw new RuntimeException(e);
-		}
+		return get(countryBoundaries.getIds(longitude, latitude));
 	}
 
 	/** Get the info by a list of country codes sorted by size. I.e. DE-NI,DE,EU gets the info
@@ -19,11 +19,17 @@ import de.westnordost.streetcomplete.tangram.TangramQuestSpriteSheetCreator;
 public class MetadataModule
 {
 	@Provides @Singleton public static CountryInfos countryInfos(
-			AssetManager assetManager, FutureTask<CountryBoundaries> countryBoundaries)
+			AssetManager assetManager, CountryBoundariesCache countryBoundaries)
 	{
 		return new CountryInfos(assetManager, countryBoundaries);
 	}
 
+	@Provides @Singleton public static CountryBoundariesCache countryBoundariesCache(
+			FutureTask<CountryBoundaries> countryBoundaries)
+	{
+		return new CountryBoundariesCache(countryBoundaries);
+	}
+
 	@Provides @Singleton public static FutureTask<CountryBoundaries> countryBoundariesFuture(
 			final AssetManager assetManager)
 	{
@@ -8,7 +8,8 @@ import de.westnordost.osmapi.map.data.LatLon;
 import de.westnordost.streetcomplete.util.FlattenIterable;
 import de.westnordost.streetcomplete.util.SphericalEarthMath;
 
-/** Information on the geometry of a quest */
+/** Information on the geometry of a quest. The polygons and polylines of geometries read from the
+ *  database are only decoded on first access (see ElementGeometryDao) */
 public class ElementGeometry implements Serializable
 {
 	public final LatLon center;
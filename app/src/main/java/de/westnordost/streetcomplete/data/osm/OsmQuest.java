@@ -60,9 +60,15 @@ public class OsmQuest implements Quest
 
 	@Override public LatLon[] getMarkerLocations()
 	{
-		if(getOsmElementQuestType().getHasMarkersAtEnds() && geometry.polylines != null)
+		return getMarkerLocations(type, geometry.polylines, geometry.center);
+	}
+
+	static LatLon[] getMarkerLocations(OsmElementQuestType type, List<List<LatLon>> polylines,
+									   LatLon center)
+	{
+		if(type.getHasMarkersAtEnds() && polylines != null)
 		{
-			List<LatLon> polyline = geometry.polylines.get(0);
+			List<LatLon> polyline = polylines.get(0);
 			double length = SphericalEarthMath.distance(polyline);
 			if(length > 15*4)
 			{
@@ -72,7 +78,7 @@ public class OsmQuest implements Quest
 				};
 			}
 		}
-		return new LatLon[]{getCenter()};
+		return new LatLon[]{center};
 	}
 
 	@Override public LatLon getCenter()
@@ -7,6 +7,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
@@ -20,6 +21,7 @@ import de.westnordost.streetcomplete.data.osm.persist.ElementGeometryDao;
 import de.westnordost.streetcomplete.data.osm.persist.OsmQuestDao;
 import de.westnordost.streetcomplete.data.osmnotes.OsmNoteQuestDao;
 import de.westnordost.streetcomplete.util.SphericalEarthMath;
+import de.westnordost.streetcomplete.util.TileKey;
 
 /** Manages creating new quests and removing quests that are no longer applicable for an OSM
  *  element locally */
@@ -27,11 +29,20 @@ public class OsmQuestGiver
 {
 	private static final String TAG = "OsmQuestGiver";
 
+	/** The note positions are looked up per tile of this zoom and then kept in memory for a short
+	 *  time, as usually many elements close to each other are updated in a row (after an upload) */
+	private static final int NOTE_POSITIONS_TILE_ZOOM = 14;
+	private static final long NOTE_POSITIONS_CACHE_TIME = 60*1000; // 1 minute in ms
+
 	private final OsmNoteQuestDao osmNoteQuestDb;
 	private final OsmQuestDao questDB;
 	private final ElementGeometryDao elementGeometryDB;
 	private final Provider<List<QuestType>> questTypesProvider;
 
+	private OsmQuestTypeIndex questTypeIndex;
+	private final Map<Long, List<LatLon>> notePositionsByTile = new HashMap<>();
+	private long notePositionsCachedAt;
+
 	@Inject public OsmQuestGiver(
 			OsmNoteQuestDao osmNoteQuestDb, OsmQuestDao questDB,
 			ElementGeometryDao elementGeometryDB, Provider<List<QuestType>> questTypesProvider)
@@ -61,10 +72,16 @@ public class OsmQuestGiver
 		List<String> createdQuestsLog = new ArrayList<>();
 		List<String> removedQuestsLog = new ArrayList<>();
 
-		for(QuestType questType : questTypesProvider.get())
+		List<QuestType> questTypes = questTypesProvider.get();
+		Set<OsmElementQuestType> candidates = getQuestTypeIndex(questTypes).getCandidates(element);
+
+		for(QuestType questType : questTypes)
 		{
 			if(!(questType instanceof OsmElementQuestType)) continue;
 			OsmElementQuestType osmQuestType = (OsmElementQuestType)questType;
+			/* quest types that cannot apply to the element are skipped - unless there is a quest
+			   for it that may need to be removed now */
+			if(!candidates.contains(osmQuestType) && !currentQuests.containsKey(osmQuestType)) continue;
 
 			Boolean appliesToElement = osmQuestType.isApplicableTo(element);
 			if(appliesToElement == null) continue;
@@ -114,12 +131,62 @@ public class OsmQuestGiver
 		return result;
 	}
 
-	private boolean hasNoteAt(LatLon pos)
+	private synchronized OsmQuestTypeIndex getQuestTypeIndex(List<QuestType> questTypes)
+	{
+		// the quest types (their order, which are enabled) may change in the meantime
+		if(questTypeIndex == null || !questTypeIndex.isFor(questTypes))
+		{
+			questTypeIndex = new OsmQuestTypeIndex(new ArrayList<>(questTypes));
+		}
+		return questTypeIndex;
+	}
+
+	private synchronized boolean hasNoteAt(LatLon pos)
 	{
 		// note about one meter around the center of an element still count as at this point as to
 		// deal with imprecision of the center calculation of geometry (see #1089)
 		BoundingBox bbox = SphericalEarthMath.enclosingBoundingBox(pos, 1);
-		return !osmNoteQuestDb.getAllPositions(bbox).isEmpty();
+
+		long now = System.currentTimeMillis();
+		if(now - notePositionsCachedAt > NOTE_POSITIONS_CACHE_TIME)
+		{
+			notePositionsByTile.clear();
+			notePositionsCachedAt = now;
+		}
+
+		int z = NOTE_POSITIONS_TILE_ZOOM;
+		// the bbox is tiny, so usually it is all in one tile
+		for (int y = TileKey.tileY(bbox.getMaxLatitude(), z); y <= TileKey.tileY(bbox.getMinLatitude(), z); ++y)
+		{
+			for (int x = TileKey.tileX(bbox.getMinLongitude(), z); x <= TileKey.tileX(bbox.getMaxLongitude(), z); ++x)
+			{
+				for (LatLon notePos : getNotePositions(x, y))
+				{
+					if(bbox.getMinLatitude() <= notePos.getLatitude() && notePos.getLatitude() <= bbox.getMaxLatitude()
+						&& bbox.getMinLongitude() <= notePos.getLongitude() && notePos.getLongitude() <= bbox.getMaxLongitude())
+					{
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	private List<LatLon> getNotePositions(int x, int y)
+	{
+		long tile = TileKey.pack(x, y);
+		List<LatLon> result = notePositionsByTile.get(tile);
+		if(result == null)
+		{
+			int z = NOTE_POSITIONS_TILE_ZOOM;
+			BoundingBox tileBBox = new BoundingBox(
+				TileKey.tileLatitude(y + 1, z), TileKey.tileLongitude(x, z),
+				TileKey.tileLatitude(y, z), TileKey.tileLongitude(x + 1, z));
+			result = osmNoteQuestDb.getAllPositions(tileBBox);
+			notePositionsByTile.put(tile, result);
+		}
+		return result;
 	}
 
 	private Map<QuestType, OsmQuest> getCurrentQuests(Element element)
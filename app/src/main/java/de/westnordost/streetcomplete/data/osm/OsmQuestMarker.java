@@ -0,0 +1,68 @@
+package de.westnordost.streetcomplete.data.osm;
+
+import androidx.annotation.Nullable;
+
+import java.util.Date;
+import java.util.List;
+
+import de.westnordost.osmapi.map.data.LatLon;
+import de.westnordost.streetcomplete.data.Quest;
+import de.westnordost.streetcomplete.data.QuestStatus;
+import de.westnordost.streetcomplete.data.QuestType;
+
+/** Lightweight stand-in for an OsmQuest that contains only what is necessary to display its
+ *  marker(s) on the map. The tag changes, the element and the full geometry are not loaded for it,
+ *  so the full OsmQuest has to be retrieved by its id when it is opened. */
+public class OsmQuestMarker implements Quest
+{
+	private long id;
+	private final OsmElementQuestType type;
+	private final LatLon center;
+	private final LatLon[] markerLocations;
+	private QuestStatus status;
+
+	/** @param polylines the polylines of the geometry of the element. Only necessary if the quest
+	 *                   type has markers at the ends */
+	public OsmQuestMarker(long id, OsmElementQuestType type, LatLon center,
+						  @Nullable List<List<LatLon>> polylines)
+	{
+		this.id = id;
+		this.type = type;
+		this.center = center;
+		this.markerLocations = OsmQuest.getMarkerLocations(type, polylines, center);
+		this.status = QuestStatus.NEW;
+	}
+
+	public OsmQuestMarker(OsmQuest quest)
+	{
+		this.id = quest.getId();
+		this.type = quest.getOsmElementQuestType();
+		this.center = quest.getCenter();
+		this.markerLocations = quest.getMarkerLocations();
+		this.status = quest.getStatus();
+	}
+
+	@Override public Long getId() { return id; }
+	@Override public void setId(long id) { this.id = id; }
+
+	@Override public LatLon[] getMarkerLocations()
+	{
+		return markerLocations.clone();
+	}
+
+	@Override public LatLon getCenter() { return center; }
+
+	/** The geometry is not loaded, so this is only a geometry consisting of the center */
+	@Override public ElementGeometry getGeometry()
+	{
+		return new ElementGeometry(center);
+	}
+
+	@Override public QuestType getType() { return type; }
+
+	@Override public QuestStatus getStatus() { return status; }
+	@Override public void setStatus(QuestStatus status) { this.status = status; }
+
+	/** Not loaded */
+	@Override public Date getLastUpdate() { return null; }
+}
@@ -0,0 +1,100 @@
+package de.westnordost.streetcomplete.data.osm;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.streetcomplete.data.QuestType;
+import de.westnordost.streetcomplete.data.osm.tql.TagFilterExpression;
+
+/** Index of which OSM quest types may be applicable to an element, based on its type and the keys
+ *  of its tags. Quest types defined by tag filters are looked up by the keys their filter
+ *  requires, all others are always candidates. */
+class OsmQuestTypeIndex
+{
+	private final List<QuestType> questTypes;
+
+	private final Map<Element.Type, Map<String, List<OsmElementQuestType>>> byKey =
+		new EnumMap<>(Element.Type.class);
+	private final Map<Element.Type, List<OsmElementQuestType>> always =
+		new EnumMap<>(Element.Type.class);
+
+	OsmQuestTypeIndex(List<QuestType> questTypes)
+	{
+		this.questTypes = questTypes;
+		for (Element.Type elementType : Element.Type.values())
+		{
+			byKey.put(elementType, new HashMap<>());
+			always.put(elementType, new ArrayList<>());
+		}
+
+		for (QuestType questType : questTypes)
+		{
+			if(!(questType instanceof OsmElementQuestType)) continue;
+			OsmElementQuestType osmQuestType = (OsmElementQuestType) questType;
+
+			TagFilterExpression filter = null;
+			if(questType instanceof SimpleOverpassQuestType)
+			{
+				filter = ((SimpleOverpassQuestType) questType).getFilter();
+			}
+
+			for (Element.Type elementType : Element.Type.values())
+			{
+				if(filter == null)
+				{
+					always.get(elementType).add(osmQuestType);
+					continue;
+				}
+				if(!filter.matchesElementType(elementType)) continue;
+
+				Set<String> keys = filter.getRequiredKeys();
+				if(keys == null)
+				{
+					always.get(elementType).add(osmQuestType);
+					continue;
+				}
+				Map<String, List<OsmElementQuestType>> questTypesByKey = byKey.get(elementType);
+				for (String key : keys)
+				{
+					List<OsmElementQuestType> list = questTypesByKey.get(key);
+					if(list == null)
+					{
+						list = new ArrayList<>();
+						questTypesByKey.put(key, list);
+					}
+					list.add(osmQuestType);
+				}
+			}
+		}
+	}
+
+	/** @return whether this index was built from the given quest types */
+	boolean isFor(List<QuestType> questTypes)
+	{
+		return this.questTypes.equals(questTypes);
+	}
+
+	/** @return the quest types that may be applicable to the given element. For all others,
+	 *          isApplicableTo would return false */
+	Set<OsmElementQuestType> getCandidates(Element element)
+	{
+		Set<OsmElementQuestType> result = new HashSet<>(always.get(element.getType()));
+		Map<String, String> tags = element.getTags();
+		if(tags != null)
+		{
+			Map<String, List<OsmElementQuestType>> questTypesByKey = byKey.get(element.getType());
+			for (String key : tags.keySet())
+			{
+				List<OsmElementQuestType> list = questTypesByKey.get(key);
+				if(list != null) result.addAll(list);
+			}
+		}
+		return result;
+	}
+}
@@ -12,7 +12,8 @@ import de.westnordost.osmapi.map.data.BoundingBox
 abstract class SimpleOverpassQuestType<T>(
     private val overpassServer: OverpassMapDataDao) : OsmElementQuestType<T> {
 
-    private val filter by lazy { FiltersParser().parse(tagFilters) }
+    /** the parsed [tagFilters]. Quests of this type are created for every element it matches */
+    val filter by lazy { FiltersParser().parse(tagFilters) }
 
     protected abstract val tagFilters: String
 
@@ -0,0 +1,385 @@
+package de.westnordost.streetcomplete.data.osm.download;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import de.westnordost.osmapi.common.XmlParser;
+import de.westnordost.osmapi.map.MapDataFactory;
+import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.osmapi.map.data.LatLon;
+import de.westnordost.osmapi.map.data.Node;
+import de.westnordost.osmapi.map.data.OsmLatLon;
+import de.westnordost.osmapi.map.data.Relation;
+import de.westnordost.osmapi.map.data.RelationMember;
+import de.westnordost.osmapi.map.data.Way;
+import de.westnordost.streetcomplete.data.osm.ElementGeometry;
+
+/** Does the same as the OverpassMapDataParser but allocates as little as possible while parsing:
+ *
+ *  The node ids and vertices of the current element are collected in primitive buffers that are
+ *  reused for every element, tag keys and values are interned and the vertices of the ways of a
+ *  relation are only converted into LatLons when the ElementGeometryCreator asks for them. */
+public class CompactOverpassMapDataParser extends XmlParser
+	implements MapDataWithGeometryParser, WayGeometrySource
+{
+	private static final String
+			NODE = "node",
+			WAY = "way",
+			RELATION = "relation",
+			MEMBER = "member",
+			ND = "nd",
+			TAG = "tag";
+
+	private final ElementGeometryCreator elementGeometryCreator;
+	private final MapDataFactory factory;
+
+	private MapDataWithGeometryHandler handler;
+
+	// the same keys and values occur over and over again, only keep one instance of each
+	private final Map<String, String> stringPool = new HashMap<>();
+
+	private long id;
+	private int version;
+
+	private double lat;
+	private double lon;
+
+	// tags of the current element: key, value, key, value, ...
+	private String[] tags = new String[32];
+	private int tagsSize;
+
+	// node ids of the current way
+	private long[] nodeIds = new long[256];
+	private int nodeIdsSize;
+
+	private List<RelationMember> members;
+
+	// vertices of the current way or of the way members of the current relation:
+	// lat, lon, lat, lon, ...
+	private double[] vertices = new double[512];
+	private int verticesSize;
+
+	private final WayVerticesIndex wayVerticesIndex = new WayVerticesIndex();
+	private boolean isReadingWayVertices;
+	private long currentWayId;
+	private int currentWayStart;
+
+	public CompactOverpassMapDataParser(MapDataFactory factory)
+	{
+		this.factory = factory;
+		this.elementGeometryCreator = new ElementGeometryCreator(this);
+	}
+
+	@Override public void setHandler(MapDataWithGeometryHandler handler)
+	{
+		this.handler = handler;
+	}
+
+	@Override public Void parse(InputStream in) throws IOException
+	{
+		if(handler == null) throw new NullPointerException();
+
+		id = -1;
+		version = 0;
+
+		doParse(in);
+
+		return null;
+	}
+
+	@Override protected void onStartElement()
+	{
+		String name = getName();
+
+		switch (name)
+		{
+			case TAG:
+				addTag(intern(getAttribute("k")), intern(getAttribute("v")));
+				break;
+
+			case ND:
+				String ndRef = getAttribute("ref");
+				if(ndRef != null) // null for ND nodes in MEMBER
+				{
+					addNodeId(Long.parseLong(ndRef));
+				}
+				if(isReadingWayVertices)
+				{
+					addVertex(
+						Double.parseDouble(getAttribute("lat")),
+						Double.parseDouble(getAttribute("lon")));
+				}
+				break;
+
+			case MEMBER:
+				long ref = Long.parseLong(getAttribute("ref"));
+				String role = intern(getAttribute("role"));
+				Element.Type type = parseElementType(getAttribute("type"));
+				members.add(factory.createRelationMember(ref, role, type));
+				// only the vertices of way members are relevant for the geometry
+				if(type == Element.Type.WAY) startWayVertices(ref);
+				break;
+
+			case NODE:
+				retrieveIdAndVersion();
+				lat = Double.parseDouble(getAttribute("lat"));
+				lon = Double.parseDouble(getAttribute("lon"));
+				break;
+
+			case WAY:
+				retrieveIdAndVersion();
+				startWayVertices(id);
+				break;
+
+			case RELATION:
+				retrieveIdAndVersion();
+				members = new ArrayList<>();
+				break;
+		}
+	}
+
+	private void retrieveIdAndVersion()
+	{
+		id = Long.parseLong(getAttribute("id"));
+		// for when output mode "out skel;"
+		String version = getAttribute("version");
+		this.version = version != null ? Integer.parseInt(version) : -1;
+	}
+
+	@Override protected void onEndElement()
+	{
+		String name = getName();
+
+		Element element = null;
+		ElementGeometry geometry = null;
+
+		switch(name)
+		{
+			case MEMBER:
+				endWayVertices();
+				break;
+
+			case NODE:
+				Node node = factory.createNode(id, version, lat, lon, createTags(), null, null);
+				geometry = elementGeometryCreator.create(node);
+				element = node;
+				break;
+
+			case WAY:
+				endWayVertices();
+				List<Long> wayNodeIds = new NodeIdList(Arrays.copyOf(nodeIds, nodeIdsSize));
+				Way way = factory.createWay(id, version, wayNodeIds, createTags(), null, null);
+				geometry = elementGeometryCreator.create(way);
+				element = way;
+				break;
+
+			case RELATION:
+				Relation relation = factory.createRelation(id, version, members, createTags(), null, null);
+				geometry = elementGeometryCreator.create(relation);
+				element = relation;
+				members = null;
+				break;
+		}
+
+		if(element != null)
+		{
+			tagsSize = 0;
+			nodeIdsSize = 0;
+			verticesSize = 0;
+			wayVerticesIndex.clear();
+			handler.handle(element, geometry);
+		}
+	}
+
+	@Override public List<LatLon> getNodePositions(long wayId)
+	{
+		int slot = wayVerticesIndex.find(wayId);
+		if(slot == -1) return new ArrayList<>();
+
+		int start = wayVerticesIndex.starts[slot];
+		int end = wayVerticesIndex.ends[slot];
+		// must be a new modifiable list because the ElementGeometryCreator modifies it
+		List<LatLon> result = new ArrayList<>(end - start);
+		for (int i = start; i < end; ++i)
+		{
+			result.add(new OsmLatLon(vertices[i*2], vertices[i*2+1]));
+		}
+		return result;
+	}
+
+	private void startWayVertices(long wayId)
+	{
+		isReadingWayVertices = true;
+		currentWayId = wayId;
+		currentWayStart = verticesSize;
+	}
+
+	private void endWayVertices()
+	{
+		if(!isReadingWayVertices) return;
+		wayVerticesIndex.put(currentWayId, currentWayStart, verticesSize);
+		isReadingWayVertices = false;
+	}
+
+	private void addTag(String key, String value)
+	{
+		if(tagsSize + 2 > tags.length) tags = Arrays.copyOf(tags, tags.length * 2);
+		tags[tagsSize++] = key;
+		tags[tagsSize++] = value;
+	}
+
+	private Map<String, String> createTags()
+	{
+		if(tagsSize == 0) return null;
+		int count = tagsSize / 2;
+		// sized so that it never needs to be resized
+		Map<String, String> result = new HashMap<>((int) (count / 0.75f) + 1);
+		for (int i = 0; i < tagsSize; i += 2)
+		{
+			result.put(tags[i], tags[i+1]);
+		}
+		return result;
+	}
+
+	private void addNodeId(long nodeId)
+	{
+		if(nodeIdsSize + 1 > nodeIds.length) nodeIds = Arrays.copyOf(nodeIds, nodeIds.length * 2);
+		nodeIds[nodeIdsSize++] = nodeId;
+	}
+
+	private void addVertex(double lat, double lon)
+	{
+		if((verticesSize + 1) * 2 > vertices.length) vertices = Arrays.copyOf(vertices, vertices.length * 2);
+		vertices[verticesSize*2] = lat;
+		vertices[verticesSize*2+1] = lon;
+		verticesSize++;
+	}
+
+	private String intern(String str)
+	{
+		if(str == null) return null;
+		String result = stringPool.get(str);
+		if(result == null)
+		{
+			stringPool.put(str, str);
+			result = str;
+		}
+		return result;
+	}
+
+	private static Element.Type parseElementType(String type)
+	{
+		switch (type)
+		{
+			case NODE:     return Element.Type.NODE;
+			case WAY:      return Element.Type.WAY;
+			case RELATION: return Element.Type.RELATION;
+		}
+		throw new IllegalArgumentException("Unknown element type \"" + type + "\"");
+	}
+
+	/** Open addressing hash map of way id to the range of its vertices in the vertices buffer. As
+	 *  it is cleared after every element, it usually stays very small */
+	private static final class WayVerticesIndex
+	{
+		private long[] keys = new long[16];
+		private boolean[] used = new boolean[16];
+		int[] starts = new int[16];
+		int[] ends = new int[16];
+		private int size;
+
+		void put(long wayId, int start, int end)
+		{
+			if((size + 1) * 2 > keys.length) grow();
+			int slot = slotOf(wayId);
+			if(!used[slot])
+			{
+				used[slot] = true;
+				keys[slot] = wayId;
+				size++;
+			}
+			starts[slot] = start;
+			ends[slot] = end;
+		}
+
+		/** @return the slot of the given way id or -1 if it is not contained */
+		int find(long wayId)
+		{
+			int slot = slotOf(wayId);
+			return used[slot] ? slot : -1;
+		}
+
+		void clear()
+		{
+			if(size == 0) return;
+			Arrays.fill(used, false);
+			size = 0;
+		}
+
+		/** @return the slot in which the given way id is or would be put */
+		private int slotOf(long wayId)
+		{
+			int mask = keys.length - 1;
+			int slot = hash(wayId) & mask;
+			while(used[slot] && keys[slot] != wayId)
+			{
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+
+		private void grow()
+		{
+			long[] oldKeys = keys;
+			boolean[] oldUsed = used;
+			int[] oldStarts = starts;
+			int[] oldEnds = ends;
+			int capacity = oldKeys.length * 2;
+			keys = new long[capacity];
+			used = new boolean[capacity];
+			starts = new int[capacity];
+			ends = new int[capacity];
+			size = 0;
+			for (int i = 0; i < oldKeys.length; ++i)
+			{
+				if(oldUsed[i]) put(oldKeys[i], oldStarts[i], oldEnds[i]);
+			}
+		}
+
+		private static int hash(long key)
+		{
+			int h = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+			return h ^ (h >>> 16);
+		}
+	}
+
+	/** Unmodifiable list of node ids backed by a primitive array. Ids are only boxed on access */
+	private static final class NodeIdList extends AbstractList<Long>
+		implements RandomAccess, Serializable
+	{
+		private final long[] ids;
+
+		NodeIdList(long[] ids)
+		{
+			this.ids = ids;
+		}
+
+		@Override public Long get(int index)
+		{
+			return ids[index];
+		}
+
+		@Override public int size()
+		{
+			return ids.length;
+		}
+	}
+}
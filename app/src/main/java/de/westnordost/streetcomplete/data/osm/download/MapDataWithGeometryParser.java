@@ -0,0 +1,10 @@
+package de.westnordost.streetcomplete.data.osm.download;
+
+import de.westnordost.osmapi.ApiResponseReader;
+
+/** Parses map data that includes the geometry of the elements (Overpass parameter "geom") and
+ *  feeds it into a MapDataWithGeometryHandler */
+public interface MapDataWithGeometryParser extends ApiResponseReader<Void>
+{
+	void setHandler(MapDataWithGeometryHandler handler);
+}
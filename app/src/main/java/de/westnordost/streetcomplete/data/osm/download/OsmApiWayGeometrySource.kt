@@ -9,14 +9,21 @@ import de.westnordost.osmapi.map.data.Node
 import de.westnordost.osmapi.map.data.Relation
 import de.westnordost.osmapi.map.data.Way
 import de.westnordost.osmapi.map.handler.MapDataHandler
+import de.westnordost.streetcomplete.data.upload.UploadInterruptedException
+import de.westnordost.streetcomplete.util.RateLimiter
 import javax.inject.Inject
 
-class OsmApiWayGeometrySource @Inject constructor(private val osmDao: MapDataDao) : WayGeometrySource {
+/** Used while uploading, so the requests count towards the upload rate limit */
+class OsmApiWayGeometrySource @Inject constructor(
+    private val osmDao: MapDataDao,
+    private val rateLimiter: RateLimiter
+) : WayGeometrySource {
 
     override fun getNodePositions(wayId: Long): List<LatLon> {
 	    lateinit var way: Way
 	    val nodes = LongSparseArray<Node>()
 
+	    if (!rateLimiter.acquire()) throw UploadInterruptedException()
         osmDao.getWayComplete(wayId, object : MapDataHandler {
 	        override fun handle(b: BoundingBox) {}
 	        override fun handle(n: Node) { nodes.put(n.id, n) }
@@ -1,9 +1,15 @@
 package de.westnordost.streetcomplete.data.osm.download;
 
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -11,24 +17,24 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Future;
-import java.util.concurrent.FutureTask;
 
 import javax.inject.Inject;
 
-import de.westnordost.countryboundaries.CountryBoundaries;
 import de.westnordost.osmapi.map.data.OsmLatLon;
 import de.westnordost.streetcomplete.data.QuestGroup;
 import de.westnordost.streetcomplete.data.QuestType;
 import de.westnordost.streetcomplete.data.VisibleQuestListener;
+import de.westnordost.streetcomplete.data.meta.CountryBoundariesCache;
 import de.westnordost.streetcomplete.data.osm.Countries;
 import de.westnordost.streetcomplete.data.osm.ElementGeometry;
 import de.westnordost.streetcomplete.data.osm.OsmElementQuestType;
 import de.westnordost.streetcomplete.data.osm.OsmQuest;
+import de.westnordost.streetcomplete.data.osm.SimpleOverpassQuestType;
 import de.westnordost.streetcomplete.data.osm.persist.ElementGeometryDao;
 import de.westnordost.streetcomplete.data.osm.persist.MergedElementDao;
 import de.westnordost.streetcomplete.data.osm.persist.OsmQuestDao;
 import de.westnordost.streetcomplete.data.osm.persist.OsmElementKey;
+import de.westnordost.streetcomplete.data.osm.tql.OverpassQLUtil;
 import de.westnordost.osmapi.map.data.BoundingBox;
 import de.westnordost.osmapi.map.data.Element;
 import de.westnordost.osmapi.map.data.LatLon;
@@ -40,23 +46,29 @@ public class OsmQuestDownload
 
 	private static final String TAG = "QuestDownload";
 
+	private static final long OVERPASS_DATA_LAG_MARGIN = 60*60*1000; // 1 hour in ms
+
 	// injections
+	private final SQLiteOpenHelper dbHelper;
 	private final ElementGeometryDao geometryDB;
 	private final MergedElementDao elementDB;
 	private final OsmQuestDao osmQuestDB;
-	private final Future<CountryBoundaries> countryBoundariesFuture;
+	private final CountryBoundariesCache countryBoundaries;
+	private final OverpassMapDataDao overpassServer;
 
 	// listener
 	private VisibleQuestListener questListener;
 
-	@Inject public OsmQuestDownload(
+	@Inject public OsmQuestDownload(SQLiteOpenHelper dbHelper,
 			ElementGeometryDao geometryDB, MergedElementDao elementDB, OsmQuestDao osmQuestDB,
-			FutureTask<CountryBoundaries> countryBoundariesFuture)
+			CountryBoundariesCache countryBoundaries, OverpassMapDataDao overpassServer)
 	{
+		this.dbHelper = dbHelper;
 		this.geometryDB = geometryDB;
 		this.elementDB = elementDB;
 		this.osmQuestDB = osmQuestDB;
-		this.countryBoundariesFuture = countryBoundariesFuture;
+		this.countryBoundaries = countryBoundaries;
+		this.overpassServer = overpassServer;
 	}
 
 	public void setQuestListener(VisibleQuestListener listener)
@@ -64,8 +76,8 @@ public class OsmQuestDownload
 		this.questListener = listener;
 	}
 
-	public boolean download(final OsmElementQuestType questType, BoundingBox bbox,
-							final Set<LatLon> blacklistedPositions)
+	public boolean download(OsmElementQuestType questType, BoundingBox bbox,
+							Set<LatLon> blacklistedPositions)
 	{
 		if(!isQuestTypeEnabledForBoundingBox(questType, bbox))
 		{
@@ -75,78 +87,290 @@ public class OsmQuestDownload
 		}
 		Log.i(TAG, getQuestTypeName(questType) + ": Starting");
 
-		final ArrayList<ElementGeometryDao.Row> geometryRows = new ArrayList<>();
-		final Map<OsmElementKey,Element> elements = new HashMap<>();
-		final ArrayList<OsmQuest> quests = new ArrayList<>();
-		final Map<OsmElementKey, Long> previousQuests = getPreviousQuestsIdsByElementKey(questType, bbox);
+		long time = System.currentTimeMillis();
+		QuestTypeDownload download = new QuestTypeDownload(questType, bbox,
+			truncateTo5Decimals(blacklistedPositions));
+		if(!questType.download(bbox, download)) return false;
 
-		final HashSet<LatLon> truncatedBlacklistedPositions = new HashSet<>();
-		for (LatLon blacklistedPosition : blacklistedPositions)
+		save(Collections.singletonList(download), time);
+		return true;
+	}
+
+	/** Downloads the data for all the given quest types in one single Overpass query and
+	 *  dispatches each received element to every quest type whose tag filter matches it.
+	 *
+	 *  @return whether the download was successful. If not, none of the quest types has been
+	 *          downloaded */
+	public boolean download(List<SimpleOverpassQuestType> questTypes, BoundingBox bbox,
+							Set<LatLon> blacklistedPositions)
+	{
+		Set<LatLon> truncatedBlacklistedPositions = truncateTo5Decimals(blacklistedPositions);
+
+		StringBuilder query = new StringBuilder(OverpassQLUtil.getGlobalOverpassBBox(bbox));
+		List<QuestTypeDownload> downloads = new ArrayList<>(questTypes.size());
+		for (SimpleOverpassQuestType questType : questTypes)
 		{
-			truncatedBlacklistedPositions.add(truncateTo5Decimals(blacklistedPosition));
+			if(!isQuestTypeEnabledForBoundingBox(questType, bbox))
+			{
+				Log.i(TAG, getQuestTypeName(questType) + ": " +
+					"Skipped because it is disabled for this country");
+				continue;
+			}
+			downloads.add(new QuestTypeDownload(questType, bbox, truncatedBlacklistedPositions));
+			// each statement overwrites the default set, so each one is printed separately
+			query.append(questType.getFilter().toOverpassQLString(null));
+			query.append(OverpassQLUtil.getQuestPrintStatement());
 		}
+		if(downloads.isEmpty()) return true;
+
+		Log.i(TAG, getQuestTypeNames(downloads) + ": Starting");
 
 		long time = System.currentTimeMillis();
-		boolean success = questType.download(bbox, (element, geometry) ->
+		boolean success = overpassServer.getAndHandleQuota(query.toString(), (element, geometry) ->
 		{
-			if(mayCreateQuestFrom(questType, element, geometry, truncatedBlacklistedPositions))
+			for (QuestTypeDownload download : downloads)
 			{
-				Element.Type elementType = element.getType();
-				long elementId = element.getId();
+				SimpleOverpassQuestType questType = (SimpleOverpassQuestType) download.questType;
+				if(questType.getFilter().matches(element))
+				{
+					download.handle(element, geometry);
+				}
+			}
+		});
+		if(!success) return false;
 
-				OsmQuest quest = new OsmQuest(questType, elementType, elementId, geometry);
+		save(downloads, time);
+		return true;
+	}
 
-				geometryRows.add(new ElementGeometryDao.Row(
-						elementType, elementId, quest.getGeometry()));
-				quests.add(quest);
-				OsmElementKey elementKey = new OsmElementKey(elementType, elementId);
-				elements.put(elementKey, element);
-				previousQuests.remove(elementKey);
+	/** Same as download(List, BoundingBox, Set), only that instead of downloading all the elements
+	 *  again, only the ids of the elements that currently match any of the quest types and the
+	 *  elements that have been modified since the given time are downloaded. So, only for those,
+	 *  quests are created anew or removed. The quests of elements that did not change stay as
+	 *  they are, only their last update is set to now so that they are not deleted as old.
+	 *
+	 *  Note that the position of notes is not taken into account for unchanged elements and that
+	 *  ways and relations are only considered as modified if they themselves have been modified,
+	 *  not if only their nodes moved. So, this should only be used if the last complete download
+	 *  was not too long ago.
+	 *
+	 *  @param since time of the last download of all of the given quest types in this area
+	 *  @return whether the download was successful. If not, none of the quest types has been
+	 *          refreshed */
+	public boolean refresh(List<SimpleOverpassQuestType> questTypes, BoundingBox bbox,
+						   Set<LatLon> blacklistedPositions, long since)
+	{
+		Set<LatLon> truncatedBlacklistedPositions = truncateTo5Decimals(blacklistedPositions);
+
+		StringBuilder union = new StringBuilder("(");
+		List<QuestTypeDownload> downloads = new ArrayList<>(questTypes.size());
+		for (SimpleOverpassQuestType questType : questTypes)
+		{
+			if(!isQuestTypeEnabledForBoundingBox(questType, bbox))
+			{
+				Log.i(TAG, getQuestTypeName(questType) + ": " +
+					"Skipped because it is disabled for this country");
+				continue;
+			}
+			downloads.add(new QuestTypeDownload(questType, bbox, truncatedBlacklistedPositions));
+			union.append(questType.getFilter().toOverpassQLString(null));
+		}
+		union.append(");");
+		if(downloads.isEmpty()) return true;
+
+		Log.i(TAG, getQuestTypeNames(downloads) + ": Starting refresh");
+
+		long time = System.currentTimeMillis();
+		String bboxSetting = OverpassQLUtil.getGlobalOverpassBBox(bbox);
+
+		Set<OsmElementKey> currentElements = new HashSet<>();
+		boolean success = overpassServer.getElementKeysAndHandleQuota(
+				bboxSetting + union + "out ids;", currentElements::add);
+		if(!success) return false;
+
+		// the data of Overpass lags behind a few minutes and the clocks may not be in sync
+		long changedSince = since - OVERPASS_DATA_LAG_MARGIN;
+		Set<OsmElementKey> changedElements = new HashSet<>();
+		success = overpassServer.getAndHandleQuota(
+				bboxSetting + union + OverpassQLUtil.getChangedSinceStatement(changedSince) +
+				OverpassQLUtil.getQuestPrintStatement(),
+				(element, geometry) ->
+		{
+			changedElements.add(new OsmElementKey(element.getType(), element.getId()));
+			for (QuestTypeDownload download : downloads)
+			{
+				SimpleOverpassQuestType questType = (SimpleOverpassQuestType) download.questType;
+				if(questType.getFilter().matches(element))
+				{
+					download.handle(element, geometry);
+				}
 			}
 		});
 		if(!success) return false;
 
-		// geometry and elements must be put into DB first because quests have foreign keys on it
-		geometryDB.putAll(geometryRows);
-		elementDB.putAll(elements.values());
+		for (QuestTypeDownload download : downloads)
+		{
+			download.keepUnchanged(currentElements, changedElements);
+		}
+
+		Log.i(TAG, getQuestTypeNames(downloads) + ": " + changedElements.size() + " of " +
+			currentElements.size() + " elements changed");
+
+		save(downloads, time);
+		return true;
+	}
 
-		int newQuestsByQuestType = osmQuestDB.addAll(quests);
+	/** Persists the results of the given quest type downloads in one transaction and informs the
+	 *  listener about them afterwards */
+	private void save(List<QuestTypeDownload> downloads, long startTime)
+	{
+		SQLiteDatabase db = dbHelper.getWritableDatabase();
+		db.beginTransaction();
+		try
+		{
+			for (QuestTypeDownload download : downloads)
+			{
+				download.write();
+			}
+			db.setTransactionSuccessful();
+		}
+		finally
+		{
+			db.endTransaction();
+		}
 
-		if(questListener != null)
+		for (QuestTypeDownload download : downloads)
 		{
-			Iterator<OsmQuest> it = quests.iterator();
+			download.dispatchAndLog(startTime);
+		}
+	}
+
+	/** Collects the quests found for one quest type in the given bbox and persists them */
+	private class QuestTypeDownload implements MapDataWithGeometryHandler
+	{
+		private final OsmElementQuestType questType;
+		private final Set<LatLon> truncatedBlacklistedPositions;
+
+		private final ArrayList<ElementGeometryDao.Row> geometryRows = new ArrayList<>();
+		private final Map<OsmElementKey,Element> elements = new HashMap<>();
+		private final ArrayList<OsmQuest> quests = new ArrayList<>();
+		private final Map<OsmElementKey, Long> previousQuests;
+		// quests that already existed and are still valid are not inserted again
+		private final List<Long> keptQuestIds = new ArrayList<>();
+
+		private int newQuestsCount;
+		// elements and geometries that were already stored unchanged are not written again
+		private int writtenGeometriesCount;
+		private int writtenElementsCount;
+
+		QuestTypeDownload(OsmElementQuestType questType, BoundingBox bbox,
+						  Set<LatLon> truncatedBlacklistedPositions)
+		{
+			this.questType = questType;
+			this.truncatedBlacklistedPositions = truncatedBlacklistedPositions;
+			this.previousQuests = getPreviousQuestsIdsByElementKey(questType, bbox);
+		}
+
+		@Override public void handle(@NonNull Element element, @Nullable ElementGeometry geometry)
+		{
+			OsmElementKey elementKey = new OsmElementKey(element.getType(), element.getId());
+			// in a batched query, an element may be printed once for each statement that found it
+			if(elements.containsKey(elementKey)) return;
+
+			if(mayCreateQuestFrom(questType, element, geometry, truncatedBlacklistedPositions))
+			{
+				OsmQuest quest = new OsmQuest(questType, element.getType(), element.getId(), geometry);
+
+				geometryRows.add(new ElementGeometryDao.Row(
+						element.getType(), element.getId(), quest.getGeometry()));
+				quests.add(quest);
+				elements.put(elementKey, element);
+				Long previousQuestId = previousQuests.remove(elementKey);
+				if(previousQuestId != null) keptQuestIds.add(previousQuestId);
+			}
+		}
+
+		/** Do not remove the quests of the elements that still exist and have not been changed.
+		 *  Only relevant when refreshing, as then only the changed elements are handled */
+		void keepUnchanged(Set<OsmElementKey> currentElements, Set<OsmElementKey> changedElements)
+		{
+			Iterator<Map.Entry<OsmElementKey, Long>> it = previousQuests.entrySet().iterator();
 			while(it.hasNext())
 			{
-				// it is null if this quest is already in the DB, so don't call onQuestCreated
-				if(it.next().getId() == null) it.remove();
+				Map.Entry<OsmElementKey, Long> entry = it.next();
+				OsmElementKey key = entry.getKey();
+				if(currentElements.contains(key) && !changedElements.contains(key))
+				{
+					keptQuestIds.add(entry.getValue());
+					it.remove();
+				}
 			}
-			if(!quests.isEmpty()) questListener.onQuestsCreated(quests, QuestGroup.OSM);
 		}
 
-		if(!previousQuests.isEmpty())
+		void write()
+		{
+			// geometry and elements must be put into DB first because quests have foreign keys on it
+			writtenGeometriesCount = geometryDB.putAll(geometryRows);
+			writtenElementsCount = elementDB.putAll(elements.values());
+
+			newQuestsCount = osmQuestDB.addAll(quests);
+			/* the kept quests are not written again, so their last update must be set explicitly.
+			   Otherwise, they would be deleted as old unsolved quests at some point and, if only
+			   refreshing, never be created again as long as their element does not change */
+			if(!keptQuestIds.isEmpty())
+			{
+				osmQuestDB.touchAllNew(keptQuestIds);
+			}
+
+			if(!previousQuests.isEmpty())
+			{
+				osmQuestDB.deleteAll(previousQuests.values());
+			}
+		}
+
+		void dispatchAndLog(long startTime)
 		{
 			if(questListener != null)
 			{
-				questListener.onQuestsRemoved(previousQuests.values(), QuestGroup.OSM);
+				Iterator<OsmQuest> it = quests.iterator();
+				while(it.hasNext())
+				{
+					// it is null if this quest is already in the DB, so don't call onQuestCreated
+					if(it.next().getId() == null) it.remove();
+				}
+				if(!quests.isEmpty()) questListener.onQuestsCreated(quests, QuestGroup.OSM);
+
+				if(!previousQuests.isEmpty())
+				{
+					questListener.onQuestsRemoved(previousQuests.values(), QuestGroup.OSM);
+				}
 			}
 
-			osmQuestDB.deleteAll(previousQuests.values());
+			int obsoleteAmount = previousQuests.size();
+			Log.i(TAG, getQuestTypeName(questType) + ": " +
+					"Added " + newQuestsCount + " new and " +
+					"removed " + obsoleteAmount + " already resolved quests." +
+					" (Total: " + quests.size() + ")" +
+					" Wrote " + writtenElementsCount + " of " + elements.size() + " elements and " +
+					writtenGeometriesCount + " of " + geometryRows.size() + " geometries" +
+					" in " + ((System.currentTimeMillis() - startTime)/1000) + "s");
 		}
+	}
 
-		// note: this could be done after ALL osm quest types have been downloaded if this
-		// turns out to be slow if done for every quest type
+	/** Deletes the elements and geometries that are not referenced by any quest anymore. This is
+	 *  not done after every quest type but once after all quest types of a download have been
+	 *  downloaded, because each sweep goes through the whole element and geometry tables */
+	public void deleteUnreferenced(Collection<? extends OsmElementQuestType> questTypes)
+	{
+		long time = System.currentTimeMillis();
 		geometryDB.deleteUnreferenced();
 		elementDB.deleteUnreferenced();
-		questType.cleanMetadata();
-
-		int obsoleteAmount = previousQuests.size();
-		Log.i(TAG, getQuestTypeName(questType) + ": " +
-				"Added " + newQuestsByQuestType + " new and " +
-				"removed " + obsoleteAmount + " already resolved quests." +
-				" (Total: " + quests.size() + ")" +
-				" in " + ((System.currentTimeMillis() - time)/1000) + "s");
-
-		return true;
+		// must be after unreferenced elements have been deleted
+		for (OsmElementQuestType questType : questTypes)
+		{
+			questType.cleanMetadata();
+		}
+		Log.i(TAG, "Deleted unreferenced elements in " + (System.currentTimeMillis() - time) + "ms");
 	}
 
 	private Map<OsmElementKey, Long> getPreviousQuestsIdsByElementKey(
@@ -168,17 +392,13 @@ public class OsmQuestDownload
 
 		if(countries.isAllExcept())
 		{
-			Set<String> containingCountries = getCountryBoundaries().getContainingIds(
-				bbox.getMinLongitude(), bbox.getMinLatitude(),
-				bbox.getMaxLongitude(), bbox.getMaxLatitude());
+			Set<String> containingCountries = countryBoundaries.getContainingIds(bbox);
 
 			return !containsAnyOf(containingCountries, countries.getExceptions());
 		}
 		else
 		{
-			Set<String> intersectingCountries = getCountryBoundaries().getIntersectingIds(
-				bbox.getMinLongitude(), bbox.getMinLatitude(),
-				bbox.getMaxLongitude(), bbox.getMaxLatitude());
+			Set<String> intersectingCountries = countryBoundaries.getIntersectingIds(bbox);
 
 			return containsAnyOf(intersectingCountries, countries.getExceptions());
 		}
@@ -227,7 +447,7 @@ public class OsmQuestDownload
 		{
 			LatLon p = geometry.center;
 
-			if(getCountryBoundaries().isInAny(p.getLongitude(), p.getLatitude(), countries.getExceptions())
+			if(countryBoundaries.isInAny(p.getLongitude(), p.getLatitude(), countries.getExceptions())
 				== countries.isAllExcept())
 			{
 				Log.v(TAG, getQuestTypeName(questType) + ": Not adding a quest at " +
@@ -240,6 +460,16 @@ public class OsmQuestDownload
 		return true;
 	}
 
+	private static Set<LatLon> truncateTo5Decimals(Set<LatLon> positions)
+	{
+		Set<LatLon> result = new HashSet<>(positions.size());
+		for (LatLon position : positions)
+		{
+			result.add(truncateTo5Decimals(position));
+		}
+		return result;
+	}
+
 	// the resulting precision is about ~1 meter (see #1089)
 	private static LatLon truncateTo5Decimals(LatLon latLon) {
 		return new OsmLatLon(
@@ -251,18 +481,6 @@ public class OsmQuestDownload
 		return (double)((int)(val * 1e5))/1e5;
 	}
 
-	private CountryBoundaries getCountryBoundaries()
-	{
-		try
-		{
-			return countryBoundariesFuture.get();
-		}
-		catch (Exception e)
-		{
-			throw new RuntimeException(e);
-		}
-	}
-
 	/** @return true if any item of second collection b is contained in first collection a */
 	private static boolean containsAnyOf(Collection a, Collection b)
 	{
@@ -283,6 +501,17 @@ public class OsmQuestDownload
 		return q.getClass().getSimpleName();
 	}
 
+	private static String getQuestTypeNames(List<QuestTypeDownload> downloads)
+	{
+		StringBuilder result = new StringBuilder();
+		for (QuestTypeDownload download : downloads)
+		{
+			if(result.length() > 0) result.append(", ");
+			result.append(getQuestTypeName(download.questType));
+		}
+		return result.toString();
+	}
+
 	private static String getPosAsLogString(LatLon pos)
 	{
 		return pos.getLatitude() + ", " + pos.getLongitude();
@@ -0,0 +1,54 @@
+package de.westnordost.streetcomplete.data.osm.download;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import de.westnordost.osmapi.ApiResponseReader;
+import de.westnordost.osmapi.common.Handler;
+import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.streetcomplete.data.osm.persist.OsmElementKey;
+
+/** Parses the type and id of elements printed by Overpass in the CSV output format without
+ *  header line, i.e. as requested by [out:csv(::type,::id;false)] */
+public class OverpassElementKeysParser implements ApiResponseReader<Void>
+{
+	public static final String OUTPUT_FORMAT = "[out:csv(::type,::id;false)]";
+
+	private final Handler<OsmElementKey> handler;
+
+	public OverpassElementKeysParser(Handler<OsmElementKey> handler)
+	{
+		this.handler = handler;
+	}
+
+	@Override public Void parse(InputStream in) throws Exception
+	{
+		try(BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8")))
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				if(line.isEmpty()) continue;
+				int tab = line.indexOf('\t');
+				if(tab == -1) throw new IllegalArgumentException("Unexpected line \"" + line + "\"");
+
+				Element.Type type = parseElementType(line.substring(0, tab));
+				long id = Long.parseLong(line.substring(tab + 1).trim());
+				handler.handle(new OsmElementKey(type, id));
+			}
+		}
+		return null;
+	}
+
+	private static Element.Type parseElementType(String type)
+	{
+		switch (type)
+		{
+			case "node":     return Element.Type.NODE;
+			case "way":      return Element.Type.WAY;
+			case "relation": return Element.Type.RELATION;
+		}
+		throw new IllegalArgumentException("Unknown element type \"" + type + "\"");
+	}
+}
@@ -11,19 +11,23 @@ import javax.inject.Inject;
 import javax.inject.Provider;
 
 import de.westnordost.osmapi.ApiRequestWriter;
+import de.westnordost.osmapi.ApiResponseReader;
 import de.westnordost.osmapi.OsmConnection;
 import de.westnordost.osmapi.common.errors.OsmApiException;
+import de.westnordost.osmapi.common.Handler;
 import de.westnordost.osmapi.common.errors.OsmBadUserInputException;
+import de.westnordost.streetcomplete.data.osm.persist.OsmElementKey;
 
-/** Get map data from overpass api */
+/** Get map data from overpass api. Several queries may be made concurrently from different
+ *  threads, up to as many as the Overpass server grants slots for (see getStatus) */
 public class OverpassMapDataDao
 {
 	private static final String TAG = "OverpassMapDataDao";
 
 	private final OsmConnection osm;
-	private final Provider<OverpassMapDataParser> parserProvider;
+	private final Provider<MapDataWithGeometryParser> parserProvider;
 
-	@Inject public OverpassMapDataDao(OsmConnection osm, Provider<OverpassMapDataParser> parserProvider)
+	@Inject public OverpassMapDataDao(OsmConnection osm, Provider<MapDataWithGeometryParser> parserProvider)
 	{
 		this.osm = osm;
 		this.parserProvider = parserProvider;
@@ -38,10 +42,31 @@ public class OverpassMapDataDao
 	 * @throws OsmTooManyRequestsException if the user is over his request quota. See getStatus, killMyQueries
 	 * @throws OsmBadUserInputException if there is an error if the query
 	 */
-	public synchronized void get(final String query, MapDataWithGeometryHandler handler)
+	public void get(final String query, MapDataWithGeometryHandler handler)
 	{
-		OverpassMapDataParser parser = parserProvider.get();
+		MapDataWithGeometryParser parser = parserProvider.get();
 		parser.setHandler(handler);
+		makeRequest(query, parser);
+	}
+
+	/**
+	 * Feeds the type and id of each element in the result to the given handler. This is much less
+	 * data to transfer than the elements themselves.
+	 *
+	 * @param query Overpass QL query string that prints the elements with "out ids;". It must not
+	 *              contain an output format setting, the CSV output format is prepended
+	 * @param handler handler that is fed the element keys
+	 *
+	 * @throws OsmTooManyRequestsException if the user is over his request quota. See getStatus, killMyQueries
+	 * @throws OsmBadUserInputException if there is an error if the query
+	 */
+	public void getElementKeys(String query, Handler<OsmElementKey> handler)
+	{
+		makeRequest(OverpassElementKeysParser.OUTPUT_FORMAT + query, new OverpassElementKeysParser(handler));
+	}
+
+	private void makeRequest(final String query, ApiResponseReader<?> reader)
+	{
 		try
 		{
 			ApiRequestWriter writer = new ApiRequestWriter()
@@ -57,7 +82,7 @@ public class OverpassMapDataDao
 					out.write(request.getBytes("UTF-8"));
 				}
 			};
-			osm.makeRequest("interpreter", "POST", false, writer, parser);
+			osm.makeRequest("interpreter", "POST", false, writer, reader);
 		}
 		catch(OsmApiException e)
 		{
@@ -77,11 +102,26 @@ public class OverpassMapDataDao
 	 *
 	 * @throws OsmBadUserInputException if there is an error if the query
 	 */
-	public synchronized boolean getAndHandleQuota(String query, MapDataWithGeometryHandler handler)
+	public boolean getAndHandleQuota(String query, MapDataWithGeometryHandler handler)
+	{
+		return handleQuota(() -> get(query, handler));
+	}
+
+	/** Same as getElementKeys(String, Handler), only that it automatically waits until the
+	 *  app is allowed to do requests again by request quota if it hits the request quota.
+	 *
+	 * @return false if it was interrupted while waiting for the quota to be replenished
+	 */
+	public boolean getElementKeysAndHandleQuota(String query, Handler<OsmElementKey> handler)
+	{
+		return handleQuota(() -> getElementKeys(query, handler));
+	}
+
+	private boolean handleQuota(Runnable request)
 	{
 		try
 		{
-			get(query, handler);
+			request.run();
 		}
 		catch(OsmTooManyRequestsException e)
 		{
@@ -102,10 +142,11 @@ public class OverpassMapDataDao
 				catch (InterruptedException ie)
 				{
 					Log.d(TAG, "Thread interrupted while waiting for Overpass quota to be replenished");
+					Thread.currentThread().interrupt();
 					return false;
 				}
 			}
-			return getAndHandleQuota(query, handler);
+			return handleQuota(request);
 		}
 		return true;
 	}
@@ -11,7 +11,6 @@ import java.util.Locale;
 import java.util.Map;
 
 import de.westnordost.streetcomplete.data.osm.ElementGeometry;
-import de.westnordost.osmapi.ApiResponseReader;
 import de.westnordost.osmapi.common.OsmXmlDateFormat;
 import de.westnordost.osmapi.common.XmlParser;
 import de.westnordost.osmapi.map.MapDataFactory;
@@ -24,7 +23,7 @@ import de.westnordost.osmapi.map.data.RelationMember;
 import de.westnordost.osmapi.map.data.Way;
 
 /** A map data parser that also parses the geometry of elements. (Overpass parameter "geom")*/
-public class OverpassMapDataParser extends XmlParser implements ApiResponseReader<Void>, WayGeometrySource
+public class OverpassMapDataParser extends XmlParser implements MapDataWithGeometryParser, WayGeometrySource
 {
 	private static final String
 			NODE = "node",
@@ -61,7 +60,7 @@ public class OverpassMapDataParser extends XmlParser implements ApiResponseReade
 		this.elementGeometryCreator = new ElementGeometryCreator(this);
 	}
 
-	void setHandler(MapDataWithGeometryHandler handler)
+	@Override public void setHandler(MapDataWithGeometryHandler handler)
 	{
 		this.handler = handler;
 	}
@@ -8,7 +8,7 @@ import de.westnordost.osmapi.OsmConnection;
 public class OverpassOldMapDataDao extends OverpassMapDataDao {
 	private final String date;
 
-	public OverpassOldMapDataDao(OsmConnection osm, Provider<OverpassMapDataParser> parserProvider, String date) {
+	public OverpassOldMapDataDao(OsmConnection osm, Provider<MapDataWithGeometryParser> parserProvider, String date) {
 		super(osm, parserProvider);
 		this.date = date;
 	}
@@ -3,32 +3,56 @@ package de.westnordost.streetcomplete.data.osm.persist;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 
 import de.westnordost.osmapi.map.data.Element;
 
 public abstract class AOsmElementDao<T extends Element>
 {
 	private final SQLiteOpenHelper dbHelper;
+	private final StringDictionary dictionary;
 
-	public AOsmElementDao(SQLiteOpenHelper dbHelper)
+	public AOsmElementDao(SQLiteOpenHelper dbHelper, StringDictionary dictionary)
 	{
 		this.dbHelper = dbHelper;
+		this.dictionary = dictionary;
 	}
 
-	public void putAll(Collection<T> objects)
+	/** Adds or updates the given objects to the database. Objects that are already in the database
+	 *  in the same version are not written again, as an OSM element does not change without its
+	 *  version changing.
+	 *  @return the number of objects that have actually been written */
+	public int putAll(Collection<T> objects)
 	{
 		SQLiteDatabase db = dbHelper.getWritableDatabase();
+		SQLiteStatement countSameVersion = db.compileStatement(
+			"SELECT COUNT(*) FROM " + getTableName() + " WHERE " +
+			getIdColumnName() + " = ? AND " + getVersionColumnName() + " = ?");
 
+		int writtenCount = 0;
 		db.beginTransaction();
+		Set<Integer> usedStringIds = new HashSet<>();
 		for(T object : objects)
 		{
-			executeInsert(object);
+			countSameVersion.bindLong(1, object.getId());
+			countSameVersion.bindLong(2, object.getVersion());
+			boolean isUnchanged = countSameVersion.simpleQueryForLong() > 0;
+			countSameVersion.clearBindings();
+			if(isUnchanged) continue;
+
+			executeInsert(object, usedStringIds);
+			writtenCount++;
 		}
+		dictionary.save(usedStringIds);
 
 		db.setTransactionSuccessful();
 		db.endTransaction();
+		countSameVersion.close();
+		return writtenCount;
 	}
 
 	/* Adds or updates the given object to the database */
@@ -36,7 +60,9 @@ public abstract class AOsmElementDao<T extends Element>
 	{
 		SQLiteDatabase db = dbHelper.getWritableDatabase();
 		db.beginTransaction();
-		executeInsert(object);
+		Set<Integer> usedStringIds = new HashSet<>();
+		executeInsert(object, usedStringIds);
+		dictionary.save(usedStringIds);
 		db.setTransactionSuccessful();
 		db.endTransaction();
 	}
@@ -82,7 +108,10 @@ public abstract class AOsmElementDao<T extends Element>
 
 	protected abstract String getTableName();
 	protected abstract String getIdColumnName();
+	protected abstract String getVersionColumnName();
 
-	protected abstract void executeInsert(T object);
+	/** @param usedStringIds the ids of the dictionary strings the inserted row refers to must be
+	 *                       added to this */
+	protected abstract void executeInsert(T object, Collection<Integer> usedStringIds);
 	protected abstract T createObjectFrom(Cursor cursor);
 }
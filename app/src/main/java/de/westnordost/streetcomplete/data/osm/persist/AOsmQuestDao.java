@@ -6,18 +6,24 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteStatement;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
 import de.westnordost.osmapi.map.data.BoundingBox;
 import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.osmapi.map.data.LatLon;
+import de.westnordost.osmapi.map.data.OsmLatLon;
 import de.westnordost.streetcomplete.data.AQuestDao;
 import de.westnordost.streetcomplete.data.QuestStatus;
+import de.westnordost.streetcomplete.data.QuestType;
+import de.westnordost.streetcomplete.data.QuestTypeIdsDao;
 import de.westnordost.streetcomplete.data.QuestTypeRegistry;
 import de.westnordost.streetcomplete.data.WhereSelectionBuilder;
 import de.westnordost.streetcomplete.data.osm.ElementGeometry;
 import de.westnordost.streetcomplete.data.osm.OsmElementQuestType;
 import de.westnordost.streetcomplete.data.osm.OsmQuest;
+import de.westnordost.streetcomplete.data.osm.OsmQuestMarker;
 import de.westnordost.streetcomplete.data.osm.changes.StringMapChanges;
 import de.westnordost.streetcomplete.util.Serializer;
 
@@ -27,14 +33,16 @@ public abstract class AOsmQuestDao extends AQuestDao<OsmQuest>
 {
 	private final Serializer serializer;
 	private final QuestTypeRegistry questTypeRegistry;
+	private final QuestTypeIdsDao questTypeIds;
 	private final SQLiteStatement add, replace;
 
 	public AOsmQuestDao(SQLiteOpenHelper dbHelper, Serializer serializer,
-								QuestTypeRegistry questTypeRegistry)
+						QuestTypeRegistry questTypeRegistry, QuestTypeIdsDao questTypeIds)
 	{
 		super(dbHelper);
 		this.serializer = serializer;
 		this.questTypeRegistry = questTypeRegistry;
+		this.questTypeIds = questTypeIds;
 		String sql = getTableName() + " ("+
 				Columns.QUEST_ID+","+
 				Columns.QUEST_TYPE+","+
@@ -73,6 +81,53 @@ public abstract class AOsmQuestDao extends AQuestDao<OsmQuest>
 		return getAllThings(getMergedViewName(), null, qb, this::createObjectFrom);
 	}
 
+	/** Same as getAll(BoundingBox, QuestStatus, List), only that just what is necessary to display
+	 *  the quests as markers on the map is read from the database (see OsmQuestMarker) */
+	public List<OsmQuestMarker> getAllMarkers(BoundingBox bbox, QuestStatus status,
+											  List<String> questTypesNames)
+	{
+		WhereSelectionBuilder qb = new WhereSelectionBuilder();
+		addBBox(bbox, qb);
+		addQuestStatus(status, qb);
+		addQuestTypes(questTypesNames, qb);
+
+		// the polylines are only needed for (the few) quest types that have markers at the ends
+		List<String> withMarkersAtEnds = new ArrayList<>();
+		if(questTypesNames != null)
+		{
+			for (String questTypeName : questTypesNames)
+			{
+				QuestType questType = questTypeRegistry.getByName(questTypeName);
+				if(questType instanceof OsmElementQuestType &&
+					((OsmElementQuestType) questType).getHasMarkersAtEnds())
+				{
+					withMarkersAtEnds.add(questTypeName);
+				}
+			}
+		}
+		String polylines = ElementGeometryTable.Columns.GEOMETRY_POLYLINES;
+		if(withMarkersAtEnds.isEmpty())
+		{
+			polylines = "NULL AS " + polylines;
+		}
+		else
+		{
+			WhereSelectionBuilder withPolylines = new WhereSelectionBuilder();
+			addQuestTypes(withMarkersAtEnds, withPolylines);
+			polylines = "CASE WHEN " + withPolylines.getWhere() + " THEN " + polylines +
+				" ELSE NULL END AS " + polylines;
+		}
+
+		String[] cols = {
+			Columns.QUEST_ID,
+			Columns.QUEST_TYPE,
+			ElementGeometryTable.Columns.LATITUDE,
+			ElementGeometryTable.Columns.LONGITUDE,
+			polylines
+		};
+		return getAllThings(getMergedViewName(), cols, qb, this::createMarkerFrom);
+	}
+
 	public List<Long> getAllIds(Element.Type type, long id)
 	{
 		WhereSelectionBuilder qb = new WhereSelectionBuilder();
@@ -91,7 +146,7 @@ public abstract class AOsmQuestDao extends AQuestDao<OsmQuest>
 	{
 		String query = getQuestStatusColumnName() + " = ? AND " +
 				Columns.ELEMENT_TYPE + " = ? AND " + Columns.ELEMENT_ID + " = ?";
-		String[] params = {QuestStatus.REVERT.name(), type.name(), String.valueOf(id)};
+		String[] params = {getQuestStatusValue(QuestStatus.REVERT), type.name(), String.valueOf(id)};
 
 		SQLiteDatabase db = dbHelper.getWritableDatabase();
 		return db.delete(getTableName(), query, params);
@@ -101,7 +156,8 @@ public abstract class AOsmQuestDao extends AQuestDao<OsmQuest>
 	{
 		if(questTypeName != null)
 		{
-			builder.appendAnd(Columns.QUEST_TYPE + " = ?", questTypeName);
+			builder.appendAnd(Columns.QUEST_TYPE + " = ?",
+				String.valueOf(questTypeIds.getId(questTypeName)));
 		}
 	}
 
@@ -115,7 +171,7 @@ public abstract class AOsmQuestDao extends AQuestDao<OsmQuest>
 			{
 				if(first) first = false;
 				else sb.append(",");
-				sb.append("\"").append(questTypeName).append("\"");
+				sb.append(questTypeIds.getId(questTypeName));
 			}
 			builder.appendAnd(Columns.QUEST_TYPE + " IN (" + sb.toString() + ")");
 		}
@@ -142,9 +198,25 @@ public abstract class AOsmQuestDao extends AQuestDao<OsmQuest>
 	@Override protected String getIdColumnName() { return Columns.QUEST_ID; }
 	@Override protected String getLatitudeColumnName() { return ElementGeometryTable.Columns.LATITUDE; }
 	@Override protected String getLongitudeColumnName() { return ElementGeometryTable.Columns.LONGITUDE; }
+	@Override protected String getTileKeyColumnName() { return ElementGeometryTable.Columns.TILE_KEY; }
 	@Override protected String getQuestStatusColumnName() { return Columns.QUEST_STATUS; }
 	@Override protected String getLastChangedColumnName() {	return Columns.LAST_UPDATE; }
 
+	@Override protected String getQuestStatusValue(QuestStatus status)
+	{
+		return String.valueOf(getQuestStatusId(status));
+	}
+
+	private static int getQuestStatusId(QuestStatus status)
+	{
+		return OsmQuestTable.QUEST_STATUSES.indexOf(status);
+	}
+
+	private int getQuestTypeId(OsmQuest quest)
+	{
+		return questTypeIds.getId(quest.getType().getClass().getSimpleName());
+	}
+
 	@Override protected synchronized long executeInsert(OsmQuest quest, boolean replace)
 	{
 		SQLiteStatement stmt = replace ? this.replace : this.add;
@@ -158,8 +230,8 @@ public abstract class AOsmQuestDao extends AQuestDao<OsmQuest>
 			stmt.bindNull(1);
 		}
 
-		stmt.bindString(2, quest.getType().getClass().getSimpleName());
-		stmt.bindString(3, quest.getStatus().name());
+		stmt.bindLong(2, getQuestTypeId(quest));
+		stmt.bindLong(3, getQuestStatusId(quest.getStatus()));
 		if(quest.getChanges() != null)
 		{
 			stmt.bindBlob(4, serializer.toBytes(quest.getChanges()));
@@ -184,7 +256,7 @@ public abstract class AOsmQuestDao extends AQuestDao<OsmQuest>
 	@Override protected ContentValues createFinalContentValuesFrom(OsmQuest quest)
 	{
 		ContentValues values = new ContentValues();
-		values.put(Columns.QUEST_TYPE, quest.getType().getClass().getSimpleName());
+		values.put(Columns.QUEST_TYPE, getQuestTypeId(quest));
 		values.put(Columns.ELEMENT_ID, quest.getElementId());
 		values.put(Columns.ELEMENT_TYPE, quest.getElementType().name());
 		return values;
@@ -193,7 +265,7 @@ public abstract class AOsmQuestDao extends AQuestDao<OsmQuest>
 	@Override protected ContentValues createNonFinalContentValuesFrom(OsmQuest quest)
 	{
 		ContentValues values = new ContentValues();
-		values.put(Columns.QUEST_STATUS, quest.getStatus().name());
+		values.put(Columns.QUEST_STATUS, getQuestStatusId(quest.getStatus()));
 		values.put(Columns.LAST_UPDATE, new Date().getTime());
 
 		StringMapChanges changes = quest.getChanges();
@@ -203,6 +275,37 @@ public abstract class AOsmQuestDao extends AQuestDao<OsmQuest>
 		return values;
 	}
 
+	private OsmQuestMarker createMarkerFrom(Cursor cursor)
+	{
+		int colQuestId = cursor.getColumnIndexOrThrow(Columns.QUEST_ID),
+			colQuestType = cursor.getColumnIndexOrThrow(Columns.QUEST_TYPE),
+			colCenterLat = cursor.getColumnIndexOrThrow(ElementGeometryTable.Columns.LATITUDE),
+			colCenterLon = cursor.getColumnIndexOrThrow(ElementGeometryTable.Columns.LONGITUDE),
+			colPolylines = cursor.getColumnIndexOrThrow(ElementGeometryTable.Columns.GEOMETRY_POLYLINES);
+
+		long questId = cursor.getLong(colQuestId);
+		OsmElementQuestType questType = getQuestType(cursor.getInt(colQuestType));
+		LatLon center = new OsmLatLon(cursor.getDouble(colCenterLat), cursor.getDouble(colCenterLon));
+		List<List<LatLon>> polylines = null;
+		if(!cursor.isNull(colPolylines))
+		{
+			polylines = LatLonListsCodec.decode(cursor.getBlob(colPolylines));
+		}
+		return new OsmQuestMarker(questId, questType, center, polylines);
+	}
+
+	private OsmElementQuestType getQuestType(int questTypeId)
+	{
+		String questTypeName = questTypeIds.getName(questTypeId);
+		OsmElementQuestType questType = questTypeName != null
+			? (OsmElementQuestType) questTypeRegistry.getByName(questTypeName)
+			: null;
+		if(questType == null) {
+			throw new IllegalArgumentException("The quest type " + questTypeName + " (" + questTypeId + ") does not exist!");
+		}
+		return questType;
+	}
+
 	@Override protected OsmQuest createObjectFrom(Cursor cursor)
 	{
 		int colQuestId = cursor.getColumnIndexOrThrow(Columns.QUEST_ID),
@@ -218,13 +321,9 @@ public abstract class AOsmQuestDao extends AQuestDao<OsmQuest>
 		long elementId = cursor.getLong(colElementId);
 
 		Element.Type elementType = Element.Type.valueOf(cursor.getString(colElementType));
-		QuestStatus questStatus = QuestStatus.valueOf(cursor.getString(colQuestStatus));
+		QuestStatus questStatus = OsmQuestTable.QUEST_STATUSES.get(cursor.getInt(colQuestStatus));
 
-        String questTypeName = cursor.getString(colQuestType);
-		OsmElementQuestType questType = (OsmElementQuestType) questTypeRegistry.getByName(questTypeName);
-        if(questType == null) {
-            throw new IllegalArgumentException("The quest type " + questTypeName + " does not exist!");
-        }
+		OsmElementQuestType questType = getQuestType(cursor.getInt(colQuestType));
 
 		StringMapChanges changes = null;
 		if(!cursor.isNull(colChanges))
@@ -237,7 +336,7 @@ public abstract class AOsmQuestDao extends AQuestDao<OsmQuest>
 			changesSource = cursor.getString(colChangesSource);
 		}
 
-		ElementGeometry geometry = ElementGeometryDao.createObjectFrom(serializer, cursor);
+		ElementGeometry geometry = ElementGeometryDao.createObjectFrom(cursor);
 
 		Date lastChange = new Date(cursor.getLong(colLastChange));
 
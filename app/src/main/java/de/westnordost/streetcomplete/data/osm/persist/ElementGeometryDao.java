@@ -6,14 +6,13 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteStatement;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
 import javax.inject.Inject;
 
 import de.westnordost.streetcomplete.data.osm.ElementGeometry;
-import de.westnordost.streetcomplete.util.Serializer;
+import de.westnordost.streetcomplete.util.TileKey;
 import de.westnordost.osmapi.map.data.Element;
 import de.westnordost.osmapi.map.data.LatLon;
 import de.westnordost.osmapi.map.data.OsmLatLon;
@@ -21,9 +20,8 @@ import de.westnordost.osmapi.map.data.OsmLatLon;
 public class ElementGeometryDao
 {
 	private final SQLiteOpenHelper dbHelper;
-	private final Serializer serializer;
 
-	private final SQLiteStatement insert;
+	private final SQLiteStatement insert, countSame;
 
 	public static class Row
 	{
@@ -39,10 +37,9 @@ public class ElementGeometryDao
 		public ElementGeometry geometry;
 	}
 
-	@Inject public ElementGeometryDao(SQLiteOpenHelper dbHelper, Serializer serializer)
+	@Inject public ElementGeometryDao(SQLiteOpenHelper dbHelper)
 	{
 		this.dbHelper = dbHelper;
-		this.serializer = serializer;
 
 		String sql = "INSERT OR REPLACE INTO " + ElementGeometryTable.NAME + " ("+
 				ElementGeometryTable.Columns.ELEMENT_TYPE+","+
@@ -50,25 +47,42 @@ public class ElementGeometryDao
 				ElementGeometryTable.Columns.GEOMETRY_POLYGONS+","+
 				ElementGeometryTable.Columns.GEOMETRY_POLYLINES+","+
 				ElementGeometryTable.Columns.LATITUDE+","+
-				ElementGeometryTable.Columns.LONGITUDE+
-				") values (?,?,?,?,?,?);";
+				ElementGeometryTable.Columns.LONGITUDE+","+
+				ElementGeometryTable.Columns.TILE_KEY+
+				") values (?,?,?,?,?,?,?);";
 		SQLiteDatabase db = dbHelper.getWritableDatabase();
 		insert = db.compileStatement(sql);
+
+		// the geometry of a way or relation can change without its version changing (when its
+		// nodes are moved), so the geometry itself is compared
+		countSame = db.compileStatement("SELECT COUNT(*) FROM " + ElementGeometryTable.NAME +
+				" WHERE " +
+				ElementGeometryTable.Columns.ELEMENT_TYPE + " = ? AND " +
+				ElementGeometryTable.Columns.ELEMENT_ID + " = ? AND " +
+				ElementGeometryTable.Columns.GEOMETRY_POLYGONS + " IS ? AND " +
+				ElementGeometryTable.Columns.GEOMETRY_POLYLINES + " IS ? AND " +
+				ElementGeometryTable.Columns.LATITUDE + " = ? AND " +
+				ElementGeometryTable.Columns.LONGITUDE + " = ?;");
 	}
 
-	public void putAll(Collection<Row> rows)
+	/** Adds or updates the given element geometries. Geometries that are already in the database
+	 *  exactly like this are not written again.
+	 *  @return the number of geometries that have actually been written */
+	public int putAll(Collection<Row> rows)
 	{
 		SQLiteDatabase db = dbHelper.getWritableDatabase();
 
+		int writtenCount = 0;
 		db.beginTransaction();
 
 		for(Row row : rows)
 		{
-			executeInsert(row.elementType, row.elementId, row.geometry);
+			if(executeInsertIfChanged(row.elementType, row.elementId, row.geometry)) writtenCount++;
 		}
 
 		db.setTransactionSuccessful();
 		db.endTransaction();
+		return writtenCount;
 	}
 
 	/** adds or updates (overwrites) an element geometry*/
@@ -76,28 +90,47 @@ public class ElementGeometryDao
 	{
 		SQLiteDatabase db = dbHelper.getWritableDatabase();
 		db.beginTransaction();
-		executeInsert(type, id, geometry);
+		executeInsertIfChanged(type, id, geometry);
 		db.setTransactionSuccessful();
 		db.endTransaction();
 	}
 
-	private void executeInsert(Element.Type type, long id, ElementGeometry geometry)
+	/** @return whether the geometry was written, i.e. whether it was not in the database like
+	 *          this already */
+	private boolean executeInsertIfChanged(Element.Type type, long id, ElementGeometry geometry)
 	{
+		byte[] polygons = geometry.polygons != null ? LatLonListsCodec.encode(geometry.polygons) : null;
+		byte[] polylines = geometry.polylines != null ? LatLonListsCodec.encode(geometry.polylines) : null;
+		double latitude = geometry.center.getLatitude();
+		double longitude = geometry.center.getLongitude();
+
+		countSame.bindString(1, type.name());
+		countSame.bindLong(2, id);
+		bindBlobOrNull(countSame, 3, polygons);
+		bindBlobOrNull(countSame, 4, polylines);
+		countSame.bindDouble(5, latitude);
+		countSame.bindDouble(6, longitude);
+		boolean isUnchanged = countSame.simpleQueryForLong() > 0;
+		countSame.clearBindings();
+		if(isUnchanged) return false;
+
 		insert.bindString(1, type.name());
 		insert.bindLong(2, id);
-		if (geometry.polygons != null)
-			insert.bindBlob(3, serializer.toBytes(geometry.polygons));
-		else
-			insert.bindNull(3);
-		if (geometry.polylines != null)
-			insert.bindBlob(4, serializer.toBytes(geometry.polylines));
-		else
-			insert.bindNull(4);
-		insert.bindDouble(5, geometry.center.getLatitude());
-		insert.bindDouble(6, geometry.center.getLongitude());
+		bindBlobOrNull(insert, 3, polygons);
+		bindBlobOrNull(insert, 4, polylines);
+		insert.bindDouble(5, latitude);
+		insert.bindDouble(6, longitude);
+		insert.bindLong(7, TileKey.of(latitude, longitude));
 
 		insert.executeInsert();
 		insert.clearBindings();
+		return true;
+	}
+
+	private static void bindBlobOrNull(SQLiteStatement stmt, int index, byte[] blob)
+	{
+		if (blob != null) stmt.bindBlob(index, blob);
+		else              stmt.bindNull(index);
 	}
 
 	public ElementGeometry get(Element.Type type, long id)
@@ -111,7 +144,7 @@ public class ElementGeometryDao
 				null, null, null, "1"))
 		{
 			if (!cursor.moveToFirst()) return null;
-			return createObjectFrom(serializer, cursor);
+			return createObjectFrom(cursor);
 		}
 	}
 
@@ -124,7 +157,8 @@ public class ElementGeometryDao
 		db.delete(ElementGeometryTable.NAME, where, args);
 	}
 
-	static ElementGeometry createObjectFrom(Serializer serializer, Cursor cursor)
+	/** The polygons and polylines of the returned geometry are only decoded when accessed */
+	static ElementGeometry createObjectFrom(Cursor cursor)
 	{
 		int colGeometryPolygons = cursor.getColumnIndexOrThrow(ElementGeometryTable.Columns.GEOMETRY_POLYGONS),
 			colGeometryPolylines = cursor.getColumnIndexOrThrow(ElementGeometryTable.Columns.GEOMETRY_POLYLINES),
@@ -135,11 +169,11 @@ public class ElementGeometryDao
 
 		if(!cursor.isNull(colGeometryPolygons))
 		{
-			polygons = serializer.toObject(cursor.getBlob(colGeometryPolygons), ArrayList.class);
+			polygons = LatLonListsCodec.decodeLazily(cursor.getBlob(colGeometryPolygons));
 		}
 		if(!cursor.isNull(colGeometryPolylines))
 		{
-			polylines = serializer.toObject(cursor.getBlob(colGeometryPolylines), ArrayList.class);
+			polylines = LatLonListsCodec.decodeLazily(cursor.getBlob(colGeometryPolylines));
 		}
 		LatLon center = new OsmLatLon(cursor.getDouble(colCenterLat), cursor.getDouble(colCenterLon));
 		return new ElementGeometry(polylines, polygons, center);
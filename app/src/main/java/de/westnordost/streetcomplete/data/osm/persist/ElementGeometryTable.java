@@ -3,6 +3,7 @@ package de.westnordost.streetcomplete.data.osm.persist;
 public class ElementGeometryTable
 {
 	public static final String NAME = "elements_geometry";
+	public static final String TILE_KEY_INDEX = "elements_geometry_tile_key_index";
 
 	public static class Columns
 	{
@@ -12,6 +13,8 @@ public class ElementGeometryTable
 				GEOMETRY_POLYGONS = "geometry_polygons",
 				GEOMETRY_POLYLINES = "geometry_polylines",
 				LATITUDE = "latitude",
-				LONGITUDE = "longitude";
+				LONGITUDE = "longitude",
+				// TileKey of the center position, used as spatial index
+				TILE_KEY = "tile_key";
 	}
 }
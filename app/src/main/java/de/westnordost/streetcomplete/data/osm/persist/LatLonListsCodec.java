@@ -0,0 +1,181 @@
+package de.westnordost.streetcomplete.data.osm.persist;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import de.westnordost.osmapi.map.data.LatLon;
+import de.westnordost.osmapi.map.data.OsmLatLon;
+
+/** Compact binary format for the polylines and polygons of an element geometry.
+ *
+ *  The coordinates are stored with the same precision as in the OSM database (7 decimals) as the
+ *  difference to the previous coordinate, zig-zag and varint encoded. Consecutive vertices
+ *  usually are only a few meters apart, so most coordinates take only one or two bytes.
+ *
+ *  Layout: format version, number of lists, then for each list the number of vertices followed by
+ *  the latitude and longitude deltas of each vertex */
+public final class LatLonListsCodec
+{
+	private static final int FORMAT_VERSION = 1;
+
+	private LatLonListsCodec() {}
+
+	public static byte[] encode(List<List<LatLon>> lists)
+	{
+		int vertexCount = 0;
+		for (List<LatLon> list : lists)
+		{
+			vertexCount += list.size();
+		}
+		// most deltas take 1-3 bytes, the buffer grows if that is not enough
+		VarIntOutput out = new VarIntOutput(8 + lists.size() * 2 + vertexCount * 4);
+
+		out.writeVarInt(FORMAT_VERSION);
+		out.writeVarInt(lists.size());
+		int lat = 0, lon = 0;
+		for (List<LatLon> list : lists)
+		{
+			out.writeVarInt(list.size());
+			for (LatLon latLon : list)
+			{
+				int newLat = toFixed1E7(latLon.getLatitude());
+				int newLon = toFixed1E7(latLon.getLongitude());
+				out.writeVarLong(zigZag((long) newLat - lat));
+				out.writeVarLong(zigZag((long) newLon - lon));
+				lat = newLat;
+				lon = newLon;
+			}
+		}
+		return out.toBytes();
+	}
+
+	/** @return the coordinates of each list in 1E7 fixed point: lat, lon, lat, lon, ... */
+	public static int[][] decodeToArrays(byte[] bytes)
+	{
+		VarIntInput in = new VarIntInput(bytes);
+		int version = (int) in.readVarLong();
+		if(version != FORMAT_VERSION)
+		{
+			throw new IllegalArgumentException("Unknown geometry format version " + version);
+		}
+		int listCount = (int) in.readVarLong();
+		int[][] result = new int[listCount][];
+		int lat = 0, lon = 0;
+		for (int i = 0; i < listCount; ++i)
+		{
+			int vertexCount = (int) in.readVarLong();
+			int[] coords = new int[vertexCount * 2];
+			for (int j = 0; j < vertexCount; ++j)
+			{
+				lat += (int) unZigZag(in.readVarLong());
+				lon += (int) unZigZag(in.readVarLong());
+				coords[j*2] = lat;
+				coords[j*2+1] = lon;
+			}
+			result[i] = coords;
+		}
+		return result;
+	}
+
+	/** @return the lists of positions. The positions are only created when accessed */
+	public static List<List<LatLon>> decode(byte[] bytes)
+	{
+		int[][] arrays = decodeToArrays(bytes);
+		List<List<LatLon>> result = new ArrayList<>(arrays.length);
+		for (int[] coords : arrays)
+		{
+			result.add(new Fixed1E7LatLonList(coords));
+		}
+		return result;
+	}
+
+	/** @return the lists of positions. Unlike with decode, the bytes are only decoded when the
+	 *          lists are first accessed. So this is preferable if the lists may not be needed at
+	 *          all, i.e. when reading many geometries of which mostly only the center is used.
+	 *          Only the format version is checked right away, other corrupt data is only detected
+	 *          on access */
+	public static List<List<LatLon>> decodeLazily(byte[] bytes)
+	{
+		int version = (int) new VarIntInput(bytes).readVarLong();
+		if(version != FORMAT_VERSION)
+		{
+			throw new IllegalArgumentException("Unknown geometry format version " + version);
+		}
+		return new LazilyDecodedLists(bytes);
+	}
+
+	private static int toFixed1E7(double value)
+	{
+		return (int) Math.round(value * 1e7);
+	}
+
+	private static long zigZag(long value)
+	{
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unZigZag(long value)
+	{
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/** Unmodifiable list of positions backed by an array of 1E7 fixed point coordinates */
+	private static final class Fixed1E7LatLonList extends AbstractList<LatLon>
+		implements RandomAccess, Serializable
+	{
+		private final int[] coords;
+
+		Fixed1E7LatLonList(int[] coords)
+		{
+			this.coords = coords;
+		}
+
+		@Override public LatLon get(int index)
+		{
+			return new OsmLatLon(coords[index*2] / 1e7, coords[index*2+1] / 1e7);
+		}
+
+		@Override public int size()
+		{
+			return coords.length / 2;
+		}
+	}
+
+	/** Unmodifiable list of lists of positions that is decoded from the bytes on first access */
+	private static final class LazilyDecodedLists extends AbstractList<List<LatLon>>
+		implements RandomAccess, Serializable
+	{
+		private final byte[] bytes;
+		// decoding twice when accessed concurrently is harmless, so no need to synchronize
+		private transient volatile List<List<LatLon>> lists;
+
+		LazilyDecodedLists(byte[] bytes)
+		{
+			this.bytes = bytes;
+		}
+
+		@Override public List<LatLon> get(int index)
+		{
+			return getLists().get(index);
+		}
+
+		@Override public int size()
+		{
+			return getLists().size();
+		}
+
+		private List<List<LatLon>> getLists()
+		{
+			List<List<LatLon>> result = lists;
+			if(result == null)
+			{
+				result = decode(bytes);
+				lists = result;
+			}
+			return result;
+		}
+	}
+}
@@ -24,7 +24,8 @@ public class MergedElementDao
 		this.relationDao = relationDao;
 	}
 
-	public void putAll(Collection<Element> elements)
+	/** @return the number of elements that have actually been written, see AOsmElementDao.putAll */
+	public int putAll(Collection<Element> elements)
 	{
 		Collection<Node> nodes = new ArrayList<>();
 		Collection<Way> ways = new ArrayList<>();
@@ -45,9 +46,11 @@ public class MergedElementDao
 					break;
 			}
 		}
-		if(!nodes.isEmpty()) nodeDao.putAll(nodes);
-		if(!ways.isEmpty()) wayDao.putAll(ways);
-		if(!relations.isEmpty()) relationDao.putAll(relations);
+		int writtenCount = 0;
+		if(!nodes.isEmpty()) writtenCount += nodeDao.putAll(nodes);
+		if(!ways.isEmpty()) writtenCount += wayDao.putAll(ways);
+		if(!relations.isEmpty()) writtenCount += relationDao.putAll(relations);
+		return writtenCount;
 	}
 
 	public void put(Element element)
@@ -6,12 +6,11 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteStatement;
 
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.Map;
 
 import javax.inject.Inject;
 
-import de.westnordost.streetcomplete.util.Serializer;
 import de.westnordost.osmapi.map.data.LatLon;
 import de.westnordost.osmapi.map.data.Node;
 import de.westnordost.osmapi.map.data.OsmLatLon;
@@ -19,14 +18,14 @@ import de.westnordost.osmapi.map.data.OsmNode;
 
 public class NodeDao extends AOsmElementDao<Node>
 {
-	private final Serializer serializer;
+	private final TagsCodec tagsCodec;
 
 	private final SQLiteStatement insert;
 
-	@Inject public NodeDao(SQLiteOpenHelper dbHelper, Serializer serializer)
+	@Inject public NodeDao(SQLiteOpenHelper dbHelper, StringDictionary dictionary)
 	{
-		super(dbHelper);
-		this.serializer = serializer;
+		super(dbHelper, dictionary);
+		this.tagsCodec = new TagsCodec(dictionary);
 
 		String sql = "INSERT OR REPLACE INTO " + NodeTable.NAME + " ("+
 				NodeTable.Columns.ID+","+
@@ -49,13 +48,18 @@ public class NodeDao extends AOsmElementDao<Node>
 		return NodeTable.Columns.ID;
 	}
 
+	@Override protected String getVersionColumnName()
+	{
+		return NodeTable.Columns.VERSION;
+	}
+
 	@Override protected String getElementTypeName()
 	{
 		return Node.Type.NODE.name();
 	}
 
 
-	@Override protected void executeInsert(Node node)
+	@Override protected void executeInsert(Node node, Collection<Integer> usedStringIds)
 	{
 		insert.bindLong(1, node.getId());
 		insert.bindLong(2, node.getVersion());
@@ -63,8 +67,7 @@ public class NodeDao extends AOsmElementDao<Node>
 		insert.bindDouble(4, node.getPosition().getLongitude());
 		if(node.getTags() != null)
 		{
-			HashMap<String, String> map = new HashMap<>(node.getTags());
-			insert.bindBlob(5, serializer.toBytes(map));
+			insert.bindBlob(5, tagsCodec.encode(node.getTags(), usedStringIds));
 		}
 		else
 		{
@@ -89,7 +92,7 @@ public class NodeDao extends AOsmElementDao<Node>
 		Map<String,String> tags = null;
 		if(!cursor.isNull(colTags))
 		{
-			tags = serializer.toObject(cursor.getBlob(colTags), HashMap.class);
+			tags = tagsCodec.decode(cursor.getBlob(colTags));
 		}
 		return new OsmNode(id, version, latLon, tags);
 	}
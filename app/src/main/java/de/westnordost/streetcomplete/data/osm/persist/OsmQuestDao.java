@@ -7,6 +7,7 @@ import java.util.List;
 import javax.inject.Inject;
 
 import de.westnordost.streetcomplete.data.QuestStatus;
+import de.westnordost.streetcomplete.data.QuestTypeIdsDao;
 import de.westnordost.streetcomplete.data.QuestTypeRegistry;
 import de.westnordost.streetcomplete.data.WhereSelectionBuilder;
 import de.westnordost.streetcomplete.data.osm.OsmQuest;
@@ -15,9 +16,10 @@ import de.westnordost.streetcomplete.util.Serializer;
 public class OsmQuestDao extends AOsmQuestDao
 {
 
-	@Inject public OsmQuestDao(SQLiteOpenHelper dbHelper, Serializer serializer, QuestTypeRegistry questTypeList)
+	@Inject public OsmQuestDao(SQLiteOpenHelper dbHelper, Serializer serializer, QuestTypeRegistry questTypeList,
+					   QuestTypeIdsDao questTypeIds)
 	{
-		super(dbHelper, serializer, questTypeList);
+		super(dbHelper, serializer, questTypeList, questTypeIds);
 	}
 
 	@Override protected String getTableName() { return OsmQuestTable.NAME; }
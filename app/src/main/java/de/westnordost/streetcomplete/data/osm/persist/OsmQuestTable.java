@@ -4,6 +4,8 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import de.westnordost.streetcomplete.data.QuestStatus;
+
 public class OsmQuestTable
 {
 	public static final String NAME = "osm_quests";
@@ -12,6 +14,22 @@ public class OsmQuestTable
 	public static final String NAME_UNDO = "osm_quests_undo";
 	public static final String NAME_UNDO_MERGED_VIEW = "osm_quests_full_undo";
 
+	// so that the join with the element geometry can also be done starting from the geometry
+	public static final String ELEMENT_INDEX = "osm_quests_element_index";
+	public static final String UNDO_ELEMENT_INDEX = "osm_quests_undo_element_index";
+
+	// covering the filters of the queries for the quests (for the map) and for the solved quests
+	public static final String STATUS_INDEX = "osm_quests_status_index";
+	public static final String UNDO_STATUS_INDEX = "osm_quests_undo_status_index";
+	public static final String LAST_UPDATE_INDEX = "osm_quests_last_update_index";
+	public static final String UNDO_LAST_UPDATE_INDEX = "osm_quests_undo_last_update_index";
+
+	/** The quest status is stored as its index in this list, so the entries must never be removed
+	 *  or reordered */
+	public static final List<QuestStatus> QUEST_STATUSES = Collections.unmodifiableList(Arrays.asList(
+			QuestStatus.NEW, QuestStatus.ANSWERED, QuestStatus.HIDDEN, QuestStatus.INVISIBLE,
+			QuestStatus.CLOSED, QuestStatus.REVERT));
+
 
 	public static class Columns
 	{
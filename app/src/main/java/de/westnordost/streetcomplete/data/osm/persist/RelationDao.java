@@ -6,7 +6,7 @@ import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteStatement;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -20,12 +20,15 @@ import de.westnordost.osmapi.map.data.RelationMember;
 public class RelationDao extends AOsmElementDao<Relation>
 {
 	private final Serializer serializer;
+	private final TagsCodec tagsCodec;
 	private final SQLiteStatement insert;
 
-	@Inject public RelationDao(SQLiteOpenHelper dbHelper, Serializer serializer)
+	@Inject public RelationDao(SQLiteOpenHelper dbHelper, Serializer serializer,
+						   StringDictionary dictionary)
 	{
-		super(dbHelper);
+		super(dbHelper, dictionary);
 		this.serializer = serializer;
+		this.tagsCodec = new TagsCodec(dictionary);
 
 		String sql = "INSERT OR REPLACE INTO " + RelationTable.NAME + " ("+
 				RelationTable.Columns.ID+","+
@@ -47,20 +50,24 @@ public class RelationDao extends AOsmElementDao<Relation>
 		return RelationTable.Columns.ID;
 	}
 
+	@Override protected String getVersionColumnName()
+	{
+		return RelationTable.Columns.VERSION;
+	}
+
 	@Override protected String getElementTypeName()
 	{
 		return Relation.Type.RELATION.name();
 	}
 
-	@Override protected void executeInsert(Relation relation)
+	@Override protected void executeInsert(Relation relation, Collection<Integer> usedStringIds)
 	{
 		insert.bindLong(1, relation.getId());
 		insert.bindLong(2, relation.getVersion());
 		insert.bindBlob(3, serializer.toBytes(new ArrayList<>(relation.getMembers())));
 		if(relation.getTags() != null)
 		{
-			HashMap<String, String> map = new HashMap<>(relation.getTags());
-			insert.bindBlob(4, serializer.toBytes(map));
+			insert.bindBlob(4, tagsCodec.encode(relation.getTags(), usedStringIds));
 		}
 		else
 		{
@@ -83,7 +90,7 @@ public class RelationDao extends AOsmElementDao<Relation>
 		Map<String,String> tags = null;
 		if(!cursor.isNull(colTags))
 		{
-			tags = serializer.toObject(cursor.getBlob(colTags), HashMap.class);
+			tags = tagsCodec.decode(cursor.getBlob(colTags));
 		}
 		List<RelationMember> members = serializer.toObject(cursor.getBlob(colMembers), ArrayList.class);
 
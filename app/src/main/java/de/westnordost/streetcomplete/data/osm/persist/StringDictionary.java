@@ -0,0 +1,163 @@
+package de.westnordost.streetcomplete.data.osm.persist;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Assigns ids to strings that occur very often in the database (i.e. tag keys and values), so
+ *  that only the ids need to be stored and so that when reading, the same string instance is used
+ *  for every occurrence.
+ *
+ *  The whole dictionary is kept in memory, so looking up strings and ids never needs to query the
+ *  database. New strings get their id in memory, they are only written to the database with
+ *  save, which must be called in the same transaction as the rows that reference them are written.
+ *  Should that transaction be rolled back, the strings are simply written again the next time
+ *  they are saved.
+ *
+ *  Thread-safe. */
+public class StringDictionary
+{
+	private final SQLiteOpenHelper dbHelper;
+	private final SQLiteDatabase db;
+
+	private final Map<String, Integer> ids = new HashMap<>();
+	private final Map<Integer, String> strings = new HashMap<>();
+	/** ids assigned since the dictionary was loaded, these may not be in the database (yet) */
+	private final Set<Integer> addedIds = new HashSet<>();
+	private int nextId = 1;
+	private volatile boolean isLoaded;
+
+	public StringDictionary(SQLiteOpenHelper dbHelper)
+	{
+		this.dbHelper = dbHelper;
+		this.db = null;
+	}
+
+	/** For use while the database is created or upgraded, when the SQLiteOpenHelper can not be
+	 *  used yet */
+	public StringDictionary(SQLiteDatabase db)
+	{
+		this.dbHelper = null;
+		this.db = db;
+	}
+
+	/** @return the id of the given string. The string is added to the dictionary if it is not in
+	 *          it yet */
+	public int getId(String string)
+	{
+		load();
+		synchronized (this)
+		{
+			Integer id = ids.get(string);
+			if(id == null)
+			{
+				id = nextId++;
+				put(id, string);
+				addedIds.add(id);
+			}
+			return id;
+		}
+	}
+
+	/** @return the string with the given id
+	 *  @throws IllegalArgumentException if there is no string with this id */
+	public String getString(int id)
+	{
+		load();
+		synchronized (this)
+		{
+			String string = strings.get(id);
+			if(string == null)
+			{
+				throw new IllegalArgumentException("Unknown string id " + id);
+			}
+			return string;
+		}
+	}
+
+	/** Writes the strings with the given ids into the database, if they might not be in it yet */
+	public void save(Collection<Integer> usedIds)
+	{
+		List<Integer> idsToSave = new ArrayList<>();
+		List<String> stringsToSave = new ArrayList<>();
+		synchronized (this)
+		{
+			for (Integer id : usedIds)
+			{
+				if(!addedIds.contains(id)) continue;
+				idsToSave.add(id);
+				stringsToSave.add(strings.get(id));
+			}
+		}
+		if(idsToSave.isEmpty()) return;
+
+		SQLiteStatement insert = getDatabase().compileStatement(
+			"INSERT OR IGNORE INTO " + StringsTable.NAME + " (" +
+			StringsTable.Columns.ID + "," + StringsTable.Columns.STRING + ") values (?,?);");
+		try
+		{
+			for (int i = 0; i < idsToSave.size(); ++i)
+			{
+				insert.bindLong(1, idsToSave.get(i));
+				insert.bindString(2, stringsToSave.get(i));
+				insert.executeInsert();
+				insert.clearBindings();
+			}
+		}
+		finally
+		{
+			insert.close();
+		}
+	}
+
+	private void load()
+	{
+		if(isLoaded) return;
+
+		// not within the lock: another thread may be in a transaction and waiting for the lock
+		Map<Integer, String> loaded = new HashMap<>();
+		String[] cols = {StringsTable.Columns.ID, StringsTable.Columns.STRING};
+		try (Cursor cursor = getDatabase().query(StringsTable.NAME, cols, null, null, null, null, null))
+		{
+			if(cursor.moveToFirst())
+			{
+				while(!cursor.isAfterLast())
+				{
+					loaded.put(cursor.getInt(0), cursor.getString(1));
+					cursor.moveToNext();
+				}
+			}
+		}
+
+		synchronized (this)
+		{
+			if(isLoaded) return;
+			for (Map.Entry<Integer, String> entry : loaded.entrySet())
+			{
+				put(entry.getKey(), entry.getValue());
+				nextId = Math.max(nextId, entry.getKey() + 1);
+			}
+			isLoaded = true;
+		}
+	}
+
+	private void put(int id, String string)
+	{
+		ids.put(string, id);
+		strings.put(id, string);
+	}
+
+	private SQLiteDatabase getDatabase()
+	{
+		return db != null ? db : dbHelper.getWritableDatabase();
+	}
+}
@@ -0,0 +1,13 @@
+package de.westnordost.streetcomplete.data.osm.persist;
+
+public class StringsTable
+{
+	public static final String NAME = "strings";
+
+	public static class Columns
+	{
+		public static final String
+				ID = "id",
+				STRING = "string";
+	}
+}
@@ -0,0 +1,147 @@
+package de.westnordost.streetcomplete.data.osm.persist;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/** Compact binary format for tags (or any other map of strings). The keys and the values of keys
+ *  that have a limited set of values are stored as the ids they have in the string dictionary, so
+ *  that the recurring strings like "highway" or "yes" take only one or two bytes each and when
+ *  decoding, the string instances from the dictionary are used instead of creating new ones.
+ *
+ *  All other values, like names, house numbers, refs or opening hours, are stored inline.
+ *  Strings are never removed from the dictionary, so it must not grow with every element that is
+ *  stored.
+ *
+ *  The format is: version, number of entries, then for each entry the key and the value. Each is
+ *  either (id << 1) | 1 for a string in the dictionary or (length << 1) followed by the UTF-8 bytes
+ *  of the string. All numbers are varints. */
+public class TagsCodec
+{
+	private static final int FORMAT_VERSION = 1;
+
+	/** keys (or key prefixes, i.e. "cycleway" for "cycleway:left") whose values are from a limited
+	 *  set, like "residential" or "asphalt" */
+	private static final Set<String> ENUMERATED_VALUE_KEYS = new HashSet<>(Arrays.asList(
+		"access", "amenity", "barrier", "bench", "bicycle", "bicycle_parking", "bridge", "building",
+		"bus", "button_operated", "changing_table", "covered", "crossing", "cycleway",
+		"denomination", "diet", "emergency", "fee", "fire_hydrant", "foot", "footway", "highway",
+		"internet_access", "junction", "kerb", "landuse", "lanes", "layer", "leisure", "lit",
+		"location", "man_made", "material", "maxspeed", "motor_vehicle", "motorcar", "motorcycle",
+		"natural", "office", "oneway", "parking", "payment", "place", "power", "public_transport",
+		"railway", "recycling", "recycling_type", "religion", "roof", "segregated", "service",
+		"shelter", "shop", "sidewalk", "smoothness", "sport", "surface", "tactile_paving",
+		"toilets", "tourism", "tracktype", "traffic_signals", "tunnel", "vending", "waterway",
+		"wheelchair"
+	));
+	/** values so common that they are in the dictionary whatever the key is */
+	private static final Set<String> COMMON_VALUES = new HashSet<>(Arrays.asList("yes", "no"));
+
+	/** a longer value is most likely not one of a limited set of values after all */
+	private static final int MAX_DICTIONARY_VALUE_LENGTH = 32;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final StringDictionary dictionary;
+
+	public TagsCodec(StringDictionary dictionary)
+	{
+		this.dictionary = dictionary;
+	}
+
+	/** @param usedIds the ids of the dictionary strings the result refers to are added to this.
+	 *                 They must be saved with StringDictionary.save in the same transaction the
+	 *                 result is written to the database */
+	public byte[] encode(Map<String, String> tags, Collection<Integer> usedIds)
+	{
+		return encode(tags, usedIds, false);
+	}
+
+	/** Same as encode, but only the keys are put into the dictionary, all values are stored
+	 *  inline. For maps whose values are all (more or less) unique, like names */
+	public byte[] encodeWithInlineValues(Map<String, String> tags, Collection<Integer> usedIds)
+	{
+		return encode(tags, usedIds, true);
+	}
+
+	private byte[] encode(Map<String, String> tags, Collection<Integer> usedIds, boolean inlineValues)
+	{
+		VarIntOutput out = new VarIntOutput(4 + tags.size() * 4);
+		out.writeVarInt(FORMAT_VERSION);
+		out.writeVarInt(tags.size());
+		for (Map.Entry<String, String> entry : tags.entrySet())
+		{
+			String key = entry.getKey();
+			String value = entry.getValue();
+			writeFromDictionary(out, key, usedIds);
+			if(inlineValues || !isRecurringValue(key, value))
+			{
+				writeInline(out, value);
+			}
+			else
+			{
+				writeFromDictionary(out, value, usedIds);
+			}
+		}
+		return out.toBytes();
+	}
+
+	public HashMap<String, String> decode(byte[] bytes)
+	{
+		VarIntInput in = new VarIntInput(bytes);
+		int version = in.readVarInt();
+		if(version != FORMAT_VERSION)
+		{
+			throw new IllegalArgumentException("Unknown tags format version " + version);
+		}
+		int size = in.readVarInt();
+		// no rehashing on put
+		HashMap<String, String> result = new HashMap<>(size * 4 / 3 + 1);
+		for (int i = 0; i < size; i++)
+		{
+			String key = readString(in, bytes);
+			String value = readString(in, bytes);
+			result.put(key, value);
+		}
+		return result;
+	}
+
+	private static boolean isRecurringValue(String key, String value)
+	{
+		if(COMMON_VALUES.contains(value)) return true;
+		if(value.length() > MAX_DICTIONARY_VALUE_LENGTH) return false;
+		int prefixEnd = key.indexOf(':');
+		String keyPrefix = prefixEnd != -1 ? key.substring(0, prefixEnd) : key;
+		return ENUMERATED_VALUE_KEYS.contains(keyPrefix);
+	}
+
+	private void writeFromDictionary(VarIntOutput out, String string, Collection<Integer> usedIds)
+	{
+		int id = dictionary.getId(string);
+		usedIds.add(id);
+		out.writeVarLong(((long) id << 1) | 1);
+	}
+
+	private static void writeInline(VarIntOutput out, String string)
+	{
+		byte[] utf8 = string.getBytes(UTF_8);
+		out.writeVarLong((long) utf8.length << 1);
+		out.writeBytes(utf8);
+	}
+
+	private String readString(VarIntInput in, byte[] bytes)
+	{
+		long ref = in.readVarLong();
+		if((ref & 1) != 0)
+		{
+			return dictionary.getString((int) (ref >>> 1));
+		}
+		int length = (int) (ref >>> 1);
+		int start = in.skipBytes(length);
+		return new String(bytes, start, length, UTF_8);
+	}
+}
@@ -4,6 +4,7 @@ import android.database.sqlite.SQLiteOpenHelper;
 
 import javax.inject.Inject;
 
+import de.westnordost.streetcomplete.data.QuestTypeIdsDao;
 import de.westnordost.streetcomplete.data.QuestTypeRegistry;
 import de.westnordost.streetcomplete.util.Serializer;
 
@@ -11,9 +12,10 @@ import de.westnordost.streetcomplete.util.Serializer;
  * "real" quests and reversed quests used to revert changes made by another quest */
 public class UndoOsmQuestDao extends AOsmQuestDao
 {
-	@Inject public UndoOsmQuestDao(SQLiteOpenHelper dbHelper, Serializer serializer, QuestTypeRegistry questTypeList)
+	@Inject public UndoOsmQuestDao(SQLiteOpenHelper dbHelper, Serializer serializer, QuestTypeRegistry questTypeList,
+					   QuestTypeIdsDao questTypeIds)
 	{
-		super(dbHelper, serializer, questTypeList);
+		super(dbHelper, serializer, questTypeList, questTypeIds);
 	}
 
 	@Override protected String getTableName() { return OsmQuestTable.NAME_UNDO; }
@@ -0,0 +1,47 @@
+package de.westnordost.streetcomplete.data.osm.persist;
+
+/** Reads varint encoded numbers from a byte array */
+final class VarIntInput
+{
+	private final byte[] buffer;
+	private int position;
+
+	VarIntInput(byte[] buffer)
+	{
+		this.buffer = buffer;
+	}
+
+	long readVarLong()
+	{
+		long result = 0;
+		int shift = 0;
+		while(true)
+		{
+			if(position >= buffer.length)
+			{
+				throw new IllegalArgumentException("Unexpected end of data");
+			}
+			byte b = buffer[position++];
+			result |= (long) (b & 0x7F) << shift;
+			if((b & 0x80) == 0) return result;
+			shift += 7;
+		}
+	}
+
+	int readVarInt()
+	{
+		return (int) readVarLong();
+	}
+
+	/** @return the position in the array the given number of bytes start at */
+	int skipBytes(int count)
+	{
+		if(count < 0 || position + count > buffer.length)
+		{
+			throw new IllegalArgumentException("Unexpected end of data");
+		}
+		int start = position;
+		position += count;
+		return start;
+	}
+}
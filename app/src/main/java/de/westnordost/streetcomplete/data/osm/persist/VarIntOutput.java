@@ -0,0 +1,51 @@
+package de.westnordost.streetcomplete.data.osm.persist;
+
+import java.util.Arrays;
+
+/** Growing byte buffer to write varint encoded numbers into */
+final class VarIntOutput
+{
+	private byte[] buffer;
+	private int position;
+
+	VarIntOutput(int capacity)
+	{
+		buffer = new byte[capacity];
+	}
+
+	void writeVarInt(int value)
+	{
+		writeVarLong(value);
+	}
+
+	void writeVarLong(long value)
+	{
+		ensureCapacity(10);
+		while((value & ~0x7FL) != 0)
+		{
+			buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[position++] = (byte) value;
+	}
+
+	void writeBytes(byte[] bytes)
+	{
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, buffer, position, bytes.length);
+		position += bytes.length;
+	}
+
+	byte[] toBytes()
+	{
+		return Arrays.copyOf(buffer, position);
+	}
+
+	private void ensureCapacity(int count)
+	{
+		if(position + count > buffer.length)
+		{
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + count));
+		}
+	}
+}
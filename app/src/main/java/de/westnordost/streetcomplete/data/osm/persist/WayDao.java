@@ -6,7 +6,7 @@ import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteStatement;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -19,12 +19,15 @@ import de.westnordost.osmapi.map.data.Way;
 public class WayDao extends AOsmElementDao<Way>
 {
 	private final Serializer serializer;
+	private final TagsCodec tagsCodec;
 	private final SQLiteStatement insert;
 
-	@Inject public WayDao(SQLiteOpenHelper dbHelper, Serializer serializer)
+	@Inject public WayDao(SQLiteOpenHelper dbHelper, Serializer serializer,
+						   StringDictionary dictionary)
 	{
-		super(dbHelper);
+		super(dbHelper, dictionary);
 		this.serializer = serializer;
+		this.tagsCodec = new TagsCodec(dictionary);
 
 		String sql = "INSERT OR REPLACE INTO " + WayTable.NAME + " ("+
 				WayTable.Columns.ID+","+
@@ -46,20 +49,24 @@ public class WayDao extends AOsmElementDao<Way>
 		return WayTable.Columns.ID;
 	}
 
+	@Override protected String getVersionColumnName()
+	{
+		return WayTable.Columns.VERSION;
+	}
+
 	@Override protected String getElementTypeName()
 	{
 		return Way.Type.WAY.name();
 	}
 
-	@Override protected void executeInsert(Way way)
+	@Override protected void executeInsert(Way way, Collection<Integer> usedStringIds)
 	{
 		insert.bindLong(1, way.getId());
 		insert.bindLong(2, way.getVersion());
 		insert.bindBlob(3, serializer.toBytes(new ArrayList<>(way.getNodeIds())));
 		if(way.getTags() != null)
 		{
-			HashMap<String, String> map = new HashMap<>(way.getTags());
-			insert.bindBlob(4, serializer.toBytes(map));
+			insert.bindBlob(4, tagsCodec.encode(way.getTags(), usedStringIds));
 		}
 		else
 		{
@@ -82,7 +89,7 @@ public class WayDao extends AOsmElementDao<Way>
 		Map<String, String> tags = null;
 		if(!cursor.isNull(colTags))
 		{
-			tags = serializer.toObject(cursor.getBlob(colTags), HashMap.class);
+			tags = tagsCodec.decode(cursor.getBlob(colTags));
 		}
 		List<Long> nodeIds = serializer.toObject(cursor.getBlob(colNodeIds), ArrayList.class);
 
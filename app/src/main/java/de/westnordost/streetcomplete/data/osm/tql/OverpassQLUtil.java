@@ -1,7 +1,11 @@
 package de.westnordost.streetcomplete.data.osm.tql;
 
+import java.text.DateFormat;
 import java.text.NumberFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.Locale;
+import java.util.TimeZone;
 
 import de.westnordost.osmapi.map.data.BoundingBox;
 
@@ -34,4 +38,14 @@ public class OverpassQLUtil
 		// performance problems
 		return "out meta geom "+DEFAULT_MAX_QUESTS+";";
 	}
+
+	/** @return statement that reduces the default set to the elements that have been modified
+	 *          after the given time */
+	public static String getChangedSinceStatement(long time)
+	{
+		DateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		String newer = "(newer:\"" + format.format(new Date(time)) + "\")";
+		return "(node._" + newer + ";way._" + newer + ";relation._" + newer + ";);";
+	}
 }
@@ -2,7 +2,10 @@ package de.westnordost.streetcomplete.data.osm.tql;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import de.westnordost.osmapi.map.data.BoundingBox;
 import de.westnordost.osmapi.map.data.Element;
@@ -14,15 +17,104 @@ public class TagFilterExpression
 	private final List<ElementsTypeFilter> elementsTypeFilters;
 	private final BooleanExpression<OQLExpressionValue> tagExprRoot;
 
+	// compiled form of the above for matching
+	private final int elementTypesMask;
+	private final TagFilterPredicate tagPredicate;
+	private final Set<String> requiredKeys;
+
 	public TagFilterExpression(List<ElementsTypeFilter> elementsTypeFilters,
 							   BooleanExpression<OQLExpressionValue> tagExprRoot)
 	{
 		this.elementsTypeFilters = elementsTypeFilters;
 		this.tagExprRoot = tagExprRoot;
+
+		int mask = 0;
+		if(elementsTypeFilters.contains(ElementsTypeFilter.NODES)) mask |= maskOf(Element.Type.NODE);
+		if(elementsTypeFilters.contains(ElementsTypeFilter.WAYS)) mask |= maskOf(Element.Type.WAY);
+		if(elementsTypeFilters.contains(ElementsTypeFilter.RELATIONS)) mask |= maskOf(Element.Type.RELATION);
+		elementTypesMask = mask;
+		tagPredicate = TagFilterPredicate.compile(tagExprRoot);
+		Set<String> keys = getRequiredKeys(tagExprRoot);
+		requiredKeys = keys != null ? Collections.unmodifiableSet(keys) : null;
+	}
+
+	/** @return whether elements of the given type can be matched by this expression at all */
+	public boolean matchesElementType(Element.Type type)
+	{
+		return (elementTypesMask & maskOf(type)) != 0;
+	}
+
+	/** @return keys of which an element must have at least one tag to be matched by this
+	 *          expression or null if it may also match elements that have none of these keys,
+	 *          i.e. <tt>"nodes with !name"</tt> */
+	public Set<String> getRequiredKeys()
+	{
+		return requiredKeys;
+	}
+
+	private static Set<String> getRequiredKeys(BooleanExpression<OQLExpressionValue> expr)
+	{
+		if(expr.isRoot())
+		{
+			BooleanExpression<OQLExpressionValue> child = expr.getFirstChild();
+			return child != null ? getRequiredKeys(child) : null;
+		}
+		else if(expr.isValue())
+		{
+			OQLExpressionValue value = expr.getValue();
+			if(!(value instanceof TagFilterValue)) return null;
+			TagFilterValue tag = (TagFilterValue) value;
+			// "!=" and "!~" also match if the element does not have the key at all
+			String op = tag.getOperator();
+			if(tag.getValue() != null && op != null && op.startsWith("!")) return null;
+			Set<String> result = new HashSet<>();
+			result.add(withoutQuotes(tag.getKey()));
+			return result;
+		}
+		else if(expr.isAnd())
+		{
+			// it suffices that one of the operands requires certain keys. The fewer, the better
+			Set<String> result = null;
+			for (BooleanExpression<OQLExpressionValue> child : expr.getChildren())
+			{
+				Set<String> keys = getRequiredKeys(child);
+				if(keys != null && (result == null || keys.size() < result.size())) result = keys;
+			}
+			return result;
+		}
+		else if(expr.isOr())
+		{
+			// all operands must require certain keys
+			Set<String> result = new HashSet<>();
+			for (BooleanExpression<OQLExpressionValue> child : expr.getChildren())
+			{
+				Set<String> keys = getRequiredKeys(child);
+				if(keys == null) return null;
+				result.addAll(keys);
+			}
+			return result;
+		}
+		return null;
 	}
 
 	/** @return whether the given element is found through (=matches) this expression */
 	public boolean matches(Element element)
+	{
+		if((elementTypesMask & maskOf(element.getType())) == 0) return false;
+
+		Map<String, String> tags = element.getTags();
+		if(tags == null) tags = Collections.emptyMap();
+		return tagPredicate.matches(element, tags);
+	}
+
+	private static int maskOf(Element.Type type)
+	{
+		return 1 << type.ordinal();
+	}
+
+	/** Evaluates the expression tree directly instead of the compiled form. Only used to verify
+	 *  that both yield the same results */
+	boolean matchesExpressionTree(Element element)
 	{
 		Element.Type eleType = element.getType();
 
@@ -44,6 +136,16 @@ public class TagFilterExpression
 		return elementTypeMatches && tagExprRoot.matches(element);
 	}
 
+	private static String withoutQuotes(String key)
+	{
+		int last = key.length() - 1;
+		if(last > 0 && (key.charAt(0) == '"' || key.charAt(0) == '\'') && key.charAt(last) == key.charAt(0))
+		{
+			return key.substring(1, last);
+		}
+		return key;
+	}
+
 	/** @return this expression as a Overpass query string (in a short one-liner form) */
 	public String toOverpassQLString(BoundingBox bbox)
 	{
@@ -0,0 +1,303 @@
+package de.westnordost.streetcomplete.data.osm.tql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import de.westnordost.osmapi.map.data.Element;
+
+/** The tag filters of a BooleanExpression compiled into a tree of predicates that can be evaluated
+ *  on the tags of an element without walking through the generic expression tree or parsing
+ *  regular expressions each time.
+ *
+ *  Within an AND or OR, the predicates are sorted so that the ones that are cheap to evaluate and
+ *  most likely to decide the result are evaluated first. */
+abstract class TagFilterPredicate
+{
+	/** the lower, the earlier it is evaluated in an AND */
+	abstract int getRank();
+
+	/** @param tags the tags of the element, never null */
+	abstract boolean matches(Element element, Map<String, String> tags);
+
+	static final TagFilterPredicate ANY = new TagFilterPredicate()
+	{
+		@Override int getRank() { return 0; }
+		@Override boolean matches(Element element, Map<String, String> tags) { return true; }
+	};
+
+	/** @return the given expression compiled */
+	static TagFilterPredicate compile(BooleanExpression<OQLExpressionValue> expr)
+	{
+		// "nodes" without any "with ..."
+		if(!expr.isValue() && expr.getFirstChild() == null) return ANY;
+
+		if(expr.isRoot())
+		{
+			return compile(expr.getFirstChild());
+		}
+		else if(expr.isValue())
+		{
+			OQLExpressionValue value = expr.getValue();
+			if(value instanceof TagFilterValue) return compile((TagFilterValue) value);
+			return new ValueFallback(value);
+		}
+		else if(expr.isAnd() || expr.isOr())
+		{
+			List<TagFilterPredicate> children = new ArrayList<>();
+			for (BooleanExpression<OQLExpressionValue> child : expr.getChildren())
+			{
+				children.add(compile(child));
+			}
+			if(children.size() == 1) return children.get(0);
+			return expr.isAnd() ? new And(children) : new Or(children);
+		}
+		// not a (flattened) expression tree that can be compiled
+		return new ExpressionFallback(expr);
+	}
+
+	private static TagFilterPredicate compile(TagFilterValue tag)
+	{
+		String key = tag.getKey().intern();
+		String op = tag.getOperator();
+		String value = tag.getValue();
+
+		if(value == null) return new HasKey(key);
+
+		switch (op)
+		{
+			case "=":  return new Equals(key, value);
+			case "!=": return new NotEquals(key, value);
+			case "~":
+			case "!~":
+				boolean negated = op.equals("!~");
+				if(value.equals(".*")) return negated ? new NotHasKey(key) : new HasKey(key);
+				Set<String> values = getLiteralAlternatives(value);
+				if(values != null) return new ValueIn(key, values, negated);
+				return new RegexMatches(key, Pattern.compile(value), negated);
+		}
+		return new ValueFallback(tag);
+	}
+
+	/** @return the alternatives if the given regex is just a list of literal words separated by
+	 *          "|", otherwise null */
+	private static Set<String> getLiteralAlternatives(String regex)
+	{
+		for (int i = 0; i < regex.length(); ++i)
+		{
+			char c = regex.charAt(i);
+			if(!Character.isLetterOrDigit(c) && c != '|' && c != '_' && c != ':' && c != ' ' && c != '-')
+			{
+				return null;
+			}
+		}
+		return new HashSet<>(Arrays.asList(regex.split("\\|", -1)));
+	}
+
+	private static final class And extends TagFilterPredicate
+	{
+		private final TagFilterPredicate[] children;
+
+		And(List<TagFilterPredicate> children)
+		{
+			this.children = sortedByRank(children);
+		}
+
+		@Override int getRank() { return children[0].getRank(); }
+
+		@Override boolean matches(Element element, Map<String, String> tags)
+		{
+			for (TagFilterPredicate child : children)
+			{
+				if(!child.matches(element, tags)) return false;
+			}
+			return true;
+		}
+	}
+
+	private static final class Or extends TagFilterPredicate
+	{
+		private final TagFilterPredicate[] children;
+
+		Or(List<TagFilterPredicate> children)
+		{
+			this.children = sortedByRank(children);
+		}
+
+		// an OR is only as selective as its least selective child
+		@Override int getRank() { return children[children.length - 1].getRank(); }
+
+		@Override boolean matches(Element element, Map<String, String> tags)
+		{
+			for (TagFilterPredicate child : children)
+			{
+				if(child.matches(element, tags)) return true;
+			}
+			return false;
+		}
+	}
+
+	private static TagFilterPredicate[] sortedByRank(List<TagFilterPredicate> predicates)
+	{
+		TagFilterPredicate[] result = predicates.toArray(new TagFilterPredicate[0]);
+		// stable, so the order given in the filter is kept for predicates of the same rank
+		Arrays.sort(result, (a, b) -> Integer.compare(a.getRank(), b.getRank()));
+		return result;
+	}
+
+	private static final class Equals extends TagFilterPredicate
+	{
+		private final String key, value;
+
+		Equals(String key, String value)
+		{
+			this.key = key;
+			this.value = value;
+		}
+
+		@Override int getRank() { return 1; }
+
+		@Override boolean matches(Element element, Map<String, String> tags)
+		{
+			return value.equals(tags.get(key));
+		}
+	}
+
+	private static final class NotEquals extends TagFilterPredicate
+	{
+		private final String key, value;
+
+		NotEquals(String key, String value)
+		{
+			this.key = key;
+			this.value = value;
+		}
+
+		@Override int getRank() { return 5; }
+
+		@Override boolean matches(Element element, Map<String, String> tags)
+		{
+			return !value.equals(tags.get(key));
+		}
+	}
+
+	private static final class HasKey extends TagFilterPredicate
+	{
+		private final String key;
+
+		HasKey(String key)
+		{
+			this.key = key;
+		}
+
+		@Override int getRank() { return 2; }
+
+		@Override boolean matches(Element element, Map<String, String> tags)
+		{
+			return tags.containsKey(key);
+		}
+	}
+
+	private static final class NotHasKey extends TagFilterPredicate
+	{
+		private final String key;
+
+		NotHasKey(String key)
+		{
+			this.key = key;
+		}
+
+		@Override int getRank() { return 5; }
+
+		@Override boolean matches(Element element, Map<String, String> tags)
+		{
+			return !tags.containsKey(key);
+		}
+	}
+
+	private static final class ValueIn extends TagFilterPredicate
+	{
+		private final String key;
+		private final Set<String> values;
+		private final boolean negated;
+
+		ValueIn(String key, Set<String> values, boolean negated)
+		{
+			this.key = key;
+			this.values = values;
+			this.negated = negated;
+		}
+
+		@Override int getRank() { return negated ? 5 : 2; }
+
+		@Override boolean matches(Element element, Map<String, String> tags)
+		{
+			String value = tags.get(key);
+			if(value == null) return negated;
+			return values.contains(value) != negated;
+		}
+	}
+
+	private static final class RegexMatches extends TagFilterPredicate
+	{
+		private final String key;
+		private final Pattern pattern;
+		private final boolean negated;
+
+		RegexMatches(String key, Pattern pattern, boolean negated)
+		{
+			this.key = key;
+			this.pattern = pattern;
+			this.negated = negated;
+		}
+
+		@Override int getRank() { return negated ? 6 : 3; }
+
+		@Override boolean matches(Element element, Map<String, String> tags)
+		{
+			String value = tags.get(key);
+			if(value == null) return negated;
+			return pattern.matcher(value).matches() != negated;
+		}
+	}
+
+	/** for values that are not tag filters: evaluated on the element like before */
+	private static final class ValueFallback extends TagFilterPredicate
+	{
+		private final OQLExpressionValue value;
+
+		ValueFallback(OQLExpressionValue value)
+		{
+			this.value = value;
+		}
+
+		@Override int getRank() { return 7; }
+
+		@Override boolean matches(Element element, Map<String, String> tags)
+		{
+			return value.matches(element);
+		}
+	}
+
+	/** for expression trees that are not flattened: evaluated on the element like before */
+	private static final class ExpressionFallback extends TagFilterPredicate
+	{
+		private final BooleanExpression<OQLExpressionValue> expr;
+
+		ExpressionFallback(BooleanExpression<OQLExpressionValue> expr)
+		{
+			this.expr = expr;
+		}
+
+		@Override int getRank() { return 7; }
+
+		@Override boolean matches(Element element, Map<String, String> tags)
+		{
+			return expr.matches(element);
+		}
+	}
+}
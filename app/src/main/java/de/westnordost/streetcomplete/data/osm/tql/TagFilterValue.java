@@ -48,6 +48,10 @@ public class TagFilterValue implements OQLExpressionValue
 		return false;
 	}
 
+	String getKey() { return key; }
+	String getOperator() { return op; }
+	String getValue() { return value; }
+
 	private boolean isValueRegex()
 	{
 		return op != null && op.indexOf('~') != -1;
@@ -4,12 +4,18 @@ import android.graphics.Point;
 import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Provider;
 
@@ -28,9 +34,13 @@ import de.westnordost.streetcomplete.data.osm.OsmQuest;
 import de.westnordost.streetcomplete.data.osm.persist.AOsmQuestDao;
 import de.westnordost.streetcomplete.data.osm.persist.ElementGeometryDao;
 import de.westnordost.streetcomplete.data.osm.persist.MergedElementDao;
+import de.westnordost.streetcomplete.data.osm.persist.OsmElementKey;
 import de.westnordost.streetcomplete.data.statistics.QuestStatisticsDao;
 import de.westnordost.streetcomplete.data.tiles.DownloadedTilesDao;
 import de.westnordost.streetcomplete.data.upload.OnUploadedChangeListener;
+import de.westnordost.streetcomplete.data.upload.UploadExecutor;
+import de.westnordost.streetcomplete.data.upload.UploadInterruptedException;
+import de.westnordost.streetcomplete.util.RateLimiter;
 import de.westnordost.streetcomplete.util.SlippyMapMath;
 
 import static de.westnordost.streetcomplete.data.changesets.OpenChangesetsDao.CLOSE_CHANGESETS_AFTER_INACTIVITY_OF;
@@ -46,23 +56,28 @@ public abstract class AOsmQuestChangesetsUpload
 	private final QuestStatisticsDao statisticsDB;
 	private final OpenChangesetsDao openChangesetsDB;
 	private final DownloadedTilesDao downloadedTilesDao;
-	private final Provider<OsmQuestChangeUpload> osmQuestChangeUploadProvider;
+	private final Provider<OsmQuestsBatchUpload> osmQuestsBatchUploadProvider;
 	private final ChangesetAutoCloser changesetAutoCloser;
+	private final RateLimiter rateLimiter;
 
+	// these are accessed from all upload lanes
 	private final List<OsmQuest> createdQuests;
 	private final List<Long> removedQuestIds;
+	private final AtomicInteger commits = new AtomicInteger();
+	private final AtomicInteger obsolete = new AtomicInteger();
+	private final Object listenerLock = new Object();
 	private VisibleQuestListener visibleQuestListener;
 	private OnUploadedChangeListener uploadedChangeListener;
 
 	// The cache is just here so that uploading 500 quests of same quest type does not result in 500 DB requests.
-	private Map<OpenChangesetKey, Long> changesetIdsCache = new HashMap<>();
+	private Map<OpenChangesetKey, Long> changesetIdsCache = new ConcurrentHashMap<>();
 
 	public AOsmQuestChangesetsUpload(
 		MapDataDao osmDao, AOsmQuestDao questDB, MergedElementDao elementDB,
 		ElementGeometryDao elementGeometryDB, QuestStatisticsDao statisticsDB,
 		OpenChangesetsDao openChangesetsDB, DownloadedTilesDao downloadedTilesDao,
-		Provider<OsmQuestChangeUpload> osmQuestChangeUploadProvider,
-		ChangesetAutoCloser changesetAutoCloser)
+		Provider<OsmQuestsBatchUpload> osmQuestsBatchUploadProvider,
+		ChangesetAutoCloser changesetAutoCloser, RateLimiter rateLimiter)
 	{
 		this.osmDao = osmDao;
 		this.questDB = questDB;
@@ -71,15 +86,19 @@ public abstract class AOsmQuestChangesetsUpload
 		this.elementGeometryDB = elementGeometryDB;
 		this.openChangesetsDB = openChangesetsDB;
 		this.downloadedTilesDao = downloadedTilesDao;
-		this.osmQuestChangeUploadProvider = osmQuestChangeUploadProvider;
+		this.osmQuestsBatchUploadProvider = osmQuestsBatchUploadProvider;
 		this.changesetAutoCloser = changesetAutoCloser;
-		createdQuests = new ArrayList<>();
-		removedQuestIds = new ArrayList<>();
+		this.rateLimiter = rateLimiter;
+		createdQuests = Collections.synchronizedList(new ArrayList<>());
+		removedQuestIds = Collections.synchronizedList(new ArrayList<>());
 	}
 
-	public synchronized void setProgressListener(OnUploadedChangeListener uploadedChangeListener)
+	public void setProgressListener(OnUploadedChangeListener uploadedChangeListener)
 	{
-		this.uploadedChangeListener = uploadedChangeListener;
+		synchronized (listenerLock)
+		{
+			this.uploadedChangeListener = uploadedChangeListener;
+		}
 	}
 
 	public synchronized void setVisibleQuestListener(VisibleQuestListener visibleQuestListener)
@@ -89,38 +108,149 @@ public abstract class AOsmQuestChangesetsUpload
 
 	public synchronized void upload(AtomicBoolean cancelState)
 	{
-		int commits = 0, obsolete = 0;
-		changesetIdsCache = new HashMap<>();
+		commits.set(0);
+		obsolete.set(0);
+		changesetIdsCache = new ConcurrentHashMap<>();
 		createdQuests.clear();
 		removedQuestIds.clear();
 
-		HashSet<OsmElementQuestType> uploadedQuestTypes = new HashSet<>();
+		Set<OsmElementQuestType> uploadedQuestTypes = Collections.synchronizedSet(new HashSet<>());
 
+		// all quests that go into the same changeset are uploaded together in batches
+		Map<OpenChangesetKey, List<OsmQuest>> questsByChangeset = new LinkedHashMap<>();
 		for(OsmQuest quest : questDB.getAll(null, QuestStatus.ANSWERED))
 		{
-			if(cancelState.get()) break; // break so that the unreferenced stuff is deleted still
+			if(cancelState.get()) break;
+
+			OpenChangesetKey key = new OpenChangesetKey(
+				quest.getOsmElementQuestType().getClass().getSimpleName(), quest.getChangesSource());
+			List<OsmQuest> quests = questsByChangeset.get(key);
+			if(quests == null)
+			{
+				quests = new ArrayList<>();
+				questsByChangeset.put(key, quests);
+			}
+			quests.add(quest);
+		}
+
+		List<Runnable> lanes = new ArrayList<>();
+		for(List<List<OsmQuest>> changesets : getIndependentLanes(questsByChangeset.values()))
+		{
+			lanes.add(() ->
+			{
+				for (List<OsmQuest> quests : changesets)
+				{
+					uploadChangeset(quests, cancelState, uploadedQuestTypes);
+				}
+			});
+		}
+		new UploadExecutor(ApplicationConstants.MAX_CONCURRENT_UPLOADS).run(lanes);
+
+		finish(uploadedQuestTypes);
+	}
+
+	/** Changesets are independent of each other unless they contain quests on the same element:
+	 *  Those would be uploaded based on the same version of the element, so the later upload would
+	 *  always run into a conflict. So, changesets that share any element are put into the same
+	 *  lane, in which they are uploaded one after another.
+	 *
+	 *  @return the given changesets grouped into lanes that can be uploaded concurrently */
+	static List<List<List<OsmQuest>>> getIndependentLanes(Collection<List<OsmQuest>> changesets)
+	{
+		Map<OsmElementKey, List<List<OsmQuest>>> laneByElement = new HashMap<>();
+		for (List<OsmQuest> changeset : changesets)
+		{
+			List<List<OsmQuest>> lane = new ArrayList<>();
+			lane.add(changeset);
+			for (OsmQuest quest : changeset)
+			{
+				List<List<OsmQuest>> otherLane = laneByElement.get(getElementKey(quest));
+				if(otherLane != null && otherLane != lane)
+				{
+					// merge into the other lane
+					otherLane.addAll(lane);
+					for (List<OsmQuest> laneChangeset : lane)
+					{
+						for (OsmQuest laneQuest : laneChangeset)
+						{
+							laneByElement.put(getElementKey(laneQuest), otherLane);
+						}
+					}
+					lane = otherLane;
+				}
+				else
+				{
+					laneByElement.put(getElementKey(quest), lane);
+				}
+			}
+		}
+
+		// in the order of the first changeset of each lane
+		Set<List<List<OsmQuest>>> addedLanes = Collections.newSetFromMap(new IdentityHashMap<>());
+		List<List<List<OsmQuest>>> result = new ArrayList<>();
+		for (List<OsmQuest> changeset : changesets)
+		{
+			List<List<OsmQuest>> lane = laneByElement.get(getElementKey(changeset.get(0)));
+			if(addedLanes.add(lane)) result.add(lane);
+		}
+		return result;
+	}
+
+	private static OsmElementKey getElementKey(OsmQuest quest)
+	{
+		return new OsmElementKey(quest.getElementType(), quest.getElementId());
+	}
+
+	/** @param quests quests that all belong into the same changeset */
+	private void uploadChangeset(List<OsmQuest> quests, AtomicBoolean cancelState,
+		Set<OsmElementQuestType> uploadedQuestTypes)
+	{
+		for(int i = 0; i < quests.size(); i += ApplicationConstants.MAX_QUESTS_PER_DIFF_UPLOAD)
+		{
+			// return so that the unreferenced stuff is deleted still
+			if(cancelState.get()) return;
 
-			// was deleted while trying to upload another quest
-			if(removedQuestIds.contains(quest.getId())) continue;
+			List<OsmQuest> batch = new ArrayList<>();
+			int end = Math.min(quests.size(), i + ApplicationConstants.MAX_QUESTS_PER_DIFF_UPLOAD);
+			for (OsmQuest quest : quests.subList(i, end))
+			{
+				// was deleted while trying to upload another quest
+				if(!removedQuestIds.contains(quest.getId())) batch.add(quest);
+			}
+			if(batch.isEmpty()) continue;
 
-			long changesetId = getChangesetIdOrCreate(quest.getOsmElementQuestType(), quest.getChangesSource());
-			OsmQuestChangeUpload.UploadResult uploadResult = uploadAndHandleChangesetConflict(changesetId, quest);
+			OsmQuestsBatchUpload.UploadResult uploadResult = uploadAndHandleChangesetConflict(batch);
 			createdQuests.addAll(uploadResult.createdQuests);
 			removedQuestIds.addAll(uploadResult.removedQuestIds);
-			if (uploadResult.success)
+			for (OsmQuest quest : uploadResult.uploadedQuests)
 			{
 				uploadedQuestTypes.add(quest.getOsmElementQuestType());
-				if(uploadedChangeListener != null) uploadedChangeListener.onUploaded();
 				statisticsDB.addOne(quest.getType().getClass().getSimpleName());
-				commits++;
+				commits.incrementAndGet();
 			}
-			else
+			for (OsmQuest quest : uploadResult.discardedQuests)
 			{
-				if(uploadedChangeListener != null) uploadedChangeListener.onDiscarded();
-				obsolete++;
+				obsolete.incrementAndGet();
 				invalidateAreaAroundQuest(quest);
 			}
+			notifyUploaded(uploadResult.uploadedQuests.size(), uploadResult.discardedQuests.size());
+		}
+	}
+
+	/** The listener is called from the different lanes but should not need to care about that */
+	private void notifyUploaded(int uploaded, int discarded)
+	{
+		synchronized (listenerLock)
+		{
+			if(uploadedChangeListener == null) return;
+			for (int i = 0; i < uploaded; ++i) uploadedChangeListener.onUploaded();
+			for (int i = 0; i < discarded; ++i) uploadedChangeListener.onDiscarded();
 		}
+	}
+
+	private void finish(Set<OsmElementQuestType> uploadedQuestTypes)
+	{
+		int commits = this.commits.get(), obsolete = this.obsolete.get();
 
 		cleanUp(uploadedQuestTypes);
 
@@ -159,23 +289,36 @@ public abstract class AOsmQuestChangesetsUpload
 		}
 	}
 
-	private OsmQuestChangeUpload.UploadResult uploadAndHandleChangesetConflict(long changesetId, OsmQuest quest)
+	/** @param quests quests that all belong into the same changeset */
+	private OsmQuestsBatchUpload.UploadResult uploadAndHandleChangesetConflict(List<OsmQuest> quests)
 	{
+		OsmElementQuestType questType = quests.get(0).getOsmElementQuestType();
+		String source = quests.get(0).getChangesSource();
+
+		long changesetId = getChangesetIdOrCreate(questType, source);
+		OsmQuestsBatchUpload batchUpload = osmQuestsBatchUploadProvider.get();
 		try
 		{
-			return osmQuestChangeUploadProvider.get().upload(changesetId, quest, shouldCheckForQuestApplicability());
+			return batchUpload.upload(changesetId, quests, shouldCheckForQuestApplicability());
 		}
 		catch (OsmConflictException e)
 		{
-			OsmElementQuestType questType = quest.getOsmElementQuestType();
-
-			long newChangesetId = createChangeset(questType, quest.getChangesSource());
-			OpenChangesetKey key = new OpenChangesetKey(questType.getClass().getSimpleName(), quest.getChangesSource());
+			long newChangesetId = createChangeset(questType, source);
+			OpenChangesetKey key = new OpenChangesetKey(questType.getClass().getSimpleName(), source);
 			changesetIdsCache.put(key, newChangesetId);
 
+			OsmQuestsBatchUpload.UploadResult result = batchUpload.getResult();
+			List<OsmQuest> remainingQuests = new ArrayList<>();
+			for (OsmQuest quest : quests)
+			{
+				if(!result.isHandled(quest)) remainingQuests.add(quest);
+			}
+
 			// try again with new created changeset. If this still throws an exception, it is
 			// likely a programming error in this code
-			return osmQuestChangeUploadProvider.get().upload(newChangesetId, quest, shouldCheckForQuestApplicability());
+			result.addAll(osmQuestsBatchUploadProvider.get().upload(
+				newChangesetId, remainingQuests, shouldCheckForQuestApplicability()));
+			return result;
 		}
 	}
 
@@ -204,6 +347,8 @@ public abstract class AOsmQuestChangesetsUpload
 
 		for (OpenChangesetInfo info : openChangesetsDB.getAll())
 		{
+			// not in the try block: the changeset must stay in the database if it was not closed
+			if(!rateLimiter.acquire()) throw new UploadInterruptedException();
 			try
 			{
 				osmDao.closeChangeset(info.changesetId);
@@ -247,6 +392,7 @@ public abstract class AOsmQuestChangesetsUpload
 	private long createChangeset(OsmElementQuestType questType, String source)
 	{
 		OpenChangesetKey key = new OpenChangesetKey(questType.getClass().getSimpleName(), source);
+		if(!rateLimiter.acquire()) throw new UploadInterruptedException();
 		long changesetId = osmDao.openChangeset(createChangesetTags(questType, source));
 		openChangesetsDB.replace(key, changesetId);
 		return changesetId;
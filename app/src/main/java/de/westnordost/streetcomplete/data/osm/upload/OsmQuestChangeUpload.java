@@ -30,6 +30,8 @@ import de.westnordost.streetcomplete.data.osm.download.ElementGeometryCreator;
 import de.westnordost.streetcomplete.data.osm.persist.AOsmQuestDao;
 import de.westnordost.streetcomplete.data.osm.persist.ElementGeometryDao;
 import de.westnordost.streetcomplete.data.osm.persist.MergedElementDao;
+import de.westnordost.streetcomplete.data.upload.UploadInterruptedException;
+import de.westnordost.streetcomplete.util.RateLimiter;
 import de.westnordost.streetcomplete.util.SphericalEarthMath;
 
 import static java.net.HttpURLConnection.HTTP_CONFLICT;
@@ -44,6 +46,7 @@ public class OsmQuestChangeUpload
 	private final ElementGeometryDao elementGeometryDB;
 	private final ElementGeometryCreator elementGeometryCreator;
 	private final OsmQuestGiver questGiver;
+	private final RateLimiter rateLimiter;
 
 	private boolean called = false;
 	private OsmQuest quest;
@@ -57,7 +60,7 @@ public class OsmQuestChangeUpload
 	@Inject public OsmQuestChangeUpload(
 		MapDataDao osmDao, AOsmQuestDao questDB, MergedElementDao elementDB,
 		ElementGeometryDao elementGeometryDB, ElementGeometryCreator elementGeometryCreator,
-		OsmQuestGiver questGiver)
+		OsmQuestGiver questGiver, RateLimiter rateLimiter)
 	{
 		this.osmDao = osmDao;
 		this.questDB = questDB;
@@ -65,6 +68,7 @@ public class OsmQuestChangeUpload
 		this.elementGeometryDB = elementGeometryDB;
 		this.questGiver = questGiver;
 		this.elementGeometryCreator = elementGeometryCreator;
+		this.rateLimiter = rateLimiter;
 	}
 
 	public static class UploadResult
@@ -130,6 +134,7 @@ public class OsmQuestChangeUpload
 			if(element.getVersion() < 0)
 				throw new OsmConflictException(HTTP_CONFLICT, "Conflict", "Negative version is invalid");
 
+			if(!rateLimiter.acquire()) throw new UploadInterruptedException();
 			osmDao.uploadChanges(changesetId, Collections.singleton(elementWithChangesApplied), diffElement ->
 			{
 				if(diffElement.clientId == elementWithChangesApplied.getId())
@@ -194,7 +199,7 @@ public class OsmQuestChangeUpload
 		return copy;
 	}
 
-	private static Element copyElement(Element e, int newVersion)
+	static Element copyElement(Element e, int newVersion)
 	{
 		if(e == null) return null;
 		Map<String,String> tagsCopy = new HashMap<>();
@@ -274,7 +279,7 @@ public class OsmQuestChangeUpload
 		return questIsApplicableToElement == null || questIsApplicableToElement;
 	}
 
-	private boolean isGeometrySubstantiallyDifferent(Element element, Element newElement)
+	static boolean isGeometrySubstantiallyDifferent(Element element, Element newElement)
 	{
 		if(element instanceof Node)
 			return isNodeGeometrySubstantiallyDifferent((Node) element, (Node) newElement);
@@ -285,7 +290,7 @@ public class OsmQuestChangeUpload
 		return false;
 	}
 
-	private boolean isNodeGeometrySubstantiallyDifferent(Node node, Node newNode)
+	private static boolean isNodeGeometrySubstantiallyDifferent(Node node, Node newNode)
 	{
 		/* Moving the node a distance beyond what would pass as adjusting the position within a
 		   building counts as substantial change. Also, the maximum distance should be not (much)
@@ -294,7 +299,7 @@ public class OsmQuestChangeUpload
 		return distance > 20;
 	}
 
-	private boolean isWayGeometrySubstantiallyDifferent(Way way, Way newWay)
+	private static boolean isWayGeometrySubstantiallyDifferent(Way way, Way newWay)
 	{
 		/* if the first or last node is different, it means that the way has either been extended or
 		   shortened at one end, which is counted as being substantial:
@@ -315,7 +320,7 @@ public class OsmQuestChangeUpload
 		return false;
 	}
 
-	private boolean isRelationGeometrySubstantiallyDifferent(Relation relation, Relation newRelation)
+	private static boolean isRelationGeometrySubstantiallyDifferent(Relation relation, Relation newRelation)
 	{
 		/* a relation is counted as substantially different, if any member changed, even if just
 		   the order changed because for some relations, the order has an important meaning */
@@ -353,6 +358,7 @@ public class OsmQuestChangeUpload
 
 	private Element getElementFromServer(Element.Type elementType, long id)
 	{
+		if(!rateLimiter.acquire()) throw new UploadInterruptedException();
 		switch(elementType)
 		{
 			case NODE:     return osmDao.getNode(id);
@@ -10,6 +10,7 @@ import de.westnordost.streetcomplete.data.osm.persist.OsmQuestDao;
 import de.westnordost.streetcomplete.data.statistics.QuestStatisticsDao;
 import de.westnordost.osmapi.map.MapDataDao;
 import de.westnordost.streetcomplete.data.tiles.DownloadedTilesDao;
+import de.westnordost.streetcomplete.util.RateLimiter;
 
 public class OsmQuestChangesetsUpload extends AOsmQuestChangesetsUpload
 {
@@ -17,11 +18,11 @@ public class OsmQuestChangesetsUpload extends AOsmQuestChangesetsUpload
 		MapDataDao osmDao, OsmQuestDao questDB, MergedElementDao elementDB,
 		ElementGeometryDao elementGeometryDB, QuestStatisticsDao statisticsDB,
 		OpenChangesetsDao openChangesetsDB, DownloadedTilesDao downloadedTilesDao,
-		Provider<OsmQuestChangeUpload> osmQuestChangeUploadProvider,
-		ChangesetAutoCloser changesetAutoCloser)
+		Provider<OsmQuestsBatchUpload> osmQuestsBatchUploadProvider,
+		ChangesetAutoCloser changesetAutoCloser, RateLimiter rateLimiter)
 	{
 		super(osmDao, questDB, elementDB, elementGeometryDB, statisticsDB, openChangesetsDB,
-			downloadedTilesDao, osmQuestChangeUploadProvider, changesetAutoCloser);
+			downloadedTilesDao, osmQuestsBatchUploadProvider, changesetAutoCloser, rateLimiter);
 	}
 
 	@Override protected String getLogTag()
@@ -0,0 +1,432 @@
+package de.westnordost.streetcomplete.data.osm.upload;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.inject.Provider;
+
+import de.westnordost.osmapi.common.errors.OsmConflictException;
+import de.westnordost.osmapi.common.errors.OsmNotFoundException;
+import de.westnordost.osmapi.map.MapDataDao;
+import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.streetcomplete.data.QuestStatus;
+import de.westnordost.streetcomplete.data.osm.OsmQuest;
+import de.westnordost.streetcomplete.data.osm.OsmQuestGiver;
+import de.westnordost.streetcomplete.data.osm.download.ElementGeometryCreator;
+import de.westnordost.streetcomplete.data.osm.persist.AOsmQuestDao;
+import de.westnordost.streetcomplete.data.osm.persist.ElementGeometryDao;
+import de.westnordost.streetcomplete.data.osm.persist.MergedElementDao;
+import de.westnordost.streetcomplete.data.osm.persist.OsmElementKey;
+import de.westnordost.streetcomplete.data.upload.UploadInterruptedException;
+import de.westnordost.streetcomplete.util.RateLimiter;
+
+/** Uploads the changes of many quests in one diff (osmChange) instead of one diff per quest.
+ *
+ *  Before anything is uploaded, the current versions of all the elements are fetched in one
+ *  request per element type and the local data is brought up to date. Quests that cannot be solved
+ *  anymore on the current version of their element are dropped right there, the others are rebased
+ *  onto it. So, even after a long time offline, the upload itself usually does not run into
+ *  conflicts that would need to be resolved element by element.
+ *
+ *  The changes of all quests on the same element are merged into one modification of that
+ *  element. If the server reports a conflict for the diff, the batch is split in half and each
+ *  half is uploaded separately, until the conflict is narrowed down to single elements. The quests
+ *  on such an element, as well as those whose changes cannot be applied to the local element in
+ *  the first place, are handed over to the {@link OsmQuestChangeUpload} one by one, which knows
+ *  how to solve or drop them. */
+public class OsmQuestsBatchUpload
+{
+	private static final String TAG = "OsmQuestsBatchUpload";
+
+	private final MapDataDao osmDao;
+	private final AOsmQuestDao questDB;
+	private final MergedElementDao elementDB;
+	private final ElementGeometryDao elementGeometryDB;
+	private final ElementGeometryCreator elementGeometryCreator;
+	private final OsmQuestGiver questGiver;
+	private final Provider<OsmQuestChangeUpload> singleUploadProvider;
+	private final RateLimiter rateLimiter;
+
+	private boolean called = false;
+	private long changesetId;
+	private boolean shouldCheckForQuestApplicability;
+
+	private final UploadResult result = new UploadResult();
+
+	public OsmQuestsBatchUpload(
+		MapDataDao osmDao, AOsmQuestDao questDB, MergedElementDao elementDB,
+		ElementGeometryDao elementGeometryDB, ElementGeometryCreator elementGeometryCreator,
+		OsmQuestGiver questGiver, Provider<OsmQuestChangeUpload> singleUploadProvider,
+		RateLimiter rateLimiter)
+	{
+		this.osmDao = osmDao;
+		this.questDB = questDB;
+		this.elementDB = elementDB;
+		this.elementGeometryDB = elementGeometryDB;
+		this.elementGeometryCreator = elementGeometryCreator;
+		this.questGiver = questGiver;
+		this.singleUploadProvider = singleUploadProvider;
+		this.rateLimiter = rateLimiter;
+	}
+
+	public static class UploadResult
+	{
+		public final List<OsmQuest> uploadedQuests = new ArrayList<>();
+		public final List<OsmQuest> discardedQuests = new ArrayList<>();
+		public final List<OsmQuest> createdQuests = new ArrayList<>();
+		public final List<Long> removedQuestIds = new ArrayList<>();
+
+		boolean isHandled(OsmQuest quest)
+		{
+			return uploadedQuests.contains(quest) || discardedQuests.contains(quest) ||
+				removedQuestIds.contains(quest.getId());
+		}
+
+		void addAll(UploadResult other)
+		{
+			uploadedQuests.addAll(other.uploadedQuests);
+			discardedQuests.addAll(other.discardedQuests);
+			createdQuests.addAll(other.createdQuests);
+			removedQuestIds.addAll(other.removedQuestIds);
+		}
+	}
+
+	/** @return what has been uploaded so far. After an OsmConflictException has been thrown by
+	 *          upload, the quests not contained in here still need to be uploaded */
+	public UploadResult getResult()
+	{
+		return result;
+	}
+
+	/** Upload the changes of the given quests, which must all belong into the given changeset
+	 *
+	 *  @throws OsmConflictException if the changeset has been closed in the meantime */
+	public synchronized UploadResult upload(
+		long changesetId, List<OsmQuest> quests, boolean shouldCheckForQuestApplicability)
+	{
+		if(called) throw new IllegalStateException("This is a single-use object");
+		called = true;
+
+		this.changesetId = changesetId;
+		this.shouldCheckForQuestApplicability = shouldCheckForQuestApplicability;
+
+		Map<OsmElementKey, List<OsmQuest>> questsByElement = new LinkedHashMap<>();
+		for (OsmQuest quest : quests)
+		{
+			OsmElementKey key = new OsmElementKey(quest.getElementType(), quest.getElementId());
+			List<OsmQuest> questsOfElement = questsByElement.get(key);
+			if(questsOfElement == null)
+			{
+				questsOfElement = new ArrayList<>(1);
+				questsByElement.put(key, questsOfElement);
+			}
+			questsOfElement.add(quest);
+		}
+
+		Map<OsmElementKey, Element> elements = getUpToDateElements(questsByElement);
+
+		List<ElementChanges> batch = new ArrayList<>(questsByElement.size());
+		List<OsmQuest> singleQuests = new ArrayList<>();
+		for (Map.Entry<OsmElementKey, List<OsmQuest>> entry : questsByElement.entrySet())
+		{
+			// all quests for this element have been dropped
+			if(entry.getValue().isEmpty()) continue;
+
+			Element element = elements.get(entry.getKey());
+			Element elementWithChangesApplied = changesApplied(element, entry.getValue());
+			if(elementWithChangesApplied != null)
+			{
+				batch.add(new ElementChanges(elementWithChangesApplied, entry.getValue()));
+			}
+			else
+			{
+				singleQuests.addAll(entry.getValue());
+			}
+		}
+
+		uploadBatch(batch);
+		// these need to be looked at closer
+		uploadSingly(singleQuests);
+
+		return result;
+	}
+
+	/** Updates the local elements to the current versions on the server. Quests that are dropped
+	 *  because of that are removed from the given lists.
+	 *
+	 *  @return the current version of each element that exists locally */
+	private Map<OsmElementKey, Element> getUpToDateElements(Map<OsmElementKey, List<OsmQuest>> questsByElement)
+	{
+		Map<OsmElementKey, Element> elements = new HashMap<>();
+		Map<Element.Type, List<Long>> idsByType = new HashMap<>();
+		for (OsmElementKey key : questsByElement.keySet())
+		{
+			Element element = elementDB.get(key.getElementType(), key.getElementId());
+			// not available locally: leave this case to the single upload
+			if(element == null) continue;
+			elements.put(key, element);
+
+			List<Long> ids = idsByType.get(key.getElementType());
+			if(ids == null)
+			{
+				ids = new ArrayList<>();
+				idsByType.put(key.getElementType(), ids);
+			}
+			ids.add(key.getElementId());
+		}
+
+		List<Element> updatedElements = new ArrayList<>();
+		List<ElementGeometryDao.Row> updatedGeometries = new ArrayList<>();
+
+		for (Map.Entry<Element.Type, List<Long>> entry : idsByType.entrySet())
+		{
+			Map<Long, Element> serverElements = getElementsFromServer(entry.getKey(), entry.getValue());
+			// could not be fetched together: conflicts will have to be solved on upload then
+			if(serverElements == null) continue;
+
+			for (long id : entry.getValue())
+			{
+				OsmElementKey key = new OsmElementKey(entry.getKey(), id);
+				Element element = elements.get(key);
+				Element newElement = serverElements.get(id);
+				List<OsmQuest> quests = questsByElement.get(key);
+
+				if(newElement == null || newElement.isDeleted())
+				{
+					Log.d(TAG, "Dropping quests for " + getElementStringForLog(key) +
+						" because the element has been deleted");
+					elements.remove(key);
+					deleteElement(key);
+					discard(quests);
+				}
+				else if(newElement.getVersion() != element.getVersion())
+				{
+					elements.put(key, newElement);
+					updatedElements.add(newElement);
+
+					if(OsmQuestChangeUpload.isGeometrySubstantiallyDifferent(element, newElement))
+					{
+						Log.d(TAG, "Dropping quests for " + getElementStringForLog(key) +
+							" because the element's geometry changed substantially");
+						removeQuestsForElement(key);
+						updatedGeometries.add(new ElementGeometryDao.Row(key.getElementType(), id,
+							elementGeometryCreator.create(newElement)));
+						discard(quests);
+					}
+					else
+					{
+						dropInapplicableQuests(quests, newElement);
+					}
+				}
+			}
+		}
+
+		if(!updatedElements.isEmpty())
+		{
+			elementDB.putAll(updatedElements);
+			elementGeometryDB.putAll(updatedGeometries);
+			for (Element element : updatedElements)
+			{
+				OsmQuestGiver.QuestUpdates questUpdates = questGiver.updateQuests(element);
+				result.createdQuests.addAll(questUpdates.createdQuests);
+				result.removedQuestIds.addAll(questUpdates.removedQuestIds);
+			}
+		}
+
+		return elements;
+	}
+
+	/** @return the elements of the given type and ids that exist on the server by id or null if
+	 *          they could not be fetched */
+	private Map<Long, Element> getElementsFromServer(Element.Type type, Collection<Long> ids)
+	{
+		List<? extends Element> elements;
+		try
+		{
+			if(!rateLimiter.acquire()) throw new UploadInterruptedException();
+			switch (type)
+			{
+				case NODE:     elements = osmDao.getNodes(ids);     break;
+				case WAY:      elements = osmDao.getWays(ids);      break;
+				case RELATION: elements = osmDao.getRelations(ids); break;
+				default:       return null;
+			}
+		}
+		catch (OsmNotFoundException e)
+		{
+			return null;
+		}
+		Map<Long, Element> result = new HashMap<>(elements.size());
+		for (Element element : elements)
+		{
+			result.put(element.getId(), element);
+		}
+		return result;
+	}
+
+	/** Drops the quests that are no longer applicable to the updated element (#720) */
+	private void dropInapplicableQuests(List<OsmQuest> quests, Element element)
+	{
+		if(!shouldCheckForQuestApplicability) return;
+
+		List<OsmQuest> inapplicableQuests = new ArrayList<>();
+		for (OsmQuest quest : quests)
+		{
+			Boolean isApplicable = quest.getOsmElementQuestType().isApplicableTo(element);
+			if(isApplicable != null && !isApplicable)
+			{
+				Log.d(TAG, "Dropping quest " + quest.getType().getClass().getSimpleName() + " for " +
+					getElementStringForLog(new OsmElementKey(element.getType(), element.getId())) +
+					" because the quest is no longer applicable to the element");
+				// #812 conflicting quests may not reside in the database
+				questDB.delete(quest.getId());
+				inapplicableQuests.add(quest);
+			}
+		}
+		quests.removeAll(inapplicableQuests);
+		discard(inapplicableQuests);
+	}
+
+	private static String getElementStringForLog(OsmElementKey key)
+	{
+		return key.getElementType().name().toLowerCase(Locale.US) + " #" + key.getElementId();
+	}
+
+	/** Adds the given quests to the discarded ones and clears the list */
+	private void discard(List<OsmQuest> quests)
+	{
+		result.discardedQuests.addAll(quests);
+		quests.clear();
+	}
+
+	private void deleteElement(OsmElementKey key)
+	{
+		elementDB.delete(key.getElementType(), key.getElementId());
+		elementGeometryDB.delete(key.getElementType(), key.getElementId());
+		removeQuestsForElement(key);
+	}
+
+	private void removeQuestsForElement(OsmElementKey key)
+	{
+		List<Long> ids = questDB.getAllIds(key.getElementType(), key.getElementId());
+		questDB.deleteAll(ids);
+		result.removedQuestIds.addAll(ids);
+	}
+
+	/** @return a copy of the element with the changes of all the given quests applied or null if
+	 *          that is not possible without further ado */
+	private static Element changesApplied(Element element, List<OsmQuest> quests)
+	{
+		// deleted in the meantime or invalid version (see #1408)
+		if(element == null || element.getVersion() < 0) return null;
+
+		Element copy = OsmQuestChangeUpload.copyElement(element, element.getVersion());
+		try
+		{
+			for (OsmQuest quest : quests)
+			{
+				quest.getChanges().applyTo(copy.getTags());
+			}
+		}
+		catch (IllegalStateException | IllegalArgumentException e)
+		{
+			return null;
+		}
+		return copy;
+	}
+
+	private void uploadBatch(List<ElementChanges> batch)
+	{
+		if(batch.isEmpty()) return;
+
+		List<Element> elements = new ArrayList<>(batch.size());
+		for (ElementChanges changes : batch)
+		{
+			elements.add(changes.element);
+		}
+
+		Map<OsmElementKey, Integer> newVersions = new HashMap<>();
+		try
+		{
+			if(!rateLimiter.acquire()) throw new UploadInterruptedException();
+			osmDao.uploadChanges(changesetId, elements, diffElement ->
+			{
+				/* It is not necessary (yet) to handle updating the element's id because
+				   StreetComplete does not add or delete elements */
+				newVersions.put(new OsmElementKey(diffElement.type, diffElement.clientId),
+					diffElement.serverVersion);
+			});
+		}
+		catch (OsmConflictException e)
+		{
+			if(batch.size() == 1)
+			{
+				uploadSingly(batch.get(0).quests);
+			}
+			else
+			{
+				Log.d(TAG, "Conflict while uploading " + batch.size() + " elements, splitting up");
+				int half = batch.size() / 2;
+				uploadBatch(batch.subList(0, half));
+				uploadBatch(batch.subList(half, batch.size()));
+			}
+			return;
+		}
+
+		for (ElementChanges changes : batch)
+		{
+			Element element = changes.element;
+			Integer newVersion = newVersions.get(new OsmElementKey(element.getType(), element.getId()));
+			Element updatedElement = OsmQuestChangeUpload.copyElement(element,
+				newVersion != null ? newVersion : element.getVersion() + 1);
+
+			// save with new version when persisting to DB
+			elementDB.put(updatedElement);
+			OsmQuestGiver.QuestUpdates questUpdates = questGiver.updateQuests(updatedElement);
+			result.createdQuests.addAll(questUpdates.createdQuests);
+			result.removedQuestIds.addAll(questUpdates.removedQuestIds);
+
+			for (OsmQuest quest : changes.quests)
+			{
+				quest.setStatus(QuestStatus.CLOSED);
+				questDB.update(quest);
+				result.uploadedQuests.add(quest);
+			}
+		}
+	}
+
+	private void uploadSingly(List<OsmQuest> quests)
+	{
+		for (OsmQuest quest : quests)
+		{
+			// was deleted while trying to upload another quest
+			if(result.removedQuestIds.contains(quest.getId())) continue;
+
+			OsmQuestChangeUpload.UploadResult singleResult = singleUploadProvider.get()
+				.upload(changesetId, quest, shouldCheckForQuestApplicability);
+			result.createdQuests.addAll(singleResult.createdQuests);
+			result.removedQuestIds.addAll(singleResult.removedQuestIds);
+			if(singleResult.success) result.uploadedQuests.add(quest);
+			else                     result.discardedQuests.add(quest);
+		}
+	}
+
+	private static class ElementChanges
+	{
+		final Element element;
+		final List<OsmQuest> quests;
+
+		ElementChanges(Element element, List<OsmQuest> quests)
+		{
+			this.element = element;
+			this.quests = quests;
+		}
+	}
+}
@@ -12,6 +12,7 @@ import de.westnordost.streetcomplete.data.osm.persist.MergedElementDao;
 import de.westnordost.streetcomplete.data.osm.persist.UndoOsmQuestDao;
 import de.westnordost.streetcomplete.data.statistics.QuestStatisticsDao;
 import de.westnordost.streetcomplete.data.tiles.DownloadedTilesDao;
+import de.westnordost.streetcomplete.util.RateLimiter;
 
 public class UndoOsmQuestChangesetsUpload extends AOsmQuestChangesetsUpload
 {
@@ -19,11 +20,11 @@ public class UndoOsmQuestChangesetsUpload extends AOsmQuestChangesetsUpload
 			MapDataDao osmDao, UndoOsmQuestDao questDB, MergedElementDao elementDB,
 			ElementGeometryDao elementGeometryDB, QuestStatisticsDao statisticsDB,
 			OpenChangesetsDao openChangesetsDB, DownloadedTilesDao downloadedTilesDao,
-			@Named("undo") Provider<OsmQuestChangeUpload> osmQuestChangeUploadProvider,
-			ChangesetAutoCloser changesetAutoCloser)
+			@Named("undo") Provider<OsmQuestsBatchUpload> osmQuestsBatchUploadProvider,
+			ChangesetAutoCloser changesetAutoCloser, RateLimiter rateLimiter)
 	{
 		super(osmDao, questDB, elementDB, elementGeometryDB, statisticsDB, openChangesetsDB,
-			downloadedTilesDao, osmQuestChangeUploadProvider, changesetAutoCloser);
+			downloadedTilesDao, osmQuestsBatchUploadProvider, changesetAutoCloser, rateLimiter);
 	}
 
 	@Override protected String getLogTag()
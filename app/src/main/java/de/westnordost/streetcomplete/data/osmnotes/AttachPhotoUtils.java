@@ -6,28 +6,23 @@ import android.graphics.Matrix;
 import androidx.exifinterface.media.ExifInterface;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.List;
 
-import de.westnordost.streetcomplete.util.ImageUploader;
-
 public class AttachPhotoUtils
 {
-	public static String uploadAndGetAttachedPhotosText(ImageUploader imageUploader, List<String> imagePaths)
+	public static String getAttachedPhotosText(List<String> photoUrls)
 	{
-		if(imagePaths != null && !imagePaths.isEmpty())
+		if (photoUrls != null && !photoUrls.isEmpty())
 		{
-			List<String> urls = imageUploader.upload(imagePaths);
-			if (urls != null && !urls.isEmpty())
+			StringBuilder sb = new StringBuilder("\n\nAttached photo(s):");
+			for(String link : photoUrls)
 			{
-				StringBuilder sb = new StringBuilder("\n\nAttached photo(s):");
-				for(String link : urls)
-				{
-					sb.append("\n");
-					sb.append(link);
-				}
-				return sb.toString();
+				sb.append("\n");
+				sb.append(link);
 			}
+			return sb.toString();
 		}
 		return "";
 	}
@@ -74,28 +69,66 @@ public class AttachPhotoUtils
 			inSampleSize *= 2;
 		}
 
-		float desiredScale = (float) maxWidth / srcWidth;
-
-		// Decode with inSampleSize
+		// Decode with inSampleSize and let the decoder scale the rest of the way down in the same
+		// pass instead of creating another scaled copy of the (sampled) bitmap afterwards
 		options.inJustDecodeBounds = false;
 		options.inDither = false;
 		options.inSampleSize = inSampleSize;
-		options.inScaled = false;
+		options.inScaled = true;
+		options.inDensity = srcWidth;
+		options.inTargetDensity = maxWidth;
 		options.inPreferredConfig = Bitmap.Config.ARGB_8888;
-		Bitmap sampledSrcBitmap = BitmapFactory.decodeFile(imagePath, options);
+		Bitmap scaledBitmap = BitmapFactory.decodeFile(imagePath, options);
+		if(scaledBitmap == null) return null;
 
-		// Resize & Rotate
+		// Rotate
 		Matrix matrix = getRotationMatrix(imagePath);
-		matrix.postScale(desiredScale, desiredScale);
-		Bitmap result = Bitmap.createBitmap(sampledSrcBitmap, 0, 0, sampledSrcBitmap.getWidth(), sampledSrcBitmap.getHeight(), matrix, true);
+		if(matrix.isIdentity()) return scaledBitmap;
+
+		Bitmap result = Bitmap.createBitmap(scaledBitmap, 0, 0, scaledBitmap.getWidth(), scaledBitmap.getHeight(), matrix, true);
 
-		if(result != sampledSrcBitmap)
+		if(result != scaledBitmap)
 		{
-			sampledSrcBitmap.recycle();
+			scaledBitmap.recycle();
 		}
 		return result;
 	}
 
+	/** Downscales the photo at the given path if it is wider than the given width. The downscaled
+	 *  photo is written to a temporary file first which then replaces the photo, so the photo is
+	 *  never left half-written if this is interrupted.
+	 *  @return whether the photo is (now) not wider than the given width */
+	public static boolean downscaleIfTooWide(String imagePath, int maxWidth, int quality)
+	{
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inJustDecodeBounds = true;
+		BitmapFactory.decodeFile(imagePath, options);
+		if(options.outWidth <= 0) return false;
+		if(options.outWidth <= maxWidth) return true;
+
+		Bitmap bitmap = resize(imagePath, maxWidth);
+		if(bitmap == null) return false;
+
+		File tempFile = new File(imagePath + ".tmp");
+		boolean success;
+		try (FileOutputStream out = new FileOutputStream(tempFile))
+		{
+			success = bitmap.compress(Bitmap.CompressFormat.JPEG, quality, out);
+		}
+		catch (IOException e)
+		{
+			success = false;
+		}
+		finally
+		{
+			bitmap.recycle();
+		}
+
+		if(success) success = tempFile.renameTo(new File(imagePath));
+		if(!success) tempFile.delete();
+		return success;
+	}
+
 	private static Matrix getRotationMatrix(String imagePath)
 	{
 		int orientation = 0;
@@ -19,7 +19,8 @@ import de.westnordost.osmapi.notes.Note;
 import de.westnordost.osmapi.notes.NotesDao;
 import de.westnordost.streetcomplete.data.statistics.QuestStatisticsDao;
 import de.westnordost.streetcomplete.data.upload.OnUploadedChangeListener;
-import de.westnordost.streetcomplete.util.ImageUploader;
+import de.westnordost.streetcomplete.data.upload.UploadInterruptedException;
+import de.westnordost.streetcomplete.util.RateLimiter;
 
 public class CreateNoteUpload
 {
@@ -32,13 +33,14 @@ public class CreateNoteUpload
 	private final MapDataDao mapDataDao;
 	private final OsmNoteQuestType questType;
 	private final QuestStatisticsDao statisticsDB;
-	private final ImageUploader imageUploader;
+	private final NotePhotosUpload photosUpload;
+	private final RateLimiter rateLimiter;
 	private OnUploadedChangeListener uploadedChangeListener;
 
 	@Inject public CreateNoteUpload(
 			CreateNoteDao createNoteDB, NotesDao osmDao, NoteDao noteDB,
 			OsmNoteQuestDao noteQuestDB, MapDataDao mapDataDao, OsmNoteQuestType questType,
-			QuestStatisticsDao statisticsDB, ImageUploader imageUploader)
+			QuestStatisticsDao statisticsDB, NotePhotosUpload photosUpload, RateLimiter rateLimiter)
 	{
 		this.createNoteDB = createNoteDB;
 		this.noteQuestDB = noteQuestDB;
@@ -47,7 +49,8 @@ public class CreateNoteUpload
 		this.mapDataDao = mapDataDao;
 		this.questType = questType;
 		this.statisticsDB = statisticsDB;
-		this.imageUploader = imageUploader;
+		this.photosUpload = photosUpload;
+		this.rateLimiter = rateLimiter;
 	}
 
 	public synchronized void setProgressListener(OnUploadedChangeListener uploadedChangeListener)
@@ -118,7 +121,7 @@ public class CreateNoteUpload
 	private void deleteNote(CreateNote n)
 	{
 		createNoteDB.delete(n.id);
-		AttachPhotoUtils.deleteImages(n.imagePaths);
+		photosUpload.deleteImages(n.imagePaths);
 	}
 
 	private static String getCreateNoteStringForLog(CreateNote n)
@@ -133,6 +136,7 @@ public class CreateNoteUpload
 
 	private Element retrieveElement(CreateNote n)
 	{
+		if(!rateLimiter.acquire()) throw new UploadInterruptedException();
 		switch(n.elementType)
 		{
 			case NODE: return mapDataDao.getNode(n.elementId);
@@ -163,9 +167,10 @@ public class CreateNoteUpload
 	private Note createNote(CreateNote n)
 	{
 		String text = getCreateNoteText(n);
-		text += AttachPhotoUtils.uploadAndGetAttachedPhotosText(imageUploader, n.imagePaths);
+		text += AttachPhotoUtils.getAttachedPhotosText(photosUpload.upload(n.imagePaths));
+		if(!rateLimiter.acquire()) throw new UploadInterruptedException();
 		Note result = osmDao.create(n.position, text);
-		imageUploader.activate(result.id);
+		photosUpload.activate(result.id);
 		return result;
 	}
 
@@ -175,9 +180,10 @@ public class CreateNoteUpload
 		{
 			try
 			{
-				text += AttachPhotoUtils.uploadAndGetAttachedPhotosText(imageUploader, attachedImagePaths);
+				text += AttachPhotoUtils.getAttachedPhotosText(photosUpload.upload(attachedImagePaths));
+				if(!rateLimiter.acquire()) throw new UploadInterruptedException();
 				Note result = osmDao.comment(note.id, text);
-				imageUploader.activate(result.id);
+				photosUpload.activate(result.id);
 				return result;
 			}
 			catch (OsmConflictException e)
@@ -228,6 +234,7 @@ public class CreateNoteUpload
 			}
 		};
 		final int hideClosedNoteAfter = 7;
+		if(!rateLimiter.acquire()) throw new UploadInterruptedException();
 		osmDao.getAll(new BoundingBox(
 				newNote.position.getLatitude(), newNote.position.getLongitude(),
 				newNote.position.getLatitude(), newNote.position.getLongitude()
@@ -0,0 +1,87 @@
+package de.westnordost.streetcomplete.data.osmnotes;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.inject.Inject;
+
+/** Remembers which photos attached to notes have already been uploaded and where to, so that they
+ *  are not uploaded again if the upload of the note itself is aborted */
+public class NotePhotoUploadsDao
+{
+	private final SQLiteOpenHelper dbHelper;
+
+	@Inject public NotePhotoUploadsDao(SQLiteOpenHelper dbHelper)
+	{
+		this.dbHelper = dbHelper;
+	}
+
+	public void put(String path, String url)
+	{
+		SQLiteDatabase db = dbHelper.getWritableDatabase();
+		ContentValues values = new ContentValues(2);
+		values.put(NotePhotoUploadsTable.Columns.PATH, path);
+		values.put(NotePhotoUploadsTable.Columns.URL, url);
+		db.insertWithOnConflict(NotePhotoUploadsTable.NAME, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+	}
+
+	/** @return the url the photo at the given path has been uploaded to or null if it has not been
+	 *          uploaded yet */
+	public String getUrl(String path)
+	{
+		SQLiteDatabase db = dbHelper.getReadableDatabase();
+		String[] cols = {NotePhotoUploadsTable.Columns.URL};
+		String where = NotePhotoUploadsTable.Columns.PATH + " = ?";
+		String[] args = {path};
+
+		try (Cursor cursor = db.query(NotePhotoUploadsTable.NAME, cols, where, args, null, null, null, "1"))
+		{
+			if(!cursor.moveToFirst()) return null;
+			return cursor.getString(0);
+		}
+	}
+
+	/** @return the paths of all photos whose upload is remembered */
+	public List<String> getAllPaths()
+	{
+		SQLiteDatabase db = dbHelper.getReadableDatabase();
+		String[] cols = {NotePhotoUploadsTable.Columns.PATH};
+
+		List<String> result = new ArrayList<>();
+		try (Cursor cursor = db.query(NotePhotoUploadsTable.NAME, cols, null, null, null, null, null))
+		{
+			while (cursor.moveToNext())
+			{
+				result.add(cursor.getString(0));
+			}
+		}
+		return result;
+	}
+
+	public int deleteAll(Collection<String> paths)
+	{
+		SQLiteDatabase db = dbHelper.getWritableDatabase();
+		String where = NotePhotoUploadsTable.Columns.PATH + " = ?";
+		int result = 0;
+		db.beginTransaction();
+		try
+		{
+			for (String path : paths)
+			{
+				result += db.delete(NotePhotoUploadsTable.NAME, where, new String[]{path});
+			}
+			db.setTransactionSuccessful();
+		}
+		finally
+		{
+			db.endTransaction();
+		}
+		return result;
+	}
+}
@@ -0,0 +1,13 @@
+package de.westnordost.streetcomplete.data.osmnotes;
+
+public class NotePhotoUploadsTable
+{
+	public static final String NAME = "note_photo_uploads";
+
+	public static class Columns
+	{
+		public static final String
+				PATH = "path",
+				URL = "url";
+	}
+}
@@ -0,0 +1,141 @@
+package de.westnordost.streetcomplete.data.osmnotes;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import de.westnordost.osmapi.common.errors.OsmConnectionException;
+import de.westnordost.streetcomplete.ApplicationConstants;
+import de.westnordost.streetcomplete.data.upload.UploadExecutor;
+import de.westnordost.streetcomplete.util.ImageUploader;
+
+/** Uploads the photos attached to a note or note comment: The photos are downscaled if necessary
+ *  and uploaded concurrently, each retried a few times if the connection fails.
+ *
+ *  Which photos have already been uploaded is persisted, so if the upload of the note is aborted
+ *  (or the app is killed) in between, they are not uploaded again on the next attempt. */
+public class NotePhotosUpload
+{
+	private static final String TAG = "NotePhotosUpload";
+
+	private final ImageUploader imageUploader;
+	private final NotePhotoUploadsDao photoUploadsDB;
+
+	@Inject public NotePhotosUpload(ImageUploader imageUploader, NotePhotoUploadsDao photoUploadsDB)
+	{
+		this.imageUploader = imageUploader;
+		this.photoUploadsDB = photoUploadsDB;
+	}
+
+	/** @return the urls of the uploaded photos in the same order as the given paths. Photos that
+	 *          do not exist (anymore) or that were rejected by the photo service are left out.
+	 *  @throws OsmConnectionException if not all photos could be uploaded right now. The ones
+	 *          that could are not uploaded again on the next call */
+	public List<String> upload(List<String> imagePaths)
+	{
+		List<String> result = new ArrayList<>();
+		if(imagePaths == null || imagePaths.isEmpty()) return result;
+
+		final String[] urls = new String[imagePaths.size()];
+		List<Runnable> uploads = new ArrayList<>(imagePaths.size());
+		for (int i = 0; i < imagePaths.size(); i++)
+		{
+			final int index = i;
+			final String path = imagePaths.get(i);
+			if(path == null) continue;
+			uploads.add(() -> urls[index] = uploadPhoto(path));
+		}
+		new UploadExecutor(ApplicationConstants.MAX_CONCURRENT_PHOTO_UPLOADS).run(uploads);
+
+		for (String url : urls)
+		{
+			if(url != null) result.add(url);
+		}
+		return result;
+	}
+
+	public void activate(long noteId)
+	{
+		imageUploader.activate(noteId);
+	}
+
+	/** Deletes the given photos and what is remembered about their upload */
+	public void deleteImages(List<String> imagePaths)
+	{
+		if(imagePaths == null) return;
+		AttachPhotoUtils.deleteImages(imagePaths);
+		List<String> paths = new ArrayList<>(imagePaths.size());
+		for (String path : imagePaths)
+		{
+			if(path != null) paths.add(path);
+		}
+		photoUploadsDB.deleteAll(paths);
+	}
+
+	/** Forgets about the uploads of the photos that do not exist anymore, i.e. that have been
+	 *  deleted without going through deleteImages. Otherwise, a new photo that happens to be saved
+	 *  under the same path would not be uploaded but get the url of the old one */
+	public void deleteUploadsOfMissingImages()
+	{
+		List<String> missingPaths = new ArrayList<>();
+		for (String path : photoUploadsDB.getAllPaths())
+		{
+			if(!new File(path).exists()) missingPaths.add(path);
+		}
+		if(missingPaths.isEmpty()) return;
+		int deleted = photoUploadsDB.deleteAll(missingPaths);
+		Log.d(TAG, "Forgot about the uploads of " + deleted + " deleted photos");
+	}
+
+	private String uploadPhoto(String path)
+	{
+		String url = photoUploadsDB.getUrl(path);
+		if(url != null) return url;
+
+		File file = new File(path);
+		if(!file.exists()) return null;
+
+		if(!AttachPhotoUtils.downscaleIfTooWide(path,
+			ApplicationConstants.ATTACH_PHOTO_MAXWIDTH, ApplicationConstants.ATTACH_PHOTO_QUALITY))
+		{
+			Log.w(TAG, "Unable to downscale photo " + path + ", uploading it as it is");
+		}
+
+		url = uploadWithRetries(file);
+		if(url != null) photoUploadsDB.put(path, url);
+		return url;
+	}
+
+	private String uploadWithRetries(File file)
+	{
+		long delay = ApplicationConstants.PHOTO_UPLOAD_RETRY_DELAY;
+		for (int attempt = 1; ; attempt++)
+		{
+			try
+			{
+				return imageUploader.upload(file);
+			}
+			catch (IOException e)
+			{
+				if(attempt >= ApplicationConstants.PHOTO_UPLOAD_ATTEMPTS) throw new OsmConnectionException(e);
+
+				Log.w(TAG, "Upload of photo failed, trying again in " + delay + "ms", e);
+				try
+				{
+					Thread.sleep(delay);
+				}
+				catch (InterruptedException ie)
+				{
+					Thread.currentThread().interrupt();
+					throw new OsmConnectionException(e);
+				}
+				delay *= 2;
+			}
+		}
+	}
+}
@@ -1,83 +1,298 @@
 package de.westnordost.streetcomplete.data.osmnotes;
 
-import android.annotation.SuppressLint;
 import android.util.Log;
 
-import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.inject.Inject;
 
 import de.westnordost.osmapi.user.UserDao;
 import de.westnordost.osmapi.user.UserInfo;
+import de.westnordost.streetcomplete.ApplicationConstants;
 
+/** Downloads the avatars of the given users into the cache directory, each into a file named like
+ *  the user id. It is a cache in that
+ *  <ul>
+ *  <li>avatars that have been checked less than a certain time ago are not checked again</li>
+ *  <li>avatars that are older are revalidated with conditional requests (ETag / Last-Modified),
+ *      so they are only downloaded again if they changed</li>
+ *  <li>the least recently requested avatars are removed once the cache grows too big</li>
+ *  </ul>
+ *  What is known about each avatar for the revalidation is stored in a small file next to it. */
 public class OsmAvatarsDownload
 {
+	private static final String TAG = "OsmAvatarsDownload";
+
+	private static final String META_SUFFIX = ".meta";
+	private static final String
+		META_URL = "url",
+		META_ETAG = "etag",
+		META_LAST_MODIFIED = "last_modified",
+		META_CHECKED = "checked";
+
 	private final UserDao userDao;
 	private final File cacheDir;
+	private final long refreshAfter;
+	private final long maxCacheSize;
 
 	@Inject public OsmAvatarsDownload(UserDao userDao, File cacheDir)
 	{
-		this.userDao = userDao;
-		this.cacheDir = cacheDir;
+		this(userDao, cacheDir, ApplicationConstants.REFRESH_AVATARS_AFTER,
+			ApplicationConstants.MAX_AVATARS_CACHE_SIZE);
 	}
 
-	public void download(Collection<Long> userIds)
+	OsmAvatarsDownload(UserDao userDao, File cacheDir, long refreshAfter, long maxCacheSize)
 	{
-		final Map<Long,String> userAvatars = downloadUserAvatarUrls(userIds);
-
-		downloadUserAvatars(userAvatars);
+		this.userDao = userDao;
+		this.cacheDir = cacheDir;
+		this.refreshAfter = refreshAfter;
+		this.maxCacheSize = maxCacheSize;
 	}
 
-	private void downloadUserAvatars(Map<Long,String> userAvatars)
+	public void download(Collection<Long> userIds)
 	{
 		if(!cacheDir.exists() && !cacheDir.mkdirs())
 		{
-			Log.w("OsmAvatarsDownload", "Unable to create directories for avatars");
+			Log.w(TAG, "Unable to create directories for avatars");
 			return;
 		}
 
-		for (Map.Entry<Long, String> userAvatar : userAvatars.entrySet())
+		long now = System.currentTimeMillis();
+		List<Long> staleUserIds = new ArrayList<>();
+		for (Long userId : userIds)
 		{
-			long userId = userAvatar.getKey();
-			String avatarUrl = userAvatar.getValue();
-			try(InputStream is = new BufferedInputStream(new URL(avatarUrl).openStream()))
+			File avatarFile = getAvatarFile(userId);
+			Properties meta = readMeta(userId);
+			long checked = parseLong(meta.getProperty(META_CHECKED));
+			if(now - checked < refreshAfter && (avatarFile.exists() || !meta.containsKey(META_URL)))
+			{
+				// fresh. Mark as recently used so that it is evicted last
+				if(avatarFile.exists()) avatarFile.setLastModified(now);
+			}
+			else
+			{
+				staleUserIds.add(userId);
+			}
+		}
+
+		if(!staleUserIds.isEmpty())
+		{
+			downloadAll(staleUserIds);
+		}
+		trimToSize();
+	}
+
+	private void downloadAll(List<Long> userIds)
+	{
+		int threadCount = Math.min(userIds.size(), ApplicationConstants.MAX_CONCURRENT_AVATAR_DOWNLOADS);
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try
+		{
+			List<Future<?>> futures = new ArrayList<>(userIds.size());
+			for (Long userId : userIds)
+			{
+				futures.add(executor.submit(() -> downloadAvatar(userId)));
+			}
+			for (int i = 0; i < futures.size(); i++)
 			{
-				File avatarFile = new File(cacheDir, "" + userId);
-				try(FileOutputStream fout = new FileOutputStream(avatarFile))
+				try
+				{
+					futures.get(i).get();
+				}
+				catch (ExecutionException e)
 				{
-					int count;
-					final byte data[] = new byte[1024];
-					while ((count = is.read(data, 0, 1024)) != -1) fout.write(data, 0, count);
+					// avatars are not important enough to let the notes download fail, neither
+					// should one failing avatar keep the others from being downloaded
+					Log.w(TAG, "Unable to download avatar for user id " + userIds.get(i), e.getCause());
 				}
-				Log.i("OsmAvatarsDownload", "Saved file: "+avatarFile.getPath());
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			// all downloads are done at this point unless interrupted
+			executor.shutdownNow();
+		}
+	}
+
+	private void downloadAvatar(long userId)
+	{
+		UserInfo userInfo = userDao.get(userId);
+		String avatarUrl = userInfo != null ? userInfo.profileImageUrl : null;
+
+		Properties meta = readMeta(userId);
+		File avatarFile = getAvatarFile(userId);
+		// a changed avatar has a different url, so the old validators are meaningless
+		if(avatarUrl == null || !avatarUrl.equals(meta.getProperty(META_URL)) || !avatarFile.exists())
+		{
+			meta.remove(META_ETAG);
+			meta.remove(META_LAST_MODIFIED);
+		}
+
+		if(avatarUrl == null)
+		{
+			// the user has no avatar (anymore). Remember that too, so that we don't ask again
+			if(avatarFile.exists()) avatarFile.delete();
+			meta.remove(META_URL);
+		}
+		else
+		{
+			try
+			{
+				fetchAvatar(avatarUrl, avatarFile, meta);
+				meta.setProperty(META_URL, avatarUrl);
 			}
 			catch (IOException e)
 			{
-				Log.w("OsmAvatarsDownload", "Unable to download avatar for user id " + userId);
+				Log.w(TAG, "Unable to download avatar for user id " + userId);
+				return;
 			}
 		}
+		meta.setProperty(META_CHECKED, String.valueOf(System.currentTimeMillis()));
+		writeMeta(userId, meta);
 	}
 
-	private Map<Long,String> downloadUserAvatarUrls(Collection<Long> userIds)
+	private void fetchAvatar(String avatarUrl, File avatarFile, Properties meta) throws IOException
 	{
-		@SuppressLint("UseSparseArrays")
-		final Map<Long,String> userAvatars = new HashMap<>();
-		for (Long userId : userIds)
+		URLConnection connection = new URL(avatarUrl).openConnection();
+		if(connection instanceof HttpURLConnection)
+		{
+			HttpURLConnection httpConnection = (HttpURLConnection) connection;
+			String etag = meta.getProperty(META_ETAG);
+			String lastModified = meta.getProperty(META_LAST_MODIFIED);
+			if(etag != null) httpConnection.setRequestProperty("If-None-Match", etag);
+			if(lastModified != null) httpConnection.setRequestProperty("If-Modified-Since", lastModified);
+
+			int status = httpConnection.getResponseCode();
+			if(status == HttpURLConnection.HTTP_NOT_MODIFIED)
+			{
+				avatarFile.setLastModified(System.currentTimeMillis());
+				return;
+			}
+			if(status != HttpURLConnection.HTTP_OK)
+			{
+				throw new IOException("Error code " + status);
+			}
+			setOrRemove(meta, META_ETAG, httpConnection.getHeaderField("ETag"));
+			setOrRemove(meta, META_LAST_MODIFIED, httpConnection.getHeaderField("Last-Modified"));
+		}
+
+		// write to a temporary file first so that a half-downloaded avatar is never displayed
+		File tempFile = new File(avatarFile.getPath() + ".tmp");
+		try(InputStream is = connection.getInputStream())
+		{
+			try(OutputStream os = new FileOutputStream(tempFile))
+			{
+				byte[] buffer = new byte[8192];
+				int count;
+				while ((count = is.read(buffer)) != -1) os.write(buffer, 0, count);
+			}
+		}
+		if(!tempFile.renameTo(avatarFile))
+		{
+			tempFile.delete();
+			throw new IOException("Unable to save avatar to " + avatarFile.getPath());
+		}
+		Log.i(TAG, "Saved file: " + avatarFile.getPath());
+	}
+
+	/** Delete the least recently used avatars until the cache is smaller than the max size */
+	private void trimToSize()
+	{
+		File[] avatarFiles = cacheDir.listFiles(file -> file.getName().matches("\\d+"));
+		if(avatarFiles == null) return;
+
+		long size = 0;
+		for (File file : avatarFiles) size += file.length();
+		if(size <= maxCacheSize) return;
+
+		// least recently used first
+		Arrays.sort(avatarFiles, (f1, f2) ->
+		{
+			long t1 = f1.lastModified(), t2 = f2.lastModified();
+			return t1 < t2 ? -1 : (t1 == t2 ? 0 : 1);
+		});
+		for (File file : avatarFiles)
+		{
+			if(size <= maxCacheSize) break;
+			size -= file.length();
+			file.delete();
+			new File(cacheDir, file.getName() + META_SUFFIX).delete();
+		}
+	}
+
+	private File getAvatarFile(long userId)
+	{
+		return new File(cacheDir, String.valueOf(userId));
+	}
+
+	private Properties readMeta(long userId)
+	{
+		Properties meta = new Properties();
+		File metaFile = new File(cacheDir, userId + META_SUFFIX);
+		if(metaFile.exists())
 		{
-			UserInfo userInfo = userDao.get(userId);
-			if(userInfo != null && userInfo.profileImageUrl != null)
+			try(InputStream is = new FileInputStream(metaFile))
+			{
+				meta.load(is);
+			}
+			catch (IOException e)
 			{
-				userAvatars.put(userId, userInfo.profileImageUrl);
+				// then it is just treated as not cached
 			}
 		}
-		return userAvatars;
+		return meta;
+	}
+
+	private void writeMeta(long userId, Properties meta)
+	{
+		File metaFile = new File(cacheDir, userId + META_SUFFIX);
+		try(OutputStream os = new FileOutputStream(metaFile))
+		{
+			meta.store(os, null);
+		}
+		catch (IOException e)
+		{
+			Log.w(TAG, "Unable to save avatar metadata for user id " + userId);
+		}
+	}
+
+	private static void setOrRemove(Properties properties, String key, String value)
+	{
+		if(value != null) properties.setProperty(key, value);
+		else              properties.remove(key);
+	}
+
+	private static long parseLong(String value)
+	{
+		if(value == null) return 0;
+		try
+		{
+			return Long.parseLong(value);
+		}
+		catch (NumberFormatException e)
+		{
+			return 0;
+		}
 	}
 }
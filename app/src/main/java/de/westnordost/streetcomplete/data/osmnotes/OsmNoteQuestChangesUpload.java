@@ -14,7 +14,8 @@ import de.westnordost.osmapi.notes.Note;
 import de.westnordost.osmapi.notes.NotesDao;
 import de.westnordost.streetcomplete.data.statistics.QuestStatisticsDao;
 import de.westnordost.streetcomplete.data.upload.OnUploadedChangeListener;
-import de.westnordost.streetcomplete.util.ImageUploader;
+import de.westnordost.streetcomplete.data.upload.UploadInterruptedException;
+import de.westnordost.streetcomplete.util.RateLimiter;
 
 public class OsmNoteQuestChangesUpload
 {
@@ -24,18 +25,20 @@ public class OsmNoteQuestChangesUpload
 	private final OsmNoteQuestDao questDB;
 	private final QuestStatisticsDao statisticsDB;
 	private final NoteDao noteDB;
-	private final ImageUploader imageUploader;
+	private final NotePhotosUpload photosUpload;
+	private final RateLimiter rateLimiter;
 	private OnUploadedChangeListener uploadedChangeListener;
 
 	@Inject public OsmNoteQuestChangesUpload(
 			NotesDao osmDao, OsmNoteQuestDao questDB, QuestStatisticsDao statisticsDB,
-			NoteDao noteDB, ImageUploader imageUploader)
+			NoteDao noteDB, NotePhotosUpload photosUpload, RateLimiter rateLimiter)
 	{
 		this.osmDao = osmDao;
 		this.questDB = questDB;
 		this.statisticsDB = statisticsDB;
 		this.noteDB = noteDB;
-		this.imageUploader = imageUploader;
+		this.photosUpload = photosUpload;
+		this.rateLimiter = rateLimiter;
 	}
 
 	public synchronized void setProgressListener(OnUploadedChangeListener uploadedChangeListener)
@@ -75,9 +78,10 @@ public class OsmNoteQuestChangesUpload
 
 		try
 		{
-			text += AttachPhotoUtils.uploadAndGetAttachedPhotosText(imageUploader, quest.getImagePaths());
+			text += AttachPhotoUtils.getAttachedPhotosText(photosUpload.upload(quest.getImagePaths()));
+			if(!rateLimiter.acquire()) throw new UploadInterruptedException();
 			Note newNote = osmDao.comment(quest.getNote().id, text);
-			imageUploader.activate(newNote.id);
+			photosUpload.activate(newNote.id);
 
 			/* Unlike OSM quests, note quests are never deleted when the user contributed to it
 			   but must remain in the database with the status CLOSED as long as they are not
@@ -91,7 +95,7 @@ public class OsmNoteQuestChangesUpload
 			questDB.update(quest);
 			noteDB.put(newNote);
 			statisticsDB.addOneNote();
-			AttachPhotoUtils.deleteImages(quest.getImagePaths());
+			photosUpload.deleteImages(quest.getImagePaths());
 
 			return newNote;
 		}
@@ -100,7 +104,7 @@ public class OsmNoteQuestChangesUpload
 			// someone else already closed the note -> our contribution is probably worthless. Delete
 			questDB.delete(quest.getId());
 			noteDB.delete(quest.getNote().id);
-			AttachPhotoUtils.deleteImages(quest.getImagePaths());
+			photosUpload.deleteImages(quest.getImagePaths());
 
 			Log.i(TAG, "Dropped the comment " + getNoteQuestStringForLog(quest) +
 					" because the note has already been closed");
@@ -5,9 +5,11 @@ import android.util.Log;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 import javax.inject.Inject;
@@ -27,6 +29,9 @@ public class OsmNotesDownload
 {
 	private static final String TAG = "QuestDownload";
 
+	/** the time of the last download is the device's time, the dates of the notes the server's */
+	private static final long CLOCK_SKEW_MARGIN = 60*60*1000; // 1 hour in ms
+
 	private final NotesDao noteServer;
 	private final NoteDao noteDB;
 	private final OsmNoteQuestDao noteQuestDB;
@@ -56,47 +61,80 @@ public class OsmNotesDownload
 		this.listener = listener;
 	}
 
-	public Set<LatLon> download(BoundingBox bbox, final Long userId, int max)
+	public Set<LatLon> download(BoundingBox bbox, Long userId, int max)
+	{
+		return download(bbox, userId, max, null);
+	}
+
+	/** Like download, only that notes that have not been updated since the given time and that are
+	 *  already in the local database are left as they are: They are neither written to the database
+	 *  again nor reported to the listener */
+	public Set<LatLon> refresh(BoundingBox bbox, Long userId, int max, long updatedSince)
+	{
+		return download(bbox, userId, max, updatedSince - CLOCK_SKEW_MARGIN);
+	}
+
+	private Set<LatLon> download(BoundingBox bbox, final Long userId, int max, final Long updatedSince)
 	{
 		final Set<LatLon> positions = new HashSet<>();
-		final HashMap<Long, Long> previousQuestsByNoteId = getPreviousQuestsByNoteId(bbox);
+		final HashMap<Long, OsmNoteQuest> previousQuestsByNoteId = getPreviousQuestsByNoteId(bbox);
 		final Collection<Note> notes = new ArrayList<>();
 		final Collection<OsmNoteQuest> quests = new ArrayList<>();
 		final Collection<OsmNoteQuest> hiddenQuests = new ArrayList<>();
+		final Collection<Long> hiddenNowQuestIds = new ArrayList<>();
 		final Set<Long> noteCommentUserIds = new HashSet<>();
+		final int[] unchangedAmount = {0};
 
 		noteServer.getAll(bbox, note ->
 		{
 			// exclude invalid notes (#1338)
 			if(note.comments.isEmpty()) return;
 
+			for (NoteComment comment : note.comments)
+			{
+				if(comment.user != null) noteCommentUserIds.add(comment.user.id);
+			}
+			positions.add(note.position);
+
+			OsmNoteQuest previousQuest = previousQuestsByNoteId.remove(note.id);
+
 			OsmNoteQuest quest = new OsmNoteQuest(note, questType);
 			if(shouldMakeNoteClosed(userId, note))
 			{
 				quest.setStatus(QuestStatus.CLOSED);
-				hiddenQuests.add(quest);
 			}
 			else if(shouldMakeNoteInvisible(quest))
 			{
 				quest.setStatus(QuestStatus.INVISIBLE);
-				hiddenQuests.add(quest);
 			}
-			else
+
+			if(updatedSince != null && previousQuest != null
+				&& !isUpdated(note, previousQuest.getNote(), updatedSince)
+				&& !isStatusChanged(quest, previousQuest))
+			{
+				unchangedAmount[0]++;
+				return;
+			}
+
+			if(quest.getStatus() == QuestStatus.NEW)
 			{
 				quests.add(quest);
-				previousQuestsByNoteId.remove(note.id);
 			}
-			for (NoteComment comment : note.comments)
+			else
 			{
-				if(comment.user != null) noteCommentUserIds.add(comment.user.id);
+				hiddenQuests.add(quest);
+				// if it was visible before, it is replaced by a hidden quest with a new id below
+				if(previousQuest != null && previousQuest.getStatus() == QuestStatus.NEW)
+				{
+					hiddenNowQuestIds.add(previousQuest.getId());
+				}
 			}
 			notes.add(note);
-			positions.add(note.position);
 		}, max, 0);
 
-		noteDB.putAll(notes);
-		int hiddenAmount = noteQuestDB.replaceAll(hiddenQuests);
-		int newAmount = noteQuestDB.addAll(quests);
+		if(!notes.isEmpty()) noteDB.putAll(notes);
+		int hiddenAmount = hiddenQuests.isEmpty() ? 0 : noteQuestDB.replaceAll(hiddenQuests);
+		int newAmount = quests.isEmpty() ? 0 : noteQuestDB.addAll(quests);
 		int visibleAmount = quests.size();
 
 		if(listener != null)
@@ -109,23 +147,31 @@ public class OsmNotesDownload
 			}
 
 			if(!quests.isEmpty()) listener.onQuestsCreated(quests, QuestGroup.OSM_NOTE);
-			/* we do not call listener.onNoteQuestRemoved for hiddenQuests here, because on
-			*  replacing hiddenQuests into DB, they get new quest IDs. As far as the DB is concerned,
-			*  hidden note quests are always new quests which are hidden.
-			*  If a note quest was visible before, it'll be removed below when the previous quests
-			*  are cleared */
+			/* we do not call listener.onNoteQuestRemoved for hiddenQuests in general here, because
+			*  on replacing hiddenQuests into DB, they get new quest IDs. As far as the DB is
+			*  concerned, hidden note quests are always new quests which are hidden.
+			*  Only if a note quest was visible before, it is reported as removed */
+			if(!hiddenNowQuestIds.isEmpty())
+			{
+				listener.onQuestsRemoved(hiddenNowQuestIds, QuestGroup.OSM_NOTE);
+			}
 		}
 
 		/* delete note quests created in a previous run in the given bounding box that are not
 		   found again -> these notes have been closed/solved/removed */
 		if(previousQuestsByNoteId.size() > 0)
 		{
+			List<Long> previousQuestIds = new ArrayList<>(previousQuestsByNoteId.size());
+			for (OsmNoteQuest previousQuest : previousQuestsByNoteId.values())
+			{
+				previousQuestIds.add(previousQuest.getId());
+			}
 			if(listener != null)
 			{
-				listener.onQuestsRemoved(previousQuestsByNoteId.values(), QuestGroup.OSM_NOTE);
+				listener.onQuestsRemoved(previousQuestIds, QuestGroup.OSM_NOTE);
 			}
 
-			noteQuestDB.deleteAll(previousQuestsByNoteId.values());
+			noteQuestDB.deleteAll(previousQuestIds);
 			noteDB.deleteUnreferenced();
 		}
 
@@ -138,25 +184,42 @@ public class OsmNotesDownload
 
 		Log.i(TAG, "Successfully added " + newAmount + " new and removed " + closedAmount +
 				" closed notes (" + hiddenAmount + " of " + (hiddenAmount + visibleAmount) +
-				" notes are hidden)");
+				" changed notes are hidden, " + unchangedAmount[0] + " notes are unchanged)");
 
 		avatarsDownload.download(noteCommentUserIds);
 
 		return positions;
 	}
 
-
-
-	private HashMap<Long, Long> getPreviousQuestsByNoteId(BoundingBox bbox)
+	private HashMap<Long, OsmNoteQuest> getPreviousQuestsByNoteId(BoundingBox bbox)
 	{
-		HashMap<Long, Long> result = new HashMap<>();
+		HashMap<Long, OsmNoteQuest> result = new HashMap<>();
 		for(OsmNoteQuest quest : noteQuestDB.getAll(bbox, null))
 		{
-			result.put(quest.getNote().id, quest.getId());
+			result.put(quest.getNote().id, quest);
 		}
 		return result;
 	}
 
+	/** Every update of a note (comment, close, reopen) adds a comment, so whether a note has been
+	 *  updated can be read from the date of its last comment */
+	private static boolean isUpdated(Note note, Note previousNote, long since)
+	{
+		if(previousNote == null) return true;
+		if(note.status != previousNote.status) return true;
+		if(note.comments.size() != previousNote.comments.size()) return true;
+
+		Date lastUpdate = note.comments.get(note.comments.size() - 1).date;
+		return lastUpdate == null || lastUpdate.getTime() >= since;
+	}
+
+	/** A quest that should be visible is only added if there is none for that note yet, so for the
+	 *  visible ones, the status of the existing quest (answered, hidden, ...) always stays */
+	private static boolean isStatusChanged(OsmNoteQuest quest, OsmNoteQuest previousQuest)
+	{
+		return quest.getStatus() != QuestStatus.NEW && quest.getStatus() != previousQuest.getStatus();
+	}
+
 	private boolean shouldMakeNoteClosed(Long userId, Note note)
 	{
 		/* hide a note if he already contributed to it. This can also happen from outside
@@ -1,5 +1,6 @@
 package de.westnordost.streetcomplete.data.tiles;
 
+import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
@@ -7,9 +8,8 @@ import android.database.sqlite.SQLiteStatement;
 import android.graphics.Point;
 import android.graphics.Rect;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.inject.Inject;
 
@@ -33,11 +33,13 @@ public class DownloadedTilesDao
 					DownloadedTilesTable.Columns.X+","+
 					DownloadedTilesTable.Columns.Y+","+
 					DownloadedTilesTable.Columns.QUEST_TYPE+","+
-					DownloadedTilesTable.Columns.DATE+
-				") values (?,?,?,?);");
+					DownloadedTilesTable.Columns.DATE+","+
+					DownloadedTilesTable.Columns.COMPLETE_DATE+
+				") values (?,?,?,?,?);");
 	}
 
-	/** Persist that the given quest type has been downloaded in every tile in the given tile range */
+	/** Persist that the given quest type has been downloaded completely in every tile in the given
+	 *  tile range */
 	public void put(Rect tiles, String questTypeName)
 	{
 		SQLiteDatabase db = dbHelper.getWritableDatabase();
@@ -52,6 +54,7 @@ public class DownloadedTilesDao
 				insert.bindLong(2,y);
 				insert.bindString(3, questTypeName);
 				insert.bindLong(4,time);
+				insert.bindLong(5,time);
 				insert.executeInsert();
 				insert.clearBindings();
 			}
@@ -60,6 +63,26 @@ public class DownloadedTilesDao
 		db.endTransaction();
 	}
 
+	/** Persist that the given quest type has been refreshed in every tile in the given tile range,
+	 *  i.e. only what changed since the last download has been downloaded. The given quest type
+	 *  must have been downloaded in all these tiles before */
+	public void putRefreshed(Rect tiles, String questTypeName)
+	{
+		SQLiteDatabase db = dbHelper.getWritableDatabase();
+		ContentValues values = new ContentValues();
+		values.put(DownloadedTilesTable.Columns.DATE, System.currentTimeMillis());
+		String where =
+				DownloadedTilesTable.Columns.X + " BETWEEN ? AND ? AND " +
+				DownloadedTilesTable.Columns.Y + " BETWEEN ? AND ? AND " +
+				DownloadedTilesTable.Columns.QUEST_TYPE + " = ?";
+		String[] whereArgs = {
+				String.valueOf(tiles.left), String.valueOf(tiles.right),
+				String.valueOf(tiles.top), String.valueOf(tiles.bottom),
+				questTypeName
+		};
+		db.update(DownloadedTilesTable.NAME, values, where, whereArgs);
+	}
+
 	/** Invalidate all quest types within the given tile. (consider them as not-downloaded)*/
 	public int remove(Point tile)
 	{
@@ -76,9 +99,10 @@ public class DownloadedTilesDao
 		db.execSQL("DELETE FROM " + DownloadedTilesTable.NAME);
 	}
 
-	/** @return a list of quest type names which have already been downloaded in every tile in the
-	 *          given tile range */
-	public List<String> get(Rect tiles, long ignoreOlderThan)
+	/** @return for each quest type which has been downloaded completely in every tile in the given
+	 *          tile range after the given time, the time it has been downloaded or refreshed in the
+	 *          tile where this is longest ago */
+	public Map<String, Long> getDownloadTimes(Rect tiles, long ignoreCompletelyDownloadedBefore)
 	{
 		SQLiteDatabase db = dbHelper.getReadableDatabase();
 
@@ -87,29 +111,28 @@ public class DownloadedTilesDao
 		String where =
 				DownloadedTilesTable.Columns.X + " BETWEEN ? AND ? AND " +
 				DownloadedTilesTable.Columns.Y + " BETWEEN ? AND ? AND " +
-				DownloadedTilesTable.Columns.DATE + " > ?";
+				DownloadedTilesTable.Columns.COMPLETE_DATE + " > ?";
 		String[] whereArgs = {
 				String.valueOf(tiles.left), String.valueOf(tiles.right),
 				String.valueOf(tiles.top), String.valueOf(tiles.bottom),
-				String.valueOf(ignoreOlderThan)
+				String.valueOf(ignoreCompletelyDownloadedBefore)
 		};
 
-		String[] cols = { DownloadedTilesTable.Columns.QUEST_TYPE};
+		String[] cols = {
+				DownloadedTilesTable.Columns.QUEST_TYPE,
+				"MIN(" + DownloadedTilesTable.Columns.DATE + ")"
+		};
 		String groupBy = DownloadedTilesTable.Columns.QUEST_TYPE;
 		String having = "COUNT(*) >= " + tileCount;
 
 		try(Cursor cursor = db.query(DownloadedTilesTable.NAME,	cols, where, whereArgs, groupBy, having, null))
 		{
-			if(cursor.getCount() == 0) return Collections.emptyList();
-
-			List<String> result = new ArrayList<>(cursor.getCount());
-
+			Map<String, Long> result = new HashMap<>(cursor.getCount());
 			if(cursor.moveToFirst())
 			{
 				while(!cursor.isAfterLast())
 				{
-					String questTypeName = cursor.getString(0);
-					result.add(questTypeName);
+					result.put(cursor.getString(0), cursor.getLong(1));
 					cursor.moveToNext();
 				}
 			}
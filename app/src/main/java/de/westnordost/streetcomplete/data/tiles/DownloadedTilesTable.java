@@ -10,6 +10,7 @@ public class DownloadedTilesTable
 				X = "x",
 				Y = "y",
 				QUEST_TYPE = "quest_type",
-				DATE = "date";
+				DATE = "date",
+				COMPLETE_DATE = "complete_date";
 	}
 }
@@ -12,6 +12,8 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.inject.Inject;
@@ -48,14 +50,15 @@ public class QuestChangesUploadService extends IntentService
 	// listeners
 	private final VisibleQuestRelay visibleQuestRelay  = new VisibleQuestRelay();
 	private QuestChangesUploadProgressListener progressListener;
+	// called from all upload lanes concurrently
 	private final OnUploadedChangeListener uploadedChangeRelay = new OnUploadedChangeListener()
 	{
-		@Override public void onUploaded()
+		@Override public synchronized void onUploaded()
 		{
 			if(progressListener != null) progressListener.onProgress(true);
 		}
 
-		@Override public void onDiscarded()
+		@Override public synchronized void onDiscarded()
 		{
 			if(progressListener != null) progressListener.onProgress(false);
 		}
@@ -110,29 +113,37 @@ public class QuestChangesUploadService extends IntentService
 
 			Log.i(TAG, "Starting upload changes");
 
-			OsmNoteQuestChangesUpload noteQuestUpload = noteQuestUploadProvider.get();
-			noteQuestUpload.setProgressListener(uploadedChangeRelay);
-			noteQuestUpload.upload(cancelState);
-
-			if (cancelState.get()) return;
-
-			UndoOsmQuestChangesetsUpload undoOsmQuestUpload = undoQuestUploadProvider.get();
-			undoOsmQuestUpload.setProgressListener(uploadedChangeRelay);
-			undoOsmQuestUpload.setVisibleQuestListener(visibleQuestRelay);
-			undoOsmQuestUpload.upload(cancelState);
-
-			if (cancelState.get()) return;
-
-			OsmQuestChangesetsUpload osmQuestUpload = questUploadProvider.get();
-			osmQuestUpload.setProgressListener(uploadedChangeRelay);
-			osmQuestUpload.setVisibleQuestListener(visibleQuestRelay);
-			osmQuestUpload.upload(cancelState);
-
-			if (cancelState.get()) return;
-
-			CreateNoteUpload createNoteUpload = createNoteUploadProvider.get();
-			createNoteUpload.setProgressListener(uploadedChangeRelay);
-			createNoteUpload.upload(cancelState);
+			// comments on notes, new notes and answered quests are independent of each other, so
+			// they are uploaded concurrently. Undos must be uploaded before newer answers though
+			List<Runnable> lanes = new ArrayList<>();
+			lanes.add(() -> {
+				UndoOsmQuestChangesetsUpload undoOsmQuestUpload = undoQuestUploadProvider.get();
+				undoOsmQuestUpload.setProgressListener(uploadedChangeRelay);
+				undoOsmQuestUpload.setVisibleQuestListener(visibleQuestRelay);
+				undoOsmQuestUpload.upload(cancelState);
+
+				if (cancelState.get()) return;
+
+				OsmQuestChangesetsUpload osmQuestUpload = questUploadProvider.get();
+				osmQuestUpload.setProgressListener(uploadedChangeRelay);
+				osmQuestUpload.setVisibleQuestListener(visibleQuestRelay);
+				osmQuestUpload.upload(cancelState);
+			});
+			lanes.add(() -> {
+				OsmNoteQuestChangesUpload noteQuestUpload = noteQuestUploadProvider.get();
+				noteQuestUpload.setProgressListener(uploadedChangeRelay);
+				noteQuestUpload.upload(cancelState);
+			});
+			lanes.add(() -> {
+				CreateNoteUpload createNoteUpload = createNoteUploadProvider.get();
+				createNoteUpload.setProgressListener(uploadedChangeRelay);
+				createNoteUpload.upload(cancelState);
+			});
+			new UploadExecutor(lanes.size()).run(lanes);
+		}
+		catch (UploadInterruptedException e)
+		{
+			Log.i(TAG, "Upload interrupted");
 		}
 		catch (Exception e)
 		{
@@ -0,0 +1,94 @@
+package de.westnordost.streetcomplete.data.upload;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Runs independent uploads ("lanes") concurrently on at most the given number of threads and
+ *  waits until all of them finished. Unlike for downloads, the other lanes are not aborted if one
+ *  fails: An upload interrupted in the middle would leave the local data in an undefined state, so
+ *  each lane is left to end gracefully (i.e. at the next cancel check) */
+public class UploadExecutor
+{
+	private final int maxThreads;
+
+	public UploadExecutor(int maxThreads)
+	{
+		this.maxThreads = maxThreads;
+	}
+
+	/** Runs the given lanes and waits for their completion. If any of them failed, the exception of
+	 *  the first one that failed (in the order of the given list) is rethrown */
+	public void run(List<Runnable> lanes)
+	{
+		if(lanes.isEmpty()) return;
+		if(lanes.size() == 1 || maxThreads <= 1)
+		{
+			RuntimeException error = null;
+			for (Runnable lane : lanes)
+			{
+				try
+				{
+					lane.run();
+				}
+				catch (RuntimeException e)
+				{
+					if(error == null) error = e;
+				}
+			}
+			if(error != null) throw error;
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxThreads, lanes.size()));
+		try
+		{
+			List<Future<?>> futures = new ArrayList<>(lanes.size());
+			for (Runnable lane : lanes)
+			{
+				futures.add(executor.submit(lane));
+			}
+			RuntimeException error = null;
+			boolean interrupted = false;
+			for (Future<?> future : futures)
+			{
+				try
+				{
+					// waiting for each lane, whether an earlier lane failed or not
+					while(true)
+					{
+						try
+						{
+							future.get();
+							break;
+						}
+						catch (InterruptedException e)
+						{
+							interrupted = true;
+						}
+					}
+				}
+				catch (ExecutionException e)
+				{
+					if(error == null) error = asRuntimeException(e.getCause());
+				}
+			}
+			if(interrupted) Thread.currentThread().interrupt();
+			if(error != null) throw error;
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	private static RuntimeException asRuntimeException(Throwable cause)
+	{
+		if(cause instanceof RuntimeException) return (RuntimeException) cause;
+		if(cause instanceof Error) throw (Error) cause;
+		return new RuntimeException(cause);
+	}
+}
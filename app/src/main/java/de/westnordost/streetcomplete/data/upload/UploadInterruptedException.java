@@ -0,0 +1,13 @@
+package de.westnordost.streetcomplete.data.upload;
+
+/** Thrown when the thread has been interrupted during an upload, i.e. while waiting for the rate
+ *  limit. The upload is aborted then */
+public class UploadInterruptedException extends RuntimeException
+{
+	private static final long serialVersionUID = 1L;
+
+	public UploadInterruptedException()
+	{
+		super("The upload has been interrupted");
+	}
+}
@@ -3,11 +3,12 @@ package de.westnordost.streetcomplete.quests.localized_name.data
 import android.database.sqlite.SQLiteOpenHelper
 
 import java.util.ArrayList
-import java.util.HashMap
 
 import javax.inject.Inject
 
 import de.westnordost.osmapi.map.data.LatLon
+import de.westnordost.streetcomplete.data.osm.persist.StringDictionary
+import de.westnordost.streetcomplete.data.osm.persist.TagsCodec
 import de.westnordost.streetcomplete.quests.localized_name.data.RoadNamesTable.Columns.GEOMETRY
 import de.westnordost.streetcomplete.quests.localized_name.data.RoadNamesTable.Columns.MAX_LATITUDE
 import de.westnordost.streetcomplete.quests.localized_name.data.RoadNamesTable.Columns.MAX_LONGITUDE
@@ -24,9 +25,13 @@ import de.westnordost.streetcomplete.ktx.transaction
 // TODO only open in order to be able to mock it in tests
 open class RoadNameSuggestionsDao @Inject constructor(
     private val dbHelper: SQLiteOpenHelper,
-    private val serializer: Serializer
+    private val serializer: Serializer,
+    private val dictionary: StringDictionary
 ) {
 
+    // the names themselves are unique to each road, only the language codes are recurring
+    private val namesCodec = TagsCodec(dictionary)
+
     private val insert = dbHelper.writableDatabase.compileStatement(
         "INSERT OR REPLACE INTO $NAME " +
         "($WAY_ID,$NAMES,$GEOMETRY,$MIN_LATITUDE,$MIN_LONGITUDE,$MAX_LATITUDE,$MAX_LONGITUDE) " +
@@ -37,8 +42,9 @@ open class RoadNameSuggestionsDao @Inject constructor(
         val bbox = SphericalEarthMath.enclosingBoundingBox(geometry)
 
         dbHelper.writableDatabase.transaction {
+            val usedStringIds = HashSet<Int>()
             insert.bindLong(1, wayId)
-            insert.bindBlob(2, serializer.toBytes(HashMap(namesByLanguage)))
+            insert.bindBlob(2, namesCodec.encodeWithInlineValues(namesByLanguage, usedStringIds))
             insert.bindBlob(3, serializer.toBytes(ArrayList(geometry)))
             insert.bindDouble(4, bbox.minLatitude)
             insert.bindDouble(5, bbox.minLongitude)
@@ -47,6 +53,7 @@ open class RoadNameSuggestionsDao @Inject constructor(
 
             insert.executeInsert()
             insert.clearBindings()
+            dictionary.save(usedStringIds)
         }
     }
 
@@ -79,8 +86,7 @@ open class RoadNameSuggestionsDao @Inject constructor(
                 while (!cursor.isAfterLast) {
                     val geometry: ArrayList<LatLon> = serializer.toObject(cursor.getBlob(0))
                     if (SphericalEarthMath.isWithinDistance(maxDistance, points, geometry)) {
-                        val map: HashMap<String,String> = serializer.toObject(cursor.getBlob(1))
-                        result.add(map)
+                        result.add(namesCodec.decode(cursor.getBlob(1)))
                     }
                     cursor.moveToNext()
                 }
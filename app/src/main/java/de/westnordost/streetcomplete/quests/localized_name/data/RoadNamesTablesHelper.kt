@@ -1,8 +1,12 @@
 package de.westnordost.streetcomplete.quests.localized_name.data
 
+import android.content.ContentValues
 import android.database.sqlite.SQLiteDatabase
 
 import de.westnordost.streetcomplete.data.TablesHelper
+import de.westnordost.streetcomplete.data.osm.persist.StringDictionary
+import de.westnordost.streetcomplete.data.osm.persist.TagsCodec
+import de.westnordost.streetcomplete.ktx.toObject
 
 import de.westnordost.streetcomplete.quests.localized_name.data.RoadNamesTable.Columns.GEOMETRY
 import de.westnordost.streetcomplete.quests.localized_name.data.RoadNamesTable.Columns.MAX_LATITUDE
@@ -12,6 +16,7 @@ import de.westnordost.streetcomplete.quests.localized_name.data.RoadNamesTable.C
 import de.westnordost.streetcomplete.quests.localized_name.data.RoadNamesTable.Columns.NAMES
 import de.westnordost.streetcomplete.quests.localized_name.data.RoadNamesTable.Columns.WAY_ID
 import de.westnordost.streetcomplete.quests.localized_name.data.RoadNamesTable.NAME
+import de.westnordost.streetcomplete.util.KryoSerializer
 
 class RoadNamesTablesHelper : TablesHelper {
 
@@ -24,6 +29,36 @@ class RoadNamesTablesHelper : TablesHelper {
         if (oldVersion < 6 && newVersion >= 6) {
             db.execSQL(ROAD_NAMES)
         }
+        // names are stored in a compact binary format referring to a string dictionary since 15
+        if (oldVersion < 15 && newVersion >= 15) {
+            migrateNamesToCompactFormat(db)
+        }
+    }
+
+    private fun migrateNamesToCompactFormat(db: SQLiteDatabase) {
+        val serializer = KryoSerializer()
+        val dictionary = StringDictionary(db)
+        val namesCodec = TagsCodec(dictionary)
+        val usedStringIds = HashSet<Int>()
+        val cols = arrayOf("rowid", NAMES)
+        var lastRowId = -1L
+        // in pages, so that not the whole table needs to fit into a cursor window
+        var hasMore = true
+        while (hasMore) {
+            val args = arrayOf(lastRowId.toString())
+            db.query(NAME, cols, "rowid > ?", args, null, null, "rowid", "1000").use { cursor ->
+                hasMore = cursor.moveToFirst()
+                while (hasMore && !cursor.isAfterLast) {
+                    lastRowId = cursor.getLong(0)
+                    val names: HashMap<String, String> = serializer.toObject(cursor.getBlob(1))
+                    val values = ContentValues()
+                    values.put(NAMES, namesCodec.encodeWithInlineValues(names, usedStringIds))
+                    db.update(NAME, values, "rowid = ?", arrayOf(lastRowId.toString()))
+                    cursor.moveToNext()
+                }
+            }
+        }
+        dictionary.save(usedStringIds)
     }
 
     companion object {
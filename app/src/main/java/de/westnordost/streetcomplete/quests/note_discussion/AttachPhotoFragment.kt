@@ -21,8 +21,12 @@ import java.io.FileOutputStream
 import java.io.IOException
 import java.util.ArrayList
 
+import javax.inject.Inject
+
+import de.westnordost.streetcomplete.Injector
 import de.westnordost.streetcomplete.R
 import de.westnordost.streetcomplete.data.osmnotes.AttachPhotoUtils
+import de.westnordost.streetcomplete.data.osmnotes.NotePhotosUpload
 
 import android.app.Activity.RESULT_OK
 import android.database.DataSetObserver
@@ -44,6 +48,12 @@ class AttachPhotoFragment : Fragment() {
 
     private lateinit var noteImageAdapter: NoteImageAdapter
 
+    @Inject internal lateinit var photosUpload: NotePhotosUpload
+
+    init {
+        Injector.instance.applicationComponent.inject(this)
+    }
+
     override fun onCreateView(inflater: LayoutInflater, container: ViewGroup?, savedInstanceState: Bundle?): View? {
         val view = inflater.inflate(R.layout.fragment_attach_photo, container, false)
 
@@ -147,12 +157,7 @@ class AttachPhotoFragment : Fragment() {
     }
 
     private fun removeCurrentImage() {
-        currentImagePath?.let {
-            val photoFile = File(it)
-            if (photoFile.exists()) {
-                photoFile.delete()
-            }
-        }
+        currentImagePath?.let { photosUpload.deleteImages(listOf(it)) }
     }
 
     private fun createImageFile(): File {
@@ -161,7 +166,7 @@ class AttachPhotoFragment : Fragment() {
     }
 
     fun deleteImages() {
-        AttachPhotoUtils.deleteImages(imagePaths)
+        photosUpload.deleteImages(imagePaths)
     }
 
     companion object {
@@ -380,7 +380,7 @@ public class MapFragment extends Fragment implements
 		return isFollowingPosition && controller != null && lastLocation != null;
 	}
 
-	private boolean requestUnglueViewFromPosition()
+	protected boolean requestUnglueViewFromPosition()
 	{
 		if(isFollowingPosition)
 		{
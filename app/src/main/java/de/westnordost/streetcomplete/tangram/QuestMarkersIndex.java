@@ -0,0 +1,361 @@
+package de.westnordost.streetcomplete.tangram;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.westnordost.osmapi.map.data.LatLon;
+import de.westnordost.streetcomplete.ApplicationConstants;
+import de.westnordost.streetcomplete.data.QuestGroup;
+import de.westnordost.streetcomplete.util.TileKey;
+
+/** Index of the quest markers displayed in the quests layer. The markers of each quest are kept
+ *  serialized as GeoJSON features, so that when quests are added, only these need to be
+ *  serialized and added to the layer. As Tangram cannot remove single features from a layer, the
+ *  layer is rebuilt from the already serialized features when quests are removed.
+ *
+ *  Only the markers of quests within the retained tiles are kept, so the index and the layer do not
+ *  grow with every area that has been looked at.
+ *
+ *  If a cluster zoom is set, quests whose (first) marker is in the same grid cell at that zoom
+ *  are combined into one cluster marker that shows the number of quests in it. Each cluster keeps
+ *  its feature, so only the features of the cells whose quests changed are serialized again when
+ *  the layer is rebuilt. Quests added to an empty cell are just added to the layer.
+ *
+ *  Not thread-safe. */
+class QuestMarkersIndex
+{
+	static final String MARKER_QUEST_ID = "quest_id";
+	static final String MARKER_QUEST_GROUP = "quest_group";
+	static final String MARKER_TYPE = "type";
+	static final String MARKER_CLUSTER_COUNT = "count";
+	static final String TYPE_CLUSTER = "cluster";
+
+	/** size of the grid cells in which quests are clustered, in pixels (of 256px map tiles) */
+	private static final int CLUSTER_CELL_SIZE = 64;
+
+	private final Map<String, Marker> markersByQuest = new LinkedHashMap<>();
+	private final Map<Long, Cluster> clustersByCell = new LinkedHashMap<>();
+	private final List<String> addedFeatures = new ArrayList<>();
+	private boolean rebuild;
+	private Integer clusterZoom;
+	/** keys of the tiles whose markers are kept (see TileKey), null if all are kept */
+	private Set<Long> retainedTiles;
+
+	// reused for serializing to not allocate a new big buffer for each update
+	private final StringBuilder buffer = new StringBuilder();
+
+	static class Update
+	{
+		/** whether the layer needs to be cleared before adding the features */
+		final boolean clear;
+		/** the features to add to the layer as GeoJSON, null if none */
+		final String geoJson;
+
+		Update(boolean clear, String geoJson)
+		{
+			this.clear = clear;
+			this.geoJson = geoJson;
+		}
+	}
+
+	private static class Marker
+	{
+		final LatLon position;
+		final String feature;
+		final double mercatorX;
+		final double mercatorY;
+		/** the grid cell at the current cluster zoom */
+		long cell;
+
+		Marker(LatLon position, String feature)
+		{
+			this.position = position;
+			this.feature = feature;
+			mercatorX = getMercatorX(position);
+			mercatorY = getMercatorY(position);
+		}
+	}
+
+	private static class Cluster
+	{
+		final Set<Marker> markers = new LinkedHashSet<>();
+		/** the feature of this cluster, null if it needs to be serialized again */
+		String feature;
+	}
+
+	void put(QuestGroup group, long questId, String iconName, int order, LatLon[] positions)
+	{
+		buffer.setLength(0);
+		boolean first = true;
+		for (LatLon pos : positions)
+		{
+			if(first) first = false;
+			else      buffer.append(",");
+
+			buffer.append("{\"type\":\"Feature\",");
+			buffer.append("\"geometry\":{\"type\":\"Point\",\"coordinates\": [");
+			buffer.append(pos.getLongitude());
+			buffer.append(",");
+			buffer.append(pos.getLatitude());
+			buffer.append("]},\"properties\": {\"type\":\"point\", \"kind\":\"");
+			buffer.append(iconName);
+			buffer.append("\",\"");
+			buffer.append(MARKER_QUEST_GROUP);
+			buffer.append("\":\"");
+			buffer.append(group.name());
+			buffer.append("\",\"");
+			buffer.append(MARKER_QUEST_ID);
+			buffer.append("\":\"");
+			buffer.append(questId);
+			buffer.append("\",\"");
+			buffer.append("order");
+			buffer.append("\":\"");
+			buffer.append(order);
+			buffer.append("\"}}");
+		}
+		if(first) return;
+
+		String key = getKey(group, questId);
+		if(!isRetained(positions[0]))
+		{
+			remove(key);
+			return;
+		}
+
+		String feature = buffer.toString();
+		Marker previousMarker = markersByQuest.get(key);
+		if(previousMarker != null && previousMarker.feature.equals(feature)) return;
+
+		Marker marker = new Marker(positions[0], feature);
+		markersByQuest.put(key, marker);
+		if(previousMarker != null)
+		{
+			// changed (i.e. moved) markers cannot be updated in place
+			rebuild = true;
+			if(clusterZoom != null) removeFromCluster(previousMarker);
+		}
+		if(clusterZoom != null)
+		{
+			addToCluster(marker);
+		}
+		else
+		{
+			addedFeatures.add(feature);
+		}
+	}
+
+	void remove(QuestGroup group, long questId)
+	{
+		remove(getKey(group, questId));
+	}
+
+	private void remove(String key)
+	{
+		Marker marker = markersByQuest.remove(key);
+		if(marker == null) return;
+		if(clusterZoom != null) removeFromCluster(marker);
+		rebuild = true;
+	}
+
+	void clear()
+	{
+		markersByQuest.clear();
+		clustersByCell.clear();
+		addedFeatures.clear();
+		rebuild = true;
+	}
+
+	/** Only keep the markers of quests within the given tiles from now on, the others are removed.
+	 *  @param tileKeys keys of tiles at ApplicationConstants.QUEST_TILE_ZOOM (see TileKey) */
+	void retainTiles(Collection<Long> tileKeys)
+	{
+		retainedTiles = new HashSet<>(tileKeys);
+		Iterator<Map.Entry<String, Marker>> it = markersByQuest.entrySet().iterator();
+		while (it.hasNext())
+		{
+			Marker marker = it.next().getValue();
+			if(isRetained(marker.position)) continue;
+			it.remove();
+			if(clusterZoom != null) removeFromCluster(marker);
+			rebuild = true;
+		}
+	}
+
+	private boolean isRetained(LatLon position)
+	{
+		if(retainedTiles == null) return true;
+		long tileKey = TileKey.of(position.getLatitude(), position.getLongitude(),
+			ApplicationConstants.QUEST_TILE_ZOOM);
+		return retainedTiles.contains(tileKey);
+	}
+
+	int size()
+	{
+		return markersByQuest.size();
+	}
+
+	/** Set the zoom at which quests close to each other are clustered or null to not cluster */
+	void setClusterZoom(Integer zoom)
+	{
+		if(zoom == null ? clusterZoom == null : zoom.equals(clusterZoom)) return;
+		clusterZoom = zoom;
+		clustersByCell.clear();
+		if(zoom != null)
+		{
+			for (Marker marker : markersByQuest.values())
+			{
+				addToCluster(marker);
+			}
+		}
+		// everything is added anew anyway
+		addedFeatures.clear();
+		rebuild = true;
+	}
+
+	private void addToCluster(Marker marker)
+	{
+		long cellsPerSide = (256L << clusterZoom) / CLUSTER_CELL_SIZE;
+		long x = (long) (marker.mercatorX * cellsPerSide);
+		long y = (long) (marker.mercatorY * cellsPerSide);
+		marker.cell = y * cellsPerSide + x;
+
+		Cluster cluster = clustersByCell.get(marker.cell);
+		if(cluster == null)
+		{
+			cluster = new Cluster();
+			cluster.feature = marker.feature;
+			clustersByCell.put(marker.cell, cluster);
+			// a marker in a cell of its own can just be added
+			addedFeatures.add(marker.feature);
+		}
+		else
+		{
+			cluster.feature = null;
+			rebuild = true;
+		}
+		cluster.markers.add(marker);
+	}
+
+	private void removeFromCluster(Marker marker)
+	{
+		Cluster cluster = clustersByCell.get(marker.cell);
+		if(cluster == null) return;
+		cluster.markers.remove(marker);
+		if(cluster.markers.isEmpty()) clustersByCell.remove(marker.cell);
+		else                          cluster.feature = null;
+	}
+
+	/** @return what needs to be done to the layer to bring it up to date with the changes made
+	 *          since the last call or null if nothing changed */
+	Update flush()
+	{
+		if(!rebuild && addedFeatures.isEmpty()) return null;
+
+		Update update;
+		if(rebuild) update = new Update(true, toGeoJson(getAllFeatures()));
+		else        update = new Update(false, toGeoJson(addedFeatures));
+
+		rebuild = false;
+		addedFeatures.clear();
+		return update;
+	}
+
+	private Collection<String> getAllFeatures()
+	{
+		if(clusterZoom == null)
+		{
+			List<String> result = new ArrayList<>(markersByQuest.size());
+			for (Marker marker : markersByQuest.values())
+			{
+				result.add(marker.feature);
+			}
+			return result;
+		}
+
+		List<String> result = new ArrayList<>(clustersByCell.size());
+		for (Cluster cluster : clustersByCell.values())
+		{
+			if(cluster.feature == null)
+			{
+				if(cluster.markers.size() == 1) cluster.feature = cluster.markers.iterator().next().feature;
+				else                            cluster.feature = toFeature(cluster);
+			}
+			result.add(cluster.feature);
+		}
+		return result;
+	}
+
+	private String toFeature(Cluster cluster)
+	{
+		double lat = 0, lon = 0;
+		for (Marker marker : cluster.markers)
+		{
+			lat += marker.position.getLatitude();
+			lon += marker.position.getLongitude();
+		}
+		int count = cluster.markers.size();
+
+		buffer.setLength(0);
+		buffer.append("{\"type\":\"Feature\",");
+		buffer.append("\"geometry\":{\"type\":\"Point\",\"coordinates\": [");
+		buffer.append(lon / count);
+		buffer.append(",");
+		buffer.append(lat / count);
+		buffer.append("]},\"properties\": {\"");
+		buffer.append(MARKER_TYPE);
+		buffer.append("\":\"");
+		buffer.append(TYPE_CLUSTER);
+		buffer.append("\", \"");
+		buffer.append(MARKER_CLUSTER_COUNT);
+		buffer.append("\":\"");
+		buffer.append(count);
+		// clusters take precedence over single markers
+		buffer.append("\",\"order\":\"0\"}}");
+		return buffer.toString();
+	}
+
+	private static double getMercatorX(LatLon pos)
+	{
+		return clamp((pos.getLongitude() + 180) / 360);
+	}
+
+	private static double getMercatorY(LatLon pos)
+	{
+		double radianLat = Math.toRadians(pos.getLatitude());
+		return clamp((1 - Math.log(Math.tan(radianLat) + 1 / Math.cos(radianLat)) / Math.PI) / 2);
+	}
+
+	private static double clamp(double value)
+	{
+		return Math.max(0, Math.min(value, 0.999999999));
+	}
+
+	private String toGeoJson(Collection<String> features)
+	{
+		if(features.isEmpty()) return null;
+
+		buffer.setLength(0);
+		buffer.append("{\"type\":\"FeatureCollection\",\"features\": [");
+		boolean first = true;
+		for (String feature : features)
+		{
+			if(first) first = false;
+			else      buffer.append(",");
+			buffer.append(feature);
+		}
+		buffer.append("]}");
+		return buffer.toString();
+	}
+
+	private static String getKey(QuestGroup group, long questId)
+	{
+		return group.name() + ":" + questId;
+	}
+}
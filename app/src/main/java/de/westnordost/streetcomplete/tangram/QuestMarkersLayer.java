@@ -0,0 +1,269 @@
+package de.westnordost.streetcomplete.tangram;
+
+import android.content.res.Resources;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.UiThread;
+
+import com.mapzen.tangram.MapController;
+import com.mapzen.tangram.MapData;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import de.westnordost.streetcomplete.ApplicationConstants;
+import de.westnordost.streetcomplete.data.Quest;
+import de.westnordost.streetcomplete.data.QuestGroup;
+import de.westnordost.streetcomplete.data.QuestType;
+import de.westnordost.streetcomplete.quests.bikeway.AddCycleway;
+
+/** Manages the quest markers displayed in a Tangram data layer.
+ *
+ *  Added and removed quests are serialized on a background thread, only the changes (see
+ *  QuestMarkersIndex). All changes that arrive until the next frame are then applied to the layer
+ *  together in one update on the UI thread.
+ *
+ *  When zoomed out, quests close to each other are clustered, so the number of markers Tangram
+ *  needs to handle does not grow with the number of quests. Only the quests in the retained tiles
+ *  are displayed. */
+public class QuestMarkersLayer
+{
+	private final Resources resources;
+	private final Handler mainHandler = new Handler(Looper.getMainLooper());
+	private final ExecutorService worker = Executors.newSingleThreadExecutor();
+
+	// only accessed from the worker thread
+	private final QuestMarkersIndex index = new QuestMarkersIndex();
+	private final Map<QuestType, String> iconNames = new HashMap<>();
+
+	private volatile Map<QuestType, Integer> questTypeOrder = new HashMap<>();
+
+	// changes not processed by the worker yet
+	private final List<Runnable> pendingChanges = new ArrayList<>();
+	private boolean isProcessingScheduled;
+	private boolean isDestroyed;
+
+	// updates not applied to the layer yet
+	private final List<String> pendingGeoJson = new ArrayList<>();
+	private boolean pendingClear;
+	private boolean isFrameScheduled;
+
+	private MapData layer;
+	private MapController controller;
+	private Integer clusterZoom;
+
+	private final Choreographer.FrameCallback applyUpdateCallback = frameTimeNanos -> applyUpdate();
+
+	public QuestMarkersLayer(Resources resources)
+	{
+		this.resources = resources;
+	}
+
+	/** Set the layer the markers are displayed in. It is expected to be empty */
+	@UiThread public void setLayer(MapData layer, MapController controller)
+	{
+		this.layer = layer;
+		this.controller = controller;
+		clear();
+	}
+
+	/** Set the order of the quest types which decides which markers are hidden first if there is
+	 *  not enough space for all */
+	@AnyThread public void setQuestTypeOrder(List<QuestType> questTypes)
+	{
+		Map<QuestType, Integer> order = new HashMap<>(questTypes.size());
+		int i = 0;
+		for (QuestType questType : questTypes)
+		{
+			order.put(questType, i++);
+		}
+		questTypeOrder = order;
+	}
+
+	/** Set the current zoom of the map. The quests are re-clustered if necessary */
+	@UiThread public void setZoom(float zoom)
+	{
+		int z = (int) zoom;
+		final Integer newClusterZoom = z < ApplicationConstants.CLUSTER_QUESTS_BELOW_ZOOM ? z : null;
+		if(newClusterZoom == null ? clusterZoom == null : newClusterZoom.equals(clusterZoom)) return;
+		clusterZoom = newClusterZoom;
+		enqueue(() -> index.setClusterZoom(newClusterZoom));
+	}
+
+	/** Add the given quests. Quests that are already displayed are updated */
+	@AnyThread public void add(Collection<? extends Quest> quests, QuestGroup group)
+	{
+		enqueue(() ->
+		{
+			for (Quest quest : quests)
+			{
+				// hack away cycleway quests for old Android SDK versions (#713)
+				if(quest.getType() instanceof AddCycleway && Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT)
+				{
+					continue;
+				}
+				index.put(group, quest.getId(), getIconName(quest.getType()), getQuestPriority(quest),
+					quest.getMarkerLocations());
+			}
+		});
+	}
+
+	/** Remove the given quests. Quests that are not displayed are ignored */
+	@AnyThread public void remove(Collection<Long> questIds, QuestGroup group)
+	{
+		enqueue(() ->
+		{
+			for (Long questId : questIds)
+			{
+				index.remove(group, questId);
+			}
+		});
+	}
+
+	/** Only keep the quests within the given tiles from now on. Quests elsewhere are removed and
+	 *  ignored when added
+	 *  @param tileKeys keys of tiles at ApplicationConstants.QUEST_TILE_ZOOM (see TileKey) */
+	@AnyThread public void retainTiles(Collection<Long> tileKeys)
+	{
+		List<Long> keys = new ArrayList<>(tileKeys);
+		enqueue(() -> index.retainTiles(keys));
+	}
+
+	@AnyThread public void clear()
+	{
+		enqueue(index::clear);
+	}
+
+	@UiThread public void destroy()
+	{
+		synchronized (pendingChanges)
+		{
+			isDestroyed = true;
+			pendingChanges.clear();
+		}
+		worker.shutdownNow();
+		Choreographer.getInstance().removeFrameCallback(applyUpdateCallback);
+		layer = null;
+		controller = null;
+	}
+
+	private void enqueue(Runnable change)
+	{
+		synchronized (pendingChanges)
+		{
+			if(isDestroyed) return;
+			pendingChanges.add(change);
+			// changes that arrive while the worker is busy are processed together
+			if(!isProcessingScheduled)
+			{
+				isProcessingScheduled = true;
+				worker.execute(this::processChanges);
+			}
+		}
+	}
+
+	/* ---------------------------------- worker thread ----------------------------------------- */
+
+	private void processChanges()
+	{
+		List<Runnable> changes;
+		synchronized (pendingChanges)
+		{
+			changes = new ArrayList<>(pendingChanges);
+			pendingChanges.clear();
+			isProcessingScheduled = false;
+		}
+		for (Runnable change : changes)
+		{
+			change.run();
+		}
+
+		QuestMarkersIndex.Update update = index.flush();
+		if(update == null) return;
+
+		synchronized (pendingGeoJson)
+		{
+			if(update.clear)
+			{
+				pendingClear = true;
+				pendingGeoJson.clear();
+			}
+			if(update.geoJson != null) pendingGeoJson.add(update.geoJson);
+
+			if(!isFrameScheduled)
+			{
+				isFrameScheduled = true;
+				mainHandler.post(() -> Choreographer.getInstance().postFrameCallback(applyUpdateCallback));
+			}
+		}
+	}
+
+	private String getIconName(QuestType questType)
+	{
+		String iconName = iconNames.get(questType);
+		if(iconName == null)
+		{
+			iconName = resources.getResourceEntryName(questType.getIcon());
+			iconNames.put(questType, iconName);
+		}
+		return iconName;
+	}
+
+	private int getQuestPriority(Quest quest)
+	{
+		// priority is decided by
+		// - primarily by quest type to allow quest prioritization
+		// - for quests of the same type - influenced by quest id,
+		//   this is done to reduce chance that as user zoom in a quest disappears,
+		//   especially in case where disappearing quest is one that user selected to solve
+
+		Map<QuestType, Integer> questTypeOrder = this.questTypeOrder;
+		if(questTypeOrder.isEmpty()) return 0;
+
+		// main priority part - values fit into Integer, but with as large steps as possible
+		Integer order = questTypeOrder.get(quest.getType());
+		if(order == null) order = 0;
+		int freeValuesForEachQuest = Integer.MAX_VALUE / questTypeOrder.size();
+		order *= freeValuesForEachQuest;
+
+		// quest ID is used to add values unique to each quest to make ordering consistent
+		// freeValuesForEachQuest is an int, so % freeValuesForEachQuest will fit into int
+		int hopefullyUniqueValueForQuest = (int) (quest.getId() % freeValuesForEachQuest);
+
+		return order + hopefullyUniqueValueForQuest;
+	}
+
+	/* ------------------------------------ UI thread ------------------------------------------- */
+
+	@UiThread private void applyUpdate()
+	{
+		boolean clear;
+		List<String> geoJsons;
+		synchronized (pendingGeoJson)
+		{
+			clear = pendingClear;
+			geoJsons = new ArrayList<>(pendingGeoJson);
+			pendingClear = false;
+			pendingGeoJson.clear();
+			isFrameScheduled = false;
+		}
+
+		if(layer == null || controller == null) return;
+
+		if(clear) layer.clear();
+		for (String geoJson : geoJsons)
+		{
+			layer.addGeoJson(geoJson);
+		}
+		controller.requestRender();
+	}
+}
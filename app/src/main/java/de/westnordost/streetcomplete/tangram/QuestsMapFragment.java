@@ -4,9 +4,10 @@ import android.content.Context;
 import android.graphics.Point;
 import android.graphics.PointF;
 import android.graphics.Rect;
-import android.os.Build;
 import android.os.Handler;
+import android.view.View;
 
+import androidx.annotation.AnyThread;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.UiThread;
@@ -19,37 +20,34 @@ import com.mapzen.tangram.SceneError;
 import com.mapzen.tangram.SceneUpdate;
 import com.mapzen.tangram.TouchInput;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
 
+import de.westnordost.streetcomplete.ApplicationConstants;
 import de.westnordost.streetcomplete.Injector;
 import de.westnordost.streetcomplete.data.Quest;
 import de.westnordost.streetcomplete.data.QuestGroup;
 import de.westnordost.streetcomplete.data.QuestType;
 import de.westnordost.streetcomplete.data.osm.ElementGeometry;
-import de.westnordost.streetcomplete.quests.bikeway.AddCycleway;
 import de.westnordost.streetcomplete.util.SlippyMapMath;
+import de.westnordost.streetcomplete.util.TileKey;
 import de.westnordost.osmapi.map.data.BoundingBox;
 import de.westnordost.osmapi.map.data.LatLon;
 
 public class QuestsMapFragment extends MapFragment implements TouchInput.TapResponder,
 		MapController.LabelPickListener
 {
-	private static final String MARKER_QUEST_ID = "quest_id";
-	private static final String MARKER_QUEST_GROUP = "quest_group";
-
 	private static final String GEOMETRY_LAYER = "streetcomplete_geometry";
 	private static final String QUESTS_LAYER = "streetcomplete_quests";
 
-	private MapData questsLayer;
+	private volatile QuestMarkersLayer questsLayer;
 	private MapData geometryLayer;
 
 	private Float zoomBeforeShowingQuest = null;
@@ -57,8 +55,9 @@ public class QuestsMapFragment extends MapFragment implements TouchInput.TapResp
 
 	private LngLat lastPos;
 	private Rect lastDisplayedRect;
-	private final Set<Point> retrievedTiles;
-	private static final int TILES_ZOOM = 14;
+	private final RecentlyViewedTiles retrievedTiles =
+		new RecentlyViewedTiles(ApplicationConstants.MAX_DISPLAYED_QUEST_TILES);
+	private static final int TILES_ZOOM = ApplicationConstants.QUEST_TILE_ZOOM;
 
 	private static final float MAX_QUEST_ZOOM = 19;
 
@@ -66,11 +65,12 @@ public class QuestsMapFragment extends MapFragment implements TouchInput.TapResp
 
 	private Listener listener;
 
+	private final Runnable updateClusterZoomRunnable = this::updateClusterZoom;
+
 	private Rect questOffset;
 
 	@Inject Provider<List<QuestType>> questTypesProvider;
 	@Inject TangramQuestSpriteSheetCreator spriteSheetCreator;
-	private Map<QuestType, Integer> questTypeOrder;
 
 	public interface Listener
 	{
@@ -83,24 +83,19 @@ public class QuestsMapFragment extends MapFragment implements TouchInput.TapResp
 	public QuestsMapFragment()
 	{
 		Injector.instance.getApplicationComponent().inject(this);
-		retrievedTiles = new HashSet<>();
 	}
 
 	@Override public void onAttach(Context context)
 	{
 		super.onAttach(context);
 		listener = (Listener) context;
+		if(questsLayer == null) questsLayer = new QuestMarkersLayer(context.getResources());
 	}
 
 	@Override public void onStart()
 	{
 		super.onStart();
-		questTypeOrder = new HashMap<>();
-		int order = 0;
-		for (QuestType questType : questTypesProvider.get())
-		{
-			questTypeOrder.put(questType, order++);
-		}
+		questsLayer.setQuestTypeOrder(questTypesProvider.get());
 	}
 
 	@Override public void onResume()
@@ -125,7 +120,9 @@ public class QuestsMapFragment extends MapFragment implements TouchInput.TapResp
 	@Override public void onDestroy()
 	{
 		super.onDestroy();
-		questsLayer = geometryLayer = null;
+		if(questsLayer != null) questsLayer.destroy();
+		questsLayer = null;
+		geometryLayer = null;
 	}
 
 	@Override public void getMapAsync(String apiKey, @NonNull final String sceneFilePath)
@@ -152,7 +149,7 @@ public class QuestsMapFragment extends MapFragment implements TouchInput.TapResp
 		{
 			retrievedTiles.clear();
 			geometryLayer = controller.addDataLayer(GEOMETRY_LAYER);
-			questsLayer = controller.addDataLayer(QUESTS_LAYER);
+			questsLayer.setLayer(controller.addDataLayer(QUESTS_LAYER), controller);
 		}
 		super.onSceneReady(sceneId, sceneError);
 	}
@@ -173,10 +170,18 @@ public class QuestsMapFragment extends MapFragment implements TouchInput.TapResp
 	{
 		if(controller == null) return;
 
+		if(labelPickResult != null
+				&& labelPickResult.getProperties() != null
+				&& QuestMarkersIndex.TYPE_CLUSTER.equals(labelPickResult.getProperties().get(QuestMarkersIndex.MARKER_TYPE)))
+		{
+			expandCluster(labelPickResult.getCoordinates());
+			return;
+		}
+
 		if(labelPickResult == null
 				|| labelPickResult.getType() != LabelPickResult.LabelType.ICON
 				|| labelPickResult.getProperties() == null
-				|| labelPickResult.getProperties().get(MARKER_QUEST_ID) == null)
+				|| labelPickResult.getProperties().get(QuestMarkersIndex.MARKER_QUEST_ID) == null)
 		{
 			onClickedMap(positionX, positionY);
 			return;
@@ -184,11 +189,23 @@ public class QuestsMapFragment extends MapFragment implements TouchInput.TapResp
 
 		Map<String,String> props = labelPickResult.getProperties();
 		listener.onClickedQuest(
-				QuestGroup.valueOf(props.get(MARKER_QUEST_GROUP)),
-				Long.valueOf(props.get(MARKER_QUEST_ID))
+				QuestGroup.valueOf(props.get(QuestMarkersIndex.MARKER_QUEST_GROUP)),
+				Long.valueOf(props.get(QuestMarkersIndex.MARKER_QUEST_ID))
 		);
 	}
 
+	/** zoom in far enough that the quests of the cluster are displayed each with its own marker */
+	private void expandCluster(LngLat position)
+	{
+		if(position != null && requestUnglueViewFromPosition())
+		{
+			controller.setPositionEased(position, 500);
+		}
+		float targetZoom = Math.max(controller.getZoom() + 1, ApplicationConstants.CLUSTER_QUESTS_BELOW_ZOOM);
+		controller.setZoomEased(targetZoom, 500);
+		updateView();
+	}
+
 	private void zoomAndMoveToContain(ElementGeometry g)
 	{
 		zoomBeforeShowingQuest = controller.getZoom();
@@ -277,6 +294,15 @@ public class QuestsMapFragment extends MapFragment implements TouchInput.TapResp
 
 		if (controller == null) return;
 
+		updateClusterZoom();
+		// the zoom may still be changing (eased), so check again once it is done
+		View view = getView();
+		if(view != null)
+		{
+			view.removeCallbacks(updateClusterZoomRunnable);
+			view.postDelayed(updateClusterZoomRunnable, 600);
+		}
+
 		if(controller.getZoom() < TILES_ZOOM) return;
 
 		// check if anything changed (needs to be extended when I re-enable tilt and rotation)
@@ -298,12 +324,26 @@ public class QuestsMapFragment extends MapFragment implements TouchInput.TapResp
 		}
 
 		List<Point> tiles = SlippyMapMath.asTileList(tilesRect);
-		tiles.removeAll(retrievedTiles);
+		List<Long> tileKeys = new ArrayList<>(tiles.size());
+		for (Point tile : tiles)
+		{
+			tileKeys.add(TileKey.pack(tile.x, tile.y));
+		}
+		List<Long> newTileKeys = retrievedTiles.view(tileKeys);
+		List<Point> newTiles = new ArrayList<>(newTileKeys.size());
+		for (Point tile : tiles)
+		{
+			if(newTileKeys.contains(TileKey.pack(tile.x, tile.y))) newTiles.add(tile);
+		}
 
-		Rect minRect = SlippyMapMath.minRect(tiles);
+		Rect minRect = SlippyMapMath.minRect(newTiles);
 		if(minRect == null) return;
 		BoundingBox bbox = SlippyMapMath.asBoundingBox(minRect, TILES_ZOOM);
 
+		// only keep the quests of the most recently viewed tiles, the others are retrieved again
+		// when they come into view again
+		if(questsLayer != null) questsLayer.retainTiles(retrievedTiles.getAll());
+
 		listener.onFirstInView(bbox);
 
 		// debugging
@@ -315,8 +355,11 @@ public class QuestsMapFragment extends MapFragment implements TouchInput.TapResp
 		corners.add(bbox.getMin());
 		ElementGeometry e = new ElementGeometry(null, Collections.singletonList(corners));
 		addQuestGeometry(e);*/
+	}
 
-		retrievedTiles.addAll(tiles);
+	private void updateClusterZoom()
+	{
+		if(controller != null && questsLayer != null) questsLayer.setZoom(controller.getZoom());
 	}
 
 	public void setQuestOffsets(Rect offsets)
@@ -367,112 +410,18 @@ public class QuestsMapFragment extends MapFragment implements TouchInput.TapResp
 			followPosition();
 		}
 	}
-/*
-	public void addQuest(Quest quest, QuestGroup group)
-	{
-		// TODO: this method may also be called for quests that are already displayed on this map
-		if(questsLayer == null) return;
-
-		LngLat pos = TangramConst.toLngLat(quest.getMarkerLocation());
-		Map<String, String> props = new HashMap<>();
-		props.put("type", "point");
-		props.put("kind", quest.getType().getIconName());
-		props.put(MARKER_QUEST_GROUP, group.name());
-		props.put(MARKER_QUEST_ID, String.valueOf(quest.getId()));
-		questsLayer.addPoint(pos, props);
-
-		controller.applySceneUpdates();
-	}
-*/
-
-	private int getQuestPriority(Quest quest){
-		// priority is decided by
-		// - primarily by quest type to allow quest prioritization
-		// - for quests of the same type - influenced by quest id,
-		//   this is done to reduce chance that as user zoom in a quest disappears,
-		//   especially in case where disappearing quest is one that user selected to solve
-
-		// main priority part - values fit into Integer, but with as large steps as possible
-		Integer order = questTypeOrder.get(quest.getType());
-		if(order == null) order = 0;
-		int freeValuesForEachQuest = Integer.MAX_VALUE / questTypeOrder.size();
-		order *= freeValuesForEachQuest;
-
-		// quest ID is used to add values unique to each quest to make ordering consistent
-		// freeValuesForEachQuest is an int, so % freeValuesForEachQuest will fit into int
-		int hopefullyUniqueValueForQuest = (int) (quest.getId() % freeValuesForEachQuest);
-
-		return order + hopefullyUniqueValueForQuest;
-	}
-
-	@UiThread
-	public void addQuests(Iterable quests, QuestGroup group)
+	@AnyThread
+	public void addQuests(Collection<? extends Quest> quests, QuestGroup group)
 	{
-		if(questsLayer == null) return;
-
-		StringBuilder geoJson = new StringBuilder();
-		geoJson.append("{\"type\":\"FeatureCollection\",\"features\": [");
-
-		boolean first = true;
-		for(Object q : quests)
-		{
-			Quest quest = (Quest) q;
-
-			// hack away cycleway quests for old Android SDK versions (#713)
-			if(quest.getType() instanceof AddCycleway && android.os.Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT)
-			{
-				continue;
-			}
-
-			String questIconName = getActivity().getResources().getResourceEntryName(quest.getType().getIcon());
-
-			LatLon[] positions = quest.getMarkerLocations();
-
-			for (LatLon pos : positions)
-			{
-				if(first) first = false;
-				else      geoJson.append(",");
-
-				geoJson.append("{\"type\":\"Feature\",");
-				geoJson.append("\"geometry\":{\"type\":\"Point\",\"coordinates\": [");
-				geoJson.append(pos.getLongitude());
-				geoJson.append(",");
-				geoJson.append(pos.getLatitude());
-				geoJson.append("]},\"properties\": {\"type\":\"point\", \"kind\":\"");
-				geoJson.append(questIconName);
-				geoJson.append("\",\"");
-				geoJson.append(MARKER_QUEST_GROUP);
-				geoJson.append("\":\"");
-				geoJson.append(group.name());
-				geoJson.append("\",\"");
-				geoJson.append(MARKER_QUEST_ID);
-				geoJson.append("\":\"");
-				geoJson.append(quest.getId());
-				geoJson.append("\",\"");
-				geoJson.append("order");
-				geoJson.append("\":\"");
-				geoJson.append(getQuestPriority(quest));
-				geoJson.append("\"}}");
-			}
-		}
-		geoJson.append("]}");
-
-		questsLayer.addGeoJson(geoJson.toString());
-		controller.requestRender();
+		QuestMarkersLayer questsLayer = this.questsLayer;
+		if(questsLayer != null) questsLayer.add(quests, group);
 	}
 
-	@UiThread
+	@AnyThread
 	public void removeQuests(Collection<Long> questIds, QuestGroup group)
 	{
-		// TODO: this method may also be called for quests that are not displayed on this map (anymore)
-
-		if(questsLayer == null) return;
-		// TODO (currently not possible with tangram, but it has been announced that this will soon
-		// be added
-
-		// so for now...:
-		clearQuests();
-		updateView();
+		QuestMarkersLayer questsLayer = this.questsLayer;
+		if(questsLayer != null) questsLayer.remove(questIds, group);
 	}
 
 	private void clearQuests()
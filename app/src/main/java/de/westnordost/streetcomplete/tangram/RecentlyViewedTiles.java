@@ -0,0 +1,56 @@
+package de.westnordost.streetcomplete.tangram;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/** The keys (see TileKey) of the most recently viewed tiles, up to a maximum number. The tiles
+ *  currently in view are never forgotten, even if they are more than that maximum. */
+class RecentlyViewedTiles
+{
+	private final int maxTiles;
+	// ordered from the least to the most recently viewed tile
+	private final Set<Long> tiles = new LinkedHashSet<>();
+
+	RecentlyViewedTiles(int maxTiles)
+	{
+		this.maxTiles = maxTiles;
+	}
+
+	/** Marks the given tiles as the ones currently in view and forgets the least recently viewed
+	 *  other tiles beyond the maximum.
+	 *
+	 *  @return the given tiles that have not been viewed before (or have been forgotten since) */
+	List<Long> view(Collection<Long> tilesInView)
+	{
+		List<Long> newTiles = new ArrayList<>();
+		for (Long tile : tilesInView)
+		{
+			if(!tiles.remove(tile)) newTiles.add(tile);
+			tiles.add(tile);
+		}
+		// the tiles in view are the last ones, so only other tiles are removed here
+		int max = Math.max(maxTiles, tilesInView.size());
+		Iterator<Long> it = tiles.iterator();
+		while (tiles.size() > max)
+		{
+			it.next();
+			it.remove();
+		}
+		return newTiles;
+	}
+
+	Collection<Long> getAll()
+	{
+		return Collections.unmodifiableSet(tiles);
+	}
+
+	void clear()
+	{
+		tiles.clear();
+	}
+}
@@ -8,15 +8,17 @@ import org.json.JSONObject;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
-import java.util.ArrayList;
-import java.util.List;
 
 import de.westnordost.streetcomplete.ApplicationConstants;
 
+/** Uploads photos to the StreetComplete photo service. The connections are not closed explicitly
+ *  so that they are kept alive and reused for the next photo (of possibly several concurrent
+ *  uploads) */
 public class ImageUploader
 {
 	private final String baseUrl;
@@ -28,64 +30,50 @@ public class ImageUploader
 		this.baseUrl = baseUrl;
 	}
 
-	public List<String> upload(List<String> imagePaths)
+	/** Uploads the given photo.
+	 *
+	 *  @return the url under which the photo will be available once activated or null if the
+	 *          photo service rejected the photo (so trying again is pointless)
+	 *  @throws IOException if the upload failed due to connection problems or because the photo
+	 *          service is unavailable at the moment, so it should be tried again later */
+	public String upload(File file) throws IOException
 	{
-		ArrayList<String> imageLinks = new ArrayList<>();
-
-		for (String path : imagePaths)
+		HttpURLConnection httpConnection = createConnection(baseUrl+"upload.php");
+		httpConnection.setRequestMethod("POST");
+		httpConnection.setRequestProperty("Content-Type", URLConnection.guessContentTypeFromName(file.getPath()));
+		httpConnection.setRequestProperty("Content-Transfer-Encoding", "binary");
+		// stream the file instead of buffering it in memory first (long variant needs API 19)
+		httpConnection.setFixedLengthStreamingMode((int) file.length());
+
+		try (OutputStream outputStream = httpConnection.getOutputStream())
+		{
+			writeToOutputStream(file, outputStream);
+		}
+		int status = httpConnection.getResponseCode();
+		if (status == HttpURLConnection.HTTP_OK)
 		{
-			File file = new File(path);
-			if (file.exists())
+			String response = StreamUtils.readToString(httpConnection.getInputStream());
+			try
 			{
-				try
-				{
-					HttpURLConnection httpConnection = createConnection(baseUrl+"upload.php");
-					httpConnection.setRequestMethod("POST");
-					httpConnection.setRequestProperty("Content-Type", URLConnection.guessContentTypeFromName(file.getPath()));
-					httpConnection.setRequestProperty("Content-Transfer-Encoding", "binary");
-					httpConnection.setRequestProperty("Content-Length", ""+file.length());
-
-					try (OutputStream outputStream = httpConnection.getOutputStream())
-					{
-						writeToOutputStream(file, outputStream);
-					}
-					int status = httpConnection.getResponseCode();
-					if (status == HttpURLConnection.HTTP_OK)
-					{
-						String response = StreamUtils.readToString(httpConnection.getInputStream());
-						try
-						{
-							JSONObject jsonResponse = new JSONObject(response);
-							String url = jsonResponse.getString("future_url");
-							imageLinks.add(url);
-						}
-						catch (JSONException e)
-						{
-							imageLinks.add("(error: upload failed)");
-							Log.e(TAG, "Upload Failed: Unexpected response \"" + response+"\"", e);
-						}
-					}
-					else
-					{
-						imageLinks.add("(error: upload failed)");
-						String error = StreamUtils.readToString(httpConnection.getErrorStream());
-						Log.e(TAG, "Upload failed: Error code " + status + ", Message: \""+error+"\"");
-					}
-
-					httpConnection.disconnect();
-				}
-				// an error here should neither crash the app nor make the whole note upload
-				// fail but should not be silently ignored -> middle ground: include error message
-				// in note (comment) and log to console
-				catch (IOException e)
-				{
-					imageLinks.add("(error: upload failed)");
-					Log.e(TAG, "Upload failed", e);
-				}
+				JSONObject jsonResponse = new JSONObject(response);
+				return jsonResponse.getString("future_url");
+			}
+			catch (JSONException e)
+			{
+				Log.e(TAG, "Upload failed: Unexpected response \"" + response+"\"", e);
+				return null;
 			}
 		}
-
-		return imageLinks;
+		else
+		{
+			String error = readError(httpConnection);
+			if (isTemporaryError(status))
+			{
+				throw new IOException("Upload failed: Error code " + status + ", Message: \"" + error + "\"");
+			}
+			Log.e(TAG, "Upload failed: Error code " + status + ", Message: \""+error+"\"");
+			return null;
+		}
 	}
 
 	public void activate(long noteId)
@@ -107,7 +95,7 @@ public class ImageUploader
 				Log.d(TAG, "Activation successful: \"" + response + "\"");
 			} else
 			{
-				String error = StreamUtils.readToString(httpConnection.getErrorStream());
+				String error = readError(httpConnection);
 				Log.e(TAG, "Activation failed: Error code " + status + ", Message: \""+error+"\"");
 			}
 		}
@@ -117,6 +105,18 @@ public class ImageUploader
 		}
 	}
 
+	private static boolean isTemporaryError(int status)
+	{
+		return status >= 500 || status == HttpURLConnection.HTTP_CLIENT_TIMEOUT || status == 429;
+	}
+
+	private static String readError(HttpURLConnection httpConnection) throws IOException
+	{
+		// the response must be read completely for the connection to be reusable
+		InputStream errorStream = httpConnection.getErrorStream();
+		return errorStream != null ? StreamUtils.readToString(errorStream) : "";
+	}
+
 	private static HttpURLConnection createConnection(String url) throws IOException
 	{
 		URL uploadUrl = new URL(url);
@@ -0,0 +1,63 @@
+package de.westnordost.streetcomplete.util;
+
+/** A token bucket to limit how often something may be done, shared between threads: The bucket
+ *  holds at most "burst" tokens and is refilled with "permitsPerSecond" tokens per second. Each
+ *  action takes one token and has to wait for one if the bucket is empty */
+public class RateLimiter
+{
+	private final double tokensPerNano;
+	private final int burst;
+
+	private double tokens;
+	private long lastRefill;
+
+	public RateLimiter(double permitsPerSecond, int burst)
+	{
+		if(permitsPerSecond <= 0) throw new IllegalArgumentException("permitsPerSecond must be positive");
+		if(burst < 1) throw new IllegalArgumentException("burst must be at least 1");
+		this.tokensPerNano = permitsPerSecond / 1000000000.0;
+		this.burst = burst;
+		this.tokens = burst;
+		this.lastRefill = System.nanoTime();
+	}
+
+	/** Takes a token, waits until one is available if necessary.
+	 *  @return false if the thread has been interrupted while waiting. The caller should abort then */
+	public synchronized boolean acquire()
+	{
+		try
+		{
+			refill();
+			while(tokens < 1)
+			{
+				long waitNanos = (long) Math.ceil((1 - tokens) / tokensPerNano);
+				wait(Math.max(1, waitNanos / 1000000), (int) (waitNanos % 1000000));
+				refill();
+			}
+			tokens--;
+			return true;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/** Takes a token if one is available right now.
+	 *  @return whether a token was available */
+	public synchronized boolean tryAcquire()
+	{
+		refill();
+		if(tokens < 1) return false;
+		tokens--;
+		return true;
+	}
+
+	private void refill()
+	{
+		long now = System.nanoTime();
+		tokens = Math.min(burst, tokens + (now - lastRefill) * tokensPerNano);
+		lastRefill = now;
+	}
+}
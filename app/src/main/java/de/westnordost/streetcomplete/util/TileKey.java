@@ -0,0 +1,92 @@
+package de.westnordost.streetcomplete.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.westnordost.osmapi.map.data.BoundingBox;
+
+/** Packs the slippy map tile a position is in into a single number which can be indexed in the
+ *  database. The tiles are numbered row by row, so all tiles of one row of a bounding box form one
+ *  contiguous range of keys. */
+public class TileKey
+{
+	public static final int ZOOM = 16;
+
+	/** above this number of rows, the tiles of a bounding box are not queried row by row anymore
+	 *  but as one big range */
+	private static final int MAX_RANGES = 32;
+
+	private static final double MAX_LATITUDE = 85.0511287798;
+
+	public static long of(double latitude, double longitude)
+	{
+		return pack(tileX(longitude, ZOOM), tileY(latitude, ZOOM));
+	}
+
+	/** @return the key of the tile at the given zoom level (up to ZOOM) the position is in */
+	public static long of(double latitude, double longitude, int zoom)
+	{
+		return pack(tileX(longitude, zoom), tileY(latitude, zoom));
+	}
+
+	/** @return the ranges of tile keys (from, to, from, to, ...) of all tiles that intersect with
+	 *          the given bounding box */
+	public static List<Long> rangesOf(BoundingBox bbox)
+	{
+		int minX = tileX(bbox.getMinLongitude(), ZOOM);
+		int maxX = tileX(bbox.getMaxLongitude(), ZOOM);
+		// y axis points south
+		int minY = tileY(bbox.getMaxLatitude(), ZOOM);
+		int maxY = tileY(bbox.getMinLatitude(), ZOOM);
+
+		List<Long> result = new ArrayList<>();
+		if(maxY - minY + 1 > MAX_RANGES)
+		{
+			result.add(pack(minX, minY));
+			result.add(pack(maxX, maxY));
+		}
+		else
+		{
+			for (int y = minY; y <= maxY; ++y)
+			{
+				result.add(pack(minX, y));
+				result.add(pack(maxX, y));
+			}
+		}
+		return result;
+	}
+
+	public static long pack(int x, int y)
+	{
+		return ((long) y << ZOOM) | x;
+	}
+
+	public static int tileX(double longitude, int zoom)
+	{
+		int tiles = 1 << zoom;
+		int x = (int) Math.floor((longitude + 180) / 360 * tiles);
+		return Math.max(0, Math.min(x, tiles - 1));
+	}
+
+	public static int tileY(double latitude, int zoom)
+	{
+		int tiles = 1 << zoom;
+		// web mercator is not defined beyond that, also, the formula yields NaN for the south pole
+		double radianLat = Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(latitude, MAX_LATITUDE)));
+		int y = (int) Math.floor((1 - Math.log(Math.tan(radianLat) + 1 / Math.cos(radianLat)) / Math.PI) / 2 * tiles);
+		return Math.max(0, Math.min(y, tiles - 1));
+	}
+
+	/** @return the longitude of the west edge of the tile with the given x at the given zoom */
+	public static double tileLongitude(int x, int zoom)
+	{
+		return x / (double) (1 << zoom) * 360.0 - 180;
+	}
+
+	/** @return the latitude of the north edge of the tile with the given y at the given zoom */
+	public static double tileLatitude(int y, int zoom)
+	{
+		double n = Math.PI - (2.0 * Math.PI * y) / (1 << zoom);
+		return Math.toDegrees(Math.atan(Math.sinh(n)));
+	}
+}
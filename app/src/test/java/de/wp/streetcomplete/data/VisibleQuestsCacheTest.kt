@@ -0,0 +1,162 @@
+package de.westnordost.streetcomplete.data
+
+import de.westnordost.osmapi.map.data.BoundingBox
+import de.westnordost.osmapi.map.data.OsmLatLon
+import de.westnordost.streetcomplete.on
+import de.westnordost.streetcomplete.util.TileKey
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import org.mockito.Mockito.mock
+
+class VisibleQuestsCacheTest {
+
+    private lateinit var cache: VisibleQuestsCache
+    private lateinit var loader: TestLoader
+
+    @Before fun setUp() {
+        cache = VisibleQuestsCache(ZOOM, 4)
+        loader = TestLoader()
+    }
+
+    @Test fun `loads tiles that are not cached`() {
+        val quest = quest(1, X, Y)
+        loader.quests = listOf(quest)
+
+        val result = cache.get(tileBBox(X, Y), loader)
+
+        assertEquals(listOf(quest), result[QuestGroup.OSM])
+        assertEquals(1, loader.loadCount)
+        assertEquals(0, cache.hits)
+        assertEquals(1, cache.misses)
+    }
+
+    @Test fun `does not load cached tiles again`() {
+        val quest = quest(1, X, Y)
+        loader.quests = listOf(quest)
+
+        cache.get(tileBBox(X, Y), loader)
+        val result = cache.get(tileBBox(X, Y), loader)
+
+        assertEquals(listOf(quest), result[QuestGroup.OSM])
+        assertEquals(1, loader.loadCount)
+        assertEquals(1, cache.hits)
+        assertEquals(1, cache.misses)
+    }
+
+    @Test fun `only loads the tiles that are not cached`() {
+        loader.quests = listOf(quest(1, X, Y))
+        cache.get(tileBBox(X, Y), loader)
+
+        // loader returns the quest of the already cached tile again, it must not be duplicated
+        loader.quests = listOf(quest(1, X, Y), quest(2, X + 1, Y))
+        val result = cache.get(tileBBox(X, Y, X + 1, Y), loader)
+
+        assertEquals(listOf(1L, 2L), result[QuestGroup.OSM]!!.map { it.id }.sorted())
+        assertEquals(tileBBox(X + 1, Y), loader.lastBBox)
+        assertEquals(1, cache.hits)
+        assertEquals(2, cache.misses)
+    }
+
+    @Test fun `created quests are added to cached tiles`() {
+        cache.get(tileBBox(X, Y), loader)
+        val quest = quest(1, X, Y)
+
+        cache.onQuestsCreated(listOf(quest), QuestGroup.OSM)
+
+        assertEquals(listOf(quest), cache.get(tileBBox(X, Y), loader)[QuestGroup.OSM])
+    }
+
+    @Test fun `created quests in tiles that are not cached are ignored`() {
+        cache.get(tileBBox(X, Y), loader)
+
+        cache.onQuestsCreated(listOf(quest(1, X + 1, Y)), QuestGroup.OSM)
+
+        assertTrue(cache.get(tileBBox(X + 1, Y), loader)[QuestGroup.OSM]!!.isEmpty())
+        assertEquals(2, loader.loadCount)
+    }
+
+    @Test fun `removed quests are removed from cached tiles`() {
+        loader.quests = listOf(quest(1, X, Y), quest(2, X, Y))
+        cache.get(tileBBox(X, Y), loader)
+
+        cache.onQuestsRemoved(listOf(1L), QuestGroup.OSM)
+
+        assertEquals(listOf(2L), cache.get(tileBBox(X, Y), loader)[QuestGroup.OSM]!!.map { it.id })
+    }
+
+    @Test fun `removed quests of other quest group are not removed`() {
+        loader.quests = listOf(quest(1, X, Y))
+        cache.get(tileBBox(X, Y), loader)
+
+        cache.onQuestsRemoved(listOf(1L), QuestGroup.OSM_NOTE)
+
+        assertEquals(1, cache.get(tileBBox(X, Y), loader)[QuestGroup.OSM]!!.size)
+    }
+
+    @Test fun `moved quest is removed from previous tile`() {
+        cache.get(tileBBox(X, Y, X + 1, Y), loader)
+        cache.onQuestsCreated(listOf(quest(1, X, Y)), QuestGroup.OSM)
+
+        cache.onQuestsCreated(listOf(quest(1, X + 1, Y)), QuestGroup.OSM)
+
+        assertTrue(cache.get(tileBBox(X, Y), loader)[QuestGroup.OSM]!!.isEmpty())
+        assertEquals(1, cache.get(tileBBox(X + 1, Y), loader)[QuestGroup.OSM]!!.size)
+    }
+
+    @Test fun `evicts least recently viewed tile`() {
+        for (x in 0 until 4) cache.get(tileBBox(X + x, Y), loader)
+        // view first tile again, so the second is the least recently viewed
+        cache.get(tileBBox(X, Y), loader)
+        cache.get(tileBBox(X + 4, Y), loader)
+        assertEquals(5, loader.loadCount)
+
+        cache.get(tileBBox(X, Y), loader)
+        assertEquals(5, loader.loadCount)
+        cache.get(tileBBox(X + 1, Y), loader)
+        assertEquals(6, loader.loadCount)
+    }
+
+    @Test fun `clear forgets all tiles`() {
+        cache.get(tileBBox(X, Y), loader)
+        cache.clear()
+        cache.get(tileBBox(X, Y), loader)
+        assertEquals(2, loader.loadCount)
+    }
+
+    private class TestLoader : VisibleQuestsCache.Loader {
+        var quests: List<Quest> = listOf()
+        var loadCount = 0
+        var lastBBox: BoundingBox? = null
+
+        override fun load(bbox: BoundingBox): Map<QuestGroup, List<Quest>> {
+            loadCount++
+            lastBBox = bbox
+            return mapOf(QuestGroup.OSM to quests, QuestGroup.OSM_NOTE to listOf())
+        }
+    }
+
+    companion object {
+        private const val ZOOM = 14
+        // somewhere in Hamburg
+        private val X = TileKey.tileX(9.99, ZOOM)
+        private val Y = TileKey.tileY(53.55, ZOOM)
+    }
+}
+
+private fun tileBBox(minX: Int, minY: Int, maxX: Int = minX, maxY: Int = minY) = BoundingBox(
+    TileKey.tileLatitude(maxY + 1, 14),
+    TileKey.tileLongitude(minX, 14),
+    TileKey.tileLatitude(minY, 14),
+    TileKey.tileLongitude(maxX + 1, 14)
+)
+
+/** quest in the middle of the given tile */
+private fun quest(id: Long, x: Int, y: Int): Quest {
+    val lat = (TileKey.tileLatitude(y, 14) + TileKey.tileLatitude(y + 1, 14)) / 2
+    val lon = (TileKey.tileLongitude(x, 14) + TileKey.tileLongitude(x + 1, 14)) / 2
+    val quest = mock(Quest::class.java)
+    on(quest.id).thenReturn(id)
+    on(quest.center).thenReturn(OsmLatLon(lat, lon))
+    return quest
+}
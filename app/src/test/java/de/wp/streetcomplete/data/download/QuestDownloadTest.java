@@ -0,0 +1,175 @@
+package de.westnordost.streetcomplete.data.download;
+
+import android.content.SharedPreferences;
+import android.graphics.Rect;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.westnordost.osmapi.common.errors.OsmConnectionException;
+import de.westnordost.streetcomplete.data.QuestType;
+import de.westnordost.streetcomplete.data.QuestTypeRegistry;
+import de.westnordost.streetcomplete.data.osm.OsmElementQuestType;
+import de.westnordost.streetcomplete.data.osm.download.OsmQuestDownload;
+import de.westnordost.streetcomplete.data.osm.download.OverpassMapDataDao;
+import de.westnordost.streetcomplete.data.osm.download.OverpassStatus;
+import de.westnordost.streetcomplete.data.osmnotes.OsmNoteQuestDao;
+import de.westnordost.streetcomplete.data.tiles.DownloadedTilesDao;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.Mockito.*;
+
+public class QuestDownloadTest
+{
+	private DownloadedTilesDao downloadedTilesDao;
+	private OverpassMapDataDao overpassServer;
+	private OsmQuestDownload questDownload;
+	private QuestDownloadProgressListener progressListener;
+	private AtomicBoolean cancel;
+
+	@Before public void setUp()
+	{
+		downloadedTilesDao = mock(DownloadedTilesDao.class);
+		overpassServer = mock(OverpassMapDataDao.class);
+		questDownload = mock(OsmQuestDownload.class);
+		progressListener = mock(QuestDownloadProgressListener.class);
+		cancel = new AtomicBoolean(false);
+	}
+
+	@Test public void reportsProgressForEachQuestType() throws Exception
+	{
+		setFreeSlots(4);
+		when(questDownload.download(any(OsmElementQuestType.class), any(), any())).thenReturn(true);
+
+		QuestDownload download = createQuestDownload(3);
+		download.download();
+
+		verify(questDownload, times(3)).download(any(OsmElementQuestType.class), any(), any());
+		verify(downloadedTilesDao, times(3)).put(any(), any());
+		verify(progressListener, times(3)).onProgress(anyFloat());
+		assertEquals(1f, download.getProgress(), 0);
+		verify(progressListener).onSuccess();
+		verify(progressListener).onFinished();
+	}
+
+	@Test public void downloadsConcurrentlyOnFreeSlots() throws Exception
+	{
+		setFreeSlots(2);
+		// each download only succeeds if the other one runs at the same time
+		CountDownLatch bothRunning = new CountDownLatch(2);
+		when(questDownload.download(any(OsmElementQuestType.class), any(), any())).thenAnswer(invocation ->
+		{
+			bothRunning.countDown();
+			return bothRunning.await(5, TimeUnit.SECONDS);
+		});
+
+		createQuestDownload(2).download();
+
+		verify(downloadedTilesDao, times(2)).put(any(), any());
+	}
+
+	@Test public void downloadsOneByOneIfOverpassStatusIsUnavailable() throws Exception
+	{
+		when(overpassServer.getStatus()).thenThrow(new OsmConnectionException(new IOException()));
+		AtomicInteger running = new AtomicInteger(0);
+		AtomicInteger maxRunning = new AtomicInteger(0);
+		when(questDownload.download(any(OsmElementQuestType.class), any(), any())).thenAnswer(invocation ->
+		{
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			Thread.sleep(20);
+			running.decrementAndGet();
+			return true;
+		});
+
+		createQuestDownload(3).download();
+
+		verify(questDownload, times(3)).download(any(OsmElementQuestType.class), any(), any());
+		assertEquals(1, maxRunning.get());
+	}
+
+	@Test public void cancelStopsFurtherDownloads() throws Exception
+	{
+		setFreeSlots(1);
+		when(questDownload.download(any(OsmElementQuestType.class), any(), any())).thenAnswer(invocation ->
+		{
+			cancel.set(true);
+			return true;
+		});
+
+		createQuestDownload(3).download();
+
+		verify(questDownload, times(1)).download(any(OsmElementQuestType.class), any(), any());
+		verify(progressListener).onFinished();
+	}
+
+	@Test public void interruptedWorkerStopsFurtherDownloads() throws Exception
+	{
+		setFreeSlots(1);
+		when(questDownload.download(any(OsmElementQuestType.class), any(), any())).thenAnswer(invocation ->
+		{
+			// as if interrupted while waiting for the Overpass quota
+			Thread.currentThread().interrupt();
+			return false;
+		});
+
+		createQuestDownload(3).download();
+
+		verify(questDownload, times(1)).download(any(OsmElementQuestType.class), any(), any());
+		verify(questDownload, never()).deleteUnreferenced(any());
+		verify(progressListener, never()).onSuccess();
+		verify(progressListener).onFinished();
+	}
+
+	@Test public void exceptionInWorkerReachesCaller() throws Exception
+	{
+		setFreeSlots(2);
+		RuntimeException error = new RuntimeException("test");
+		when(questDownload.download(any(OsmElementQuestType.class), any(), any())).thenThrow(error);
+
+		try
+		{
+			createQuestDownload(2).download();
+			fail();
+		}
+		catch (RuntimeException e)
+		{
+			assertSame(error, e);
+		}
+		verify(progressListener, never()).onSuccess();
+		verify(progressListener).onFinished();
+	}
+
+	private void setFreeSlots(int slots)
+	{
+		OverpassStatus status = new OverpassStatus();
+		status.maxAvailableSlots = slots;
+		status.availableSlots = slots;
+		when(overpassServer.getStatus()).thenReturn(status);
+	}
+
+	private QuestDownload createQuestDownload(int questTypeCount)
+	{
+		List<QuestType> questTypes = new ArrayList<>(questTypeCount);
+		for (int i = 0; i < questTypeCount; ++i)
+		{
+			questTypes.add(mock(OsmElementQuestType.class));
+		}
+		QuestDownload download = new QuestDownload(
+				() -> null, () -> questDownload, downloadedTilesDao, mock(OsmNoteQuestDao.class),
+				overpassServer, new QuestTypeRegistry(questTypes), mock(SharedPreferences.class),
+				() -> questTypes);
+		download.setProgressListener(progressListener);
+		download.init(new Rect(0, 0, 0, 0), null, false, cancel);
+		return download;
+	}
+}
@@ -0,0 +1,91 @@
+package de.westnordost.streetcomplete.data.meta;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.FutureTask;
+
+import de.westnordost.countryboundaries.CountryBoundaries;
+import de.westnordost.osmapi.map.data.BoundingBox;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class CountryBoundariesCacheTest
+{
+	private CountryBoundaries boundaries;
+	private CountryBoundariesCache cache;
+
+	@Before public void setUp()
+	{
+		boundaries = mock(CountryBoundaries.class);
+		FutureTask<CountryBoundaries> future = new FutureTask<>(() -> boundaries);
+		future.run();
+		cache = new CountryBoundariesCache(future);
+	}
+
+	@Test public void positionsInInteriorCellAreAnsweredFromCache()
+	{
+		setCell(Arrays.asList("DE-NI", "DE"), Arrays.asList("DE-NI", "DE"));
+		when(boundaries.getIds(anyDouble(), anyDouble())).thenReturn(Arrays.asList("DE-NI", "DE"));
+
+		assertTrue(cache.isInAny(10.00001, 53.00001, Collections.singletonList("DE")));
+		assertFalse(cache.isInAny(10.00002, 53.00002, Collections.singletonList("NL")));
+		assertEquals(Arrays.asList("DE-NI", "DE"), cache.getIds(10.00003, 53.00003));
+
+		verify(boundaries, never()).isInAny(anyDouble(), anyDouble(), any());
+		// only once for the cell
+		verify(boundaries, times(1)).getIds(anyDouble(), anyDouble());
+		verify(boundaries, times(1)).getContainingIds(anyDouble(), anyDouble(), anyDouble(), anyDouble());
+	}
+
+	@Test public void positionsInBorderCellAreLookedUp()
+	{
+		setCell(Collections.singletonList("DE"), Arrays.asList("DE", "NL"));
+		when(boundaries.isInAny(anyDouble(), anyDouble(), any())).thenReturn(true);
+		when(boundaries.getIds(anyDouble(), anyDouble())).thenReturn(Collections.singletonList("NL"));
+
+		assertTrue(cache.isInAny(10.00001, 53.00001, Collections.singletonList("NL")));
+		assertEquals(Collections.singletonList("NL"), cache.getIds(10.00002, 53.00002));
+
+		verify(boundaries).isInAny(eq(10.00001), eq(53.00001), any());
+		verify(boundaries).getIds(10.00002, 53.00002);
+	}
+
+	@Test public void cellIsNotInteriorIfCenterIsInOtherCountries()
+	{
+		setCell(Collections.singletonList("DE"), Collections.singletonList("DE"));
+		when(boundaries.getIds(anyDouble(), anyDouble())).thenReturn(Collections.emptyList());
+
+		cache.isInAny(10.00001, 53.00001, Collections.singletonList("DE"));
+
+		verify(boundaries).isInAny(eq(10.00001), eq(53.00001), any());
+	}
+
+	@Test public void boundingBoxIdsAreCombinedFromCells()
+	{
+		when(boundaries.getContainingIds(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+			.thenReturn(new HashSet<>(Arrays.asList("DE", "EU")), new HashSet<>(Collections.singletonList("EU")));
+		when(boundaries.getIntersectingIds(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+			.thenReturn(new HashSet<>(Arrays.asList("DE", "EU")), new HashSet<>(Arrays.asList("NL", "EU")));
+
+		// spans two cells at zoom 14
+		BoundingBox bbox = new BoundingBox(53.005, 10.001, 53.006, 10.03);
+
+		assertEquals(new HashSet<>(Collections.singletonList("EU")), cache.getContainingIds(bbox));
+		assertEquals(new HashSet<>(Arrays.asList("DE", "NL", "EU")), cache.getIntersectingIds(bbox));
+	}
+
+	private void setCell(List<String> containingIds, List<String> intersectingIds)
+	{
+		when(boundaries.getContainingIds(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+			.thenReturn(new HashSet<>(containingIds));
+		when(boundaries.getIntersectingIds(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+			.thenReturn(new HashSet<>(intersectingIds));
+	}
+}
@@ -3,6 +3,7 @@ package de.westnordost.streetcomplete.data.osm;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -16,6 +17,7 @@ import de.westnordost.streetcomplete.data.QuestStatus;
 import de.westnordost.streetcomplete.data.QuestType;
 import de.westnordost.streetcomplete.data.osm.persist.ElementGeometryDao;
 import de.westnordost.streetcomplete.data.osm.persist.OsmQuestDao;
+import de.westnordost.streetcomplete.data.osm.tql.FiltersParser;
 import de.westnordost.streetcomplete.data.osmnotes.OsmNoteQuestDao;
 
 import static org.junit.Assert.*;
@@ -30,10 +32,11 @@ public class OsmQuestGiverTest
 	private OsmQuestDao osmQuestDao;
 	private OsmQuestGiver osmQuestUnlocker;
 	private OsmElementQuestType questType;
+	private ElementGeometryDao elementGeometryDao;
 
 	@Before public void setUp() throws Exception
 	{
-		ElementGeometryDao elementGeometryDao = mock(ElementGeometryDao.class);
+		elementGeometryDao = mock(ElementGeometryDao.class);
 		when(elementGeometryDao.get(Element.Type.NODE, 1)).thenReturn(new ElementGeometry(POS));
 
 		osmNoteQuestDao = mock(OsmNoteQuestDao.class);
@@ -108,4 +111,49 @@ public class OsmQuestGiverTest
 		verify(osmQuestDao).deleteAllReverted(Element.Type.NODE, 1);
 		verify(osmQuestDao).addAll(Collections.singletonList(quest));
 	}
+
+	@Test public void questTypeThatCannotMatchTagsIsNotEvaluated()
+	{
+		SimpleOverpassQuestType benchQuestType = mock(SimpleOverpassQuestType.class);
+		when(benchQuestType.getFilter()).thenReturn(new FiltersParser().parse("nodes with amenity = bench"));
+		OsmQuestGiver giver = createGiver(questType, benchQuestType);
+		when(questType.isApplicableTo(NODE)).thenReturn(true);
+
+		List<OsmQuest> quests = giver.updateQuests(NODE).createdQuests;
+
+		assertEquals(1, quests.size());
+		assertEquals(questType, quests.get(0).getType());
+		verify(benchQuestType, never()).isApplicableTo(any());
+	}
+
+	@Test public void questTypeWithQuestIsEvaluatedEvenIfItCannotMatchTags()
+	{
+		SimpleOverpassQuestType benchQuestType = mock(SimpleOverpassQuestType.class);
+		when(benchQuestType.getFilter()).thenReturn(new FiltersParser().parse("nodes with amenity = bench"));
+		OsmQuestGiver giver = createGiver(benchQuestType);
+		OsmQuest q = new OsmQuest(123L, benchQuestType, Element.Type.NODE, 1, QuestStatus.NEW,
+			null, null, new Date(), new ElementGeometry(POS));
+		when(osmQuestDao.getAll(null, null, null, Element.Type.NODE, 1L))
+			.thenReturn(Collections.singletonList(q));
+		when(benchQuestType.isApplicableTo(NODE)).thenReturn(false);
+
+		OsmQuestGiver.QuestUpdates r = giver.updateQuests(NODE);
+
+		assertEquals(Collections.singletonList(123L), r.removedQuestIds);
+	}
+
+	@Test public void noteFurtherAwayDoesNotBlockNewQuests()
+	{
+		when(questType.isApplicableTo(NODE)).thenReturn(true);
+		when(osmNoteQuestDao.getAllPositions(any()))
+			.thenReturn(Collections.singletonList(new OsmLatLon(10.001, 10)));
+
+		assertEquals(1, osmQuestUnlocker.updateQuests(NODE).createdQuests.size());
+	}
+
+	private OsmQuestGiver createGiver(QuestType... questTypes)
+	{
+		final List<QuestType> list = Arrays.asList(questTypes);
+		return new OsmQuestGiver(osmNoteQuestDao, osmQuestDao, elementGeometryDao, () -> list);
+	}
 }
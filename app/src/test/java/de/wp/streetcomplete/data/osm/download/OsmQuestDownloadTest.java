@@ -1,5 +1,8 @@
 package de.westnordost.streetcomplete.data.osm.download;
 
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
@@ -16,21 +19,24 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.FutureTask;
 
-import de.westnordost.countryboundaries.CountryBoundaries;
+import de.westnordost.osmapi.common.Handler;
 import de.westnordost.osmapi.map.data.OsmLatLon;
 import de.westnordost.osmapi.map.data.OsmNode;
 import de.westnordost.streetcomplete.data.QuestStatus;
 import de.westnordost.streetcomplete.data.VisibleQuestListener;
+import de.westnordost.streetcomplete.data.meta.CountryBoundariesCache;
 import de.westnordost.streetcomplete.data.osm.Countries;
 import de.westnordost.streetcomplete.data.osm.ElementGeometry;
 import de.westnordost.streetcomplete.data.osm.OsmElementQuestType;
 import de.westnordost.streetcomplete.data.osm.OsmQuest;
+import de.westnordost.streetcomplete.data.osm.SimpleOverpassQuestType;
 import de.westnordost.streetcomplete.data.osm.changes.StringMapChangesBuilder;
 import de.westnordost.streetcomplete.data.osm.persist.ElementGeometryDao;
 import de.westnordost.streetcomplete.data.osm.persist.MergedElementDao;
 import de.westnordost.osmapi.map.data.BoundingBox;
 import de.westnordost.osmapi.map.data.Element;
 import de.westnordost.osmapi.map.data.LatLon;
+import de.westnordost.streetcomplete.data.osm.persist.OsmElementKey;
 import de.westnordost.streetcomplete.data.osm.persist.OsmQuestDao;
 import de.westnordost.streetcomplete.quests.AbstractQuestAnswerFragment;
 
@@ -40,17 +46,22 @@ import static org.mockito.internal.verification.VerificationModeFactory.times;
 
 public class OsmQuestDownloadTest
 {
+	private SQLiteOpenHelper dbHelper;
 	private ElementGeometryDao geometryDb;
 	private MergedElementDao elementDb;
 	private OsmQuestDao osmQuestDao;
-	private FutureTask<CountryBoundaries> countryBoundariesFuture;
+	private CountryBoundariesCache countryBoundaries;
+	private OverpassMapDataDao overpassServer;
 
 	@Before public void setUp()
 	{
+		dbHelper = mock(SQLiteOpenHelper.class);
+		when(dbHelper.getWritableDatabase()).thenReturn(mock(SQLiteDatabase.class));
+		overpassServer = mock(OverpassMapDataDao.class);
 		geometryDb = mock(ElementGeometryDao.class);
 		elementDb = mock(MergedElementDao.class);
 		osmQuestDao = mock(OsmQuestDao.class);
-		countryBoundariesFuture = mock(FutureTask.class);
+		countryBoundaries = new CountryBoundariesCache(mock(FutureTask.class));
 	}
 
 	@Test public void ignoreBlacklistedPositionsAndInvalidGeometry()
@@ -69,7 +80,7 @@ public class OsmQuestDownloadTest
 
 		setUpOsmQuestDaoMockWithNoPreviousElements();
 
-		OsmQuestDownload dl = new OsmQuestDownload(geometryDb, elementDb, osmQuestDao, countryBoundariesFuture);
+		OsmQuestDownload dl = new OsmQuestDownload(dbHelper, geometryDb, elementDb, osmQuestDao, countryBoundaries, overpassServer);
 
 		VisibleQuestListener listener = mock(VisibleQuestListener.class);
 		dl.setQuestListener(listener);
@@ -108,7 +119,7 @@ public class OsmQuestDownloadTest
 			return 1;
 		}).when(osmQuestDao).deleteAll(any());
 
-		OsmQuestDownload dl = new OsmQuestDownload(geometryDb, elementDb, osmQuestDao, countryBoundariesFuture);
+		OsmQuestDownload dl = new OsmQuestDownload(dbHelper, geometryDb, elementDb, osmQuestDao, countryBoundaries, overpassServer);
 
 		VisibleQuestListener listener = mock(VisibleQuestListener.class);
 		dl.setQuestListener(listener);
@@ -120,6 +131,143 @@ public class OsmQuestDownloadTest
 		verify(listener).onQuestsRemoved(any(), any());
 	}
 
+	@Test public void batchedDownloadDispatchesElementsToMatchingQuestTypes()
+	{
+		LatLon pos = new OsmLatLon(3.0,4.0);
+		Map<String,String> benchTags = Collections.singletonMap("amenity", "bench");
+		Map<String,String> shopTags = Collections.singletonMap("shop", "bakery");
+		OsmNode bench = new OsmNode(1,0,pos,benchTags);
+		OsmNode shop = new OsmNode(2,0,new OsmLatLon(1.0,2.0),shopTags);
+
+		when(overpassServer.getAndHandleQuota(any(), any())).thenAnswer(invocation ->
+		{
+			String query = invocation.getArgument(0);
+			assertTrue(query.contains("[\"amenity\"=\"bench\"]"));
+			assertTrue(query.contains("[\"shop\"]"));
+
+			MapDataWithGeometryHandler handler = invocation.getArgument(1);
+			handler.handle(bench, new ElementGeometry(bench.getPosition()));
+			handler.handle(shop, new ElementGeometry(shop.getPosition()));
+			// the bench is printed a second time (i.e. by another statement)
+			handler.handle(bench, new ElementGeometry(bench.getPosition()));
+			return true;
+		});
+
+		setUpOsmQuestDaoMockWithNoPreviousElements();
+
+		List<Collection<OsmQuest>> addedQuests = new ArrayList<>();
+		doAnswer(invocation ->
+		{
+			addedQuests.add(new ArrayList<>(invocation.getArgument(0)));
+			return 0;
+		}).when(osmQuestDao).addAll(any());
+
+		SimpleOverpassQuestType benchQuestType = new TagFilterQuestType("nodes with amenity=bench");
+		SimpleOverpassQuestType shopQuestType = new TagFilterQuestType("nodes with shop");
+
+		OsmQuestDownload dl = new OsmQuestDownload(dbHelper, geometryDb, elementDb, osmQuestDao, countryBoundaries, overpassServer);
+		assertTrue(dl.download(Arrays.asList(benchQuestType, shopQuestType),
+			new BoundingBox(0,0,5,5), Collections.emptySet()));
+
+		verify(overpassServer, times(1)).getAndHandleQuota(any(), any());
+		assertEquals(2, addedQuests.size());
+
+		assertEquals(1, addedQuests.get(0).size());
+		OsmQuest benchQuest = addedQuests.get(0).iterator().next();
+		assertEquals(1, benchQuest.getElementId());
+		assertSame(benchQuestType, benchQuest.getType());
+
+		assertEquals(1, addedQuests.get(1).size());
+		OsmQuest shopQuest = addedQuests.get(1).iterator().next();
+		assertEquals(2, shopQuest.getElementId());
+		assertSame(shopQuestType, shopQuest.getType());
+	}
+
+	@Test public void doesNotDeleteUnreferencedElementsAfterEachQuestType()
+	{
+		LatLon pos = new OsmLatLon(3.0,4.0);
+		ElementWithGeometry node = new ElementWithGeometry();
+		node.element = new OsmNode(4,0,pos,null);
+		node.geometry = new ElementGeometry(pos);
+		OsmElementQuestType questType = new ListBackedQuestType(Collections.singletonList(node));
+
+		setUpOsmQuestDaoMockWithNoPreviousElements();
+
+		OsmQuestDownload dl = new OsmQuestDownload(dbHelper, geometryDb, elementDb, osmQuestDao, countryBoundaries, overpassServer);
+		dl.download(questType, new BoundingBox(0,0,1,1), Collections.emptySet());
+
+		verify(geometryDb).putAll(any());
+		verify(geometryDb, never()).deleteUnreferenced();
+		verify(elementDb, never()).deleteUnreferenced();
+
+		dl.deleteUnreferenced(Collections.singletonList(questType));
+
+		verify(geometryDb).deleteUnreferenced();
+		verify(elementDb).deleteUnreferenced();
+	}
+
+	@Test public void refreshOnlyReplacesQuestsOfChangedOrRemovedElements()
+	{
+		LatLon pos = new OsmLatLon(3.0,4.0);
+		Map<String,String> benchTags = Collections.singletonMap("amenity", "bench");
+		SimpleOverpassQuestType questType = new TagFilterQuestType("nodes with amenity=bench");
+
+		// node 1 did not change, node 2 has been deleted (or does not match anymore), node 3 changed
+		List<OsmQuest> quests = new ArrayList<>();
+		for (long nodeId = 1; nodeId <= 3; nodeId++)
+		{
+			quests.add(new OsmQuest(
+				10L + nodeId, questType, Element.Type.NODE, nodeId, QuestStatus.NEW, null, null,
+				new Date(), new ElementGeometry(pos)));
+		}
+		when(osmQuestDao.getAll(any(), any(), any(), any(), any())).thenReturn(quests);
+
+		when(overpassServer.getElementKeysAndHandleQuota(any(), any())).thenAnswer(invocation ->
+		{
+			Handler<OsmElementKey> handler = invocation.getArgument(1);
+			handler.handle(new OsmElementKey(Element.Type.NODE, 1));
+			handler.handle(new OsmElementKey(Element.Type.NODE, 3));
+			handler.handle(new OsmElementKey(Element.Type.NODE, 4));
+			return true;
+		});
+		// node 3 changed, node 4 is new
+		when(overpassServer.getAndHandleQuota(any(), any())).thenAnswer(invocation ->
+		{
+			String query = invocation.getArgument(0);
+			assertTrue(query.contains("(newer:"));
+
+			MapDataWithGeometryHandler handler = invocation.getArgument(1);
+			handler.handle(new OsmNode(3,2,pos,benchTags), new ElementGeometry(pos));
+			handler.handle(new OsmNode(4,1,pos,benchTags), new ElementGeometry(pos));
+			return true;
+		});
+
+		List<OsmQuest> addedQuests = new ArrayList<>();
+		doAnswer(invocation ->
+		{
+			addedQuests.addAll(invocation.getArgument(0));
+			return 0;
+		}).when(osmQuestDao).addAll(any());
+
+		List<Long> deletedQuestIds = new ArrayList<>();
+		doAnswer(invocation ->
+		{
+			deletedQuestIds.addAll(invocation.getArgument(0));
+			return 0;
+		}).when(osmQuestDao).deleteAll(any());
+
+		OsmQuestDownload dl = new OsmQuestDownload(dbHelper, geometryDb, elementDb, osmQuestDao, countryBoundaries, overpassServer);
+		assertTrue(dl.refresh(Collections.singletonList(questType),
+			new BoundingBox(0,0,5,5), Collections.emptySet(), System.currentTimeMillis()));
+
+		List<Long> addedElementIds = new ArrayList<>();
+		for (OsmQuest quest : addedQuests)
+		{
+			addedElementIds.add(quest.getElementId());
+		}
+		assertEquals(Arrays.asList(3L, 4L), addedElementIds);
+		assertEquals(Collections.singletonList(12L), deletedQuestIds);
+	}
 
 	private void setUpOsmQuestDaoMockWithNoPreviousElements()
 	{
@@ -166,4 +314,23 @@ public class OsmQuestDownloadTest
 		@Override public void cleanMetadata() {}
 		@Override public int getDefaultDisabledMessage() { return 0; }
 	}
+
+	private class TagFilterQuestType extends SimpleOverpassQuestType<String>
+	{
+		private final String tagFilters;
+
+		TagFilterQuestType(String tagFilters)
+		{
+			super(overpassServer);
+			this.tagFilters = tagFilters;
+		}
+
+		@NonNull @Override protected String getTagFilters() { return tagFilters; }
+		@NonNull @Override public AbstractQuestAnswerFragment<String> createForm() {
+			return new AbstractQuestAnswerFragment<String>() {}; }
+		@Override public int getIcon() { return 0; }
+		@Override public int getTitle(@NonNull Map<String,String> tags) { return 0; }
+		@Override public void applyAnswerTo(@NonNull String answer, @NonNull StringMapChangesBuilder changes) {}
+		@Override @NonNull public String getCommitMessage() { return ""; }
+	}
 }
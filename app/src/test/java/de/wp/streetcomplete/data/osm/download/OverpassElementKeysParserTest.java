@@ -0,0 +1,56 @@
+package de.westnordost.streetcomplete.data.osm.download;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.streetcomplete.data.osm.persist.OsmElementKey;
+
+import static org.junit.Assert.*;
+
+public class OverpassElementKeysParserTest
+{
+	@Test public void parseElementKeys()
+	{
+		assertEquals(Arrays.asList(
+				new OsmElementKey(Element.Type.NODE, 1),
+				new OsmElementKey(Element.Type.WAY, 22),
+				new OsmElementKey(Element.Type.RELATION, 333)),
+			parse("node\t1\nway\t22\nrelation\t333\n"));
+	}
+
+	@Test public void parseNothing()
+	{
+		assertTrue(parse("").isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void failOnUnknownElementType()
+	{
+		parse("area\t1\n");
+	}
+
+	private List<OsmElementKey> parse(String csv)
+	{
+		List<OsmElementKey> result = new ArrayList<>();
+		try
+		{
+			InputStream in = new ByteArrayInputStream(csv.getBytes("UTF-8"));
+			new OverpassElementKeysParser(result::add).parse(in);
+		}
+		catch (RuntimeException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw new RuntimeException(e);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,103 @@
+package de.westnordost.streetcomplete.data.osm.persist;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import de.westnordost.osmapi.map.data.LatLon;
+import de.westnordost.osmapi.map.data.OsmLatLon;
+
+import static org.junit.Assert.*;
+
+public class LatLonListsCodecTest
+{
+	@Test public void encodeDecode()
+	{
+		List<List<LatLon>> lists = Arrays.asList(
+			Arrays.asList(new OsmLatLon(53.1234567, 9.7654321), new OsmLatLon(53.1234, 9.7654)),
+			Collections.emptyList(),
+			Collections.singletonList(new OsmLatLon(-12.0, 130.5)));
+
+		assertEquals(lists, LatLonListsCodec.decode(LatLonListsCodec.encode(lists)));
+	}
+
+	@Test public void encodeDecodeExtremes()
+	{
+		List<List<LatLon>> lists = Collections.singletonList(Arrays.asList(
+			new OsmLatLon(-90, -180), new OsmLatLon(90, 180), new OsmLatLon(-90, -180)));
+
+		assertEquals(lists, LatLonListsCodec.decode(LatLonListsCodec.encode(lists)));
+	}
+
+	@Test public void decodeToArrays()
+	{
+		List<List<LatLon>> lists = Collections.singletonList(Arrays.asList(
+			new OsmLatLon(1.0, 2.0), new OsmLatLon(-1.0, 0.0000001)));
+
+		int[][] arrays = LatLonListsCodec.decodeToArrays(LatLonListsCodec.encode(lists));
+
+		assertEquals(1, arrays.length);
+		assertArrayEquals(new int[]{10000000, 20000000, -10000000, 1}, arrays[0]);
+	}
+
+	@Test public void nearbyVerticesAreStoredCompactly()
+	{
+		List<LatLon> polyline = new ArrayList<>();
+		for (int i = 0; i < 100; ++i)
+		{
+			polyline.add(new OsmLatLon(53.0 + i * 0.00001, 9.0 + i * 0.00002));
+		}
+		byte[] bytes = LatLonListsCodec.encode(Collections.singletonList(polyline));
+
+		// two coordinates in fixed point as ints would be 8 bytes per vertex
+		assertTrue(bytes.length < 100 * 5);
+	}
+
+	@Test public void decodeLazily()
+	{
+		List<List<LatLon>> lists = Arrays.asList(
+			Arrays.asList(new OsmLatLon(53.1234567, 9.7654321), new OsmLatLon(53.1234, 9.7654)),
+			Collections.singletonList(new OsmLatLon(-12.0, 130.5)));
+
+		assertEquals(lists, LatLonListsCodec.decodeLazily(LatLonListsCodec.encode(lists)));
+	}
+
+	@Test public void lazilyDecodedListsAreSerializable() throws Exception
+	{
+		List<List<LatLon>> lists = Collections.singletonList(Arrays.asList(
+			new OsmLatLon(1.0, 2.0), new OsmLatLon(3.0, 4.0)));
+		List<List<LatLon>> decoded = LatLonListsCodec.decodeLazily(LatLonListsCodec.encode(lists));
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try(ObjectOutputStream out = new ObjectOutputStream(bos))
+		{
+			out.writeObject(decoded);
+		}
+		try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray())))
+		{
+			assertEquals(lists, in.readObject());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void decodeLazilyUnknownVersion()
+	{
+		LatLonListsCodec.decodeLazily(new byte[]{ 99 });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void decodeTruncatedData()
+	{
+		byte[] bytes = LatLonListsCodec.encode(Collections.singletonList(
+			Collections.singletonList(new OsmLatLon(53.0, 9.0))));
+
+		LatLonListsCodec.decode(Arrays.copyOf(bytes, bytes.length - 1));
+	}
+}
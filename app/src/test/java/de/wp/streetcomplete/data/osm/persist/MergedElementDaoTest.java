@@ -16,6 +16,7 @@ import de.westnordost.osmapi.map.data.Relation;
 import de.westnordost.osmapi.map.data.RelationMember;
 import de.westnordost.osmapi.map.data.Way;
 
+import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 public class MergedElementDaoTest
@@ -141,6 +142,19 @@ public class MergedElementDaoTest
 		verify(relationDao).putAll(anyCollection());
 	}
 
+	@Test public void putAllReturnsWrittenCount()
+	{
+		ArrayList<Element> elements = new ArrayList<>();
+		elements.add(createANode());
+		elements.add(createAWay());
+		elements.add(createARelation());
+		when(nodeDao.putAll(anyCollection())).thenReturn(1);
+		when(wayDao.putAll(anyCollection())).thenReturn(0);
+		when(relationDao.putAll(anyCollection())).thenReturn(1);
+
+		assertEquals(2, dao.putAll(elements));
+	}
+
 	private Node createANode()
 	{
 		return new OsmNode(0,0, 0.0, 0.0, null);
@@ -0,0 +1,138 @@
+package de.westnordost.streetcomplete.data.osm.persist;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class TagsCodecTest
+{
+	private StringDictionary dictionary;
+	private TagsCodec codec;
+
+	@Before public void setUp()
+	{
+		List<String> strings = new ArrayList<>();
+		dictionary = mock(StringDictionary.class);
+		when(dictionary.getId(anyString())).thenAnswer(invocation ->
+		{
+			String string = invocation.getArgument(0);
+			if(!strings.contains(string)) strings.add(string);
+			return strings.indexOf(string) + 1;
+		});
+		when(dictionary.getString(anyInt())).thenAnswer(invocation ->
+			strings.get((int) invocation.getArgument(0) - 1));
+		codec = new TagsCodec(dictionary);
+	}
+
+	@Test public void encodeDecode()
+	{
+		Map<String, String> tags = new HashMap<>();
+		tags.put("highway", "residential");
+		tags.put("name", "Hauptstraße");
+		tags.put("opening_hours", "Mo-Fr 08:00-18:00; Sa 09:00-14:00; PH off");
+		tags.put("", "");
+
+		assertEquals(tags, codec.decode(codec.encode(tags, new HashSet<>())));
+	}
+
+	@Test public void encodeDecodeEmpty()
+	{
+		Map<String, String> tags = new HashMap<>();
+		assertEquals(tags, codec.decode(codec.encode(tags, new HashSet<>())));
+	}
+
+	@Test public void recurringStringsAreInDictionary()
+	{
+		Map<String, String> tags = new HashMap<>();
+		tags.put("building", "yes");
+		Set<Integer> usedIds = new HashSet<>();
+		codec.encode(tags, usedIds);
+
+		assertEquals(2, usedIds.size());
+		verify(dictionary).getId("building");
+		verify(dictionary).getId("yes");
+	}
+
+	@Test public void namesAndLongValuesAreInline()
+	{
+		Map<String, String> tags = new HashMap<>();
+		tags.put("name:de", "Große Straße");
+		tags.put("description", "A value that is much too long to be a recurring one");
+		Set<Integer> usedIds = new HashSet<>();
+		codec.encode(tags, usedIds);
+
+		assertEquals(2, usedIds.size());
+		verify(dictionary).getId("name:de");
+		verify(dictionary).getId("description");
+		verify(dictionary, never()).getId("Große Straße");
+	}
+
+	@Test public void valuesOfKeysWithoutLimitedSetOfValuesAreInline()
+	{
+		Map<String, String> tags = new HashMap<>();
+		tags.put("addr:housenumber", "12b");
+		tags.put("ref", "A 7");
+		tags.put("check_date", "2019-08-01");
+		Set<Integer> usedIds = new HashSet<>();
+		byte[] bytes = codec.encode(tags, usedIds);
+
+		assertEquals(3, usedIds.size());
+		verify(dictionary, never()).getId("12b");
+		verify(dictionary, never()).getId("A 7");
+		verify(dictionary, never()).getId("2019-08-01");
+		assertEquals(tags, codec.decode(bytes));
+	}
+
+	@Test public void valuesOfSubKeysAndCommonValuesAreInDictionary()
+	{
+		Map<String, String> tags = new HashMap<>();
+		tags.put("cycleway:left", "lane");
+		tags.put("toilets:wheelchair", "limited");
+		tags.put("wikipedia", "no");
+		Set<Integer> usedIds = new HashSet<>();
+		codec.encode(tags, usedIds);
+
+		assertEquals(6, usedIds.size());
+		verify(dictionary).getId("lane");
+		verify(dictionary).getId("limited");
+		verify(dictionary).getId("no");
+	}
+
+	@Test public void encodeWithInlineValues()
+	{
+		Map<String, String> names = new HashMap<>();
+		names.put("de", "Hauptstraße");
+		names.put("en", "Main Street");
+		Set<Integer> usedIds = new HashSet<>();
+		byte[] bytes = codec.encodeWithInlineValues(names, usedIds);
+
+		assertEquals(2, usedIds.size());
+		verify(dictionary, never()).getId("Hauptstraße");
+		assertEquals(names, codec.decode(bytes));
+	}
+
+	@Test public void decodedStringsAreFromDictionary()
+	{
+		Map<String, String> tags = new HashMap<>();
+		tags.put("surface", "asphalt");
+		codec.decode(codec.encode(tags, new HashSet<>()));
+
+		verify(dictionary, times(2)).getString(anyInt());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void decodeUnknownVersion()
+	{
+		codec.decode(new byte[]{99, 0});
+	}
+}
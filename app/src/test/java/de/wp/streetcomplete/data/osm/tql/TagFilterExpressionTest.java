@@ -4,6 +4,11 @@ import org.junit.Test;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import de.westnordost.osmapi.map.data.Element;
 
@@ -58,6 +63,93 @@ public class TagFilterExpressionTest
 		assertTrue(expr.matches(relation));
 	}
 
+	@Test public void compiledExpressionMatchesLikeExpressionTree()
+	{
+		String[] filters = {
+			"nodes with amenity = bench",
+			"ways with highway ~ residential|tertiary and !name",
+			"nodes, ways with (shop and !opening_hours) or (amenity ~ cafe|restaurant and opening_hours != 24/7)",
+			"ways with building and building !~ yes|house and !building:levels",
+			"ways with highway ~ primary.*|secondary or access !~ private|no"
+		};
+		List<Map<String, String>> tagsList = Arrays.asList(
+			null,
+			tags("amenity", "bench"),
+			tags("amenity", "cafe"),
+			tags("amenity", "cafe", "opening_hours", "24/7"),
+			tags("amenity", "restaurant", "opening_hours", "Mo-Fr 08:00-20:00"),
+			tags("shop", "bakery"),
+			tags("shop", "bakery", "opening_hours", "24/7"),
+			tags("highway", "residential"),
+			tags("highway", "residential", "name", "Main Street"),
+			tags("highway", "primary_link"),
+			tags("highway", "secondary", "access", "private"),
+			tags("highway", "track", "access", "no"),
+			tags("building", "yes"),
+			tags("building", "apartments"),
+			tags("building", "apartments", "building:levels", "3"));
+
+		for (String filter : filters)
+		{
+			TagFilterExpression expr = new FiltersParser().parse(filter);
+			for (Element.Type type : Element.Type.values())
+			{
+				for (Map<String, String> tags : tagsList)
+				{
+					Element element = createElement(type);
+					when(element.getTags()).thenReturn(tags);
+					assertEquals(filter + " on " + type + " " + tags,
+						expr.matchesExpressionTree(element), expr.matches(element));
+				}
+			}
+		}
+	}
+
+	@Test public void requiredKeys()
+	{
+		assertEquals(set("highway"), requiredKeys("ways with highway = residential and !name"));
+		assertEquals(set("highway", "railway"), requiredKeys("ways with highway or railway = rail"));
+		assertEquals(set("building"), requiredKeys("ways with building and (addr:street or addr:place)"));
+		assertEquals(set("amenity"), requiredKeys("nodes with amenity ~ bench|bar"));
+	}
+
+	@Test public void noRequiredKeys()
+	{
+		assertNull(requiredKeys("nodes"));
+		assertNull(requiredKeys("nodes with !name"));
+		assertNull(requiredKeys("nodes with access != private"));
+		assertNull(requiredKeys("nodes with access !~ private|no"));
+		assertNull(requiredKeys("ways with highway or !railway"));
+	}
+
+	@Test public void matchesElementType()
+	{
+		TagFilterExpression expr = new FiltersParser().parse("nodes, ways with highway");
+		assertTrue(expr.matchesElementType(Element.Type.NODE));
+		assertTrue(expr.matchesElementType(Element.Type.WAY));
+		assertFalse(expr.matchesElementType(Element.Type.RELATION));
+	}
+
+	private static Set<String> requiredKeys(String filter)
+	{
+		return new FiltersParser().parse(filter).getRequiredKeys();
+	}
+
+	private static Set<String> set(String... values)
+	{
+		return new HashSet<>(Arrays.asList(values));
+	}
+
+	private static Map<String, String> tags(String... keysAndValues)
+	{
+		Map<String, String> result = new HashMap<>();
+		for (int i = 0; i < keysAndValues.length; i += 2)
+		{
+			result.put(keysAndValues[i], keysAndValues[i+1]);
+		}
+		return result;
+	}
+
 	private Element createElement(Element.Type type)
 	{
 		Element element = mock(Element.class);
@@ -22,6 +22,7 @@ import de.westnordost.streetcomplete.data.osm.persist.AOsmQuestDao
 import de.westnordost.streetcomplete.data.osm.persist.ElementGeometryDao
 import de.westnordost.streetcomplete.data.osm.persist.MergedElementDao
 import de.westnordost.streetcomplete.on
+import de.westnordost.streetcomplete.util.RateLimiter
 import org.junit.Assert.*
 import org.mockito.ArgumentMatchers.anyLong
 import org.mockito.Mockito.*
@@ -63,7 +64,7 @@ class OsmQuestChangeUploadTest {
 	    quest.setChanges(StringMapEntryAdd("a key","a value"))
 
         uploader = OsmQuestChangeUpload(osmDao, questDB, elementDB, elementGeometryDao,
-                elementGeometryCreator, questGiver)
+                elementGeometryCreator, questGiver, RateLimiter(1000.0, 1000))
     }
 
 	@Test fun `applies changes and uploads element`() {
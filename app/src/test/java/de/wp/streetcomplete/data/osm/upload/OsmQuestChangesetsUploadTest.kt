@@ -15,13 +15,18 @@ import de.westnordost.streetcomplete.data.changesets.OpenChangesetsDao
 import de.westnordost.streetcomplete.data.osm.ElementGeometry
 import de.westnordost.streetcomplete.data.osm.OsmElementQuestType
 import de.westnordost.streetcomplete.data.osm.OsmQuest
+import de.westnordost.streetcomplete.data.osm.OsmQuestGiver
+import de.westnordost.streetcomplete.data.osm.download.ElementGeometryCreator
 import de.westnordost.streetcomplete.data.osm.persist.ElementGeometryDao
 import de.westnordost.streetcomplete.data.osm.persist.MergedElementDao
 import de.westnordost.streetcomplete.data.osm.persist.OsmQuestDao
 import de.westnordost.streetcomplete.data.statistics.QuestStatisticsDao
 import de.westnordost.streetcomplete.data.tiles.DownloadedTilesDao
 import de.westnordost.streetcomplete.data.upload.OnUploadedChangeListener
+import de.westnordost.streetcomplete.data.osm.changes.StringMapChanges
 import de.westnordost.streetcomplete.on
+import de.westnordost.streetcomplete.util.RateLimiter
+import org.junit.Assert.assertEquals
 import org.junit.Before
 import org.mockito.ArgumentMatchers
 import org.mockito.Mockito.*
@@ -38,6 +43,7 @@ class OsmQuestChangesetsUploadTest {
 	private lateinit var openChangesetsDB: OpenChangesetsDao
 	private lateinit var downloadedTilesDao: DownloadedTilesDao
 	private lateinit var osmQuestChangeUpload: OsmQuestChangeUpload
+	private lateinit var questGiver: OsmQuestGiver
 	private lateinit var changesetAutoCloser: ChangesetAutoCloser
 	private lateinit var quest: OsmQuest
 
@@ -58,10 +64,16 @@ class OsmQuestChangesetsUploadTest {
 		on(questDB.getAll(null, QuestStatus.ANSWERED)).thenReturn(listOf(quest))
 
 		osmQuestChangeUpload = mock(OsmQuestChangeUpload::class.java)
+		questGiver = mock(OsmQuestGiver::class.java)
 
+		// the element is not in the (mocked) DB, so each quest is handed to osmQuestChangeUpload
 		uploader = OsmQuestChangesetsUpload(
 			osmDao, questDB, elementDB, elementGeometryDB, statisticsDB, openChangesetsDB,
-			downloadedTilesDao, Provider { osmQuestChangeUpload }, changesetAutoCloser)
+			downloadedTilesDao, Provider {
+				OsmQuestsBatchUpload(osmDao, questDB, elementDB, elementGeometryDB,
+					mock(ElementGeometryCreator::class.java), questGiver, Provider { osmQuestChangeUpload },
+					RateLimiter(1000.0, 1000))
+			}, changesetAutoCloser, RateLimiter(1000.0, 1000))
 	}
 
     @Test fun `cancel upload works`() {
@@ -149,4 +161,44 @@ class OsmQuestChangesetsUploadTest {
 
 		verify(listener).onDiscarded()
 	}
+
+	@Test fun `uploads quests that go into different changesets in separate lanes`() {
+		val otherQuest = OsmQuest(2L, quest.osmElementQuestType, Element.Type.NODE, 2,
+			QuestStatus.ANSWERED, null, "test case", null, ElementGeometry(OsmLatLon(1.0,2.0)))
+		otherQuest.setChanges(StringMapChanges(listOf()), "other source")
+		on(questDB.getAll(null, QuestStatus.ANSWERED)).thenReturn(listOf(quest, otherQuest))
+		on(osmDao.openChangeset(any())).thenReturn(1L, 2L)
+		on(osmQuestChangeUpload.upload(anyLong(), any(), anyBoolean())).thenReturn(
+			OsmQuestChangeUpload.UploadResult(true, listOf(), listOf()))
+
+		val listener = mock(OnUploadedChangeListener::class.java)
+		uploader.setProgressListener(listener)
+		uploader.upload(AtomicBoolean(false))
+
+		verify(osmDao, times(2)).openChangeset(any())
+		verify(osmQuestChangeUpload).upload(anyLong(), eq(quest), anyBoolean())
+		verify(osmQuestChangeUpload).upload(anyLong(), eq(otherQuest), anyBoolean())
+		verify(listener, times(2)).onUploaded()
+	}
+
+	@Test fun `changesets that share an element are uploaded in the same lane`() {
+		val a1 = createQuest(1L, 1L)
+		val a2 = createQuest(2L, 2L)
+		val b1 = createQuest(3L, 3L)
+		val c1 = createQuest(4L, 2L)
+		val c2 = createQuest(5L, 4L)
+		val d1 = createQuest(6L, 4L)
+
+		val lanes = AOsmQuestChangesetsUpload.getIndependentLanes(listOf(
+			listOf(a1, a2), listOf(b1), listOf(c1, c2), listOf(d1)))
+
+		assertEquals(listOf(
+			listOf(listOf(a1, a2), listOf(c1, c2), listOf(d1)),
+			listOf(listOf(b1))
+		), lanes)
+	}
+
+	private fun createQuest(id: Long, nodeId: Long) = OsmQuest(id, quest.osmElementQuestType,
+		Element.Type.NODE, nodeId, QuestStatus.ANSWERED, null, "test case", null,
+		ElementGeometry(OsmLatLon(1.0,2.0)))
 }
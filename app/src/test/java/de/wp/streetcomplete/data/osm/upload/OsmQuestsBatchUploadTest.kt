@@ -0,0 +1,270 @@
+package de.westnordost.streetcomplete.data.osm.upload
+
+import de.westnordost.osmapi.common.Handler
+import de.westnordost.osmapi.common.errors.OsmConflictException
+import de.westnordost.osmapi.map.MapDataDao
+import de.westnordost.osmapi.map.changes.DiffElement
+import de.westnordost.osmapi.map.data.Element
+import de.westnordost.osmapi.map.data.Element.Type.NODE
+import de.westnordost.osmapi.map.data.Node
+import de.westnordost.osmapi.map.data.OsmLatLon
+import de.westnordost.osmapi.map.data.OsmNode
+import de.westnordost.streetcomplete.any
+import de.westnordost.streetcomplete.argumentCaptor
+import de.westnordost.streetcomplete.capture
+import de.westnordost.streetcomplete.data.QuestStatus
+import de.westnordost.streetcomplete.data.osm.ElementGeometry
+import de.westnordost.streetcomplete.data.osm.OsmElementQuestType
+import de.westnordost.streetcomplete.data.osm.OsmQuest
+import de.westnordost.streetcomplete.data.osm.OsmQuestGiver
+import de.westnordost.streetcomplete.data.osm.changes.StringMapChanges
+import de.westnordost.streetcomplete.data.osm.changes.StringMapEntryAdd
+import de.westnordost.streetcomplete.data.osm.download.ElementGeometryCreator
+import de.westnordost.streetcomplete.data.osm.persist.AOsmQuestDao
+import de.westnordost.streetcomplete.data.osm.persist.ElementGeometryDao
+import de.westnordost.streetcomplete.data.osm.persist.MergedElementDao
+import de.westnordost.streetcomplete.on
+import de.westnordost.streetcomplete.util.RateLimiter
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import org.mockito.ArgumentMatchers.anyBoolean
+import org.mockito.ArgumentMatchers.anyLong
+import org.mockito.Mockito.*
+import javax.inject.Provider
+
+class OsmQuestsBatchUploadTest {
+    private lateinit var uploader: OsmQuestsBatchUpload
+    private lateinit var osmDao: MapDataDao
+    private lateinit var questDB: AOsmQuestDao
+    private lateinit var elementDB: MergedElementDao
+    private lateinit var elementGeometryDB: ElementGeometryDao
+    private lateinit var questGiver: OsmQuestGiver
+    private lateinit var singleUpload: OsmQuestChangeUpload
+    private lateinit var questType: OsmElementQuestType<*>
+
+    private val uploadedBatches = mutableListOf<List<Element>>()
+    private val serverNodes = mutableMapOf<Long, Node>()
+
+    @Before fun setUp() {
+        questType = mock(OsmElementQuestType::class.java)
+        osmDao = mock(MapDataDao::class.java)
+        questDB = mock(AOsmQuestDao::class.java)
+        elementDB = mock(MergedElementDao::class.java)
+        elementGeometryDB = mock(ElementGeometryDao::class.java)
+        questGiver = mock(OsmQuestGiver::class.java)
+        on(questGiver.updateQuests(any())).thenReturn(OsmQuestGiver.QuestUpdates())
+        singleUpload = mock(OsmQuestChangeUpload::class.java)
+
+        for (id in 1L..4L) {
+            val node = OsmNode(id, 1, OsmLatLon(1.0, 2.0), null)
+            on(elementDB.get(NODE, id)).thenReturn(node)
+            serverNodes[id] = node
+        }
+        on(osmDao.getNodes(any())).thenAnswer { invocation ->
+            (invocation.arguments[0] as Collection<Long>).mapNotNull { serverNodes[it] }
+        }
+        uploadSucceeds()
+
+        uploader = OsmQuestsBatchUpload(osmDao, questDB, elementDB, elementGeometryDB,
+            mock(ElementGeometryCreator::class.java), questGiver, Provider { singleUpload },
+            RateLimiter(1000.0, 1000))
+    }
+
+    @Test fun `uploads all elements in one diff`() {
+        val quests = listOf(quest(1, 1), quest(2, 2), quest(3, 3))
+
+        val result = uploader.upload(1, quests, true)
+
+        assertEquals(1, uploadedBatches.size)
+        assertEquals(listOf(1L, 2L, 3L), uploadedBatches[0].map { it.id })
+        assertEquals(quests, result.uploadedQuests)
+        for (quest in quests) {
+            assertEquals(QuestStatus.CLOSED, quest.status)
+            verify(questDB).update(quest)
+        }
+        verify(elementDB, times(3)).put(any())
+        verifyZeroInteractions(singleUpload)
+    }
+
+    @Test fun `merges changes of quests on the same element`() {
+        val quests = listOf(quest(1, 1, "a" to "1"), quest(2, 1, "b" to "2"))
+
+        val result = uploader.upload(1, quests, true)
+
+        assertEquals(1, uploadedBatches[0].size)
+        assertEquals(mapOf("a" to "1", "b" to "2"), uploadedBatches[0][0].tags)
+        assertEquals(quests, result.uploadedQuests)
+    }
+
+    @Test fun `saves element with version returned by server`() {
+        uploader.upload(1, listOf(quest(1, 1)), true)
+
+        val captor = argumentCaptor<Element>()
+        verify(elementDB).put(capture(captor))
+        assertEquals(2, captor.value.version)
+        assertEquals(mapOf("a" to "b"), captor.value.tags)
+    }
+
+    @Test fun `fetches current versions of all elements at once`() {
+        uploader.upload(1, listOf(quest(1, 1), quest(2, 2), quest(3, 3)), true)
+
+        verify(osmDao).getNodes(listOf(1L, 2L, 3L))
+        verify(elementDB, never()).putAll(any())
+    }
+
+    @Test fun `rebases changes onto current version of element`() {
+        serverNodes[1] = OsmNode(1, 3, OsmLatLon(1.0, 2.0), mapOf("c" to "d"))
+
+        val result = uploader.upload(1, listOf(quest(1, 1)), true)
+
+        verify(elementDB).putAll(listOf(serverNodes[1]))
+        verify(questGiver).updateQuests(serverNodes[1])
+        assertEquals(3, uploadedBatches[0][0].version)
+        assertEquals(mapOf("a" to "b", "c" to "d"), uploadedBatches[0][0].tags)
+        assertEquals(1, result.uploadedQuests.size)
+    }
+
+    @Test fun `drops quests of elements that have been deleted`() {
+        serverNodes.remove(1)
+        on(questDB.getAllIds(NODE, 1)).thenReturn(listOf(1L))
+        val quest = quest(1, 1)
+
+        val result = uploader.upload(1, listOf(quest, quest(2, 2)), true)
+
+        verify(elementDB).delete(NODE, 1)
+        verify(elementGeometryDB).delete(NODE, 1)
+        verify(questDB).deleteAll(listOf(1L))
+        assertEquals(listOf(quest), result.discardedQuests)
+        assertEquals(listOf(2L), uploadedBatches[0].map { it.id })
+    }
+
+    @Test fun `drops quests of elements that moved`() {
+        serverNodes[1] = OsmNode(1, 2, OsmLatLon(1.1, 2.0), null)
+        on(questDB.getAllIds(NODE, 1)).thenReturn(listOf(1L))
+        val quest = quest(1, 1)
+
+        val result = uploader.upload(1, listOf(quest), true)
+
+        verify(questDB).deleteAll(listOf(1L))
+        verify(elementGeometryDB).putAll(any())
+        assertEquals(listOf(quest), result.discardedQuests)
+        assertTrue(uploadedBatches.isEmpty())
+    }
+
+    @Test fun `drops quests that are not applicable to the current version of the element`() {
+        serverNodes[1] = OsmNode(1, 2, OsmLatLon(1.0, 2.0), mapOf("c" to "d"))
+        on(questType.isApplicableTo(any())).thenReturn(false)
+        val quest = quest(1, 1)
+
+        val result = uploader.upload(1, listOf(quest), true)
+
+        verify(questDB).delete(quest.id)
+        assertEquals(listOf(quest), result.discardedQuests)
+        assertTrue(uploadedBatches.isEmpty())
+    }
+
+    @Test fun `does not check applicability to the current version of the element if told so`() {
+        serverNodes[1] = OsmNode(1, 2, OsmLatLon(1.0, 2.0), mapOf("c" to "d"))
+        on(questType.isApplicableTo(any())).thenReturn(false)
+
+        val result = uploader.upload(1, listOf(quest(1, 1)), false)
+
+        assertEquals(1, result.uploadedQuests.size)
+    }
+
+    @Test fun `splits up diff on conflict`() {
+        doAnswer { throw OsmConflictException(409, "Conflict", "") }
+            .doAnswer { recordUpload(it) }
+            .on(osmDao).uploadChanges(anyLong(), any(), any())
+
+        val quests = listOf(quest(1, 1), quest(2, 2), quest(3, 3), quest(4, 4))
+        val result = uploader.upload(1, quests, true)
+
+        assertEquals(listOf(listOf(1L, 2L), listOf(3L, 4L)), uploadedBatches.map { batch -> batch.map { it.id } })
+        assertEquals(quests.toSet(), result.uploadedQuests.toSet())
+    }
+
+    @Test fun `hands quest to single upload if its element alone conflicts`() {
+        doAnswer { invocation ->
+            val elements = (invocation.arguments[1] as Iterable<Element>).toList()
+            if (elements.any { it.id == 2L }) throw OsmConflictException(409, "Conflict", "")
+            recordUpload(invocation)
+        }.on(osmDao).uploadChanges(anyLong(), any(), any())
+        val conflictingQuest = quest(2, 2)
+        on(singleUpload.upload(anyLong(), any(), anyBoolean()))
+            .thenReturn(OsmQuestChangeUpload.UploadResult(false, listOf(), listOf()))
+
+        val result = uploader.upload(1, listOf(quest(1, 1), conflictingQuest, quest(3, 3)), true)
+
+        verify(singleUpload).upload(1, conflictingQuest, true)
+        assertEquals(listOf(conflictingQuest), result.discardedQuests)
+        assertEquals(listOf(1L, 3L), result.uploadedQuests.map { it.elementId }.sorted())
+    }
+
+    @Test fun `hands quest to single upload if element is not available locally`() {
+        val quest = quest(1, 5)
+        on(singleUpload.upload(anyLong(), any(), anyBoolean()))
+            .thenReturn(OsmQuestChangeUpload.UploadResult(true, listOf(), listOf()))
+
+        val result = uploader.upload(1, listOf(quest), true)
+
+        verify(singleUpload).upload(1, quest, true)
+        assertEquals(listOf(quest), result.uploadedQuests)
+        assertTrue(uploadedBatches.isEmpty())
+    }
+
+    @Test fun `hands quests to single upload if their changes cannot be merged`() {
+        val quests = listOf(quest(1, 1, "a" to "1"), quest(2, 1, "a" to "2"))
+        on(singleUpload.upload(anyLong(), any(), anyBoolean()))
+            .thenReturn(OsmQuestChangeUpload.UploadResult(true, listOf(), listOf()))
+
+        uploader.upload(1, quests, true)
+
+        verify(singleUpload).upload(1, quests[0], true)
+        verify(singleUpload).upload(1, quests[1], true)
+    }
+
+    @Test fun `changeset conflict is passed on with what has been uploaded so far`() {
+        on(singleUpload.upload(anyLong(), any(), anyBoolean())).thenThrow(OsmConflictException::class.java)
+        val uploadedQuest = quest(1, 1)
+
+        try {
+            uploader.upload(1, listOf(uploadedQuest, quest(2, 5)), true)
+            fail()
+        } catch (e: OsmConflictException) {}
+
+        assertEquals(listOf(uploadedQuest), uploader.result.uploadedQuests)
+    }
+
+    @Test(expected = IllegalStateException::class) fun `disallow reusing object`() {
+        uploader.upload(1, listOf(), true)
+        uploader.upload(1, listOf(), true)
+    }
+
+    private fun uploadSucceeds() {
+        doAnswer { recordUpload(it) }.on(osmDao).uploadChanges(anyLong(), any(), any())
+    }
+
+    private fun recordUpload(invocation: org.mockito.invocation.InvocationOnMock): Any? {
+        val elements = (invocation.arguments[1] as Iterable<Element>).toList()
+        val handler = invocation.arguments[2] as Handler<DiffElement>
+        for (element in elements) {
+            val diff = DiffElement()
+            diff.type = element.type
+            diff.clientId = element.id
+            diff.serverId = element.id
+            diff.serverVersion = element.version + 1
+            handler.handle(diff)
+        }
+        uploadedBatches.add(elements)
+        return null
+    }
+
+    private fun quest(id: Long, elementId: Long, tag: Pair<String, String> = "a" to "b"): OsmQuest {
+        val quest = OsmQuest(id, questType, NODE, elementId, QuestStatus.ANSWERED, null,
+            "test case", null, ElementGeometry(OsmLatLon(1.0, 2.0)))
+        quest.setChanges(StringMapChanges(listOf(StringMapEntryAdd(tag.first, tag.second))), "test")
+        return quest
+    }
+}
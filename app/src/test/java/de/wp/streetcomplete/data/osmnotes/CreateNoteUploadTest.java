@@ -19,7 +19,7 @@ import de.westnordost.osmapi.notes.NoteComment;
 import de.westnordost.osmapi.notes.NotesDao;
 import de.westnordost.streetcomplete.ApplicationConstants;
 import de.westnordost.streetcomplete.data.statistics.QuestStatisticsDao;
-import de.westnordost.streetcomplete.util.ImageUploader;
+import de.westnordost.streetcomplete.util.RateLimiter;
 
 import static org.mockito.Mockito.*;
 import static org.junit.Assert.*;
@@ -32,7 +32,7 @@ public class CreateNoteUploadTest
 	private OsmNoteQuestDao osmNoteQuestDb;
 	private NoteDao noteDb;
 	private QuestStatisticsDao questStatisticsDb;
-	private ImageUploader imageUploader;
+	private NotePhotosUpload photosUpload;
 
 	private CreateNoteUpload createNoteUpload;
 
@@ -43,11 +43,11 @@ public class CreateNoteUploadTest
 		notesDao = mock(NotesDao.class);
 		osmNoteQuestDb = mock(OsmNoteQuestDao.class);
 		noteDb = mock(NoteDao.class);
-		imageUploader = mock(ImageUploader.class);
+		photosUpload = mock(NotePhotosUpload.class);
 		questStatisticsDb = mock(QuestStatisticsDao.class);
 
 		createNoteUpload = new CreateNoteUpload(createNoteDb, notesDao, noteDb, osmNoteQuestDb,
-				mapDataDao, new OsmNoteQuestType(), questStatisticsDb, imageUploader);
+				mapDataDao, new OsmNoteQuestType(), questStatisticsDb, photosUpload, new RateLimiter(1000, 1000));
 	}
 
 
@@ -197,13 +197,13 @@ public class CreateNoteUploadTest
 		Note note = createNote(null);
 		when(notesDao.create(any(), anyString())).thenReturn(note);
 
-		when(imageUploader.upload(createNote.imagePaths)).thenReturn(
+		when(photosUpload.upload(createNote.imagePaths)).thenReturn(
 				Collections.singletonList("hello, too")
 		);
 
 		assertNotNull(createNoteUpload.uploadCreateNote(createNote));
 
-		verify(imageUploader).upload(createNote.imagePaths);
+		verify(photosUpload).upload(createNote.imagePaths);
 
 		verify(notesDao).create(createNote.position,"jo ho\n\nvia " + ApplicationConstants.USER_AGENT+"\n\nAttached photo(s):\nhello, too");
 	}
@@ -219,7 +219,7 @@ public class CreateNoteUploadTest
 		Note note = createNote(createNote);
 		setUpThereIsANoteFor(createNote, note);
 
-		when(imageUploader.upload(createNote.imagePaths)).thenReturn(
+		when(photosUpload.upload(createNote.imagePaths)).thenReturn(
 				Collections.singletonList("hello, too")
 		);
 
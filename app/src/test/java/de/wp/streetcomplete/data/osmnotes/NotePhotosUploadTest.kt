@@ -0,0 +1,93 @@
+package de.westnordost.streetcomplete.data.osmnotes
+
+import de.westnordost.streetcomplete.any
+import de.westnordost.streetcomplete.on
+import de.westnordost.streetcomplete.util.ImageUploader
+import org.junit.After
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import org.mockito.Mockito.*
+import java.io.File
+import java.io.IOException
+
+class NotePhotosUploadTest {
+    private lateinit var imageUploader: ImageUploader
+    private lateinit var photoUploadsDB: NotePhotoUploadsDao
+    private lateinit var photosUpload: NotePhotosUpload
+    private val files = mutableListOf<File>()
+
+    @Before fun setUp() {
+        imageUploader = mock(ImageUploader::class.java)
+        photoUploadsDB = mock(NotePhotoUploadsDao::class.java)
+        photosUpload = NotePhotosUpload(imageUploader, photoUploadsDB)
+    }
+
+    @After fun tearDown() {
+        files.forEach { it.delete() }
+    }
+
+    @Test fun `uploads photos and remembers where to`() {
+        val a = photo()
+        val b = photo()
+        on(imageUploader.upload(File(a))).thenReturn("url a")
+        on(imageUploader.upload(File(b))).thenReturn("url b")
+
+        assertEquals(listOf("url a", "url b"), photosUpload.upload(listOf(a, b)))
+
+        verify(photoUploadsDB).put(a, "url a")
+        verify(photoUploadsDB).put(b, "url b")
+    }
+
+    @Test fun `does not upload photos again that have already been uploaded`() {
+        val a = photo()
+        on(photoUploadsDB.getUrl(a)).thenReturn("url a")
+
+        assertEquals(listOf("url a"), photosUpload.upload(listOf(a)))
+
+        verifyZeroInteractions(imageUploader)
+    }
+
+    @Test fun `leaves out photos that do not exist or were rejected`() {
+        val a = photo()
+        on(imageUploader.upload(any())).thenReturn(null)
+
+        assertTrue(photosUpload.upload(listOf(a, "does not exist")).isEmpty())
+
+        verify(imageUploader).upload(File(a))
+        verify(photoUploadsDB, never()).put(anyString(), anyString())
+    }
+
+    @Test fun `tries again on connection problems`() {
+        val a = photo()
+        on(imageUploader.upload(File(a))).thenThrow(IOException()).thenReturn("url a")
+
+        assertEquals(listOf("url a"), photosUpload.upload(listOf(a)))
+
+        verify(imageUploader, times(2)).upload(File(a))
+    }
+
+    @Test fun `forgets about deleted photos`() {
+        val a = photo()
+
+        photosUpload.deleteImages(listOf(a))
+
+        assertFalse(File(a).exists())
+        verify(photoUploadsDB).deleteAll(listOf(a))
+    }
+
+    @Test fun `forgets about uploads of photos that do not exist anymore`() {
+        val a = photo()
+        on(photoUploadsDB.getAllPaths()).thenReturn(listOf(a, "does not exist"))
+
+        photosUpload.deleteUploadsOfMissingImages()
+
+        verify(photoUploadsDB).deleteAll(listOf("does not exist"))
+    }
+
+    private fun photo(): String {
+        val file = File.createTempFile("photo", ".jpg")
+        files.add(file)
+        return file.path
+    }
+}
@@ -0,0 +1,114 @@
+package de.westnordost.streetcomplete.data.osmnotes
+
+import de.westnordost.osmapi.common.errors.OsmConnectionException
+import de.westnordost.osmapi.user.UserDao
+import de.westnordost.osmapi.user.UserInfo
+import de.westnordost.streetcomplete.on
+import org.junit.After
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import org.mockito.ArgumentMatchers.anyLong
+import org.mockito.Mockito.*
+import java.io.File
+import java.io.IOException
+import java.nio.file.Files
+
+class OsmAvatarsDownloadTest {
+    private lateinit var userDao: UserDao
+    private lateinit var cacheDir: File
+    private lateinit var sourceDir: File
+
+    @Before fun setUp() {
+        userDao = mock(UserDao::class.java)
+        cacheDir = Files.createTempDirectory("avatars").toFile()
+        sourceDir = Files.createTempDirectory("avatar_sources").toFile()
+    }
+
+    @After fun tearDown() {
+        cacheDir.deleteRecursively()
+        sourceDir.deleteRecursively()
+    }
+
+    @Test fun `downloads avatars`() {
+        userHasAvatar(1, "one")
+        userHasAvatar(2, "two")
+
+        download(listOf(1L, 2L))
+
+        assertEquals("one", File(cacheDir, "1").readText())
+        assertEquals("two", File(cacheDir, "2").readText())
+    }
+
+    @Test fun `downloads the other avatars if one fails`() {
+        on(userDao.get(1)).thenThrow(OsmConnectionException(IOException()))
+        userHasAvatar(2, "two")
+        userHasAvatar(3, "three")
+
+        download(listOf(1L, 2L, 3L))
+
+        assertFalse(File(cacheDir, "1").exists())
+        assertEquals("two", File(cacheDir, "2").readText())
+        assertEquals("three", File(cacheDir, "3").readText())
+    }
+
+    @Test fun `does not check fresh avatars again`() {
+        userHasAvatar(1, "one")
+        val download = OsmAvatarsDownload(userDao, cacheDir, 60000, 1000)
+
+        download.download(listOf(1L))
+        download.download(listOf(1L))
+
+        verify(userDao, times(1)).get(1)
+    }
+
+    @Test fun `does not check users without avatar again while fresh`() {
+        on(userDao.get(anyLong())).thenReturn(UserInfo(1, "one"))
+        val download = OsmAvatarsDownload(userDao, cacheDir, 60000, 1000)
+
+        download.download(listOf(1L))
+        download.download(listOf(1L))
+
+        verify(userDao, times(1)).get(1)
+        assertFalse(File(cacheDir, "1").exists())
+    }
+
+    @Test fun `checks outdated avatars again`() {
+        userHasAvatar(1, "one")
+        download(listOf(1L))
+        userHasAvatar(1, "new one")
+
+        download(listOf(1L))
+
+        verify(userDao, times(2)).get(1)
+        assertEquals("new one", File(cacheDir, "1").readText())
+    }
+
+    @Test fun `removes least recently used avatars if cache is too big`() {
+        userHasAvatar(1, "12345")
+        userHasAvatar(2, "12345")
+        userHasAvatar(3, "12345")
+        val download = OsmAvatarsDownload(userDao, cacheDir, 60000, 12)
+
+        download.download(listOf(1L, 2L))
+        File(cacheDir, "1").setLastModified(System.currentTimeMillis() - 20000)
+        File(cacheDir, "2").setLastModified(System.currentTimeMillis() - 10000)
+        download.download(listOf(1L, 3L))
+
+        assertTrue(File(cacheDir, "1").exists())
+        assertFalse(File(cacheDir, "2").exists())
+        assertTrue(File(cacheDir, "3").exists())
+    }
+
+    private fun download(userIds: List<Long>) {
+        OsmAvatarsDownload(userDao, cacheDir, 0, 1000).download(userIds)
+    }
+
+    private fun userHasAvatar(userId: Long, content: String) {
+        val file = File(sourceDir, "$userId.png")
+        file.writeText(content)
+        val userInfo = UserInfo(userId, "user $userId")
+        userInfo.profileImageUrl = file.toURI().toURL().toString()
+        on(userDao.get(userId)).thenReturn(userInfo)
+    }
+}
@@ -13,14 +13,15 @@ import de.westnordost.osmapi.notes.Note;
 import de.westnordost.osmapi.notes.NotesDao;
 import de.westnordost.streetcomplete.data.QuestStatus;
 import de.westnordost.streetcomplete.data.statistics.QuestStatisticsDao;
-import de.westnordost.streetcomplete.util.ImageUploader;
+import de.westnordost.streetcomplete.data.upload.UploadInterruptedException;
+import de.westnordost.streetcomplete.util.RateLimiter;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 public class OsmNoteQuestChangesUploadTest
 {
-	private ImageUploader imageUploader;
+	private NotePhotosUpload photosUpload;
 	private NoteDao noteDb;
 	private OsmNoteQuestDao questDb;
 	private QuestStatisticsDao questStatisticsDb;
@@ -32,11 +33,12 @@ public class OsmNoteQuestChangesUploadTest
 	{
 		osmDao = mock(NotesDao.class);
 		noteDb = mock(NoteDao.class);
-		imageUploader = mock(ImageUploader.class);
+		photosUpload = mock(NotePhotosUpload.class);
 		questDb = mock(OsmNoteQuestDao.class);
 		questStatisticsDb = mock(QuestStatisticsDao.class);
 
-		osmNoteQuestChangesUpload = new OsmNoteQuestChangesUpload(osmDao, questDb, questStatisticsDb, noteDb, imageUploader);
+		osmNoteQuestChangesUpload = new OsmNoteQuestChangesUpload(osmDao, questDb, questStatisticsDb, noteDb, photosUpload,
+				new RateLimiter(1000, 1000));
 	}
 
 	@Test public void cancel() throws InterruptedException
@@ -99,12 +101,36 @@ public class OsmNoteQuestChangesUploadTest
 		someNote.id = 123;
 
 		when(osmDao.comment(anyLong(), anyString())).thenReturn(someNote);
-		when(imageUploader.upload(imagePaths)).thenReturn(Collections.singletonList("never"));
+		when(photosUpload.upload(imagePaths)).thenReturn(Collections.singletonList("never"));
 
 		osmNoteQuestChangesUpload.uploadNoteChanges(quest);
 
 		verify(osmDao).comment(1, "blablub\n\nAttached photo(s):\nnever");
-		verify(imageUploader).activate(someNote.id);
+		verify(photosUpload).activate(someNote.id);
+	}
+
+	@Test public void abortWhenInterruptedWhileWaitingForRateLimit()
+	{
+		RateLimiter rateLimiter = new RateLimiter(0.001, 1);
+		rateLimiter.acquire();
+		OsmNoteQuestChangesUpload upload = new OsmNoteQuestChangesUpload(osmDao, questDb,
+				questStatisticsDb, noteDb, photosUpload, rateLimiter);
+		OsmNoteQuest quest = createQuest();
+
+		Thread.currentThread().interrupt();
+		try
+		{
+			upload.uploadNoteChanges(quest);
+			fail();
+		}
+		catch (UploadInterruptedException ignore) { }
+		finally
+		{
+			assertTrue(Thread.interrupted());
+		}
+
+		verify(osmDao, never()).comment(anyLong(), anyString());
+		verify(questDb, never()).update(quest);
 	}
 
 	private static OsmNoteQuest createQuest()
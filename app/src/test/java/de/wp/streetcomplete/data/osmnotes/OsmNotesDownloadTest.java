@@ -81,6 +81,90 @@ public class OsmNotesDownloadTest
 		verify(listener).onQuestsRemoved(any(), any());
 	}
 
+	@Test public void refreshSkipsUnchangedNotes()
+	{
+		when(preferences.getBoolean(Prefs.SHOW_NOTES_NOT_PHRASED_AS_QUESTIONS, false)).thenReturn(true);
+
+		Note note = createANote();
+		note.comments.get(0).date = new Date(1000);
+		List<OsmNoteQuest> quests = new ArrayList<>();
+		quests.add(new OsmNoteQuest(12L, note, QuestStatus.NEW, null, new Date(), new OsmNoteQuestType(), null));
+		when(noteQuestDB.getAll(any(), any())).thenReturn(quests);
+
+		List<Note> notes = new ArrayList<>();
+		notes.add(note);
+		OsmNotesDownload dl = new OsmNotesDownload(new TestListBasedNotesDao(notes), noteDB,
+				noteQuestDB, createNoteDB, preferences, new OsmNoteQuestType(), avatarsDownload);
+
+		VisibleQuestListener listener = mock(VisibleQuestListener.class);
+		dl.setQuestListener(listener);
+
+		dl.refresh(new BoundingBox(0,0,1,1), null, 1000, System.currentTimeMillis());
+
+		verify(noteDB, never()).putAll(any());
+		verify(noteQuestDB, never()).addAll(any());
+		verify(noteQuestDB, never()).replaceAll(any());
+		verify(noteQuestDB, never()).deleteAll(any());
+		verifyZeroInteractions(listener);
+	}
+
+	@Test public void refreshWritesUpdatedNotes()
+	{
+		when(preferences.getBoolean(Prefs.SHOW_NOTES_NOT_PHRASED_AS_QUESTIONS, false)).thenReturn(true);
+
+		Note previousNote = createANote();
+		previousNote.comments.get(0).date = new Date(1000);
+		List<OsmNoteQuest> quests = new ArrayList<>();
+		quests.add(new OsmNoteQuest(12L, previousNote, QuestStatus.NEW, null, new Date(), new OsmNoteQuestType(), null));
+		when(noteQuestDB.getAll(any(), any())).thenReturn(quests);
+
+		Note note = createANote();
+		note.comments.get(0).date = new Date(1000);
+		NoteComment comment = new NoteComment();
+		comment.date = new Date();
+		comment.action = NoteComment.Action.COMMENTED;
+		comment.text = "still there?";
+		note.comments.add(comment);
+		Note newNote = createANote();
+		newNote.id = 5L;
+
+		List<Note> notes = new ArrayList<>();
+		notes.add(note);
+		notes.add(newNote);
+		OsmNotesDownload dl = new OsmNotesDownload(new TestListBasedNotesDao(notes), noteDB,
+				noteQuestDB, createNoteDB, preferences, new OsmNoteQuestType(), avatarsDownload);
+
+		dl.refresh(new BoundingBox(0,0,1,1), null, 1000, System.currentTimeMillis() - 60*1000);
+
+		verify(noteDB).putAll(argThat(written -> written.size() == 2));
+		verify(noteQuestDB).addAll(argThat(added -> added.size() == 2));
+		verify(noteQuestDB, never()).deleteAll(any());
+	}
+
+	@Test public void refreshReportsNotesThatBecameHidden()
+	{
+		Note note = createANote();
+		note.comments.get(0).date = new Date(1000);
+		List<OsmNoteQuest> quests = new ArrayList<>();
+		quests.add(new OsmNoteQuest(12L, note, QuestStatus.NEW, null, new Date(), new OsmNoteQuestType(), null));
+		when(noteQuestDB.getAll(any(), any())).thenReturn(quests);
+
+		List<Note> notes = new ArrayList<>();
+		notes.add(note);
+		// user set to not show notes that are not phrased as questions (anymore)
+		OsmNotesDownload dl = new OsmNotesDownload(new TestListBasedNotesDao(notes), noteDB,
+				noteQuestDB, createNoteDB, preferences, new OsmNoteQuestType(), avatarsDownload);
+
+		VisibleQuestListener listener = mock(VisibleQuestListener.class);
+		dl.setQuestListener(listener);
+
+		dl.refresh(new BoundingBox(0,0,1,1), null, 1000, System.currentTimeMillis());
+
+		verify(noteQuestDB).replaceAll(argThat(replaced -> replaced.size() == 1));
+		verify(listener).onQuestsRemoved(argThat(removed -> removed.contains(12L)), eq(QuestGroup.OSM_NOTE));
+		verify(noteQuestDB, never()).deleteAll(any());
+	}
+
 	private Note createANote()
 	{
 		Note note = new Note();
@@ -0,0 +1,43 @@
+package de.westnordost.streetcomplete.data.upload
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class UploadExecutorTest {
+    @Test fun `runs lanes concurrently`() {
+        // each lane waits until all lanes have been started
+        val latch = CountDownLatch(3)
+        val lane = Runnable {
+            latch.countDown()
+            assertTrue(latch.await(5, TimeUnit.SECONDS))
+        }
+        UploadExecutor(3).run(listOf(lane, lane, lane))
+    }
+
+    @Test fun `waits for other lanes and rethrows error of failed lane`() {
+        val finished = AtomicInteger(0)
+        val failing = Runnable { throw IllegalStateException() }
+        val slow = Runnable {
+            Thread.sleep(100)
+            finished.incrementAndGet()
+        }
+        try {
+            UploadExecutor(2).run(listOf(failing, slow))
+            fail()
+        } catch (e: IllegalStateException) {}
+        assertEquals(1, finished.get())
+    }
+
+    @Test fun `runs all lanes also on a single thread`() {
+        val finished = AtomicInteger(0)
+        val lane = Runnable { finished.incrementAndGet() }
+        try {
+            UploadExecutor(1).run(listOf(lane, Runnable { throw IllegalStateException() }, lane))
+            fail()
+        } catch (e: IllegalStateException) {}
+        assertEquals(2, finished.get())
+    }
+}
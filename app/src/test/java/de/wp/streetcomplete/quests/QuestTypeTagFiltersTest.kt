@@ -0,0 +1,54 @@
+package de.westnordost.streetcomplete.quests
+
+import android.database.sqlite.SQLiteOpenHelper
+import de.westnordost.osmfeatures.FeatureDictionary
+import de.westnordost.streetcomplete.data.osm.SimpleOverpassQuestType
+import de.westnordost.streetcomplete.data.osm.download.OverpassMapDataDao
+import de.westnordost.streetcomplete.data.osmnotes.OsmNoteQuestType
+import de.westnordost.streetcomplete.quests.localized_name.data.PutRoadNameSuggestionsHandler
+import de.westnordost.streetcomplete.quests.localized_name.data.RoadNameSuggestionsDao
+import de.westnordost.streetcomplete.quests.oneway.data.TrafficFlowSegmentsDao
+import de.westnordost.streetcomplete.quests.oneway.data.WayTrafficFlowDao
+import org.junit.Assert.*
+import org.junit.Test
+import org.mockito.Mockito.mock
+import java.io.File
+import java.util.concurrent.FutureTask
+
+/** Checks the tag filters of all registered quest types. If the system property
+ *  "questTagFiltersFile" is set (see build.gradle), they are also written to that file, one per
+ *  line, for the tag filter benchmark of the benchmark module */
+class QuestTypeTagFiltersTest {
+
+    @Suppress("UNCHECKED_CAST")
+    private val questTypes = QuestModule.questTypeRegistry(
+        OsmNoteQuestType(),
+        mock(OverpassMapDataDao::class.java),
+        mock(RoadNameSuggestionsDao::class.java),
+        mock(PutRoadNameSuggestionsHandler::class.java),
+        TrafficFlowSegmentsDao(""),
+        WayTrafficFlowDao(mock(SQLiteOpenHelper::class.java)),
+        mock(FutureTask::class.java) as FutureTask<FeatureDictionary>
+    ).all.filterIsInstance<SimpleOverpassQuestType<*>>()
+
+    @Test fun `tag filters of all quest types can be parsed`() {
+        assertFalse(questTypes.isEmpty())
+        for (questType in questTypes) {
+            assertNotNull(questType.javaClass.simpleName, questType.filter)
+        }
+    }
+
+    @Test fun `export tag filters`() {
+        val path = System.getProperty("questTagFiltersFile") ?: return
+        val file = File(path)
+        file.parentFile.mkdirs()
+        // a filter is not whitespace-sensitive, so it can be put on one line
+        file.writeText(questTypes.joinToString("\n") { getTagFilters(it).replace(Regex("\\s*\\n\\s*"), " ").trim() })
+    }
+
+    private fun getTagFilters(questType: SimpleOverpassQuestType<*>): String {
+        val getter = SimpleOverpassQuestType::class.java.getDeclaredMethod("getTagFilters")
+        getter.isAccessible = true
+        return getter.invoke(questType) as String
+    }
+}
@@ -0,0 +1,236 @@
+package de.westnordost.streetcomplete.tangram;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import de.westnordost.osmapi.map.data.LatLon;
+import de.westnordost.osmapi.map.data.OsmLatLon;
+import de.westnordost.streetcomplete.ApplicationConstants;
+import de.westnordost.streetcomplete.data.QuestGroup;
+import de.westnordost.streetcomplete.util.TileKey;
+
+import static org.junit.Assert.*;
+
+public class QuestMarkersIndexTest
+{
+	private static final LatLon[] POS = { new OsmLatLon(1, 2) };
+	private static final LatLon[] OTHER_POS = { new OsmLatLon(3, 4) };
+
+	@Test public void nothingChanged()
+	{
+		assertNull(new QuestMarkersIndex().flush());
+	}
+
+	@Test public void addOnlySerializesAddedQuests()
+	{
+		QuestMarkersIndex index = new QuestMarkersIndex();
+		index.put(QuestGroup.OSM, 1, "icon", 0, POS);
+		index.flush();
+
+		index.put(QuestGroup.OSM, 2, "icon", 0, POS);
+		QuestMarkersIndex.Update update = index.flush();
+
+		assertFalse(update.clear);
+		assertFalse(update.geoJson.contains("\"quest_id\":\"1\""));
+		assertTrue(update.geoJson.contains("\"quest_id\":\"2\""));
+	}
+
+	@Test public void addingSameQuestAgainChangesNothing()
+	{
+		QuestMarkersIndex index = new QuestMarkersIndex();
+		index.put(QuestGroup.OSM, 1, "icon", 0, POS);
+		index.flush();
+
+		index.put(QuestGroup.OSM, 1, "icon", 0, POS);
+		assertNull(index.flush());
+	}
+
+	@Test public void sameIdInOtherGroupIsOtherQuest()
+	{
+		QuestMarkersIndex index = new QuestMarkersIndex();
+		index.put(QuestGroup.OSM, 1, "icon", 0, POS);
+		index.put(QuestGroup.OSM_NOTE, 1, "icon", 0, POS);
+		assertEquals(2, index.size());
+	}
+
+	@Test public void movedQuestRebuildsLayer()
+	{
+		QuestMarkersIndex index = new QuestMarkersIndex();
+		index.put(QuestGroup.OSM, 1, "icon", 0, POS);
+		index.put(QuestGroup.OSM, 2, "icon", 0, POS);
+		index.flush();
+
+		index.put(QuestGroup.OSM, 1, "icon", 0, OTHER_POS);
+		QuestMarkersIndex.Update update = index.flush();
+
+		assertTrue(update.clear);
+		assertTrue(update.geoJson.contains("\"quest_id\":\"2\""));
+		assertTrue(update.geoJson.contains("[4.0,3.0]"));
+		assertEquals(2, update.geoJson.split("\"Feature\"").length - 1);
+	}
+
+	@Test public void removeRebuildsLayerWithRemainingQuests()
+	{
+		QuestMarkersIndex index = new QuestMarkersIndex();
+		index.put(QuestGroup.OSM, 1, "icon", 0, POS);
+		index.put(QuestGroup.OSM, 2, "icon", 0, POS);
+		index.flush();
+
+		index.remove(QuestGroup.OSM, 1);
+		QuestMarkersIndex.Update update = index.flush();
+
+		assertTrue(update.clear);
+		assertFalse(update.geoJson.contains("\"quest_id\":\"1\""));
+		assertTrue(update.geoJson.contains("\"quest_id\":\"2\""));
+	}
+
+	@Test public void removeUnknownQuestChangesNothing()
+	{
+		QuestMarkersIndex index = new QuestMarkersIndex();
+		index.put(QuestGroup.OSM, 1, "icon", 0, POS);
+		index.flush();
+
+		index.remove(QuestGroup.OSM, 2);
+		assertNull(index.flush());
+	}
+
+	@Test public void clear()
+	{
+		QuestMarkersIndex index = new QuestMarkersIndex();
+		index.put(QuestGroup.OSM, 1, "icon", 0, POS);
+		index.clear();
+		QuestMarkersIndex.Update update = index.flush();
+
+		assertTrue(update.clear);
+		assertNull(update.geoJson);
+		assertEquals(0, index.size());
+	}
+
+	@Test public void clustersQuestsCloseToEachOther()
+	{
+		QuestMarkersIndex index = new QuestMarkersIndex();
+		index.put(QuestGroup.OSM, 1, "icon", 0, new LatLon[]{ new OsmLatLon(53.00001, 10.00001) });
+		index.put(QuestGroup.OSM, 2, "icon", 0, new LatLon[]{ new OsmLatLon(53.00002, 10.00002) });
+		index.put(QuestGroup.OSM, 3, "icon", 0, new LatLon[]{ new OsmLatLon(54, 11) });
+		index.setClusterZoom(14);
+		QuestMarkersIndex.Update update = index.flush();
+
+		assertTrue(update.clear);
+		assertTrue(update.geoJson.contains("\"type\":\"cluster\", \"count\":\"2\""));
+		assertFalse(update.geoJson.contains("\"quest_id\":\"1\""));
+		assertFalse(update.geoJson.contains("\"quest_id\":\"2\""));
+		assertTrue(update.geoJson.contains("\"quest_id\":\"3\""));
+	}
+
+	@Test public void addingQuestWhileClusteredRebuildsLayer()
+	{
+		QuestMarkersIndex index = new QuestMarkersIndex();
+		index.put(QuestGroup.OSM, 1, "icon", 0, new LatLon[]{ new OsmLatLon(53.00001, 10.00001) });
+		index.setClusterZoom(14);
+		index.flush();
+
+		index.put(QuestGroup.OSM, 2, "icon", 0, new LatLon[]{ new OsmLatLon(53.00002, 10.00002) });
+		QuestMarkersIndex.Update update = index.flush();
+
+		assertTrue(update.clear);
+		assertTrue(update.geoJson.contains("\"count\":\"2\""));
+	}
+
+	@Test public void addingQuestToEmptyCellWhileClusteredOnlyAddsIt()
+	{
+		QuestMarkersIndex index = new QuestMarkersIndex();
+		index.put(QuestGroup.OSM, 1, "icon", 0, new LatLon[]{ new OsmLatLon(53.00001, 10.00001) });
+		index.setClusterZoom(14);
+		index.flush();
+
+		index.put(QuestGroup.OSM, 2, "icon", 0, new LatLon[]{ new OsmLatLon(54, 11) });
+		QuestMarkersIndex.Update update = index.flush();
+
+		assertFalse(update.clear);
+		assertFalse(update.geoJson.contains("\"quest_id\":\"1\""));
+		assertTrue(update.geoJson.contains("\"quest_id\":\"2\""));
+	}
+
+	@Test public void removingQuestFromClusterLeavesOtherClustersAsTheyAre()
+	{
+		QuestMarkersIndex index = new QuestMarkersIndex();
+		index.put(QuestGroup.OSM, 1, "icon", 0, new LatLon[]{ new OsmLatLon(53.00001, 10.00001) });
+		index.put(QuestGroup.OSM, 2, "icon", 0, new LatLon[]{ new OsmLatLon(53.00002, 10.00002) });
+		index.put(QuestGroup.OSM, 3, "icon", 0, new LatLon[]{ new OsmLatLon(54.00001, 11.00001) });
+		index.put(QuestGroup.OSM, 4, "icon", 0, new LatLon[]{ new OsmLatLon(54.00002, 11.00002) });
+		index.setClusterZoom(14);
+		index.flush();
+
+		index.remove(QuestGroup.OSM, 1);
+		QuestMarkersIndex.Update update = index.flush();
+
+		assertTrue(update.clear);
+		assertTrue(update.geoJson.contains("\"quest_id\":\"2\""));
+		assertTrue(update.geoJson.contains("\"count\":\"2\""));
+		assertEquals(2, update.geoJson.split("\"Feature\"").length - 1);
+	}
+
+	@Test public void retainTilesRemovesQuestsElsewhere()
+	{
+		QuestMarkersIndex index = new QuestMarkersIndex();
+		index.put(QuestGroup.OSM, 1, "icon", 0, POS);
+		index.put(QuestGroup.OSM, 2, "icon", 0, OTHER_POS);
+		index.flush();
+
+		index.retainTiles(Collections.singletonList(tileKeyOf(POS[0])));
+		QuestMarkersIndex.Update update = index.flush();
+
+		assertTrue(update.clear);
+		assertTrue(update.geoJson.contains("\"quest_id\":\"1\""));
+		assertFalse(update.geoJson.contains("\"quest_id\":\"2\""));
+		assertEquals(1, index.size());
+	}
+
+	@Test public void questsOutsideRetainedTilesAreIgnored()
+	{
+		QuestMarkersIndex index = new QuestMarkersIndex();
+		index.retainTiles(Collections.singletonList(tileKeyOf(POS[0])));
+		index.put(QuestGroup.OSM, 1, "icon", 0, OTHER_POS);
+
+		assertNull(index.flush());
+		assertEquals(0, index.size());
+	}
+
+	@Test public void noClustersWhenNotClustering()
+	{
+		QuestMarkersIndex index = new QuestMarkersIndex();
+		index.put(QuestGroup.OSM, 1, "icon", 0, new LatLon[]{ new OsmLatLon(53.00001, 10.00001) });
+		index.put(QuestGroup.OSM, 2, "icon", 0, new LatLon[]{ new OsmLatLon(53.00002, 10.00002) });
+		index.setClusterZoom(14);
+		index.flush();
+
+		index.setClusterZoom(null);
+		QuestMarkersIndex.Update update = index.flush();
+
+		assertTrue(update.clear);
+		assertFalse(update.geoJson.contains("cluster"));
+		assertTrue(update.geoJson.contains("\"quest_id\":\"1\""));
+		assertTrue(update.geoJson.contains("\"quest_id\":\"2\""));
+	}
+
+	@Test public void serializesAllMarkersOfQuest()
+	{
+		QuestMarkersIndex index = new QuestMarkersIndex();
+		index.put(QuestGroup.OSM, 1, "icon", 5, new LatLon[]{ new OsmLatLon(1, 2), new OsmLatLon(3, 4) });
+		String geoJson = index.flush().geoJson;
+
+		assertEquals(
+			"{\"type\":\"FeatureCollection\",\"features\": [" +
+			"{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",\"coordinates\": [2.0,1.0]}," +
+			"\"properties\": {\"type\":\"point\", \"kind\":\"icon\",\"quest_group\":\"OSM\",\"quest_id\":\"1\",\"order\":\"5\"}}," +
+			"{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",\"coordinates\": [4.0,3.0]}," +
+			"\"properties\": {\"type\":\"point\", \"kind\":\"icon\",\"quest_group\":\"OSM\",\"quest_id\":\"1\",\"order\":\"5\"}}" +
+			"]}", geoJson);
+	}
+
+	private static long tileKeyOf(LatLon pos)
+	{
+		return TileKey.of(pos.getLatitude(), pos.getLongitude(), ApplicationConstants.QUEST_TILE_ZOOM);
+	}
+}
@@ -0,0 +1,57 @@
+package de.westnordost.streetcomplete.tangram;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RecentlyViewedTilesTest
+{
+	@Test public void returnsOnlyNewTiles()
+	{
+		RecentlyViewedTiles tiles = new RecentlyViewedTiles(4);
+		assertEquals(Arrays.asList(1L, 2L), tiles.view(Arrays.asList(1L, 2L)));
+		assertEquals(Collections.singletonList(3L), tiles.view(Arrays.asList(2L, 3L)));
+		assertTrue(tiles.view(Arrays.asList(1L, 3L)).isEmpty());
+	}
+
+	@Test public void forgetsLeastRecentlyViewedTiles()
+	{
+		RecentlyViewedTiles tiles = new RecentlyViewedTiles(3);
+		tiles.view(Arrays.asList(1L, 2L));
+		tiles.view(Collections.singletonList(3L));
+		tiles.view(Collections.singletonList(1L));
+		tiles.view(Collections.singletonList(4L));
+
+		assertEquals(new HashSet<>(Arrays.asList(1L, 3L, 4L)), new HashSet<>(tiles.getAll()));
+		// forgotten tiles are new again when they come into view
+		assertEquals(Collections.singletonList(2L), tiles.view(Collections.singletonList(2L)));
+	}
+
+	@Test public void neverForgetsTilesInViewWiderThanMaximum()
+	{
+		RecentlyViewedTiles tiles = new RecentlyViewedTiles(4);
+		tiles.view(Arrays.asList(100L, 101L));
+
+		List<Long> inView = new ArrayList<>();
+		for (long tile = 0; tile < 6; ++tile) inView.add(tile);
+		assertEquals(inView, tiles.view(inView));
+
+		assertEquals(new HashSet<>(inView), new HashSet<>(tiles.getAll()));
+		assertTrue(tiles.view(inView).isEmpty());
+	}
+
+	@Test public void clear()
+	{
+		RecentlyViewedTiles tiles = new RecentlyViewedTiles(4);
+		tiles.view(Collections.singletonList(1L));
+		tiles.clear();
+		assertTrue(tiles.getAll().isEmpty());
+		assertEquals(Collections.singletonList(1L), tiles.view(Collections.singletonList(1L)));
+	}
+}
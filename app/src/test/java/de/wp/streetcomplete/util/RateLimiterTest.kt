@@ -0,0 +1,46 @@
+package de.westnordost.streetcomplete.util
+
+import org.junit.Assert.*
+import org.junit.Test
+
+class RateLimiterTest {
+    @Test fun `allows a burst right away`() {
+        val limiter = RateLimiter(0.1, 3)
+        assertTrue(limiter.tryAcquire())
+        assertTrue(limiter.tryAcquire())
+        assertTrue(limiter.tryAcquire())
+        assertFalse(limiter.tryAcquire())
+    }
+
+    @Test fun `waits for a token when the bucket is empty`() {
+        val limiter = RateLimiter(20.0, 1)
+        limiter.acquire()
+        val start = System.nanoTime()
+        assertTrue(limiter.acquire())
+        val waitedMs = (System.nanoTime() - start) / 1000000
+        assertTrue(waitedMs >= 40)
+    }
+
+    @Test fun `refills the bucket over time`() {
+        val limiter = RateLimiter(100.0, 1)
+        assertTrue(limiter.tryAcquire())
+        Thread.sleep(30)
+        assertTrue(limiter.tryAcquire())
+    }
+
+    @Test fun `is shared between threads`() {
+        val limiter = RateLimiter(0.1, 10)
+        val threads = (1..4).map { Thread { repeat(5) { limiter.tryAcquire() } } }
+        threads.forEach { it.start() }
+        threads.forEach { it.join() }
+        assertFalse(limiter.tryAcquire())
+    }
+
+    @Test fun `returns false when interrupted while waiting`() {
+        val limiter = RateLimiter(0.1, 1)
+        limiter.acquire()
+        Thread.currentThread().interrupt()
+        assertFalse(limiter.acquire())
+        assertTrue(Thread.interrupted())
+    }
+}
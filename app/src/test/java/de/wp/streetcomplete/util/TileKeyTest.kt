@@ -0,0 +1,44 @@
+package de.westnordost.streetcomplete.util
+
+import de.westnordost.osmapi.map.data.BoundingBox
+import org.junit.Assert.*
+import org.junit.Test
+
+class TileKeyTest {
+    @Test fun `positions in the same tile have the same key`() {
+        assertEquals(TileKey.of(53.00001, 9.00001), TileKey.of(53.00002, 9.00002))
+    }
+
+    @Test fun `positions in different tiles have different keys`() {
+        assertNotEquals(TileKey.of(53.0, 9.0), TileKey.of(53.0, 9.01))
+        assertNotEquals(TileKey.of(53.0, 9.0), TileKey.of(53.01, 9.0))
+    }
+
+    @Test fun `poles and antimeridian are within range`() {
+        val max = (1L shl (2 * TileKey.ZOOM)) - 1
+        assertEquals(max, TileKey.of(-90.0, 180.0))
+        assertEquals(0L, TileKey.of(90.0, -180.0))
+    }
+
+    @Test fun `ranges of bbox contain all positions within`() {
+        val bbox = BoundingBox(53.0, 9.0, 53.02, 9.03)
+        val ranges = TileKey.rangesOf(bbox)
+        for (lat in listOf(53.0, 53.005, 53.01, 53.02)) {
+            for (lon in listOf(9.0, 9.015, 9.03)) {
+                val key = TileKey.of(lat, lon)
+                assertTrue(ranges.chunked(2).any { (from, to) -> key in from..to })
+            }
+        }
+    }
+
+    @Test fun `ranges of bbox do not contain positions far outside`() {
+        val bbox = BoundingBox(53.0, 9.0, 53.02, 9.03)
+        val key = TileKey.of(53.0, 9.1)
+        assertFalse(TileKey.rangesOf(bbox).chunked(2).any { (from, to) -> key in from..to })
+    }
+
+    @Test fun `huge bbox is queried as one range`() {
+        val ranges = TileKey.rangesOf(BoundingBox(0.0, 0.0, 10.0, 10.0))
+        assertEquals(2, ranges.size)
+    }
+}
@@ -0,0 +1,60 @@
+package de.westnordost.streetcomplete.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.osmapi.map.data.Relation;
+import de.westnordost.osmapi.map.data.Way;
+import de.westnordost.streetcomplete.data.osm.download.ElementGeometryCreator;
+
+/** Creating the geometry of ways (lines and areas) and of multipolygon relations, which includes
+ *  joining the member ways to rings */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ElementGeometryCreatorBenchmark
+{
+	private ElementGeometryCreator creator;
+	private List<Way> ways;
+	private List<Relation> relations;
+
+	@Setup public void setUp()
+	{
+		SyntheticCity city = new SyntheticCity();
+		creator = new ElementGeometryCreator(city);
+		ways = new ArrayList<>();
+		relations = new ArrayList<>();
+		for (Element element : city.getElements())
+		{
+			if(element instanceof Way) ways.add((Way) element);
+			else if(element instanceof Relation) relations.add((Relation) element);
+		}
+	}
+
+	@Benchmark public void createWayGeometries(Blackhole bh)
+	{
+		for (Way way : ways)
+		{
+			bh.consume(creator.create(way));
+		}
+	}
+
+	@Benchmark public void createMultipolygonGeometries(Blackhole bh)
+	{
+		for (Relation relation : relations)
+		{
+			bh.consume(creator.create(relation));
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package de.westnordost.streetcomplete.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/** Provides the Overpass response the benchmarks are run with */
+public final class Fixtures
+{
+	/** the recorded response of a city centre, see recordOverpassResponse in build.gradle */
+	public static final String CITY = "city";
+	public static final String SYNTHETIC = "synthetic";
+
+	private static final String CITY_RESOURCE = "/overpass/city.osm";
+
+	private Fixtures() {}
+
+	/** @param source either {@link #CITY} for the recorded city centre, {@link #SYNTHETIC} for the
+	 *                synthetic city or the path to a recorded Overpass response
+	 *                ("out meta geom;") */
+	public static byte[] load(String source) throws IOException
+	{
+		if(CITY.equals(source))
+		{
+			try (InputStream is = Fixtures.class.getResourceAsStream(CITY_RESOURCE))
+			{
+				if(is == null)
+				{
+					throw new FileNotFoundException(CITY_RESOURCE + " is missing, record it with " +
+						"./gradlew :benchmark:recordOverpassResponse");
+				}
+				return readAll(is);
+			}
+		}
+		if(SYNTHETIC.equals(source))
+		{
+			return new SyntheticCity().toOverpassXml().getBytes(StandardCharsets.UTF_8);
+		}
+		return Files.readAllBytes(Paths.get(source));
+	}
+
+	private static byte[] readAll(InputStream is) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int count;
+		while ((count = is.read(buffer)) != -1) out.write(buffer, 0, count);
+		return out.toByteArray();
+	}
+}
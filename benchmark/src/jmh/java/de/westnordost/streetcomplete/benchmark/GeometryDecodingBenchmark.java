@@ -0,0 +1,114 @@
+package de.westnordost.streetcomplete.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import de.westnordost.osmapi.map.data.LatLon;
+import de.westnordost.osmapi.map.data.OsmLatLon;
+import de.westnordost.streetcomplete.data.osm.ElementGeometry;
+import de.westnordost.streetcomplete.data.osm.persist.LatLonListsCodec;
+
+/** Reading many element geometries from their persisted form like ElementGeometryDao does, eagerly
+ *  and lazily decoded, when only the center is used (as for the quest markers) and when all of
+ *  the geometry is used. Compare the allocated bytes per operation (·gc.alloc.rate.norm) too */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GeometryDecodingBenchmark
+{
+	private static final int GEOMETRIES = 1000;
+	private static final int VERTICES = 20;
+
+	private byte[][] polylines;
+	private LatLon[] centers;
+
+	@Setup public void setUp()
+	{
+		polylines = new byte[GEOMETRIES][];
+		centers = new LatLon[GEOMETRIES];
+		for (int i = 0; i < GEOMETRIES; i++)
+		{
+			// streets of a city with a few dozen meters between the vertices
+			double lat = 53.5 + (i / 40) * 0.002;
+			double lon = 9.9 + (i % 40) * 0.003;
+			List<LatLon> polyline = new ArrayList<>(VERTICES);
+			for (int j = 0; j < VERTICES; j++)
+			{
+				polyline.add(new OsmLatLon(lat + j * 0.0001, lon + j * 0.00015));
+			}
+			polylines[i] = LatLonListsCodec.encode(Collections.singletonList(polyline));
+			centers[i] = polyline.get(VERTICES / 2);
+		}
+	}
+
+	@Benchmark public double eagerCenterOnly()
+	{
+		double sum = 0;
+		for (int i = 0; i < GEOMETRIES; i++)
+		{
+			ElementGeometry geometry = new ElementGeometry(
+				LatLonListsCodec.decode(polylines[i]), null, centers[i]);
+			sum += geometry.center.getLatitude();
+		}
+		return sum;
+	}
+
+	@Benchmark public double lazyCenterOnly()
+	{
+		double sum = 0;
+		for (int i = 0; i < GEOMETRIES; i++)
+		{
+			ElementGeometry geometry = new ElementGeometry(
+				LatLonListsCodec.decodeLazily(polylines[i]), null, centers[i]);
+			sum += geometry.center.getLatitude();
+		}
+		return sum;
+	}
+
+	@Benchmark public double eagerAllVertices()
+	{
+		double sum = 0;
+		for (int i = 0; i < GEOMETRIES; i++)
+		{
+			ElementGeometry geometry = new ElementGeometry(
+				LatLonListsCodec.decode(polylines[i]), null, centers[i]);
+			sum += sumOfLatitudes(geometry.polylines);
+		}
+		return sum;
+	}
+
+	@Benchmark public double lazyAllVertices()
+	{
+		double sum = 0;
+		for (int i = 0; i < GEOMETRIES; i++)
+		{
+			ElementGeometry geometry = new ElementGeometry(
+				LatLonListsCodec.decodeLazily(polylines[i]), null, centers[i]);
+			sum += sumOfLatitudes(geometry.polylines);
+		}
+		return sum;
+	}
+
+	private static double sumOfLatitudes(List<List<LatLon>> lists)
+	{
+		double sum = 0;
+		for (List<LatLon> list : lists)
+		{
+			for (LatLon latLon : list)
+			{
+				sum += latLon.getLatitude();
+			}
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,88 @@
+package de.westnordost.streetcomplete.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import de.westnordost.osmapi.map.data.BoundingBox;
+import de.westnordost.osmapi.map.data.LatLon;
+import de.westnordost.osmapi.map.data.OsmLatLon;
+import de.westnordost.streetcomplete.util.LatLonRaster;
+
+/** Filling the raster with the positions of a city and querying small areas of it, like it is done
+ *  to find nearby elements i.e. for the labels of quests */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LatLonRasterBenchmark
+{
+	private static final BoundingBox BOUNDS = new BoundingBox(53.5, 9.9, 53.6, 10.1);
+	private static final double CELL_SIZE = 0.0005;
+
+	private List<LatLon> positions;
+	private List<BoundingBox> queries;
+	private LatLonRaster raster;
+
+	@Setup public void setUp()
+	{
+		Random random = new Random(1);
+		positions = new ArrayList<>();
+		for (int i = 0; i < 50000; i++)
+		{
+			positions.add(randomPosition(random));
+		}
+		queries = new ArrayList<>();
+		for (int i = 0; i < 1000; i++)
+		{
+			LatLon min = randomPosition(random);
+			queries.add(new BoundingBox(
+				min.getLatitude(), min.getLongitude(),
+				Math.min(BOUNDS.getMaxLatitude(), min.getLatitude() + 0.001),
+				Math.min(BOUNDS.getMaxLongitude(), min.getLongitude() + 0.002)));
+		}
+		raster = createRaster();
+	}
+
+	@Benchmark public LatLonRaster insert()
+	{
+		return createRaster();
+	}
+
+	@Benchmark public void getAll(Blackhole bh)
+	{
+		for (BoundingBox query : queries)
+		{
+			for (LatLon position : raster.getAll(query))
+			{
+				bh.consume(position);
+			}
+		}
+	}
+
+	private LatLonRaster createRaster()
+	{
+		LatLonRaster result = new LatLonRaster(BOUNDS, CELL_SIZE);
+		for (LatLon position : positions)
+		{
+			result.insert(position);
+		}
+		return result;
+	}
+
+	private static LatLon randomPosition(Random random)
+	{
+		return new OsmLatLon(
+			BOUNDS.getMinLatitude() + random.nextDouble() * (BOUNDS.getMaxLatitude() - BOUNDS.getMinLatitude()),
+			BOUNDS.getMinLongitude() + random.nextDouble() * (BOUNDS.getMaxLongitude() - BOUNDS.getMinLongitude()));
+	}
+}
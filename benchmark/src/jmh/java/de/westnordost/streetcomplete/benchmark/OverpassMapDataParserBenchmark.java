@@ -0,0 +1,122 @@
+package de.westnordost.streetcomplete.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import de.westnordost.osmapi.map.OsmMapDataFactory;
+import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.streetcomplete.data.osm.ElementGeometry;
+import de.westnordost.streetcomplete.data.osm.download.CompactOverpassMapDataParser;
+import de.westnordost.streetcomplete.data.osm.download.MapDataWithGeometryParser;
+import de.westnordost.streetcomplete.data.osm.download.OverpassMapDataParser;
+
+/** Parsing an Overpass response, including the creation of the geometry of each element which the
+ *  parsers do on the fly.
+ *
+ *  Next to the time, the allocated bytes per element are of interest: They are printed at the end
+ *  of each trial and are the same as ·gc.alloc.rate.norm (the allocated bytes per parse, reported
+ *  by the gc profiler) divided by the number of elements in the response. Before the measurement,
+ *  it is checked that both parsers yield the same result, so it is sure that the same work is
+ *  compared. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OverpassMapDataParserBenchmark
+{
+	@Param({Fixtures.CITY, Fixtures.SYNTHETIC})
+	public String source;
+
+	private byte[] response;
+
+	@Setup public void setUp() throws Exception
+	{
+		response = Fixtures.load(source);
+
+		List<Object> expected = parseAll(new OverpassMapDataParser(new OsmMapDataFactory()));
+		List<Object> actual = parseAll(new CompactOverpassMapDataParser(new OsmMapDataFactory()));
+		if(!expected.equals(actual))
+		{
+			throw new IllegalStateException("The parsers do not yield the same result for " + source);
+		}
+	}
+
+	@TearDown public void printAllocatedBytesPerElement() throws Exception
+	{
+		printAllocatedBytesPerElement("parse", new OverpassMapDataParser(new OsmMapDataFactory()));
+		printAllocatedBytesPerElement("parseCompact", new CompactOverpassMapDataParser(new OsmMapDataFactory()));
+	}
+
+	@Benchmark public void parse(Blackhole bh) throws Exception
+	{
+		parse(new OverpassMapDataParser(new OsmMapDataFactory()), bh);
+	}
+
+	@Benchmark public void parseCompact(Blackhole bh) throws Exception
+	{
+		parse(new CompactOverpassMapDataParser(new OsmMapDataFactory()), bh);
+	}
+
+	private void parse(MapDataWithGeometryParser parser, Blackhole bh) throws Exception
+	{
+		parser.setHandler((element, geometry) ->
+		{
+			bh.consume(element);
+			bh.consume(geometry);
+		});
+		parser.parse(new ByteArrayInputStream(response));
+	}
+
+	private void printAllocatedBytesPerElement(String name, MapDataWithGeometryParser parser) throws Exception
+	{
+		int[] count = {0};
+		parser.setHandler((element, geometry) -> count[0]++);
+
+		long before = getAllocatedBytes();
+		parser.parse(new ByteArrayInputStream(response));
+		long bytes = getAllocatedBytes() - before;
+
+		System.out.println(name + " (" + source + "): " + count[0] + " elements, " +
+			bytes / count[0] + " bytes allocated per element");
+	}
+
+	private static long getAllocatedBytes()
+	{
+		com.sun.management.ThreadMXBean threadMXBean =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/** @return type, id, version, tags and geometry of each parsed element */
+	private List<Object> parseAll(MapDataWithGeometryParser parser) throws Exception
+	{
+		List<Object> result = new ArrayList<>();
+		parser.setHandler((element, geometry) -> result.add(describe(element, geometry)));
+		parser.parse(new ByteArrayInputStream(response));
+		return result;
+	}
+
+	private static List<Object> describe(Element element, ElementGeometry geometry)
+	{
+		List<Object> result = new ArrayList<>(5);
+		result.add(element.getType());
+		result.add(element.getId());
+		result.add(element.getVersion());
+		result.add(element.getTags());
+		result.add(geometry);
+		return result;
+	}
+}
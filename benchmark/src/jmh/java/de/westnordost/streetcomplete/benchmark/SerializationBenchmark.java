@@ -0,0 +1,141 @@
+package de.westnordost.streetcomplete.benchmark;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import org.objenesis.strategy.StdInstantiatorStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.osmapi.map.data.Fixed1E7LatLon;
+import de.westnordost.osmapi.map.data.LatLon;
+import de.westnordost.osmapi.map.data.OsmLatLon;
+import de.westnordost.osmapi.map.data.OsmRelationMember;
+import de.westnordost.streetcomplete.data.osm.changes.StringMapChanges;
+import de.westnordost.streetcomplete.data.osm.changes.StringMapEntryAdd;
+import de.westnordost.streetcomplete.data.osm.changes.StringMapEntryChange;
+import de.westnordost.streetcomplete.data.osm.changes.StringMapEntryDelete;
+import de.westnordost.streetcomplete.data.osm.changes.StringMapEntryModify;
+import de.westnordost.streetcomplete.data.osm.persist.LatLonListsCodec;
+
+/** Round trips (serialize + deserialize) of what is persisted as blobs in the database: tags,
+ *  geometry and tag changes.
+ *
+ *  The KryoSerializer of the app can not be compiled outside of Android because it registers
+ *  classes of the quest forms, so Kryo is set up here the same way it is set up there. The
+ *  registration order matters only for compatibility of persisted data, not for the performance */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark
+{
+	private static final Class[] registeredClasses =
+	{
+			HashMap.class,
+			ArrayList.class,
+			Fixed1E7LatLon.class,
+			Element.Type.class,
+			OsmRelationMember.class,
+			StringMapChanges.class,
+			StringMapEntryAdd.class,
+			StringMapEntryDelete.class,
+			StringMapEntryModify.class,
+			OsmLatLon.class,
+	};
+
+	private Kryo kryo;
+
+	private HashMap<String, String> tags;
+	private ArrayList<ArrayList<OsmLatLon>> polygons;
+	private List<List<LatLon>> polygonsForCodec;
+	private StringMapChanges changes;
+
+	@Setup public void setUp()
+	{
+		kryo = new Kryo();
+		kryo.setRegistrationRequired(true);
+		kryo.setInstantiatorStrategy(new Kryo.DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+		for(Class reg : registeredClasses)
+		{
+			kryo.register(reg);
+		}
+
+		tags = new HashMap<>();
+		tags.put("shop", "bakery");
+		tags.put("name", "Bäckerei Müller");
+		tags.put("opening_hours", "Mo-Fr 06:30-18:00; Sa 07:00-13:00");
+		tags.put("addr:street", "Hauptstraße");
+		tags.put("addr:housenumber", "12a");
+		tags.put("addr:postcode", "20095");
+		tags.put("addr:city", "Hamburg");
+		tags.put("wheelchair", "limited");
+
+		// a building with a courtyard
+		polygons = new ArrayList<>();
+		polygonsForCodec = new ArrayList<>();
+		for (int r = 0; r < 2; r++)
+		{
+			ArrayList<OsmLatLon> ring = new ArrayList<>();
+			for (int i = 0; i < 40; i++)
+			{
+				double angle = 2 * Math.PI * i / 40;
+				double radius = r == 0 ? 0.0005 : 0.0002;
+				ring.add(new OsmLatLon(53.55 + radius * Math.sin(angle), 9.99 + radius * Math.cos(angle)));
+			}
+			ring.add(ring.get(0));
+			polygons.add(ring);
+			polygonsForCodec.add(new ArrayList<>(ring));
+		}
+
+		List<StringMapEntryChange> changeList = new ArrayList<>();
+		changeList.add(new StringMapEntryAdd("opening_hours", "Mo-Sa 08:00-20:00"));
+		changeList.add(new StringMapEntryModify("wheelchair", "limited", "yes"));
+		changeList.add(new StringMapEntryDelete("fixme", "check opening hours"));
+		changes = new StringMapChanges(changeList);
+	}
+
+	@Benchmark public Object kryoTags()
+	{
+		return roundTrip(tags, HashMap.class);
+	}
+
+	@Benchmark public Object kryoPolygons()
+	{
+		return roundTrip(polygons, ArrayList.class);
+	}
+
+	@Benchmark public Object kryoStringMapChanges()
+	{
+		return roundTrip(changes, StringMapChanges.class);
+	}
+
+	@Benchmark public Object codecPolygons()
+	{
+		return LatLonListsCodec.decode(LatLonListsCodec.encode(polygonsForCodec));
+	}
+
+	private <T> T roundTrip(Object object, Class<T> type)
+	{
+		// same as KryoSerializer.toBytes / toObject
+		Output output = new Output(1024,-1);
+		kryo.writeObject(output, object);
+		output.close();
+		Input input = new Input(output.toBytes());
+		T result = kryo.readObject(input, type);
+		input.close();
+		return result;
+	}
+}
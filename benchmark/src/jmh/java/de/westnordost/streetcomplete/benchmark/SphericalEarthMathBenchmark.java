@@ -0,0 +1,88 @@
+package de.westnordost.streetcomplete.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import de.westnordost.osmapi.map.data.LatLon;
+import de.westnordost.osmapi.map.data.OsmLatLon;
+import de.westnordost.streetcomplete.util.SphericalEarthMath;
+
+/** Point-in-multipolygon tests and center point calculation on large (city-sized) polygons */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SphericalEarthMathBenchmark
+{
+	private static final LatLon CENTER = new OsmLatLon(53.55, 9.99);
+	private static final double RADIUS = 0.05;
+
+	private List<List<LatLon>> multipolygon;
+	private List<LatLon> points;
+
+	@Setup public void setUp()
+	{
+		multipolygon = new ArrayList<>();
+		// like an administrative boundary: one ring with many vertices...
+		multipolygon.add(createRing(CENTER, RADIUS, 2000, false));
+		// ...with a few enclaves
+		Random random = new Random(1);
+		for (int i = 0; i < 10; i++)
+		{
+			LatLon center = randomPosition(random, RADIUS / 2);
+			multipolygon.add(createRing(center, RADIUS / 20, 100, true));
+		}
+
+		points = new ArrayList<>();
+		for (int i = 0; i < 1000; i++)
+		{
+			points.add(randomPosition(random, RADIUS * 1.2));
+		}
+	}
+
+	@Benchmark public void isInMultipolygon(Blackhole bh)
+	{
+		for (LatLon point : points)
+		{
+			bh.consume(SphericalEarthMath.isInMultipolygon(point, multipolygon));
+		}
+	}
+
+	@Benchmark public LatLon centerPointOfPolygon()
+	{
+		return SphericalEarthMath.centerPointOfPolygon(multipolygon.get(0));
+	}
+
+	private static LatLon randomPosition(Random random, double radius)
+	{
+		return new OsmLatLon(
+			CENTER.getLatitude() + (random.nextDouble() * 2 - 1) * radius,
+			CENTER.getLongitude() + (random.nextDouble() * 2 - 1) * radius);
+	}
+
+	/** a closed, somewhat ragged ring around the given center */
+	private static List<LatLon> createRing(LatLon center, double radius, int vertices, boolean clockwise)
+	{
+		List<LatLon> ring = new ArrayList<>(vertices + 1);
+		for (int i = 0; i < vertices; i++)
+		{
+			double angle = (clockwise ? -1 : 1) * 2 * Math.PI * i / vertices;
+			double r = radius * (0.9 + 0.1 * Math.sin(i * 7));
+			ring.add(new OsmLatLon(
+				center.getLatitude() + r * Math.sin(angle),
+				center.getLongitude() + r * Math.cos(angle)));
+		}
+		ring.add(ring.get(0));
+		return ring;
+	}
+}
@@ -0,0 +1,286 @@
+package de.westnordost.streetcomplete.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.osmapi.map.data.LatLon;
+import de.westnordost.osmapi.map.data.Node;
+import de.westnordost.osmapi.map.data.OsmLatLon;
+import de.westnordost.osmapi.map.data.OsmNode;
+import de.westnordost.osmapi.map.data.OsmRelation;
+import de.westnordost.osmapi.map.data.OsmRelationMember;
+import de.westnordost.osmapi.map.data.OsmWay;
+import de.westnordost.osmapi.map.data.Relation;
+import de.westnordost.osmapi.map.data.RelationMember;
+import de.westnordost.osmapi.map.data.Way;
+import de.westnordost.streetcomplete.data.osm.download.WayGeometrySource;
+
+/** Synthetic but realistically shaped map data of a city quarter: a grid of streets of different
+ *  kinds, buildings with addresses along them, POI nodes (shops, bus stops, crossings, benches)
+ *  and residential areas as multipolygons whose outer ring is split into several ways and which
+ *  have courtyards as inner rings.
+ *
+ *  The same data is available as elements and as Overpass response ("out meta geom") */
+public class SyntheticCity implements WayGeometrySource
+{
+	private static final String[] HIGHWAYS = {
+		"residential", "tertiary", "service", "unclassified", "footway", "living_street", "secondary"
+	};
+	private static final String[] SHOPS = { "bakery", "supermarket", "kiosk", "hairdresser", "bicycle" };
+
+	private final List<Element> elements = new ArrayList<>();
+	private final Map<Long, List<LatLon>> wayPositions = new HashMap<>();
+
+	private long nodeId = 1;
+	private long wayId = 1;
+	private long relationId = 1;
+
+	/** a city of about 2000 buildings */
+	public SyntheticCity()
+	{
+		this(50, 40);
+	}
+
+	public SyntheticCity(int streets, int buildingsPerStreet)
+	{
+		for (int s = 0; s < streets; s++)
+		{
+			double baseLat = 53.0 + s * 0.001;
+			addStreet(s, baseLat);
+			for (int b = 0; b < buildingsPerStreet; b++)
+			{
+				addBuilding(s, b, baseLat + 0.0002, 10.0 + b * 0.00025);
+				if(b % 5 == 0) addShop(s, b, baseLat + 0.00025, 10.0 + b * 0.00025 + 0.00005);
+				if(b % 8 == 0) addStreetFurniture(b, baseLat, 10.0 + b * 0.00025);
+			}
+			addResidentialArea(s, baseLat + 0.0005, buildingsPerStreet);
+		}
+	}
+
+	public List<Element> getElements()
+	{
+		return elements;
+	}
+
+	/** @return a new modifiable list because the ElementGeometryCreator modifies it */
+	@Override public List<LatLon> getNodePositions(long wayId)
+	{
+		List<LatLon> positions = wayPositions.get(wayId);
+		return positions != null ? new ArrayList<>(positions) : new ArrayList<>();
+	}
+
+	private void addStreet(int s, double lat)
+	{
+		List<LatLon> positions = new ArrayList<>();
+		for (int i = 0; i <= 20; i++)
+		{
+			// slightly curved
+			positions.add(new OsmLatLon(lat + Math.sin(i * 0.3) * 0.00002, 10.0 + i * 0.0005));
+		}
+		Map<String, String> tags = new HashMap<>();
+		String highway = HIGHWAYS[s % HIGHWAYS.length];
+		tags.put("highway", highway);
+		tags.put("name", "Street " + s);
+		if(s % 2 == 0) tags.put("surface", "asphalt");
+		if(s % 3 == 0) tags.put("lit", "yes");
+		if(s % 4 == 0) tags.put("sidewalk", "both");
+		if(!highway.equals("footway")) tags.put("maxspeed", s % 5 == 0 ? "50" : "30");
+		addWay(positions, tags);
+	}
+
+	private void addBuilding(int s, int b, double lat, double lon)
+	{
+		Map<String, String> tags = new HashMap<>();
+		tags.put("building", b % 7 == 0 ? "apartments" : "yes");
+		tags.put("addr:street", "Street " + s);
+		tags.put("addr:housenumber", String.valueOf(b + 1));
+		if(b % 3 == 0) tags.put("building:levels", String.valueOf(2 + b % 4));
+		addWay(createSquare(lat, lon, 0.0001), tags);
+	}
+
+	private void addShop(int s, int b, double lat, double lon)
+	{
+		Map<String, String> tags = new HashMap<>();
+		tags.put("shop", SHOPS[(s + b) % SHOPS.length]);
+		tags.put("name", "Shop " + s + "-" + b);
+		if(b % 2 == 0) tags.put("opening_hours", "Mo-Sa 07:00-18:00");
+		if(b % 3 == 0) tags.put("wheelchair", "yes");
+		addNode(lat, lon, tags);
+	}
+
+	private void addStreetFurniture(int b, double lat, double lon)
+	{
+		Map<String, String> tags = new HashMap<>();
+		switch (b % 3)
+		{
+			case 0:
+				tags.put("highway", "bus_stop");
+				tags.put("public_transport", "platform");
+				tags.put("bus", "yes");
+				tags.put("name", "Stop " + b);
+				if(b % 2 == 0) tags.put("shelter", "yes");
+				break;
+			case 1:
+				tags.put("highway", "crossing");
+				if(b % 2 == 0) tags.put("crossing", "zebra");
+				break;
+			default:
+				tags.put("amenity", "bench");
+				tags.put("backrest", "yes");
+		}
+		addNode(lat, lon, tags);
+	}
+
+	private void addResidentialArea(int s, double lat, int buildingsPerStreet)
+	{
+		double minLon = 10.0;
+		double maxLon = 10.0 + buildingsPerStreet * 0.00025;
+		double height = 0.0003;
+
+		List<RelationMember> members = new ArrayList<>();
+		// outer ring split into its four sides (in random order), so the ways need to be joined
+		List<List<LatLon>> sides = new ArrayList<>();
+		sides.add(createLine(lat, minLon, lat, maxLon, 30));
+		sides.add(createLine(lat, maxLon, lat + height, maxLon, 5));
+		sides.add(createLine(lat + height, maxLon, lat + height, minLon, 30));
+		sides.add(createLine(lat + height, minLon, lat, minLon, 5));
+		Collections.shuffle(sides, new java.util.Random(s));
+		for (List<LatLon> side : sides)
+		{
+			members.add(new OsmRelationMember(addMemberWay(side), "outer", Element.Type.WAY));
+		}
+		// courtyards
+		for (int i = 0; i < 3; i++)
+		{
+			double lon = minLon + (i + 1) * (maxLon - minLon) / 4;
+			List<LatLon> courtyard = createSquare(lat + 0.0001, lon, 0.0001);
+			members.add(new OsmRelationMember(addMemberWay(courtyard), "inner", Element.Type.WAY));
+		}
+
+		Map<String, String> tags = new HashMap<>();
+		tags.put("type", "multipolygon");
+		tags.put("landuse", "residential");
+		tags.put("name", "Quarter " + s);
+		elements.add(new OsmRelation(relationId++, 1, members, tags));
+	}
+
+	private static List<LatLon> createSquare(double lat, double lon, double size)
+	{
+		List<LatLon> result = new ArrayList<>(5);
+		result.add(new OsmLatLon(lat, lon));
+		result.add(new OsmLatLon(lat + size, lon));
+		result.add(new OsmLatLon(lat + size, lon + size));
+		result.add(new OsmLatLon(lat, lon + size));
+		result.add(new OsmLatLon(lat, lon));
+		return result;
+	}
+
+	private static List<LatLon> createLine(double lat1, double lon1, double lat2, double lon2, int segments)
+	{
+		List<LatLon> result = new ArrayList<>(segments + 1);
+		result.add(new OsmLatLon(lat1, lon1));
+		for (int i = 1; i < segments; i++)
+		{
+			double f = (double) i / segments;
+			result.add(new OsmLatLon(lat1 + (lat2 - lat1) * f, lon1 + (lon2 - lon1) * f));
+		}
+		// exactly the same end points, otherwise the ways could not be joined
+		result.add(new OsmLatLon(lat2, lon2));
+		return result;
+	}
+
+	private void addNode(double lat, double lon, Map<String, String> tags)
+	{
+		elements.add(new OsmNode(nodeId++, 1, lat, lon, tags));
+	}
+
+	private void addWay(List<LatLon> positions, Map<String, String> tags)
+	{
+		long id = addMemberWay(positions);
+		List<Long> nodeIds = new ArrayList<>(positions.size());
+		for (int i = 0; i < positions.size(); i++)
+		{
+			nodeIds.add(nodeId++);
+		}
+		// closed ways have the same node at start and end
+		if(positions.get(0).equals(positions.get(positions.size() - 1)))
+		{
+			nodeIds.set(positions.size() - 1, nodeIds.get(0));
+		}
+		elements.add(new OsmWay(id, 1, nodeIds, tags));
+	}
+
+	private long addMemberWay(List<LatLon> positions)
+	{
+		long id = wayId++;
+		wayPositions.put(id, positions);
+		return id;
+	}
+
+	/** @return the data as returned by Overpass for "out meta geom;" */
+	public String toOverpassXml()
+	{
+		StringBuilder sb = new StringBuilder("<?xml version='1.0' encoding='UTF-8'?>\n<osm version='0.6'>\n");
+		String meta = "version='1' timestamp='2019-01-01T00:00:00Z' changeset='1' uid='1' user='x'";
+		for (Element element : elements)
+		{
+			if(element instanceof Node)
+			{
+				Node node = (Node) element;
+				sb.append("<node id='").append(node.getId()).append("' ").append(meta)
+					.append(" lat='").append(format(node.getPosition().getLatitude()))
+					.append("' lon='").append(format(node.getPosition().getLongitude())).append("'>\n");
+			}
+			else if(element instanceof Way)
+			{
+				Way way = (Way) element;
+				sb.append("<way id='").append(way.getId()).append("' ").append(meta).append(">\n");
+				List<LatLon> positions = wayPositions.get(way.getId());
+				for (int i = 0; i < positions.size(); i++)
+				{
+					sb.append(" <nd ref='").append(way.getNodeIds().get(i)).append("'");
+					appendPosition(sb, positions.get(i));
+				}
+			}
+			else if(element instanceof Relation)
+			{
+				Relation relation = (Relation) element;
+				sb.append("<relation id='").append(relation.getId()).append("' ").append(meta).append(">\n");
+				for (RelationMember member : relation.getMembers())
+				{
+					sb.append(" <member type='way' ref='").append(member.getRef())
+						.append("' role='").append(member.getRole()).append("'>\n");
+					for (LatLon position : wayPositions.get(member.getRef()))
+					{
+						sb.append("  <nd");
+						appendPosition(sb, position);
+					}
+					sb.append(" </member>\n");
+				}
+			}
+			for (Map.Entry<String, String> tag : element.getTags().entrySet())
+			{
+				sb.append(" <tag k='").append(tag.getKey()).append("' v='").append(tag.getValue()).append("'/>\n");
+			}
+			sb.append("</").append(element.getType().name().toLowerCase(Locale.US)).append(">\n");
+		}
+		sb.append("</osm>");
+		return sb.toString();
+	}
+
+	private static void appendPosition(StringBuilder sb, LatLon position)
+	{
+		sb.append(" lat='").append(format(position.getLatitude()))
+			.append("' lon='").append(format(position.getLongitude())).append("'/>\n");
+	}
+
+	private static String format(double coordinate)
+	{
+		return String.format(Locale.US, "%.7f", coordinate);
+	}
+}
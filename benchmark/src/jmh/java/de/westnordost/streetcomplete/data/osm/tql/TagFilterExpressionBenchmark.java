@@ -0,0 +1,104 @@
+package de.westnordost.streetcomplete.data.osm.tql;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import de.westnordost.osmapi.map.OsmMapDataFactory;
+import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.streetcomplete.benchmark.Fixtures;
+import de.westnordost.streetcomplete.data.osm.download.CompactOverpassMapDataParser;
+
+/** Matching the elements of an Overpass response against the tag filters of all registered quest
+ *  types, with the compiled filters and by walking through the expression trees. Lives in this
+ *  package because the latter is not public.
+ *
+ *  The tag filters are exported by QuestTypeTagFiltersTest of the app, so quest types that are
+ *  added or changed are benchmarked as they are */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TagFilterExpressionBenchmark
+{
+	private static final String TAG_FILTERS_RESOURCE = "/tagFilters.txt";
+
+	@Param({Fixtures.CITY, Fixtures.SYNTHETIC})
+	public String source;
+
+	private List<TagFilterExpression> filters;
+	private List<Element> elements;
+
+	@Setup public void setUp() throws Exception
+	{
+		FiltersParser parser = new FiltersParser();
+		filters = new ArrayList<>();
+		for (String filter : loadTagFilters())
+		{
+			filters.add(parser.parse(filter));
+		}
+
+		elements = new ArrayList<>();
+		CompactOverpassMapDataParser mapDataParser = new CompactOverpassMapDataParser(new OsmMapDataFactory());
+		mapDataParser.setHandler((element, geometry) -> elements.add(element));
+		mapDataParser.parse(new ByteArrayInputStream(Fixtures.load(source)));
+	}
+
+	@Benchmark public void matches(Blackhole bh)
+	{
+		for (TagFilterExpression filter : filters)
+		{
+			for (Element element : elements)
+			{
+				bh.consume(filter.matches(element));
+			}
+		}
+	}
+
+	@Benchmark public void matchesExpressionTree(Blackhole bh)
+	{
+		for (TagFilterExpression filter : filters)
+		{
+			for (Element element : elements)
+			{
+				bh.consume(filter.matchesExpressionTree(element));
+			}
+		}
+	}
+
+	private static List<String> loadTagFilters() throws IOException
+	{
+		InputStream is = TagFilterExpressionBenchmark.class.getResourceAsStream(TAG_FILTERS_RESOURCE);
+		if(is == null)
+		{
+			throw new FileNotFoundException(TAG_FILTERS_RESOURCE + " is missing, it is exported by " +
+				"./gradlew :app:testDebugUnitTest");
+		}
+		List<String> result = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8)))
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				if(!line.isEmpty()) result.add(line);
+			}
+		}
+		return result;
+	}
+}
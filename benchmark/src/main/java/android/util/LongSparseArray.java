@@ -0,0 +1,64 @@
+package android.util;
+
+import java.util.Arrays;
+
+/** Stand-in for the Android class of the same name so that the classes that use it can be
+ *  benchmarked on the JVM. Like the original, it keeps the keys in a sorted array and looks them up
+ *  by binary search, so that the performance characteristics are similar. Only what is used by the
+ *  benchmarked classes is implemented. */
+public class LongSparseArray<E>
+{
+	private long[] keys;
+	private Object[] values;
+	private int size;
+
+	public LongSparseArray()
+	{
+		this(10);
+	}
+
+	public LongSparseArray(int initialCapacity)
+	{
+		keys = new long[Math.max(1, initialCapacity)];
+		values = new Object[Math.max(1, initialCapacity)];
+	}
+
+	@SuppressWarnings("unchecked")
+	public E get(long key)
+	{
+		int i = Arrays.binarySearch(keys, 0, size, key);
+		return i >= 0 ? (E) values[i] : null;
+	}
+
+	public void put(long key, E value)
+	{
+		int i = Arrays.binarySearch(keys, 0, size, key);
+		if(i >= 0)
+		{
+			values[i] = value;
+			return;
+		}
+		i = ~i;
+		if(size == keys.length)
+		{
+			keys = Arrays.copyOf(keys, size * 2);
+			values = Arrays.copyOf(values, size * 2);
+		}
+		System.arraycopy(keys, i, keys, i + 1, size - i);
+		System.arraycopy(values, i, values, i + 1, size - i);
+		keys[i] = key;
+		values[i] = value;
+		size++;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public void clear()
+	{
+		Arrays.fill(values, 0, size, null);
+		size = 0;
+	}
+}